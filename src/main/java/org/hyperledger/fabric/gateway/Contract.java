@@ -7,6 +7,8 @@
 package org.hyperledger.fabric.gateway;
 
 import java.io.IOException;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
 import java.util.concurrent.TimeoutException;
 import java.util.function.Consumer;
 import java.util.regex.Pattern;
@@ -62,6 +64,32 @@ public interface Contract {
      */
     byte[] submitTransaction(String name, String... args) throws ContractException, TimeoutException, InterruptedException;
 
+    /**
+     * Asynchronously submit a transaction to the ledger. The transaction function {@code name}
+     * will be evaluated on the endorsing peers and then submitted to the ordering service
+     * for committing to the ledger, without blocking the calling thread.
+     * This function is equivalent to calling {@code createTransaction(name).submitAsync()}.
+     *
+     * @param name Transaction function name.
+     * @param args Transaction function arguments.
+     * @return A future that completes with the payload response from the transaction function. The future completes
+     * exceptionally with the same exceptions thrown by {@link #submitTransaction(String, String...)}.
+     */
+    CompletableFuture<byte[]> submitTransactionAsync(String name, String... args);
+
+    /**
+     * Submit a batch of independent transactions to the ledger. Transactions are endorsed concurrently, up to
+     * {@code maxConcurrentEndorsements} at a time, and each is sent to the ordering service as soon as it has been
+     * endorsed. Failure of one transaction does not affect the others.
+     *
+     * @param transactions Transactions to submit.
+     * @param maxConcurrentEndorsements Maximum number of transactions being endorsed at once.
+     * @return One future per transaction, in the same order as {@code transactions}. Each completes with the payload
+     * response from its transaction function, or exceptionally with the same exceptions thrown by
+     * {@link #submitTransaction(String, String...)}.
+     */
+    List<CompletableFuture<byte[]>> submitBatch(List<TransactionSpec> transactions, int maxConcurrentEndorsements);
+
 
     /**
      * Submit a transaction to the ledger. Transaction gets submitted based on the model from the path.
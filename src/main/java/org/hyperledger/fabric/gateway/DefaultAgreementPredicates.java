@@ -0,0 +1,60 @@
+/*
+ * Copyright 2019 IBM All Rights Reserved.
+ *
+ * SPDX-License-Identifier: Apache-2.0
+ */
+
+package org.hyperledger.fabric.gateway;
+
+import org.hyperledger.fabric.gateway.impl.agreement.PayloadBooleanPredicate;
+import org.hyperledger.fabric.gateway.impl.agreement.PayloadDigestPredicate;
+import org.hyperledger.fabric.gateway.impl.agreement.PayloadEqualsPredicate;
+import org.hyperledger.fabric.gateway.impl.agreement.PayloadPatternPredicate;
+import org.hyperledger.fabric.gateway.spi.AgreementPredicate;
+import org.hyperledger.fabric.gateway.spi.AgreementPredicateFactory;
+import org.hyperledger.fabric.sdk.ProposalResponse;
+
+/**
+ * Default agreement predicate implementations, used to decide whether an organization approves a transaction during
+ * model-based endorsement. Instances can be referenced directly or looked up by name, for example
+ * {@code DefaultAgreementPredicates.valueOf("PAYLOAD_DIGEST")}.
+ */
+public enum DefaultAgreementPredicates implements AgreementPredicateFactory {
+    /**
+     * With a reference response, approve responses whose payload has the same digest as the reference payload. The
+     * reference digest is computed once per endorsement. Without a reference response, approve responses whose
+     * payload contains {@code true}.
+     */
+    PAYLOAD_DIGEST(referenceResponse -> referenceResponse != null
+            ? new PayloadDigestPredicate(referenceResponse)
+            : PayloadPatternPredicate.CONTAINS_TRUE),
+
+    /**
+     * With a reference response, approve responses whose payload is byte-for-byte equal to the reference payload.
+     * Without a reference response, approve responses whose payload contains {@code true}.
+     */
+    PAYLOAD_EQUALS(referenceResponse -> referenceResponse != null
+            ? new PayloadEqualsPredicate(referenceResponse)
+            : PayloadPatternPredicate.CONTAINS_TRUE),
+
+    /**
+     * Approve responses whose payload contains {@code true}, ignoring any reference response.
+     */
+    PAYLOAD_CONTAINS_TRUE(referenceResponse -> PayloadPatternPredicate.CONTAINS_TRUE),
+
+    /**
+     * Approve responses whose payload is the boolean value {@code true}, ignoring any reference response.
+     */
+    PAYLOAD_IS_TRUE(referenceResponse -> PayloadBooleanPredicate.INSTANCE);
+
+    private final AgreementPredicateFactory factory;
+
+    DefaultAgreementPredicates(final AgreementPredicateFactory factory) {
+        this.factory = factory;
+    }
+
+    @Override
+    public AgreementPredicate create(final ProposalResponse referenceResponse) {
+        return factory.create(referenceResponse);
+    }
+}
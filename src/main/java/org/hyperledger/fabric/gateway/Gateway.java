@@ -167,6 +167,15 @@ public interface Gateway extends AutoCloseable {
          */
         Builder commitTimeout(long timeout, TimeUnit timeUnit);
 
+        /**
+         * <em>Optional</em> - Set the default maximum time to wait for the orderer to accept a transaction. The
+         * default is 60 seconds.
+         * @param timeout the maximum time to wait.
+         * @param timeUnit the time unit of the timeout argument.
+         * @return The builder instance, allowing multiple configuration options to be chained.
+         */
+        Builder ordererTimeout(long timeout, TimeUnit timeUnit);
+
         /**
          * <em>Optional</em> - Enable or disable service discovery for all transaction submissions for this gateway.
          * Service discovery is disabled by default.
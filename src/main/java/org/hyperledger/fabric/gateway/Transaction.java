@@ -8,6 +8,7 @@ package org.hyperledger.fabric.gateway;
 
 import java.util.Collection;
 import java.util.Map;
+import java.util.concurrent.CompletableFuture;
 import java.util.concurrent.TimeUnit;
 import java.util.concurrent.TimeoutException;
 
@@ -64,6 +65,15 @@ public interface Transaction {
      */
     Transaction setCommitTimeout(long timeout, TimeUnit timeUnit);
 
+    /**
+     * Set the maximum length of time to wait for the orderer to accept the transaction.
+     *
+     * @param timeout  the maximum time to wait.
+     * @param timeUnit the time unit of the timeout argument.
+     * @return this transaction object to allow method chaining.
+     */
+    Transaction setOrdererTimeout(long timeout, TimeUnit timeUnit);
+
     /**
      * Set the commit handler to use for this transaction invocation instead of the default handler configured for the
      * gateway.
@@ -97,6 +107,17 @@ public interface Transaction {
      */
     byte[] submit(String... args) throws ContractException, TimeoutException, InterruptedException;
 
+    /**
+     * Asynchronously submit a transaction to the ledger. This behaves like {@link #submit(String...)} but does not
+     * block the calling thread while the transaction is sent to the ordering service or while waiting for commit
+     * events from peers.
+     *
+     * @param args Transaction function arguments.
+     * @return A future that completes with the payload response from the transaction function. The future completes
+     * exceptionally with the same exceptions thrown by the synchronous form.
+     */
+    CompletableFuture<byte[]> submitAsync(String... args);
+
     /**
      * Submit a transaction to the ledger. Submission of a transaction is based on the model.
      * Model builds based on the algorithm similar to https://arxiv.org/abs/2112.02397
@@ -203,6 +224,39 @@ public interface Transaction {
                                                final String... args)
             throws ContractException, TimeoutException, InterruptedException;
 
+    /**
+     * Asynchronously submit a transaction to the ledger based on the model. This behaves like
+     * {@link #submitBasedOnModel(String, int, String, Long, String...)} but does not block the calling thread while
+     * organizations are endorsing the transaction or while waiting for it to commit.
+     *
+     * @param analyticsPath Path to the file with analyzation results and the models.
+     * @param modelId Id of the mode. Sending of a transaction will happen based on this model.
+     * @param orgWithHighestProbabilityToApprove Organization with a highest probability of giving a correct response,
+     *                                           or null to consider responses correct based on their payload.
+     * @param waitTimeout Waiting timeout of a response from organization, or null to use the default.
+     * @param args Transaction function arguments.
+     * @return A future that completes with the payload response from the transaction function, or null if agreement
+     * was not reached. The future completes exceptionally with the same exceptions thrown by the synchronous form.
+     */
+    CompletableFuture<byte[]> submitBasedOnModelAsync(String analyticsPath, int modelId,
+                                                      String orgWithHighestProbabilityToApprove, Long waitTimeout,
+                                                      String... args);
+
+    /**
+     * Asynchronously submit a transaction to the ledger based on the model, considering responses correct based on
+     * their payload. This behaves like {@link #submitBasedOnModelWithBinaryResponse(String, int, Long, String...)}
+     * but does not block the calling thread.
+     *
+     * @param analyticsPath Path to the file with analyzation results and the models.
+     * @param modelId Id of the mode. Sending of a transaction will happen based on this model.
+     * @param waitTimeout Waiting timeout of a response from organization, or null to use the default.
+     * @param args Transaction function arguments.
+     * @return A future that completes with the payload response from the transaction function, or null if agreement
+     * was not reached.
+     */
+    CompletableFuture<byte[]> submitBasedOnModelWithBinaryResponseAsync(String analyticsPath, int modelId,
+                                                                        Long waitTimeout, String... args);
+
     /**
      * Evaluate a transaction function and return its results.
      * The transaction function will be evaluated on the endorsing peers but
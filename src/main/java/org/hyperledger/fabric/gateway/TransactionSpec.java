@@ -0,0 +1,60 @@
+/*
+ * Copyright 2019 IBM All Rights Reserved.
+ *
+ * SPDX-License-Identifier: Apache-2.0
+ */
+
+package org.hyperledger.fabric.gateway;
+
+import java.util.Arrays;
+import java.util.Map;
+
+/**
+ * Describes one transaction of a batch submitted with {@link Contract#submitBatch(java.util.List, int)}: the
+ * transaction function name, its arguments and optional transient data.
+ */
+public final class TransactionSpec {
+    private final String name;
+    private final String[] args;
+    private Map<String, byte[]> transientData = null;
+
+    /**
+     * Describe a transaction.
+     * @param name Transaction function name.
+     * @param args Transaction function arguments.
+     */
+    public TransactionSpec(final String name, final String... args) {
+        if (name == null || name.isEmpty()) {
+            throw new IllegalArgumentException("Transaction must be a non-empty string");
+        }
+        this.name = name;
+        this.args = args.clone();
+    }
+
+    /**
+     * Set transient data that will be passed to the transaction function but will not be stored on the ledger.
+     * @param transientData A map of transient data.
+     * @return this object to allow method chaining.
+     */
+    public TransactionSpec setTransient(final Map<String, byte[]> transientData) {
+        this.transientData = transientData;
+        return this;
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    public String[] getArgs() {
+        return args.clone();
+    }
+
+    public Map<String, byte[]> getTransient() {
+        return transientData;
+    }
+
+    @Override
+    public String toString() {
+        return getClass().getSimpleName() + "(name=" + name + ", args=" + Arrays.toString(args) + ")";
+    }
+}
@@ -0,0 +1,68 @@
+/*
+ * Copyright 2019 IBM All Rights Reserved.
+ *
+ * SPDX-License-Identifier: Apache-2.0
+ */
+
+package org.hyperledger.fabric.gateway.impl;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.function.Supplier;
+
+/**
+ * Timeouts for asynchronous operations. A single shared {@link HashedWheelTimer} completes futures that run out of
+ * time, so no thread waits on an individual operation and cancelling a timeout when the operation completes is
+ * constant time. Timeouts expire up to {@link #TICK_MILLIS} late.
+ * <p>This implementation is thread-safe.</p>
+ */
+public final class AsyncTimeouts {
+    static final long TICK_MILLIS = 10;
+    private static final int TICKS_PER_WHEEL = 512;
+    private static final HashedWheelTimer TIMER =
+            new HashedWheelTimer("gateway-timeout", TICK_MILLIS, TimeUnit.MILLISECONDS, TICKS_PER_WHEEL);
+
+    /**
+     * Get a future that completes in the same way as another future, or exceptionally with a
+     * {@link TimeoutException} if that future does not complete in time. The original future is not cancelled on
+     * timeout.
+     * @param future A future.
+     * @param timeout Maximum time to wait.
+     * @param timeUnit Unit of the timeout.
+     * @param timeoutException Supplies the exception used on timeout.
+     * @param <T> Result type.
+     * @return A future with a timeout.
+     */
+    public static <T> CompletableFuture<T> within(final CompletableFuture<T> future, final long timeout,
+                                                  final TimeUnit timeUnit,
+                                                  final Supplier<TimeoutException> timeoutException) {
+        if (future.isDone()) {
+            return future;
+        }
+
+        CompletableFuture<T> result = new CompletableFuture<>();
+        HashedWheelTimer.Timeout timer = TIMER.schedule(
+                () -> result.completeExceptionally(timeoutException.get()), timeout, timeUnit);
+        future.whenComplete((value, e) -> {
+            timer.cancel();
+            if (e != null) {
+                result.completeExceptionally(e);
+            } else {
+                result.complete(value);
+            }
+        });
+        return result;
+    }
+
+    /**
+     * Number of timeouts that have neither expired nor been cancelled.
+     * @return Pending timeout count.
+     */
+    public static int getPendingCount() {
+        return TIMER.getPendingCount();
+    }
+
+    // Private constructor to prevent instantiation
+    private AsyncTimeouts() { }
+}
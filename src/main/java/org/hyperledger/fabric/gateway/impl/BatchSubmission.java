@@ -0,0 +1,163 @@
+/*
+ * Copyright 2019 IBM All Rights Reserved.
+ *
+ * SPDX-License-Identifier: Apache-2.0
+ */
+
+package org.hyperledger.fabric.gateway.impl;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.hyperledger.fabric.gateway.TransactionSpec;
+import org.hyperledger.fabric.sdk.ProposalResponse;
+
+/**
+ * Submits a batch of independent transactions. At most a given number of transactions are endorsed at once. Each
+ * transaction is sent to the orderer as soon as it is endorsed, without waiting for other transactions of the batch,
+ * and the next transaction starts endorsement in its place. Commits of all transactions are awaited through the
+ * network's single commit listener. If the network has a submission scheduler, each transaction is also admitted by
+ * it before endorsement and holds its permit until the transaction completes.
+ * <p>This implementation is thread-safe.</p>
+ */
+final class BatchSubmission {
+    private final List<TransactionImpl> transactions;
+    private final List<TransactionSpec> specs;
+    private final List<CompletableFuture<byte[]>> results;
+    private final SubmissionScheduler scheduler;
+    private final AtomicInteger next = new AtomicInteger(0);
+
+    BatchSubmission(final ContractImpl contract, final List<TransactionSpec> specs,
+                    final SubmissionScheduler scheduler) {
+        this.specs = new ArrayList<>(specs);
+        this.scheduler = scheduler;
+
+        transactions = new ArrayList<>(specs.size());
+        List<CompletableFuture<byte[]>> futures = new ArrayList<>(specs.size());
+        for (TransactionSpec spec : this.specs) {
+            TransactionImpl transaction = (TransactionImpl) contract.createTransaction(spec.getName());
+            if (spec.getTransient() != null) {
+                transaction.setTransient(spec.getTransient());
+            }
+            transactions.add(transaction);
+            futures.add(new CompletableFuture<>());
+        }
+        results = Collections.unmodifiableList(futures);
+    }
+
+    /**
+     * Start submitting the batch.
+     * @param maxConcurrentEndorsements Maximum number of transactions being endorsed at once.
+     * @return One future per transaction, in the order of the batch, each completing with the payload response of
+     * its transaction function or exceptionally if that transaction fails.
+     */
+    List<CompletableFuture<byte[]>> submit(final int maxConcurrentEndorsements) {
+        int initial = Math.min(maxConcurrentEndorsements, transactions.size());
+        for (int i = 0; i < initial; i++) {
+            endorseNext();
+        }
+        return results;
+    }
+
+    private void endorseNext() {
+        while (true) {
+            int index = next.getAndIncrement();
+            if (index >= transactions.size()) {
+                return;
+            }
+
+            CompletableFuture<byte[]> result = results.get(index);
+            if (scheduler == null) {
+                if (endorse(index, result)) {
+                    return;
+                }
+                continue;
+            }
+
+            CompletableFuture<SubmissionScheduler.Permit> admission = scheduler.acquireAsync();
+            if (admission.isCompletedExceptionally()) {
+                // Rejected, so move straight on to the next transaction
+                admission.whenComplete((permit, e) -> result.completeExceptionally(unwrap(e)));
+                continue;
+            }
+
+            admission.whenComplete((permit, e) -> {
+                if (e != null) {
+                    result.completeExceptionally(unwrap(e));
+                    endorseNext();
+                } else {
+                    result.whenComplete((payload, failure) -> permit.release(failure));
+                    if (!endorse(index, result)) {
+                        endorseNext();
+                    }
+                }
+            });
+            return;
+        }
+    }
+
+    /**
+     * Start endorsing a transaction. The continuation runs on the thread that completes the endorsement rather than
+     * being handed to another executor, which could reject it and leave the batch stalled.
+     * @return false if endorsement failed without starting, for example because the endorsement executor is full. The
+     * result has then been completed exceptionally and the endorsement slot is free.
+     */
+    private boolean endorse(final int index, final CompletableFuture<byte[]> result) {
+        TransactionImpl transaction = transactions.get(index);
+        CompletableFuture<Collection<ProposalResponse>> endorsement;
+        try {
+            endorsement = transaction.endorseAsync(specs.get(index).getArgs());
+        } catch (RuntimeException e) {
+            result.completeExceptionally(e);
+            return false;
+        }
+
+        if (endorsement.isCompletedExceptionally()) {
+            // Handled by the caller's loop rather than recursively, so many rejections cannot overflow the stack
+            endorsement.whenComplete((responses, e) -> result.completeExceptionally(unwrap(e)));
+            return false;
+        }
+
+        endorsement.whenComplete((responses, e) -> {
+            // Endorsement slot is free once endorsement completes, whatever the outcome
+            endorseNext();
+            if (e != null) {
+                result.completeExceptionally(unwrap(e));
+            } else {
+                commit(transaction, responses, result);
+            }
+        });
+        return true;
+    }
+
+    private static void commit(final TransactionImpl transaction, final Collection<ProposalResponse> responses,
+                               final CompletableFuture<byte[]> result) {
+        try {
+            transaction.commitResponsesAsync(responses).whenComplete((payload, e) -> {
+                if (e != null) {
+                    result.completeExceptionally(unwrap(e));
+                } else {
+                    result.complete(payload);
+                }
+            });
+        } catch (RuntimeException e) {
+            result.completeExceptionally(e);
+        }
+    }
+
+    private static Throwable unwrap(final Throwable e) {
+        return e instanceof CompletionException && e.getCause() != null ? e.getCause() : e;
+    }
+
+    @Override
+    public String toString() {
+        return GatewayUtils.toString(this,
+                "size=" + transactions.size(),
+                "started=" + Math.min(next.get(), transactions.size()));
+    }
+}
@@ -8,7 +8,9 @@ package org.hyperledger.fabric.gateway.impl;
 
 import java.io.IOException;
 import java.util.HashMap;
+import java.util.List;
 import java.util.Map;
+import java.util.concurrent.CompletableFuture;
 import java.util.concurrent.TimeoutException;
 import java.util.function.Consumer;
 import java.util.regex.Pattern;
@@ -17,6 +19,7 @@ import org.hyperledger.fabric.gateway.Contract;
 import org.hyperledger.fabric.gateway.ContractEvent;
 import org.hyperledger.fabric.gateway.ContractException;
 import org.hyperledger.fabric.gateway.Transaction;
+import org.hyperledger.fabric.gateway.TransactionSpec;
 import org.hyperledger.fabric.gateway.impl.event.BlockListenerSession;
 import org.hyperledger.fabric.gateway.impl.event.ListenerSession;
 import org.hyperledger.fabric.gateway.impl.event.Listeners;
@@ -50,6 +53,22 @@ public final class ContractImpl implements Contract, AutoCloseable {
         return createTransaction(name).submit(args);
     }
 
+    @Override
+    public CompletableFuture<byte[]> submitTransactionAsync(final String name, final String... args) {
+        return createTransaction(name).submitAsync(args);
+    }
+
+    @Override
+    public List<CompletableFuture<byte[]>> submitBatch(final List<TransactionSpec> transactions,
+                                                       final int maxConcurrentEndorsements) {
+        if (maxConcurrentEndorsements < 1) {
+            throw new IllegalArgumentException("Maximum concurrent endorsements must be at least 1: "
+                    + maxConcurrentEndorsements);
+        }
+        BatchSubmission batch = new BatchSubmission(this, transactions, network.getSubmissionScheduler());
+        return batch.submit(maxConcurrentEndorsements);
+    }
+
     @Override
     public byte[] submitTransactionBasedOnModelWithBinaryResponse(String analyticsPath, int modelId,
                                                                   String name, String... args)
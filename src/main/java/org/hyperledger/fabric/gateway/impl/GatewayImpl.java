@@ -53,6 +53,8 @@ public final class GatewayImpl implements Gateway {
 
     private static final long DEFAULT_COMMIT_TIMEOUT = 5;
     private static final TimeUnit DEFAULT_COMMIT_TIMEOUT_UNIT = TimeUnit.MINUTES;
+    private static final long DEFAULT_ORDERER_TIMEOUT = 60;
+    private static final TimeUnit DEFAULT_ORDERER_TIMEOUT_UNIT = TimeUnit.SECONDS;
 
     private final HFClient client;
     private final NetworkConfig networkConfig;
@@ -60,12 +62,14 @@ public final class GatewayImpl implements Gateway {
     private final Map<String, NetworkImpl> networks = new HashMap<>();
     private final CommitHandlerFactory commitHandlerFactory;
     private final TimePeriod commitTimeout;
+    private final TimePeriod ordererTimeout;
     private final QueryHandlerFactory queryHandlerFactory;
     private final boolean discovery;
 
     public static final class Builder implements Gateway.Builder {
         private CommitHandlerFactory commitHandlerFactory = DefaultCommitHandlers.PREFER_MSPID_SCOPE_ALLFORTX;
         private TimePeriod commitTimeout = new TimePeriod(DEFAULT_COMMIT_TIMEOUT, DEFAULT_COMMIT_TIMEOUT_UNIT);
+        private TimePeriod ordererTimeout = new TimePeriod(DEFAULT_ORDERER_TIMEOUT, DEFAULT_ORDERER_TIMEOUT_UNIT);
         private QueryHandlerFactory queryHandlerFactory = DefaultQueryHandlers.PREFER_MSPID_SCOPE_SINGLE;
         private NetworkConfig ccp = null;
         private Identity identity = null;
@@ -146,6 +150,12 @@ public final class GatewayImpl implements Gateway {
             return this;
         }
 
+        @Override
+        public Builder ordererTimeout(final long timeout, final TimeUnit timeUnit) {
+            this.ordererTimeout = new TimePeriod(timeout, timeUnit);
+            return this;
+        }
+
         @Override
         public Builder discovery(final boolean enabled) {
             this.discovery = enabled;
@@ -166,6 +176,7 @@ public final class GatewayImpl implements Gateway {
     private GatewayImpl(final Builder builder) {
         this.commitHandlerFactory = builder.commitHandlerFactory;
         this.commitTimeout = builder.commitTimeout;
+        this.ordererTimeout = builder.ordererTimeout;
         this.queryHandlerFactory = builder.queryHandlerFactory;
         this.discovery = builder.discovery;
 
@@ -198,6 +209,7 @@ public final class GatewayImpl implements Gateway {
     private GatewayImpl(final GatewayImpl that) {
         this.commitHandlerFactory = that.commitHandlerFactory;
         this.commitTimeout = that.commitTimeout;
+        this.ordererTimeout = that.ordererTimeout;
         this.queryHandlerFactory = that.queryHandlerFactory;
         this.discovery = that.discovery;
         this.networkConfig = that.networkConfig;
@@ -272,6 +284,10 @@ public final class GatewayImpl implements Gateway {
         return commitTimeout;
     }
 
+    public TimePeriod getOrdererTimeout() {
+        return ordererTimeout;
+    }
+
     public QueryHandlerFactory getQueryHandlerFactory() {
         return queryHandlerFactory;
     }
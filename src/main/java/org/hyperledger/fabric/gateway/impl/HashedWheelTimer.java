@@ -0,0 +1,285 @@
+/*
+ * Copyright 2019 IBM All Rights Reserved.
+ *
+ * SPDX-License-Identifier: Apache-2.0
+ */
+
+package org.hyperledger.fabric.gateway.impl;
+
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.locks.LockSupport;
+
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+
+/**
+ * Timer for large numbers of timeouts that are usually cancelled before they expire. Timeouts are kept in a ring of
+ * buckets, each covering one tick. A single worker thread advances through the ring once per tick and runs the
+ * timeouts in the current bucket whose deadline has passed. Scheduling and cancelling a timeout are constant time and
+ * only enqueue work for the worker thread, so they never contend with each other or with expiry.
+ * <p>
+ * Timeouts expire up to one tick late. Tasks run on the worker thread and must be short; a task that completes a
+ * future also runs any dependent stages of that future that were not added asynchronously.
+ * </p>
+ * <p>This implementation is thread-safe.</p>
+ */
+public final class HashedWheelTimer implements AutoCloseable {
+    private static final Log LOG = LogFactory.getLog(HashedWheelTimer.class);
+    private static final int MAX_TRANSFERS_PER_TICK = 100000;
+
+    private final long tickNanos;
+    private final Bucket[] wheel;
+    private final int mask;
+    private final Queue<Timeout> scheduled = new ConcurrentLinkedQueue<>();
+    private final Queue<Timeout> cancelled = new ConcurrentLinkedQueue<>();
+    private final AtomicInteger pendingCount = new AtomicInteger(0);
+    private final long startNanos;
+    private final Thread worker;
+    private volatile boolean closed = false;
+    private long tick = 0; // Accessed only by the worker thread
+
+    /**
+     * A scheduled task.
+     */
+    public final class Timeout {
+        private static final int PENDING = 0;
+        private static final int CANCELLED = 1;
+        private static final int EXPIRED = 2;
+
+        private final Runnable task;
+        private final long deadlineNanos;
+        private final AtomicInteger state = new AtomicInteger(PENDING);
+        private long remainingRounds;
+        private Bucket bucket;
+        private Timeout previous;
+        private Timeout next;
+
+        private Timeout(final Runnable task, final long deadlineNanos) {
+            this.task = task;
+            this.deadlineNanos = deadlineNanos;
+        }
+
+        /**
+         * Cancel the timeout so that its task is not run.
+         * @return true if the timeout was cancelled; false if it had already expired or been cancelled.
+         */
+        public boolean cancel() {
+            if (!state.compareAndSet(PENDING, CANCELLED)) {
+                return false;
+            }
+            pendingCount.decrementAndGet();
+            cancelled.add(this);
+            return true;
+        }
+
+        public boolean isCancelled() {
+            return state.get() == CANCELLED;
+        }
+
+        public boolean isExpired() {
+            return state.get() == EXPIRED;
+        }
+
+        private void expire() {
+            if (!state.compareAndSet(PENDING, EXPIRED)) {
+                return;
+            }
+            pendingCount.decrementAndGet();
+            try {
+                task.run();
+            } catch (RuntimeException e) {
+                LOG.warn("Timeout task failed", e);
+            }
+        }
+    }
+
+    /**
+     * Doubly linked list of timeouts, accessed only by the worker thread.
+     */
+    private static final class Bucket {
+        private Timeout head;
+        private Timeout tail;
+
+        void add(final Timeout timeout) {
+            timeout.bucket = this;
+            if (head == null) {
+                head = timeout;
+                tail = timeout;
+            } else {
+                tail.next = timeout;
+                timeout.previous = tail;
+                tail = timeout;
+            }
+        }
+
+        Timeout remove(final Timeout timeout) {
+            Timeout next = timeout.next;
+            if (timeout.previous != null) {
+                timeout.previous.next = next;
+            }
+            if (next != null) {
+                next.previous = timeout.previous;
+            }
+            if (timeout == head) {
+                head = next;
+            }
+            if (timeout == tail) {
+                tail = timeout.previous;
+            }
+            timeout.previous = null;
+            timeout.next = null;
+            timeout.bucket = null;
+            return next;
+        }
+
+        void expire(final long deadlineNanos) {
+            Timeout timeout = head;
+            while (timeout != null) {
+                if (timeout.remainingRounds <= 0 && timeout.deadlineNanos <= deadlineNanos) {
+                    Timeout next = remove(timeout);
+                    timeout.expire();
+                    timeout = next;
+                } else if (timeout.isCancelled()) {
+                    timeout = remove(timeout);
+                } else {
+                    timeout.remainingRounds--;
+                    timeout = timeout.next;
+                }
+            }
+        }
+    }
+
+    /**
+     * Create and start a timer.
+     * @param name Name of the worker thread.
+     * @param tickDuration Duration of one tick.
+     * @param tickUnit Unit of the tick duration.
+     * @param ticksPerWheel Number of buckets, rounded up to a power of two.
+     */
+    public HashedWheelTimer(final String name, final long tickDuration, final TimeUnit tickUnit,
+                            final int ticksPerWheel) {
+        if (tickDuration <= 0) {
+            throw new IllegalArgumentException("Tick duration must be positive: " + tickDuration);
+        }
+        if (ticksPerWheel <= 0 || ticksPerWheel > (1 << 30)) {
+            throw new IllegalArgumentException("Ticks per wheel out of range: " + ticksPerWheel);
+        }
+
+        tickNanos = tickUnit.toNanos(tickDuration);
+        int size = Integer.highestOneBit(ticksPerWheel - 1) << 1;
+        wheel = new Bucket[Math.max(size, 1)];
+        for (int i = 0; i < wheel.length; i++) {
+            wheel[i] = new Bucket();
+        }
+        mask = wheel.length - 1;
+
+        startNanos = System.nanoTime();
+        worker = new Thread(this::run, name);
+        worker.setDaemon(true);
+        worker.start();
+    }
+
+    /**
+     * Run a task once a delay has passed.
+     * @param task Task to run on the worker thread.
+     * @param delay Delay before the task runs.
+     * @param unit Unit of the delay.
+     * @return A timeout that can be used to cancel the task.
+     */
+    public Timeout schedule(final Runnable task, final long delay, final TimeUnit unit) {
+        if (closed) {
+            throw new IllegalStateException("Timer is closed");
+        }
+
+        long deadlineNanos = System.nanoTime() - startNanos + Math.max(unit.toNanos(delay), 0);
+        if (deadlineNanos < 0) {
+            // Guard against overflow for very long delays
+            deadlineNanos = Long.MAX_VALUE;
+        }
+
+        Timeout timeout = new Timeout(task, deadlineNanos);
+        pendingCount.incrementAndGet();
+        scheduled.add(timeout);
+        return timeout;
+    }
+
+    /**
+     * Number of timeouts that have neither expired nor been cancelled.
+     * @return Pending timeout count.
+     */
+    public int getPendingCount() {
+        return pendingCount.get();
+    }
+
+    private void run() {
+        while (!closed) {
+            long deadlineNanos = waitForNextTick();
+            if (closed) {
+                break;
+            }
+
+            removeCancelled();
+            transferScheduled();
+            wheel[(int) (tick & mask)].expire(deadlineNanos);
+            tick++;
+        }
+    }
+
+    private long waitForNextTick() {
+        long deadlineNanos = tickNanos * (tick + 1);
+        while (!closed) {
+            long sleepNanos = deadlineNanos - (System.nanoTime() - startNanos);
+            if (sleepNanos <= 0) {
+                break;
+            }
+            LockSupport.parkNanos(this, sleepNanos);
+        }
+        return deadlineNanos;
+    }
+
+    private void removeCancelled() {
+        Timeout timeout;
+        while ((timeout = cancelled.poll()) != null) {
+            if (timeout.bucket != null) {
+                timeout.bucket.remove(timeout);
+            }
+        }
+    }
+
+    private void transferScheduled() {
+        for (int i = 0; i < MAX_TRANSFERS_PER_TICK; i++) {
+            Timeout timeout = scheduled.poll();
+            if (timeout == null) {
+                break;
+            }
+            if (timeout.isCancelled()) {
+                continue;
+            }
+
+            long expiryTick = timeout.deadlineNanos / tickNanos;
+            timeout.remainingRounds = (expiryTick - tick) / wheel.length;
+            long targetTick = Math.max(expiryTick, tick); // Do not schedule into the past
+            wheel[(int) (targetTick & mask)].add(timeout);
+        }
+    }
+
+    /**
+     * Stop the worker thread. Pending timeouts do not expire.
+     */
+    @Override
+    public void close() {
+        closed = true;
+        LockSupport.unpark(worker);
+    }
+
+    @Override
+    public String toString() {
+        return GatewayUtils.toString(this,
+                "tickNanos=" + tickNanos,
+                "ticksPerWheel=" + wheel.length,
+                "pending=" + pendingCount.get());
+    }
+}
@@ -11,6 +11,9 @@ import java.util.Collection;
 import java.util.HashMap;
 import java.util.Map;
 import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
 import java.util.function.Consumer;
 
 import org.hyperledger.fabric.gateway.Contract;
@@ -19,10 +22,12 @@ import org.hyperledger.fabric.gateway.Network;
 import org.hyperledger.fabric.gateway.impl.event.BlockEventSource;
 import org.hyperledger.fabric.gateway.impl.event.BlockEventSourceFactory;
 import org.hyperledger.fabric.gateway.impl.event.BlockListenerSession;
+import org.hyperledger.fabric.gateway.impl.event.CommitDispatcher;
 import org.hyperledger.fabric.gateway.impl.event.CommitListenerSession;
 import org.hyperledger.fabric.gateway.impl.event.ListenerSession;
 import org.hyperledger.fabric.gateway.impl.event.Listeners;
 import org.hyperledger.fabric.gateway.impl.event.OrderedBlockEventSource;
+import org.hyperledger.fabric.gateway.impl.event.PeerHealthRegistry;
 import org.hyperledger.fabric.gateway.impl.event.ReplayListenerSession;
 import org.hyperledger.fabric.gateway.spi.Checkpointer;
 import org.hyperledger.fabric.gateway.spi.CommitListener;
@@ -34,12 +39,23 @@ import org.hyperledger.fabric.sdk.exception.InvalidArgumentException;
 import org.hyperledger.fabric.sdk.exception.TransactionException;
 
 public final class NetworkImpl implements Network, AutoCloseable {
+    /** Maximum number of asynchronous submits whose blocking endorsement runs at once. */
+    static final int MAX_ENDORSEMENT_THREADS = 64;
+    /** Maximum number of asynchronous submits waiting for an endorsement thread before further submits fail. */
+    static final int ENDORSEMENT_QUEUE_CAPACITY = 1024;
+    private static final long ENDORSEMENT_THREAD_KEEP_ALIVE_SECONDS = 60;
+
     private final Channel channel;
     private final GatewayImpl gateway;
     private final Map<String, Contract> contracts = new ConcurrentHashMap<>();
     private final BlockEventSource channelBlockSource;
     private final BlockEventSource orderedBlockSource;
+    private final CommitDispatcher commitDispatcher;
+    private final PeerHealthRegistry peerHealthRegistry = new PeerHealthRegistry();
     private final QueryHandler queryHandler;
+    private final SendingConfirmationServiceImpl sendingConfirmationService = new SendingConfirmationServiceImpl();
+    private final ThreadPoolExecutor endorsementExecutor = newEndorsementExecutor();
+    private volatile SubmissionScheduler submissionScheduler = null;
     private final Map<Consumer<BlockEvent>, ListenerSession> blockListenerSessions = new HashMap<>();
     private final Map<CommitListener, CommitListenerSession> commitListenerSessions = new ConcurrentHashMap<>();
 
@@ -51,9 +67,24 @@ public final class NetworkImpl implements Network, AutoCloseable {
 
         channelBlockSource = BlockEventSourceFactory.getInstance().newBlockEventSource(channel);
         orderedBlockSource = new OrderedBlockEventSource(channelBlockSource);
+        commitDispatcher = new CommitDispatcher(channelBlockSource);
         queryHandler = gateway.getQueryHandlerFactory().create(this);
     }
 
+    private static ThreadPoolExecutor newEndorsementExecutor() {
+        ThreadPoolExecutor executor = new ThreadPoolExecutor(MAX_ENDORSEMENT_THREADS, MAX_ENDORSEMENT_THREADS,
+                ENDORSEMENT_THREAD_KEEP_ALIVE_SECONDS, TimeUnit.SECONDS,
+                new LinkedBlockingQueue<>(ENDORSEMENT_QUEUE_CAPACITY),
+                runnable -> {
+                    Thread thread = new Thread(runnable, "transaction-endorsement");
+                    thread.setDaemon(true);
+                    return thread;
+                },
+                new ThreadPoolExecutor.AbortPolicy());
+        executor.allowCoreThreadTimeOut(true);
+        return executor;
+    }
+
     private void initializeChannel() {
         try {
             channel.initialize();
@@ -147,7 +178,7 @@ public final class NetworkImpl implements Network, AutoCloseable {
                                             final Collection<Peer> peers,
                                             final String transactionId) {
         commitListenerSessions.computeIfAbsent(listener, k ->
-                new CommitListenerSession(channelBlockSource, listener, peers, transactionId));
+                new CommitListenerSession(commitDispatcher, peerHealthRegistry, listener, peers, transactionId));
         return listener;
     }
 
@@ -163,21 +194,68 @@ public final class NetworkImpl implements Network, AutoCloseable {
         return queryHandler;
     }
 
+    public SendingConfirmationServiceImpl getSendingConfirmationService() {
+        return sendingConfirmationService;
+    }
+
+    /**
+     * Threads that run the blocking endorsements of asynchronous submits. They are separate from the threads of the
+     * sending confirmation service, so that endorsements waiting on peers cannot starve model-based proposals.
+     * @return A bounded executor that rejects work once {@link #ENDORSEMENT_QUEUE_CAPACITY} endorsements are waiting.
+     */
+    ThreadPoolExecutor getEndorsementExecutor() {
+        return endorsementExecutor;
+    }
+
+    /**
+     * Get the scheduler that admits transaction submissions on this network.
+     * @return A submission scheduler, or null if submissions are not limited.
+     */
+    public SubmissionScheduler getSubmissionScheduler() {
+        return submissionScheduler;
+    }
+
+    /**
+     * Limit transaction submissions on this network. Submissions already admitted by a previous scheduler are not
+     * affected; submissions queued by it are rejected.
+     * @param submissionScheduler A submission scheduler, or null to stop limiting submissions.
+     */
+    public void setSubmissionScheduler(final SubmissionScheduler submissionScheduler) {
+        SubmissionScheduler previous = this.submissionScheduler;
+        this.submissionScheduler = submissionScheduler;
+        if (previous != null && previous != submissionScheduler) {
+            previous.close();
+        }
+    }
+
+    public PeerHealthRegistry getPeerHealthRegistry() {
+        return peerHealthRegistry;
+    }
+
     public BlockEventSource getBlockSource() {
         return orderedBlockSource;
     }
 
     @Override
     public void close() {
+        SubmissionScheduler scheduler = submissionScheduler;
+        if (scheduler != null) {
+            scheduler.close();
+        }
+
         synchronized (blockListenerSessions) {
             blockListenerSessions.values().forEach(ListenerSession::close);
             blockListenerSessions.clear();
         }
         commitListenerSessions.values().forEach(ListenerSession::close);
         commitListenerSessions.clear();
+        commitDispatcher.close();
+        peerHealthRegistry.close();
 
         orderedBlockSource.close();
         channelBlockSource.close();
+        sendingConfirmationService.close();
+        endorsementExecutor.shutdownNow();
 
         channel.shutdown(false);
     }
@@ -187,6 +265,7 @@ public final class NetworkImpl implements Network, AutoCloseable {
         return GatewayUtils.toString(this,
                 "name=" + channel.getName(),
                 "channelBlockSource=" + channelBlockSource,
+                "commitDispatcher=" + commitDispatcher,
                 "commitListenerSessions=" + commitListenerSessions,
                 "orderedBlockSource=" + orderedBlockSource,
                 "blockListenerSessions=" + blockListenerSessions);
@@ -1,8 +1,24 @@
 package org.hyperledger.fabric.gateway.impl;
 
-import com.fasterxml.jackson.databind.ObjectMapper;
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+import org.hyperledger.fabric.gateway.DefaultAgreementPredicates;
+import org.hyperledger.fabric.gateway.impl.model.AgreementContext;
+import org.hyperledger.fabric.gateway.impl.model.AgreementStateMachine;
+import org.hyperledger.fabric.gateway.impl.model.AnalyticsWatcher;
+import org.hyperledger.fabric.gateway.impl.model.AnalyticsSnapshot;
+import org.hyperledger.fabric.gateway.impl.model.CompiledModel;
+import org.hyperledger.fabric.gateway.impl.model.DecisionJournal;
+import org.hyperledger.fabric.gateway.impl.model.DecisionTable;
+import org.hyperledger.fabric.gateway.impl.model.EndorsementWaves;
+import org.hyperledger.fabric.gateway.impl.model.ModelRegistry;
+import org.hyperledger.fabric.gateway.impl.model.OrganizationBudgets;
+import org.hyperledger.fabric.gateway.impl.model.OrganizationProposal;
+import org.hyperledger.fabric.gateway.impl.model.OrganizationStatistics;
+import org.hyperledger.fabric.gateway.impl.model.PeerLoadBalancer;
+import org.hyperledger.fabric.gateway.impl.model.SpeculationPolicy;
 import org.hyperledger.fabric.gateway.model.AgreementResponseDTO;
-import org.hyperledger.fabric.protos.peer.ProposalResponsePackage;
+import org.hyperledger.fabric.gateway.spi.AgreementPredicateFactory;
 import org.hyperledger.fabric.sdk.Channel;
 import org.hyperledger.fabric.sdk.Peer;
 import org.hyperledger.fabric.sdk.ProposalResponse;
@@ -10,32 +26,110 @@ import org.hyperledger.fabric.sdk.TransactionProposalRequest;
 import org.hyperledger.fabric.sdk.exception.InvalidArgumentException;
 import org.hyperledger.fabric.sdk.exception.ProposalException;
 
-import java.io.File;
 import java.io.IOException;
+import java.nio.file.Paths;
+import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Collection;
 import java.util.Collections;
-import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
-import java.util.Optional;
 import java.util.Set;
-import java.util.logging.FileHandler;
-import java.util.logging.Logger;
-import java.util.logging.SimpleFormatter;
-import java.util.stream.IntStream;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
 
+/**
+ * Endorses transactions by walking a model-checker model, one organization at a time, until agreement is reached.
+ * Holds no per-transaction state, so a single instance is shared by all transactions on a network.
+ * <p>
+ * This implementation is thread-safe.
+ * </p>
+ */
 public class SendingConfirmationServiceImpl {
-  private List<String> cashedOrganizations;
-  private TransactionProposalRequest request = null;
-  private ProposalResponse correctResponse = null;
-  private Collection<Peer> endorsingPeers = null;
+  private static final Log LOG = LogFactory.getLog(SendingConfirmationServiceImpl.class);
+  private static final double HEDGE_QUANTILE = 0.95;
+  private static final double DEADLINE_QUANTILE = 0.99;
+  /** Replies needed from an organization before its latency percentiles are used. */
+  private static final long MIN_LATENCY_SAMPLES = 20;
+  private static final long MIN_DEADLINE_NANOS = TimeUnit.MILLISECONDS.toNanos(10);
+  static final int DEFAULT_MAX_THREADS = 64;
+  static final int DEFAULT_QUEUE_CAPACITY = 1024;
+  private static final long THREAD_KEEP_ALIVE_SECONDS = 60;
 
-  private int maxRequestNum = 10;
-  private int maxRequestTotalNum = 30;
+  private volatile int maxRequestNum = 10;
+  private volatile int maxRequestTotalNum = 30;
+  private volatile SpeculationPolicy speculationPolicy = new SpeculationPolicy(1, 0);
+  private volatile boolean adaptiveOrdering = false;
+  private volatile boolean selectiveLoading = false;
+  private volatile boolean adaptiveTimeouts = false;
+  private volatile AgreementPredicateFactory agreementPredicateFactory =
+      DefaultAgreementPredicates.PAYLOAD_DIGEST;
+  private volatile OrganizationBudgets.ExhaustedPolicy budgetExhaustedPolicy =
+      OrganizationBudgets.ExhaustedPolicy.DEFER;
 
-  private final Logger logger = Logger.getLogger("SchedulerLog");
-  private FileHandler fh;
+  private final OrganizationStatistics statistics = new OrganizationStatistics();
+  private final OrganizationBudgets budgets = new OrganizationBudgets();
+  private final PeerLoadBalancer loadBalancer = new PeerLoadBalancer();
+  private final Map<Integer, DecisionTable> decisionTables = new ConcurrentHashMap<>();
+  private volatile DecisionJournal decisionJournal = null;
+  private volatile EndorsementWaves waves = null;
+
+  private final ThreadPoolExecutor proposalExecutor;
+
+  private final ScheduledThreadPoolExecutor timer =
+      new ScheduledThreadPoolExecutor(
+          1,
+          runnable -> {
+            Thread thread = new Thread(runnable, "model-endorsement-timer");
+            thread.setDaemon(true);
+            return thread;
+          });
+
+  public SendingConfirmationServiceImpl() {
+    this(DEFAULT_MAX_THREADS, DEFAULT_QUEUE_CAPACITY);
+  }
+
+  /**
+   * Create a service whose proposals are sent by at most a given number of threads. Sends beyond that wait in a
+   * bounded queue; once the queue is full, further sends are rejected with a {@link RejectedExecutionException}
+   * and the proposal fails over or fails as if the peer could not be reached. Idle threads are stopped.
+   *
+   * @param maxThreads Maximum number of threads sending proposals at once.
+   * @param queueCapacity Maximum number of sends waiting for a thread.
+   */
+  public SendingConfirmationServiceImpl(int maxThreads, int queueCapacity) {
+    if (maxThreads < 1) {
+      throw new IllegalArgumentException("Maximum threads must be at least 1: " + maxThreads);
+    }
+    if (queueCapacity < 1) {
+      throw new IllegalArgumentException("Queue capacity must be at least 1: " + queueCapacity);
+    }
+    proposalExecutor =
+        new ThreadPoolExecutor(
+            maxThreads,
+            maxThreads,
+            THREAD_KEEP_ALIVE_SECONDS,
+            TimeUnit.SECONDS,
+            new LinkedBlockingQueue<>(queueCapacity),
+            runnable -> {
+              Thread thread = new Thread(runnable, "model-endorsement");
+              thread.setDaemon(true);
+              return thread;
+            },
+            new ThreadPoolExecutor.AbortPolicy());
+    proposalExecutor.allowCoreThreadTimeOut(true);
+    // Deadline and hedging timers are cancelled once their proposal completes; drop them from the queue then
+    timer.setRemoveOnCancelPolicy(true);
+  }
 
   public int getMaxRequestNum() {
     return maxRequestNum;
@@ -53,6 +147,203 @@ public class SendingConfirmationServiceImpl {
     this.maxRequestTotalNum = maxRequestTotalNum;
   }
 
+  public SpeculationPolicy getSpeculationPolicy() {
+    return speculationPolicy;
+  }
+
+  /**
+   * Send proposals to several organizations ahead of the model walk, so that their round trips overlap. Replies are
+   * still applied to the model in order; proposals whose replies are not needed once the walk ends or restarts are
+   * cancelled and count as wasted.
+   *
+   * @param maxWindow Maximum number of proposals in flight at once. A value of 1 disables speculation.
+   * @param maxWastedProposals Maximum number of discarded proposals per endorsement.
+   */
+  public void setSpeculation(int maxWindow, int maxWastedProposals) {
+    this.speculationPolicy = new SpeculationPolicy(maxWindow, maxWastedProposals);
+  }
+
+  /**
+   * Approval outcomes and latencies observed for organizations on this network.
+   *
+   * @return Organization statistics.
+   */
+  public OrganizationStatistics getStatistics() {
+    return statistics;
+  }
+
+  public boolean isAdaptiveOrdering() {
+    return adaptiveOrdering;
+  }
+
+  /**
+   * Ask organizations in order of their observed cost per approval instead of the order of the analytics file.
+   * The model's specification depends on the analytics file order, so only organizations that the model treats
+   * alike change places.
+   *
+   * @param adaptiveOrdering true to order organizations using observed statistics.
+   */
+  public void setAdaptiveOrdering(boolean adaptiveOrdering) {
+    this.adaptiveOrdering = adaptiveOrdering;
+  }
+
+  public boolean isSelectiveLoading() {
+    return selectiveLoading;
+  }
+
+  /**
+   * Read only the requested model from JSON analytics files, using a streaming parser, instead of parsing every
+   * model in the file.
+   *
+   * @param selectiveLoading true to load models individually.
+   */
+  public void setSelectiveLoading(boolean selectiveLoading) {
+    this.selectiveLoading = selectiveLoading;
+  }
+
+  /**
+   * Watch an analytics file and load new versions of its models in the background, instead of checking the file on
+   * every endorsement. Endorsements use the latest published version when they start and keep it until they finish.
+   * The watcher is shared by every service in this JVM and stays active until it is closed.
+   *
+   * @param analyticsPath Path to the analytics file.
+   * @return The watcher.
+   * @throws IOException if the file can not be read or parsed, or cannot be watched.
+   */
+  public AnalyticsWatcher watchAnalytics(String analyticsPath) throws IOException {
+    return ModelRegistry.getInstance().watch(Paths.get(analyticsPath));
+  }
+
+  public boolean isAdaptiveTimeouts() {
+    return adaptiveTimeouts;
+  }
+
+  /**
+   * Set proposal deadlines for each organization from its observed latency. A model step times out after the
+   * organization's 99th percentile latency and counts as a rejection; if the organization has several peers, the
+   * proposal is also sent to a second peer once its 95th percentile latency has passed. Until an organization has
+   * enough observed replies, only the proposal wait time of the request applies.
+   *
+   * @param adaptiveTimeouts true to use per-organization deadlines and hedging.
+   */
+  public void setAdaptiveTimeouts(boolean adaptiveTimeouts) {
+    this.adaptiveTimeouts = adaptiveTimeouts;
+  }
+
+  public AgreementPredicateFactory getAgreementPredicateFactory() {
+    return agreementPredicateFactory;
+  }
+
+  /**
+   * Set how organization responses are judged to approve a transaction. The default is {@link
+   * DefaultAgreementPredicates#PAYLOAD_DIGEST}.
+   *
+   * @param agreementPredicateFactory Factory for the predicate used by each endorsement.
+   */
+  public void setAgreementPredicateFactory(AgreementPredicateFactory agreementPredicateFactory) {
+    this.agreementPredicateFactory = agreementPredicateFactory;
+  }
+
+  /**
+   * Request budgets for organizations, shared by all endorsements on this network. Organizations are unlimited
+   * unless a budget is configured. Reference proposals do not count against budgets.
+   *
+   * @return Organization budgets.
+   */
+  public OrganizationBudgets getBudgets() {
+    return budgets;
+  }
+
+  /**
+   * Load of the peers used for endorsements on this network. Proposals for an organization are sent to one of its
+   * peers at a time, preferring the least loaded.
+   *
+   * @return Peer load balancer.
+   */
+  public PeerLoadBalancer getLoadBalancer() {
+    return loadBalancer;
+  }
+
+  public OrganizationBudgets.ExhaustedPolicy getBudgetExhaustedPolicy() {
+    return budgetExhaustedPolicy;
+  }
+
+  /**
+   * Set what an endorsement does when the next organization in its walk has no budget left. The default is {@link
+   * OrganizationBudgets.ExhaustedPolicy#DEFER}.
+   *
+   * @param budgetExhaustedPolicy Policy for exhausted budgets.
+   */
+  public void setBudgetExhaustedPolicy(OrganizationBudgets.ExhaustedPolicy budgetExhaustedPolicy) {
+    this.budgetExhaustedPolicy = budgetExhaustedPolicy;
+  }
+
+  /**
+   * Follow a precomputed decision table when endorsing with the model for which it was compiled, instead of asking
+   * organizations in order. A table is ignored if the analytics file no longer matches it.
+   *
+   * @param decisionTable A table created by {@link
+   *     org.hyperledger.fabric.gateway.impl.model.DecisionTableCompiler}.
+   */
+  public void setDecisionTable(DecisionTable decisionTable) {
+    decisionTables.put(decisionTable.getModelId(), decisionTable);
+  }
+
+  /**
+   * Stop following the decision table for a model.
+   *
+   * @param modelId ID of the model.
+   */
+  public void removeDecisionTable(int modelId) {
+    decisionTables.remove(modelId);
+  }
+
+  public DecisionJournal getDecisionJournal() {
+    return decisionJournal;
+  }
+
+  /**
+   * Record every reply applied to a model, and the resulting step, in a binary journal. Recording does not block
+   * endorsements. The journal is not closed by this service.
+   *
+   * @param decisionJournal A journal, or null to stop recording.
+   */
+  public void setDecisionJournal(DecisionJournal decisionJournal) {
+    this.decisionJournal = decisionJournal;
+  }
+
+  /**
+   * Batched agreement, if enabled.
+   *
+   * @return The waves in which model steps are sent, or null if each transaction sends its own steps.
+   */
+  public EndorsementWaves getBatching() {
+    return waves;
+  }
+
+  /**
+   * Send the model steps of concurrent transactions in waves. Transactions following the same model that are in the
+   * same response state and waiting on the same organization are grouped, their proposals are sent concurrently,
+   * and their replies are applied together so that they advance through the model in step. Speculative proposals
+   * are not batched.
+   *
+   * @param maxWaveSize Number of steps at which a wave is sent without waiting further. A value of 1 or less
+   *     disables batching.
+   * @param maxDelayMillis Longest time a step waits for its wave to fill.
+   */
+  public void setBatching(int maxWaveSize, long maxDelayMillis) {
+    this.waves =
+        maxWaveSize > 1
+            ? new EndorsementWaves(maxWaveSize, TimeUnit.MILLISECONDS.toNanos(maxDelayMillis), timer)
+            : null;
+  }
+
+  /** Stop the threads used to send proposals. */
+  public void close() {
+    proposalExecutor.shutdownNow();
+    timer.shutdownNow();
+  }
+
   public AgreementResponseDTO sendForConfirmationCustomId(
       final Channel channel,
       final String analyticsPath,
@@ -61,180 +352,630 @@ public class SendingConfirmationServiceImpl {
       final TransactionProposalRequest request,
       final Collection<Peer> endorsingPeers)
       throws InvalidArgumentException, ProposalException {
-    ObjectMapper objectMapper = new ObjectMapper();
-    this.request = request;
-    this.correctResponse = correctResponse;
-    this.endorsingPeers = endorsingPeers;
+    try {
+      AgreementContext context = newContext(channel, analyticsPath, modelId, request, endorsingPeers);
+      context.setReferenceResponse(CompletableFuture.completedFuture(correctResponse), -1);
+      return await(sendForConfirmation(context));
+    } catch (IOException e) {
+      throw analyticsLoadFailed(analyticsPath, e);
+    }
+  }
 
+  /**
+   * Asynchronous form of {@link #sendForConfirmationCustomId}. Each reply is applied to the model from the
+   * completion of its proposal, so no thread is blocked waiting for organizations to respond.
+   *
+   * @return A future that completes with the endorsement result, or exceptionally if the analytics file cannot be
+   *     read or a proposal cannot be sent.
+   */
+  public CompletableFuture<AgreementResponseDTO> sendForConfirmationCustomIdAsync(
+      final Channel channel,
+      final String analyticsPath,
+      final int modelId,
+      final ProposalResponse correctResponse,
+      final TransactionProposalRequest request,
+      final Collection<Peer> endorsingPeers) {
     try {
-      ModelCheckerResultWrapper modelCheckerResultWrapper =
-          objectMapper.readValue(new File(analyticsPath), ModelCheckerResultWrapper.class);
+      AgreementContext context = newContext(channel, analyticsPath, modelId, request, endorsingPeers);
+      context.setReferenceResponse(CompletableFuture.completedFuture(correctResponse), -1);
+      return sendForConfirmation(context);
+    } catch (IOException | RuntimeException e) {
+      return failedFuture(e);
+    }
+  }
 
-      ModelCheckResult result = null;
+  /**
+   * Endorse using the response of a reference organization to judge the responses of the others. The reference
+   * proposal is sent at the same time as the first model step. If the reference organization is part of the model,
+   * its response also serves as that organization's step, counting against its request limit, instead of being sent
+   * a second time.
+   *
+   * @param referenceOrganization Name of the organization with the highest probability of giving a correct response.
+   * @return Endorsement result.
+   * @throws ProposalException if the analytics file cannot be read or a proposal cannot be sent.
+   */
+  public AgreementResponseDTO sendForConfirmationWithReference(
+      final Channel channel,
+      final String analyticsPath,
+      final int modelId,
+      final String referenceOrganization,
+      final TransactionProposalRequest request,
+      final Collection<Peer> endorsingPeers)
+      throws InvalidArgumentException, ProposalException {
+    try {
+      AgreementContext context = newContext(channel, analyticsPath, modelId, request, endorsingPeers);
+      sendReference(context, referenceOrganization);
+      return await(sendForConfirmation(context));
+    } catch (IOException e) {
+      throw analyticsLoadFailed(analyticsPath, e);
+    }
+  }
 
-      for (ModelCheckResult r : modelCheckerResultWrapper.getModelCheckResultList()) {
-        if (r.getId() == modelId) {
-          result = r;
-          break;
-        }
-      }
+  /**
+   * Asynchronous form of {@link #sendForConfirmationWithReference}.
+   *
+   * @param referenceOrganization Name of the organization with the highest probability of giving a correct response.
+   * @return A future that completes with the endorsement result.
+   */
+  public CompletableFuture<AgreementResponseDTO> sendForConfirmationWithReferenceAsync(
+      final Channel channel,
+      final String analyticsPath,
+      final int modelId,
+      final String referenceOrganization,
+      final TransactionProposalRequest request,
+      final Collection<Peer> endorsingPeers) {
+    try {
+      AgreementContext context = newContext(channel, analyticsPath, modelId, request, endorsingPeers);
+      sendReference(context, referenceOrganization);
+      return sendForConfirmation(context);
+    } catch (IOException | InvalidArgumentException | RuntimeException e) {
+      return failedFuture(e);
+    }
+  }
 
-      if (result == null) {
-        throw new IllegalArgumentException(
-            String.format("Could not find model with the given id: %d", modelId));
-      }
+  private void sendReference(final AgreementContext context, final String referenceOrganization)
+      throws InvalidArgumentException {
+    int orgIndex = context.indexOfOrganization(referenceOrganization);
+    Collection<Peer> peers = context.getPeers(referenceOrganization);
 
-      return sendForConfirmation(channel, result, modelCheckerResultWrapper);
-    } catch (IOException e) {
-      e.printStackTrace();
+    if (LOG.isDebugEnabled()) {
+      LOG.debug(String.format("Sending reference proposal to %s.", referenceOrganization));
     }
-    // in case of error
-    return null;
+    // No deadline, since every reply is judged against the reference response
+    context.setReferenceResponse(
+        sendToOrganizationAsync(
+            context.getChannel(), context.getRequest(), referenceOrganization, peers, 0),
+        orgIndex);
   }
 
-  private AgreementResponseDTO sendForConfirmation(
+  private static ProposalException analyticsLoadFailed(final String analyticsPath, final IOException cause) {
+    String message = "Failed to load analytics file " + analyticsPath;
+    LOG.error(message, cause);
+    return new ProposalException(message, cause);
+  }
+
+  private static <T> CompletableFuture<T> failedFuture(final Throwable cause) {
+    CompletableFuture<T> future = new CompletableFuture<>();
+    future.completeExceptionally(cause);
+    return future;
+  }
+
+  /**
+   * Send a proposal using the threads of this service. Cancelling the returned future before the proposal is sent
+   * prevents it from being sent; a send already in progress is not interrupted.
+   *
+   * @return A future that completes with the first proposal response, or exceptionally with a {@link
+   *     RejectedExecutionException} if too many sends are already waiting for a thread.
+   */
+  public CompletableFuture<ProposalResponse> sendProposalAsync(
       final Channel channel,
-      final ModelCheckResult result,
-      final ModelCheckerResultWrapper modelCheckerResultWrapper)
-      throws IOException, InvalidArgumentException, ProposalException {
-    fh = new FileHandler("./result");
-    logger.addHandler(fh);
-    logger.setUseParentHandlers(false);
-    SimpleFormatter formatter = new SimpleFormatter();
-    fh.setFormatter(formatter);
-
-    this.cashedOrganizations = modelCheckerResultWrapper.getOrganizations();
-    int[] responses = IntStream.generate(() -> -1).limit(cashedOrganizations.size()).toArray();
-
-    Set<int[]> backwards = result.getBackwardTransitions();
-    Set<int[]> specs = modelCheckerResultWrapper.getSpecification();
-
-    Map<String, Integer> numberOfRequestsPerOrganization = new HashMap<>();
-    cashedOrganizations.forEach(o -> numberOfRequestsPerOrganization.put(o, 0));
-
-    return sendForConfirmationToOrganization(
-        channel,
-        cashedOrganizations,
-        responses,
-        0,
-        0,
-        specs,
-        backwards,
-        numberOfRequestsPerOrganization,
-        new AgreementResponseDTO());
-  }
-
-  private AgreementResponseDTO sendForConfirmationToOrganization(
+      final TransactionProposalRequest request,
+      final Collection<Peer> peers) {
+    CompletableFuture<ProposalResponse> result = new CompletableFuture<>();
+    Future<?> task;
+    try {
+      task =
+          proposalExecutor.submit(
+              () -> {
+                if (result.isDone()) {
+                  return;
+                }
+                try {
+                  result.complete(channel.sendTransactionProposal(request, peers).iterator().next());
+                } catch (InvalidArgumentException | ProposalException | RuntimeException e) {
+                  result.completeExceptionally(e);
+                }
+              });
+    } catch (RejectedExecutionException e) {
+      return failedFuture(e);
+    }
+    result.whenComplete((response, e) -> task.cancel(false));
+    return result;
+  }
+
+  /**
+   * Send a proposal to one peer of an organization, chosen by the load balancer. If the peer cannot be reached,
+   * the proposal is sent to the next peer of the organization in order of preference. With adaptive timeouts, the
+   * proposal is hedged to a second peer after the organization's 95th percentile latency and, if a deadline is given,
+   * fails with a {@link TimeoutException} after it.
+   *
+   * @param deadlineNanos Time after which the proposal times out, or zero for no deadline.
+   * @return A future that completes with the first response from a peer, or the response of the last peer tried if
+   *     none could be reached.
+   */
+  private CompletableFuture<ProposalResponse> sendToOrganizationAsync(
       final Channel channel,
-      final List<String> organizations,
-      final int[] responses,
-      final int responseIndex,
-      final int messagesCnt,
-      final Set<int[]> spec,
-      final Set<int[]> backwards,
-      final Map<String, Integer> numberOfRequestsPerOrganization,
-      final AgreementResponseDTO consensusResponseDTO)
-      throws InvalidArgumentException, ProposalException {
+      final TransactionProposalRequest request,
+      final String organization,
+      final Collection<Peer> peers,
+      final long deadlineNanos) {
+    long hedgeDelayNanos =
+        adaptiveTimeouts ? getLatencyPercentileNanos(organization, HEDGE_QUANTILE) : 0;
+    return OrganizationProposal.send(
+        peer -> channel.sendTransactionProposal(request, Collections.singleton(peer)).iterator().next(),
+        loadBalancer.order(peers),
+        loadBalancer,
+        proposalExecutor,
+        timer,
+        hedgeDelayNanos,
+        deadlineNanos);
+  }
+
+  /**
+   * Deadline for a model step to an organization: its 99th percentile latency, if adaptive timeouts are enabled and
+   * enough replies have been observed, and if that is shorter than the proposal wait time of the request.
+   *
+   * @return Deadline in nanoseconds, or zero for no deadline.
+   */
+  private long getDeadlineNanos(final String organization, final TransactionProposalRequest request) {
+    if (!adaptiveTimeouts) {
+      return 0;
+    }
 
-    String orgToSend = organizations.get(0);
+    long deadlineNanos = Math.max(MIN_DEADLINE_NANOS, getLatencyPercentileNanos(organization, DEADLINE_QUANTILE));
+    long waitNanos = TimeUnit.MILLISECONDS.toNanos(request.getProposalWaitTime());
+    return deadlineNanos < waitNanos ? deadlineNanos : 0;
+  }
+
+  private long getLatencyPercentileNanos(final String organization, final double quantile) {
+    if (statistics.getLatencySampleCount(organization) < MIN_LATENCY_SAMPLES) {
+      return 0;
+    }
+    return statistics.getLatencyPercentileNanos(organization, quantile);
+  }
+
+  private AgreementContext newContext(
+      final Channel channel,
+      final String analyticsPath,
+      final int modelId,
+      final TransactionProposalRequest request,
+      final Collection<Peer> endorsingPeers)
+      throws IOException {
+    ModelRegistry registry = ModelRegistry.getInstance();
+    AnalyticsSnapshot analytics =
+        selectiveLoading
+            ? registry.getSnapshot(Paths.get(analyticsPath), modelId)
+            : registry.getSnapshot(Paths.get(analyticsPath));
+    CompiledModel model = analytics.getModel(modelId);
 
-    Peer peerToSend =
-        endorsingPeers.stream().filter(e -> e.getName().equals(orgToSend))
-                .findAny()
-                .orElseThrow(() -> new InvalidArgumentException(String.format("Cannot find organization with name %s",
-                        orgToSend)));
+    if (model == null) {
+      throw new IllegalArgumentException(
+          String.format("Could not find model with the given id: %d", modelId));
+    }
 
-    int requestsNumToOrg = numberOfRequestsPerOrganization.get(orgToSend);
+    int[] organizationOrder = adaptiveOrdering ? statistics.getOrder(analytics.getOrganizations()) : null;
+    DecisionTable decisionTable = decisionTables.get(modelId);
+    if (decisionTable != null && !decisionTable.isCompiledFor(analytics.getOrganizations(), model)) {
+      LOG.warn("Ignoring decision table compiled for a different version of model " + modelId);
+      decisionTable = null;
+    }
+    AgreementStateMachine stateMachine =
+        new AgreementStateMachine(
+            analytics, model, maxRequestNum, maxRequestTotalNum, organizationOrder, decisionTable);
+    return new AgreementContext(
+        channel, request, endorsingPeers, analytics, stateMachine, agreementPredicateFactory);
+  }
 
-    logger.info(String.format("Sending for confirmation to %s.", orgToSend));
+  private CompletableFuture<AgreementResponseDTO> sendForConfirmation(final AgreementContext context) {
+    InFlightProposals inFlight = new InFlightProposals(context, budgets);
+    if (context.getReferenceOrganization() >= 0) {
+      // Separate stage so that cancelling the step does not cancel the reference itself
+      inFlight.putReference(
+          context.getReferenceOrganization(), context.getReferenceResponse().thenApply(r -> r));
+    }
 
-    numberOfRequestsPerOrganization.put(orgToSend, requestsNumToOrg + 1);
-    Collection<ProposalResponse> proposalResponses =
-        channel.sendTransactionProposal(request, Collections.singleton(peerToSend));
+    CompletableFuture<AgreementResponseDTO> result;
+    try {
+      result = sendNext(context, speculationPolicy, inFlight);
+    } catch (InvalidArgumentException e) {
+      result = new CompletableFuture<>();
+      result.completeExceptionally(e);
+    }
 
-    int reply;
-    ProposalResponsePackage.Response resp =
-        proposalResponses.iterator().next().getProposalResponse().getResponse();
+    return result.whenComplete((r, e) -> context.addWastedProposals(inFlight.cancelAll()));
+  }
 
-    int respStatus = resp.getStatus();
+  /**
+   * Send to the current organization, plus any organizations after it in the visiting order allowed by the
+   * speculation policy, and continue the walk when the reply for the current organization arrives.
+   */
+  private CompletableFuture<AgreementResponseDTO> sendNext(
+      final AgreementContext context,
+      final SpeculationPolicy policy,
+      final InFlightProposals inFlight)
+      throws InvalidArgumentException {
+    AgreementStateMachine stateMachine = context.getStateMachine();
+    int position = stateMachine.getPosition();
+    int orgCount = stateMachine.getOrganizationCount();
 
-    if (correctResponse != null) {
-      reply =
-              respStatus == 200 &&
-                      resp.getPayload().equals(correctResponse.getProposalResponse().getResponse().getPayload())
-              ? 1
-              : 0;
-    } else {
+    int next = stateMachine.getCurrentOrganization();
+    if (!inFlight.isSent(next) && !budgets.tryAcquire(context.getOrganizationName(next))) {
+      int substitute =
+          budgetExhaustedPolicy == OrganizationBudgets.ExhaustedPolicy.DEFER
+              ? findWithinBudget(context, inFlight)
+              : -1;
+      if (substitute < 0) {
+        return failedFuture(
+            new ProposalException(
+                String.format(
+                    "Request budget exhausted for organization %s",
+                    context.getOrganizationName(next))));
+      }
+
+      if (LOG.isDebugEnabled()) {
+        LOG.debug(
+            String.format(
+                "Request budget exhausted for %s, deferring it.", context.getOrganizationName(next)));
+      }
+      stateMachine.swapWithPosition(substitute);
+      next = stateMachine.getCurrentOrganization();
+    }
+    final int orgIndex = next;
+    if (!inFlight.isSent(orgIndex)) {
+      EndorsementWaves currentWaves = waves;
+      ProposalTiming timing = new ProposalTiming();
+      inFlight.put(
+          orgIndex,
+          currentWaves != null
+              ? sendStepInWave(context, orgIndex, currentWaves, timing)
+              : sendStep(context, orgIndex, timing),
+          true,
+          timing);
+    }
+
+    int window =
+        policy.getWindow(
+            context.getModel(),
+            orgCount - position,
+            maxRequestTotalNum + 1 - stateMachine.getMessageCount(),
+            context.getWastedProposals());
+    for (int i = position + 1; i < position + window; i++) {
+      int org = stateMachine.getOrganizationAt(i);
+      if (!inFlight.isSent(org) && budgets.tryAcquire(context.getOrganizationName(org))) {
+        ProposalTiming timing = new ProposalTiming();
+        inFlight.put(org, sendStep(context, org, timing), true, timing);
+      }
+    }
+
+    if (LOG.isDebugEnabled()) {
+      LOG.debug(
+          String.format("Sending for confirmation to %s.", context.getOrganizationName(orgIndex)));
+    }
+
+    ProposalTiming timing = inFlight.getTiming(orgIndex);
+    CompletableFuture<ProposalResponse> current = inFlight.take(orgIndex);
+
+    return current
+        .handle(
+            (r, e) -> {
+              long latencyNanos = timing.getLatencyNanos();
+              if (e == null) {
+                return new TimedResponse(r, latencyNanos);
+              }
+              Throwable cause = e instanceof CompletionException ? e.getCause() : e;
+              if (cause instanceof TimeoutException) {
+                // Treated as a rejection so that one slow organization does not stall the walk
+                return new TimedResponse(null, latencyNanos);
+              }
+              throw e instanceof CompletionException
+                  ? (CompletionException) e
+                  : new CompletionException(e);
+            })
+        // Replies are judged against the reference response
+        .thenCombine(context.getReferenceResponse(), (timed, reference) -> timed)
+        .thenCompose(
+            timed -> {
+              AgreementStateMachine.Step step =
+                  onReply(context, orgIndex, timed.response, timed.latencyNanos);
+              if (step.isTerminal()) {
+                return CompletableFuture.completedFuture(context.getResult());
+              }
+              if (step == AgreementStateMachine.Step.BACKWARD_TRANSITION) {
+                // Replies were for the abandoned walk
+                context.addWastedProposals(inFlight.cancelAll());
+              }
+              try {
+                return sendNext(context, policy, inFlight);
+              } catch (InvalidArgumentException e) {
+                throw new CompletionException(e);
+              }
+            });
+  }
+
+  private CompletableFuture<ProposalResponse> sendStep(
+      final AgreementContext context, final int org, final ProposalTiming timing)
+      throws InvalidArgumentException {
+    String organization = context.getOrganizationName(org);
+    Collection<Peer> peers = context.getPeers(org);
+    long deadlineNanos = getDeadlineNanos(organization, context.getRequest());
+    timing.markSent();
+    return timing.record(
+        sendToOrganizationAsync(
+            context.getChannel(), context.getRequest(), organization, peers, deadlineNanos));
+  }
+
+  private CompletableFuture<ProposalResponse> sendStepInWave(
+      final AgreementContext context,
+      final int org,
+      final EndorsementWaves currentWaves,
+      final ProposalTiming timing)
+      throws InvalidArgumentException {
+    String organization = context.getOrganizationName(org);
+    Collection<Peer> peers = context.getPeers(org);
+    long deadlineNanos = getDeadlineNanos(organization, context.getRequest());
+    AgreementStateMachine stateMachine = context.getStateMachine();
+    return currentWaves.submit(
+        stateMachine.getModel(),
+        stateMachine.getStateKey(),
+        org,
+        () -> {
+          // Timed from when the wave sends the proposal, not from when the step joined the wave
+          timing.markSent();
+          return timing.record(
+              sendToOrganizationAsync(
+                  context.getChannel(), context.getRequest(), organization, peers, deadlineNanos));
+        });
+  }
+
+  /**
+   * Find a later position in the visiting order whose organization can be asked in place of the current one and
+   * already has a proposal in flight or has budget for one, taking a request from its budget in the latter case.
+   *
+   * @return The position, or -1 if every remaining interchangeable organization has exhausted its budget.
+   */
+  private int findWithinBudget(final AgreementContext context, final InFlightProposals inFlight) {
+    AgreementStateMachine stateMachine = context.getStateMachine();
+    for (int i = stateMachine.getPosition() + 1; i < stateMachine.getOrganizationCount(); i++) {
+      if (!stateMachine.canSwapWithPosition(i)) {
+        continue;
+      }
+      int org = stateMachine.getOrganizationAt(i);
+      if (inFlight.isSent(org) || budgets.tryAcquire(context.getOrganizationName(org))) {
+        return i;
+      }
+    }
+    return -1;
+  }
 
-      reply = respStatus == 200 && resp.getPayload().toString().contains("true") ? 1 : 0;
+  private AgreementStateMachine.Step onReply(
+      final AgreementContext context,
+      final int orgIndex,
+      final ProposalResponse proposalResponse,
+      final long latencyNanos) {
+    AgreementStateMachine stateMachine = context.getStateMachine();
+    AgreementResponseDTO consensusResponseDTO = context.getResult();
+    String orgToSend = context.getOrganizationName(orgIndex);
+    int reply = proposalResponse != null ? context.getReply(proposalResponse) : 0;
+    if (proposalResponse == null) {
+      statistics.recordTimeout(orgToSend, latencyNanos);
+      if (LOG.isDebugEnabled()) {
+        LOG.debug("Send for confirmation to " + orgToSend + " timed out");
+      }
+    } else {
+      if (context.getTransactionHash() == 0) {
+        context.setTransactionHash(DecisionJournal.hash(proposalResponse.getTransactionID()));
+      }
+      statistics.record(orgToSend, reply == 1, latencyNanos);
     }
 
     if (reply == 1) {
-      consensusResponseDTO.getResponses().add(proposalResponses.iterator().next());
+      consensusResponseDTO.getResponses().add(proposalResponse);
+    }
+
+    if (LOG.isDebugEnabled()) {
+      LOG.debug(
+          String.format(
+              "Send for confirmation to %s finished with response %b", orgToSend, reply == 1));
+    }
+
+    AgreementStateMachine.Step step = stateMachine.onReply(reply);
+
+    DecisionJournal journal = decisionJournal;
+    if (journal != null) {
+      journal.record(
+          context.getTransactionHash(),
+          orgIndex,
+          proposalResponse != null ? reply : -1,
+          step,
+          stateMachine.getMessageCount(),
+          latencyNanos);
     }
 
-    logger.info(
-        String.format(
-            "Send for confirmation to %s finished with response %b", orgToSend, reply == 1));
+    if (step == AgreementStateMachine.Step.AGREEMENT_REACHED) {
+      consensusResponseDTO.setAgreementReached(true);
+    }
+    if (LOG.isDebugEnabled()) {
+      logStep(stateMachine, step, orgToSend);
+    }
 
-    responses[responseIndex] = reply;
+    return step;
+  }
 
-    Optional<int[]> specOpt = spec.stream().filter(s -> Arrays.equals(responses, s)).findAny();
-    Optional<int[]> backwardsOpt =
-        backwards.stream().filter(b -> Arrays.equals(responses, b)).findAny();
+  private static void logStep(
+      final AgreementStateMachine stateMachine,
+      final AgreementStateMachine.Step step,
+      final String orgToSend) {
+    if (stateMachine.isBackwardTransitionRemoved()) {
+      LOG.debug(
+          String.format(
+              "Organization %s has reached the max amount of requests. "
+                  + "Remove backward transition for this organization.",
+              orgToSend));
+    }
 
-    if (backwardsOpt.isPresent()) {
-      if (requestsNumToOrg >= maxRequestNum) {
-        logger.warning(
+    switch (step) {
+      case AGREEMENT_REACHED:
+        LOG.debug(
             String.format(
-                "Organization %s has reached the max amount of requests. "
-                    + "Remove backward transition for this organization.",
-                orgToSend));
-        backwards.remove(responses);
+                "Consensus is reached with %d messages", stateMachine.getMessageCount()));
+        break;
+      case MAX_MESSAGES_SENT:
+        LOG.debug("Max number of messages was sent. Consensus is not reached.");
+        break;
+      case SPECIFICATION_UNREACHABLE:
+        LOG.debug("Specification can no longer be reached. Consensus is not reached.");
+        break;
+      case BACKWARD_TRANSITION:
+        LOG.debug(String.format("Make backward transition from organization %s", orgToSend));
+        break;
+      default:
+        break;
+    }
+  }
+
+  private static <T> T await(final Future<T> future)
+      throws InvalidArgumentException, ProposalException {
+    try {
+      return future.get();
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+      throw new ProposalException(e);
+    } catch (ExecutionException e) {
+      Throwable cause = e.getCause();
+      if (cause instanceof InvalidArgumentException) {
+        throw (InvalidArgumentException) cause;
+      } else if (cause instanceof ProposalException) {
+        throw (ProposalException) cause;
+      } else if (cause instanceof RuntimeException) {
+        throw (RuntimeException) cause;
       }
+      throw new ProposalException(cause);
+    }
+  }
+
+  private static final class TimedResponse {
+    private final ProposalResponse response;
+    private final long latencyNanos;
 
-      backwardsOpt = backwards.stream().filter(b -> Arrays.equals(responses, b)).findAny();
+    TimedResponse(final ProposalResponse response, final long latencyNanos) {
+      this.response = response;
+      this.latencyNanos = latencyNanos;
     }
+  }
 
-    if (specOpt.isPresent()) {
-      logger.info(String.format("Consensus is reached with %d messages", messagesCnt + 1));
-      consensusResponseDTO.setAgreementReached(true);
+  /**
+   * Time from sending one proposal to its own reply. A reply may be applied to the model well after it arrives, when
+   * it was sent speculatively or is released with the rest of its wave, so latency is not measured at that point.
+   */
+  private static final class ProposalTiming {
+    private volatile long sentAtNanos = System.nanoTime();
+    private volatile long latencyNanos = -1;
 
-      return consensusResponseDTO;
-    } else if (messagesCnt == maxRequestTotalNum) {
-      logger.warning("Max number of messages was sent. Consensus is not reached.");
-      return consensusResponseDTO;
-    } else if (backwardsOpt.isPresent() && reply != 1) {
-      int[] initialResponses =
-          IntStream.generate(() -> -1).limit(cashedOrganizations.size()).toArray();
-
-      logger.info(String.format("Make backward transition from organization %s", orgToSend));
-
-      return sendForConfirmationToOrganization(
-          channel,
-          this.cashedOrganizations,
-          initialResponses,
-          0,
-          messagesCnt + 1,
-          spec,
-          backwards,
-          numberOfRequestsPerOrganization,
-          consensusResponseDTO);
-    } else if (IntStream.of(responses).noneMatch(x -> x == -1)) {
-      // reached the end of the tree
-      return consensusResponseDTO;
-    } else {
-      organizations.remove(orgToSend);
-      return sendForConfirmationToOrganization(
-          channel,
-          organizations,
-          responses,
-          responseIndex + 1,
-          messagesCnt + 1,
-          spec,
-          backwards,
-          numberOfRequestsPerOrganization,
-          consensusResponseDTO);
+    void markSent() {
+      sentAtNanos = System.nanoTime();
+    }
+
+    CompletableFuture<ProposalResponse> record(final CompletableFuture<ProposalResponse> proposal) {
+      proposal.whenComplete((r, e) -> latencyNanos = System.nanoTime() - sentAtNanos);
+      return proposal;
+    }
+
+    /** Latency of the completed proposal, or the time since it was sent if its completion is still being recorded. */
+    long getLatencyNanos() {
+      long latency = latencyNanos;
+      return latency >= 0 ? latency : System.nanoTime() - sentAtNanos;
+    }
+  }
+
+  /** Proposals sent but not yet applied to the model, indexed by organization. */
+  private static final class InFlightProposals {
+    private final AgreementContext context;
+    private final OrganizationBudgets budgets;
+    private final List<CompletableFuture<ProposalResponse>> futures;
+    private final ProposalTiming[] timings;
+    private final boolean[] budgeted;
+    private int referenceOrg = -1;
+
+    InFlightProposals(final AgreementContext context, final OrganizationBudgets budgets) {
+      this.context = context;
+      this.budgets = budgets;
+      int orgCount = context.getStateMachine().getOrganizationCount();
+      futures = new ArrayList<>(Collections.nCopies(orgCount, null));
+      timings = new ProposalTiming[orgCount];
+      budgeted = new boolean[orgCount];
+    }
+
+    boolean isSent(final int org) {
+      return futures.get(org) != null;
+    }
+
+    /**
+     * Add a proposal.
+     *
+     * @param budgeted Whether a request was taken from the organization's budget for the proposal.
+     * @param timing Timing of the proposal.
+     */
+    void put(
+        final int org,
+        final CompletableFuture<ProposalResponse> future,
+        final boolean budgeted,
+        final ProposalTiming timing) {
+      futures.set(org, future);
+      this.budgeted[org] = budgeted;
+      timings[org] = timing;
+    }
+
+    /** Add the reference proposal, which is needed regardless of the walk and so is never counted as wasted. */
+    void putReference(final int org, final CompletableFuture<ProposalResponse> future) {
+      ProposalTiming timing = new ProposalTiming();
+      put(org, timing.record(future), false, timing);
+      referenceOrg = org;
+    }
+
+    ProposalTiming getTiming(final int org) {
+      return timings[org];
+    }
+
+    CompletableFuture<ProposalResponse> take(final int org) {
+      CompletableFuture<ProposalResponse> future = futures.set(org, null);
+      budgeted[org] = false;
+      if (org == referenceOrg) {
+        referenceOrg = -1;
+      }
+      return future;
+    }
+
+    /**
+     * Cancel every outstanding proposal and return how many there were. Cancelled proposals that have not yet been
+     * sent are never sent; a send already in progress completes and its response is discarded. Requests taken from
+     * budgets for proposals that had not been answered are returned.
+     */
+    int cancelAll() {
+      int cancelled = 0;
+      for (int i = 0; i < futures.size(); i++) {
+        CompletableFuture<ProposalResponse> future = futures.set(i, null);
+        if (future != null) {
+          if (future.cancel(false) && budgeted[i]) {
+            budgets.release(context.getOrganizationName(i));
+          }
+          budgeted[i] = false;
+          if (i != referenceOrg) {
+            cancelled++;
+          }
+        }
+      }
+      referenceOrg = -1;
+      return cancelled;
     }
   }
 
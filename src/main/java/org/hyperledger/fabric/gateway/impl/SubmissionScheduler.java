@@ -0,0 +1,318 @@
+/*
+ * Copyright 2019 IBM All Rights Reserved.
+ *
+ * SPDX-License-Identifier: Apache-2.0
+ */
+
+package org.hyperledger.fabric.gateway.impl;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Queue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeoutException;
+import java.util.function.Supplier;
+
+/**
+ * Limits the number of transaction submissions in flight on a network. Submissions beyond the limit wait in a bounded
+ * queue; when the queue is full, new submissions are either rejected with a {@link RejectedExecutionException} or
+ * block the calling thread until there is space, depending on the {@link OverloadPolicy}.
+ * <p>
+ * With adaptive limiting, the in-flight limit follows additive increase, multiplicative decrease (AIMD) between one and
+ * the configured maximum. The limit grows by roughly one per round trip while submissions fill it and complete with
+ * latency close to the lowest observed, and shrinks by {@link #BACKOFF_RATIO} at most once per round trip when a
+ * submission times out or its latency exceeds {@link #LATENCY_TOLERANCE} times the lowest observed. Without adaptive
+ * limiting, the limit is the configured maximum.
+ * </p>
+ * <p>This implementation is thread-safe.</p>
+ */
+public final class SubmissionScheduler {
+    static final double BACKOFF_RATIO = 0.9;
+    static final double LATENCY_TOLERANCE = 2.0;
+    private static final int BASELINE_DRIFT_SHIFT = 8;
+
+    /**
+     * Action taken when a submission arrives while the queue is full.
+     */
+    public enum OverloadPolicy {
+        /** Fail the submission with a {@link RejectedExecutionException}. */
+        REJECT,
+        /** Block the submitting thread until there is space in the queue. */
+        BLOCK
+    }
+
+    private final int maxInFlight;
+    private final int queueCapacity;
+    private final OverloadPolicy overloadPolicy;
+    private final boolean adaptive;
+    private final Executor admissionExecutor;
+
+    private final Queue<CompletableFuture<Permit>> queue = new ArrayDeque<>();
+    private double limit;
+    private int inFlight = 0;
+    private long baselineLatencyNanos = 0;
+    private long lastDecreaseNanos = 0;
+    private long rejectedCount = 0;
+    private boolean closed = false;
+
+    /**
+     * Admission of one submission. Must be released exactly once when the submission completes.
+     */
+    public final class Permit {
+        private final long startNanos = System.nanoTime();
+        private boolean released = false;
+
+        /**
+         * Release the permit, recording the outcome of the submission.
+         * @param failure Failure of the submission, or null if it succeeded.
+         */
+        public void release(final Throwable failure) {
+            onRelease(this, failure, true);
+        }
+    }
+
+    /**
+     * Create a scheduler that starts queued submissions on the common fork-join pool.
+     * @param maxInFlight Maximum number of submissions in flight.
+     * @param queueCapacity Maximum number of submissions waiting to start.
+     * @param overloadPolicy Action taken when the queue is full.
+     * @param adaptive Whether to adjust the in-flight limit from observed latency.
+     */
+    public SubmissionScheduler(final int maxInFlight, final int queueCapacity, final OverloadPolicy overloadPolicy,
+                               final boolean adaptive) {
+        this(maxInFlight, queueCapacity, overloadPolicy, adaptive, ForkJoinPool.commonPool());
+    }
+
+    /**
+     * Create a scheduler.
+     * @param maxInFlight Maximum number of submissions in flight.
+     * @param queueCapacity Maximum number of submissions waiting to start.
+     * @param overloadPolicy Action taken when the queue is full.
+     * @param adaptive Whether to adjust the in-flight limit from observed latency.
+     * @param admissionExecutor Starts queued submissions once they are admitted. Permits may be released on timer or
+     *                          event threads, which must not run the next submission themselves. If the executor
+     *                          rejects a submission, it is started on the releasing thread.
+     */
+    public SubmissionScheduler(final int maxInFlight, final int queueCapacity, final OverloadPolicy overloadPolicy,
+                               final boolean adaptive, final Executor admissionExecutor) {
+        if (maxInFlight < 1) {
+            throw new IllegalArgumentException("Maximum in-flight submissions must be at least 1: " + maxInFlight);
+        }
+        if (queueCapacity < 0) {
+            throw new IllegalArgumentException("Queue capacity must not be negative: " + queueCapacity);
+        }
+        this.maxInFlight = maxInFlight;
+        this.queueCapacity = queueCapacity;
+        this.overloadPolicy = overloadPolicy;
+        this.adaptive = adaptive;
+        this.admissionExecutor = admissionExecutor;
+        this.limit = maxInFlight;
+    }
+
+    /**
+     * Run an asynchronous submission once it is admitted, releasing its permit when it completes.
+     * @param submission Starts the submission.
+     * @param <T> Result type.
+     * @return A future that completes with the result of the submission, or exceptionally with a
+     * {@link RejectedExecutionException} if the submission is rejected.
+     */
+    public <T> CompletableFuture<T> submit(final Supplier<CompletableFuture<T>> submission) {
+        return acquireAsync().thenCompose(permit -> {
+            CompletableFuture<T> result;
+            try {
+                result = submission.get();
+            } catch (RuntimeException e) {
+                permit.release(e);
+                throw e;
+            }
+            return result.whenComplete((value, e) -> permit.release(e));
+        });
+    }
+
+    /**
+     * Wait until a submission is admitted.
+     * @return A permit to be released when the submission completes.
+     * @throws RejectedExecutionException if the submission is rejected.
+     * @throws InterruptedException if the current thread is interrupted while waiting for admission or, with the
+     * {@link OverloadPolicy#BLOCK} policy, for queue space.
+     */
+    public Permit acquire() throws InterruptedException {
+        CompletableFuture<Permit> admission = acquireAsync();
+        try {
+            return admission.get();
+        } catch (InterruptedException e) {
+            if (!admission.cancel(false) && !admission.isCompletedExceptionally()) {
+                // Admitted while being interrupted
+                onRelease(admission.join(), null, false);
+            }
+            throw e;
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof InterruptedException) {
+                // Interrupt status was restored by acquireAsync; throwing reports it instead
+                Thread.interrupted();
+                throw (InterruptedException) e.getCause();
+            }
+            throw (RejectedExecutionException) e.getCause();
+        }
+    }
+
+    /**
+     * Request admission of a submission. With the {@link OverloadPolicy#BLOCK} policy, this blocks the calling thread
+     * while the queue is full.
+     * @return A future that completes with a permit once the submission is admitted, or exceptionally with a
+     * {@link RejectedExecutionException} if it is rejected. If the calling thread is interrupted while blocked, the
+     * future completes exceptionally with an {@link InterruptedException} and the thread's interrupt status is set.
+     */
+    public CompletableFuture<Permit> acquireAsync() {
+        synchronized (this) {
+            while (true) {
+                if (closed) {
+                    return failedFuture(new RejectedExecutionException("Submission scheduler is closed"));
+                }
+                if (queue.isEmpty() && inFlight < limit) {
+                    inFlight++;
+                    return CompletableFuture.completedFuture(new Permit());
+                }
+                if (queue.size() < queueCapacity) {
+                    CompletableFuture<Permit> admission = new CompletableFuture<>();
+                    queue.add(admission);
+                    return admission;
+                }
+                if (overloadPolicy == OverloadPolicy.REJECT) {
+                    rejectedCount++;
+                    return failedFuture(new RejectedExecutionException("Too many submissions in flight: "
+                            + inFlight + " in flight, " + queue.size() + " queued"));
+                }
+
+                try {
+                    wait();
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    return failedFuture(e);
+                }
+            }
+        }
+    }
+
+    private void onRelease(final Permit permit, final Throwable failure, final boolean recordLatency) {
+        List<CompletableFuture<Permit>> admitted = new ArrayList<>();
+        synchronized (this) {
+            if (permit.released) {
+                return;
+            }
+            permit.released = true;
+            inFlight--;
+
+            if (adaptive && recordLatency) {
+                adjustLimit(System.nanoTime(), permit.startNanos, failure);
+            }
+
+            while (inFlight < limit && !queue.isEmpty()) {
+                CompletableFuture<Permit> admission = queue.poll();
+                if (!admission.isDone()) {
+                    inFlight++;
+                    admitted.add(admission);
+                }
+            }
+            notifyAll();
+        }
+
+        // Start admitted submissions outside the lock, and off the releasing thread
+        for (CompletableFuture<Permit> admission : admitted) {
+            try {
+                admissionExecutor.execute(() -> admit(admission));
+            } catch (RejectedExecutionException e) {
+                admit(admission);
+            }
+        }
+    }
+
+    private void admit(final CompletableFuture<Permit> admission) {
+        Permit permit = new Permit();
+        if (!admission.complete(permit)) {
+            // Cancelled after leaving the queue
+            onRelease(permit, null, false);
+        }
+    }
+
+    private void adjustLimit(final long nowNanos, final long startNanos, final Throwable failure) {
+        long latencyNanos = nowNanos - startNanos;
+        Throwable cause = failure instanceof CompletionException ? failure.getCause() : failure;
+
+        boolean overloaded = cause instanceof TimeoutException
+                || (baselineLatencyNanos > 0 && latencyNanos > baselineLatencyNanos * LATENCY_TOLERANCE);
+        if (baselineLatencyNanos == 0 || latencyNanos < baselineLatencyNanos) {
+            baselineLatencyNanos = latencyNanos;
+        } else {
+            // Drift slowly upwards so that the baseline follows lasting changes in the network
+            baselineLatencyNanos += (latencyNanos - baselineLatencyNanos) >> BASELINE_DRIFT_SHIFT;
+        }
+
+        if (overloaded) {
+            // Back off at most once per round trip, since submissions in flight were started at the old limit
+            if (nowNanos - lastDecreaseNanos >= latencyNanos) {
+                limit = Math.max(1, limit * BACKOFF_RATIO);
+                lastDecreaseNanos = nowNanos;
+            }
+        } else if (inFlight + 1 >= Math.floor(limit)) {
+            limit = Math.min(maxInFlight, limit + 1 / limit);
+        }
+    }
+
+    /**
+     * Current limit on submissions in flight.
+     * @return In-flight limit.
+     */
+    public synchronized int getLimit() {
+        return (int) limit;
+    }
+
+    public synchronized int getInFlight() {
+        return inFlight;
+    }
+
+    public synchronized int getQueueDepth() {
+        return queue.size();
+    }
+
+    public synchronized long getRejectedCount() {
+        return rejectedCount;
+    }
+
+    /**
+     * Reject queued submissions and any new submissions. Submissions in flight are not affected.
+     */
+    public void close() {
+        List<CompletableFuture<Permit>> rejected;
+        synchronized (this) {
+            closed = true;
+            rejected = new ArrayList<>(queue);
+            queue.clear();
+            notifyAll();
+        }
+        rejected.forEach(admission ->
+                admission.completeExceptionally(new RejectedExecutionException("Submission scheduler is closed")));
+    }
+
+    private static <T> CompletableFuture<T> failedFuture(final Throwable cause) {
+        CompletableFuture<T> future = new CompletableFuture<>();
+        future.completeExceptionally(cause);
+        return future;
+    }
+
+    @Override
+    public synchronized String toString() {
+        return GatewayUtils.toString(this,
+                "limit=" + (int) limit,
+                "maxInFlight=" + maxInFlight,
+                "inFlight=" + inFlight,
+                "queued=" + queue.size(),
+                "rejected=" + rejectedCount);
+    }
+}
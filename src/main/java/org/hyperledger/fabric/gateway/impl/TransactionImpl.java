@@ -8,9 +8,11 @@ package org.hyperledger.fabric.gateway.impl;
 
 import java.util.ArrayList;
 import java.util.Collection;
-import java.util.Collections;
 import java.util.Map;
-import java.util.Optional;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.RejectedExecutionException;
 import java.util.concurrent.TimeUnit;
 import java.util.concurrent.TimeoutException;
 
@@ -25,6 +27,7 @@ import org.hyperledger.fabric.gateway.spi.CommitHandler;
 import org.hyperledger.fabric.gateway.spi.CommitHandlerFactory;
 import org.hyperledger.fabric.gateway.spi.Query;
 import org.hyperledger.fabric.gateway.spi.QueryHandler;
+import org.hyperledger.fabric.sdk.BlockEvent;
 import org.hyperledger.fabric.sdk.ChaincodeResponse;
 import org.hyperledger.fabric.sdk.Channel;
 import org.hyperledger.fabric.sdk.Peer;
@@ -43,9 +46,6 @@ import static org.hyperledger.fabric.sdk.Channel.DiscoveryOptions.createDiscover
 public final class TransactionImpl implements Transaction {
   private static final Log LOG = LogFactory.getLog(TransactionImpl.class);
 
-  private static final long DEFAULT_ORDERER_TIMEOUT = 60;
-  private static final TimeUnit DEFAULT_ORDERER_TIMEOUT_UNIT = TimeUnit.SECONDS;
-
   private final ContractImpl contract;
   private final String name;
   private final NetworkImpl network;
@@ -53,14 +53,12 @@ public final class TransactionImpl implements Transaction {
   private final GatewayImpl gateway;
   private CommitHandlerFactory commitHandlerFactory;
   private TimePeriod commitTimeout;
+  private TimePeriod ordererTimeout;
   private final QueryHandler queryHandler;
   private Map<String, byte[]> transientData = null;
   private Collection<Peer> endorsingPeers = null;
   private final TransactionContext transactionContext;
 
-  private final SendingConfirmationServiceImpl sendingConfirmationService =
-      new SendingConfirmationServiceImpl();
-
   TransactionImpl(final ContractImpl contract, final String name) {
     this.contract = contract;
     this.name = name;
@@ -69,6 +67,7 @@ public final class TransactionImpl implements Transaction {
     gateway = network.getGateway();
     commitHandlerFactory = gateway.getCommitHandlerFactory();
     commitTimeout = gateway.getCommitTimeout();
+    ordererTimeout = gateway.getOrdererTimeout();
     queryHandler = network.getQueryHandler();
     transactionContext = channel.newTransactionContext();
   }
@@ -95,6 +94,12 @@ public final class TransactionImpl implements Transaction {
     return this;
   }
 
+  @Override
+  public Transaction setOrdererTimeout(final long timeout, final TimeUnit timeUnit) {
+    ordererTimeout = new TimePeriod(timeout, timeUnit);
+    return this;
+  }
+
   @Override
   public Transaction setCommitHandler(final CommitHandlerFactory commitHandler) {
     commitHandlerFactory = commitHandler;
@@ -110,6 +115,25 @@ public final class TransactionImpl implements Transaction {
   @Override
   public byte[] submit(final String... args)
       throws ContractException, TimeoutException, InterruptedException {
+    SubmissionScheduler scheduler = network.getSubmissionScheduler();
+    if (scheduler == null) {
+      return submitNow(args);
+    }
+
+    SubmissionScheduler.Permit permit = scheduler.acquire();
+    Throwable failure = null;
+    try {
+      return submitNow(args);
+    } catch (ContractException | TimeoutException | InterruptedException | RuntimeException e) {
+      failure = e;
+      throw e;
+    } finally {
+      permit.release(failure);
+    }
+  }
+
+  private byte[] submitNow(final String... args)
+      throws ContractException, TimeoutException, InterruptedException {
     Collection<ProposalResponse> proposalResponses = endorseTransaction(args);
     Collection<ProposalResponse> validResponses = validatePeerResponses(proposalResponses);
 
@@ -121,6 +145,29 @@ public final class TransactionImpl implements Transaction {
     }
   }
 
+  @Override
+  public CompletableFuture<byte[]> submitAsync(final String... args) {
+    SubmissionScheduler scheduler = network.getSubmissionScheduler();
+    if (scheduler == null) {
+      return endorseAsync(args).thenCompose(this::commitResponsesAsync);
+    }
+    return scheduler.submit(() -> endorseAsync(args).thenCompose(this::commitResponsesAsync));
+  }
+
+  /**
+   * Endorse the transaction using the network's endorsement threads.
+   *
+   * @return A future that completes with the proposal responses, or exceptionally with a {@link
+   *     RejectedExecutionException} if too many endorsements are already waiting for a thread.
+   */
+  CompletableFuture<Collection<ProposalResponse>> endorseAsync(final String... args) {
+    try {
+      return CompletableFuture.supplyAsync(() -> endorseTransaction(args), network.getEndorsementExecutor());
+    } catch (RejectedExecutionException e) {
+      return failedFuture(e);
+    }
+  }
+
   @Override
   public byte[] submitBasedOnModelWithBinaryResponse(
           final String analyticsPath,
@@ -161,10 +208,94 @@ public final class TransactionImpl implements Transaction {
       final Long waitTimeout,
       final String... args)
       throws ContractException, TimeoutException, InterruptedException {
+    SubmissionScheduler scheduler = network.getSubmissionScheduler();
+    if (scheduler == null) {
+      return submitBasedOnModelNow(analyticsPath, modelId, orgWithHighestProbabilityToApprove, waitTimeout, args);
+    }
+
+    SubmissionScheduler.Permit permit = scheduler.acquire();
+    Throwable failure = null;
+    try {
+      return submitBasedOnModelNow(analyticsPath, modelId, orgWithHighestProbabilityToApprove, waitTimeout, args);
+    } catch (ContractException | TimeoutException | InterruptedException | RuntimeException e) {
+      failure = e;
+      throw e;
+    } finally {
+      permit.release(failure);
+    }
+  }
+
+  private byte[] submitBasedOnModelNow(
+      final String analyticsPath,
+      final int modelId,
+      final String orgWithHighestProbabilityToApprove,
+      final Long waitTimeout,
+      final String... args)
+      throws ContractException, TimeoutException, InterruptedException {
     AgreementResponseDTO agreementResponseDTO =
         endorseTransactionBasedOnModel(
             analyticsPath, modelId, orgWithHighestProbabilityToApprove, waitTimeout, args);
+    return commitAgreement(agreementResponseDTO);
+  }
+
+  @Override
+  public CompletableFuture<byte[]> submitBasedOnModelWithBinaryResponseAsync(
+      final String analyticsPath,
+      final int modelId,
+      final Long waitTimeout,
+      final String... args) {
+    return submitBasedOnModelAsync(analyticsPath, modelId, null, waitTimeout, args);
+  }
+
+  @Override
+  public CompletableFuture<byte[]> submitBasedOnModelAsync(
+      final String analyticsPath,
+      final int modelId,
+      final String orgWithHighestProbabilityToApprove,
+      final Long waitTimeout,
+      final String... args) {
+    SubmissionScheduler scheduler = network.getSubmissionScheduler();
+    if (scheduler == null) {
+      return submitBasedOnModelNowAsync(analyticsPath, modelId, orgWithHighestProbabilityToApprove, waitTimeout, args);
+    }
+    return scheduler.submit(() ->
+        submitBasedOnModelNowAsync(analyticsPath, modelId, orgWithHighestProbabilityToApprove, waitTimeout, args));
+  }
 
+  private CompletableFuture<byte[]> submitBasedOnModelNowAsync(
+      final String analyticsPath,
+      final int modelId,
+      final String orgWithHighestProbabilityToApprove,
+      final Long waitTimeout,
+      final String... args) {
+    SendingConfirmationServiceImpl sendingConfirmationService = network.getSendingConfirmationService();
+    TransactionProposalRequest request = newModelProposalRequest(waitTimeout, args);
+
+    CompletableFuture<AgreementResponseDTO> agreement;
+    if (orgWithHighestProbabilityToApprove != null) {
+      agreement =
+          sendingConfirmationService.sendForConfirmationWithReferenceAsync(
+              channel, analyticsPath, modelId, orgWithHighestProbabilityToApprove, request, channel.getPeers());
+    } else {
+      agreement =
+          sendingConfirmationService.sendForConfirmationCustomIdAsync(
+              channel, analyticsPath, modelId, null, request, channel.getPeers());
+    }
+
+    return agreement.thenCompose(this::commitAgreementAsync);
+  }
+
+  private CompletableFuture<byte[]> commitAgreementAsync(final AgreementResponseDTO agreementResponseDTO) {
+    if (!agreementResponseDTO.isAgreementReached()) {
+      LOG.info("Agreement was not reached by endorsers. Transaction is not sent for confirmation.");
+      return CompletableFuture.completedFuture(null);
+    }
+
+    return commitResponsesAsync(agreementResponseDTO.getResponses());
+  }
+
+  private byte[] commitAgreement(final AgreementResponseDTO agreementResponseDTO)
+      throws ContractException, TimeoutException, InterruptedException {
     if (agreementResponseDTO.isAgreementReached()) {
       Collection<ProposalResponse> proposalResponses = agreementResponseDTO.getResponses();
       Collection<ProposalResponse> validResponses = validatePeerResponses(proposalResponses);
@@ -188,44 +319,35 @@ public final class TransactionImpl implements Transaction {
       final int modelId,
       final String orgWithHighestProbabilityToApprove,
       final Long waitTimeout,
-      final String... args) {
+      final String... args)
+      throws ContractException {
     try {
-      TransactionProposalRequest request = newProposalRequest(args);
-
-      if (waitTimeout != null) {
-        request.setProposalWaitTime(waitTimeout);
-      }
+      TransactionProposalRequest request = newModelProposalRequest(waitTimeout, args);
+      SendingConfirmationServiceImpl sendingConfirmationService = network.getSendingConfirmationService();
 
-      ProposalResponse fairResponse = null;
-
-      if(orgWithHighestProbabilityToApprove != null){
-        Optional<Peer> peerOpt =
-                channel.getPeers().stream()
-                        .filter(p -> p.getName().equals(orgWithHighestProbabilityToApprove))
-                        .findAny();
-
-        if (peerOpt.isPresent()) {
-          fairResponse =
-                  channel
-                          .sendTransactionProposal(request, Collections.singleton(peerOpt.get()))
-                          .iterator()
-                          .next();
-        }
-        else {
-          throw new GatewayRuntimeException(String.format("Cannot find organization with the name %s",
-                  orgWithHighestProbabilityToApprove));
-        }
+      if (orgWithHighestProbabilityToApprove != null) {
+        // The reference response also serves as that organization's model step
+        return sendingConfirmationService.sendForConfirmationWithReference(
+            channel, analyticsPath, modelId, orgWithHighestProbabilityToApprove, request, channel.getPeers());
       }
 
-
-
       return sendingConfirmationService.sendForConfirmationCustomId(
-          channel, analyticsPath, modelId, fairResponse, request, channel.getPeers());
+          channel, analyticsPath, modelId, null, request, channel.getPeers());
     } catch (InvalidArgumentException | ProposalException e) {
-      throw new GatewayRuntimeException(e);
+      throw new ContractException("Model-based endorsement failed: " + e.getMessage(), e);
     }
   }
 
+  private TransactionProposalRequest newModelProposalRequest(final Long waitTimeout, final String... args) {
+    TransactionProposalRequest request = newProposalRequest(args);
+
+    if (waitTimeout != null) {
+      request.setProposalWaitTime(waitTimeout);
+    }
+
+    return request;
+  }
+
   private Collection<ProposalResponse> endorseTransaction(final String... args) {
     try {
       TransactionProposalRequest request = newProposalRequest(args);
@@ -264,12 +386,13 @@ public final class TransactionImpl implements Transaction {
           Channel.TransactionOptions.createTransactionOptions()
               .nOfEvents(
                   Channel.NOfEvents.createNoEvents()); // Disable default commit wait behaviour
-      channel
-          .sendTransaction(validResponses, transactionOptions)
-          .get(DEFAULT_ORDERER_TIMEOUT, DEFAULT_ORDERER_TIMEOUT_UNIT);
-    } catch (TimeoutException e) {
+      sendToOrderer(validResponses, transactionOptions).get();
+    } catch (ExecutionException e) {
       commitHandler.cancelListening();
-      throw e;
+      if (e.getCause() instanceof TimeoutException) {
+        throw (TimeoutException) e.getCause();
+      }
+      throw new ContractException("Failed to send transaction to the orderer", e.getCause());
     } catch (Exception e) {
       commitHandler.cancelListening();
       throw new ContractException("Failed to send transaction to the orderer", e);
@@ -284,6 +407,91 @@ public final class TransactionImpl implements Transaction {
     }
   }
 
+  /**
+   * Send endorsed responses to the orderer and wait for the transaction to commit, without blocking a thread while the
+   * orderer or peers respond.
+   *
+   * @return A future that completes with the payload response from the transaction function.
+   */
+  CompletableFuture<byte[]> commitResponsesAsync(
+      final Collection<ProposalResponse> proposalResponses) {
+    Collection<ProposalResponse> validResponses;
+    try {
+      validResponses = validatePeerResponses(proposalResponses);
+    } catch (ContractException e) {
+      return failedFuture(e);
+    }
+
+    return commitTransactionAsync(validResponses)
+        .whenComplete(
+            (payload, e) -> {
+              Throwable cause = e instanceof CompletionException ? e.getCause() : e;
+              if (cause instanceof ContractException) {
+                ((ContractException) cause).setProposalResponses(proposalResponses);
+              }
+            });
+  }
+
+  private CompletableFuture<byte[]> commitTransactionAsync(
+      final Collection<ProposalResponse> validResponses) {
+    ProposalResponse proposalResponse = validResponses.iterator().next();
+
+    CommitHandler commitHandler = commitHandlerFactory.create(getTransactionId(), network);
+    commitHandler.startListening();
+
+    Channel.TransactionOptions transactionOptions =
+        Channel.TransactionOptions.createTransactionOptions()
+            .nOfEvents(
+                Channel.NOfEvents.createNoEvents()); // Disable default commit wait behaviour
+    return sendToOrderer(validResponses, transactionOptions)
+        .handle(
+            (event, e) -> {
+              if (e == null) {
+                return commitHandler.waitForEventsAsync(
+                    commitTimeout.getTime(), commitTimeout.getTimeUnit());
+              }
+
+              commitHandler.cancelListening();
+              Throwable cause = e instanceof CompletionException ? e.getCause() : e;
+              if (cause instanceof TimeoutException) {
+                return TransactionImpl.<Void>failedFuture(cause);
+              }
+              return TransactionImpl.<Void>failedFuture(
+                  new ContractException("Failed to send transaction to the orderer", cause));
+            })
+        .thenCompose(committed -> committed)
+        .thenApply(
+            committed -> {
+              try {
+                return proposalResponse.getChaincodeActionResponsePayload();
+              } catch (InvalidArgumentException e) {
+                throw new GatewayRuntimeException(e);
+              }
+            });
+  }
+
+  /**
+   * Send endorsed responses to the orderer.
+   *
+   * @return A future that completes when the orderer accepts the transaction, or exceptionally with a {@link
+   *     TimeoutException} if the orderer timeout passes first.
+   */
+  private CompletableFuture<BlockEvent.TransactionEvent> sendToOrderer(
+      final Collection<ProposalResponse> validResponses,
+      final Channel.TransactionOptions transactionOptions) {
+    return AsyncTimeouts.within(
+        channel.sendTransaction(validResponses, transactionOptions),
+        ordererTimeout.getTime(),
+        ordererTimeout.getTimeUnit(),
+        () -> new TimeoutException("Timeout sending transaction " + getTransactionId() + " to the orderer"));
+  }
+
+  private static <T> CompletableFuture<T> failedFuture(final Throwable cause) {
+    CompletableFuture<T> future = new CompletableFuture<>();
+    future.completeExceptionally(cause);
+    return future;
+  }
+
   private TransactionProposalRequest newProposalRequest(final String... args) {
     TransactionProposalRequest request =
         network.getGateway().getClient().newTransactionProposalRequest();
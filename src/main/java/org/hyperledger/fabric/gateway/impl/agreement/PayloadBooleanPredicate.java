@@ -0,0 +1,59 @@
+/*
+ * Copyright 2019 IBM All Rights Reserved.
+ *
+ * SPDX-License-Identifier: Apache-2.0
+ */
+
+package org.hyperledger.fabric.gateway.impl.agreement;
+
+import com.google.protobuf.ByteString;
+import org.hyperledger.fabric.gateway.spi.AgreementPredicate;
+import org.hyperledger.fabric.sdk.ProposalResponse;
+
+/**
+ * Approves responses whose payload decodes as the boolean {@code true}: the text {@code true} in any letter case,
+ * optionally in double quotes and surrounded by whitespace. The payload is examined in place without decoding it to
+ * a string.
+ */
+public final class PayloadBooleanPredicate implements AgreementPredicate {
+    public static final PayloadBooleanPredicate INSTANCE = new PayloadBooleanPredicate();
+
+    private static final byte[] TRUE = {'t', 'r', 'u', 'e'};
+
+    private PayloadBooleanPredicate() { }
+
+    @Override
+    public boolean isApproval(final ProposalResponse proposalResponse) {
+        return isTrue(Payloads.of(proposalResponse));
+    }
+
+    static boolean isTrue(final ByteString payload) {
+        int start = 0;
+        int end = payload.size();
+
+        while (start < end && isWhitespace(payload.byteAt(start))) {
+            start++;
+        }
+        while (end > start && isWhitespace(payload.byteAt(end - 1))) {
+            end--;
+        }
+        if (end - start >= 2 && payload.byteAt(start) == '"' && payload.byteAt(end - 1) == '"') {
+            start++;
+            end--;
+        }
+
+        if (end - start != TRUE.length) {
+            return false;
+        }
+        for (int i = 0; i < TRUE.length; i++) {
+            if ((payload.byteAt(start + i) | 0x20) != TRUE[i]) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private static boolean isWhitespace(final byte b) {
+        return b == ' ' || b == '\t' || b == '\n' || b == '\r';
+    }
+}
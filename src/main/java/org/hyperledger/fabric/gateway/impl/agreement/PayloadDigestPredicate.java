@@ -0,0 +1,55 @@
+/*
+ * Copyright 2019 IBM All Rights Reserved.
+ *
+ * SPDX-License-Identifier: Apache-2.0
+ */
+
+package org.hyperledger.fabric.gateway.impl.agreement;
+
+import java.nio.ByteBuffer;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+
+import com.google.protobuf.ByteString;
+import org.hyperledger.fabric.gateway.spi.AgreementPredicate;
+import org.hyperledger.fabric.sdk.ProposalResponse;
+
+/**
+ * Approves responses whose payload has the same SHA-256 digest as the reference payload. The reference digest is
+ * computed once, responses of a different length are rejected without hashing, and response payloads are hashed
+ * directly from their backing buffers so that no copy of the payload is made.
+ * <p>Instances keep a message digest for reuse and are not thread-safe.</p>
+ */
+public final class PayloadDigestPredicate implements AgreementPredicate {
+    private static final String ALGORITHM = "SHA-256";
+
+    private final MessageDigest digest;
+    private final int expectedSize;
+    private final byte[] expectedDigest;
+
+    public PayloadDigestPredicate(final ProposalResponse referenceResponse) {
+        try {
+            digest = MessageDigest.getInstance(ALGORITHM);
+        } catch (NoSuchAlgorithmException e) {
+            // Every Java platform is required to support SHA-256
+            throw new IllegalStateException(e);
+        }
+
+        ByteString payload = Payloads.of(referenceResponse);
+        expectedSize = payload.size();
+        expectedDigest = digestOf(payload);
+    }
+
+    @Override
+    public boolean isApproval(final ProposalResponse proposalResponse) {
+        ByteString payload = Payloads.of(proposalResponse);
+        return payload.size() == expectedSize && MessageDigest.isEqual(expectedDigest, digestOf(payload));
+    }
+
+    private byte[] digestOf(final ByteString payload) {
+        for (ByteBuffer buffer : payload.asReadOnlyByteBufferList()) {
+            digest.update(buffer);
+        }
+        return digest.digest();
+    }
+}
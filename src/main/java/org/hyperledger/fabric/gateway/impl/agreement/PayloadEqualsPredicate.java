@@ -0,0 +1,27 @@
+/*
+ * Copyright 2019 IBM All Rights Reserved.
+ *
+ * SPDX-License-Identifier: Apache-2.0
+ */
+
+package org.hyperledger.fabric.gateway.impl.agreement;
+
+import com.google.protobuf.ByteString;
+import org.hyperledger.fabric.gateway.spi.AgreementPredicate;
+import org.hyperledger.fabric.sdk.ProposalResponse;
+
+/**
+ * Approves responses whose payload is byte-for-byte equal to the reference payload.
+ */
+public final class PayloadEqualsPredicate implements AgreementPredicate {
+    private final ByteString expected;
+
+    public PayloadEqualsPredicate(final ProposalResponse referenceResponse) {
+        this.expected = Payloads.of(referenceResponse);
+    }
+
+    @Override
+    public boolean isApproval(final ProposalResponse proposalResponse) {
+        return expected.equals(Payloads.of(proposalResponse));
+    }
+}
@@ -0,0 +1,77 @@
+/*
+ * Copyright 2019 IBM All Rights Reserved.
+ *
+ * SPDX-License-Identifier: Apache-2.0
+ */
+
+package org.hyperledger.fabric.gateway.impl.agreement;
+
+import java.nio.charset.StandardCharsets;
+
+import com.google.protobuf.ByteString;
+import org.hyperledger.fabric.gateway.spi.AgreementPredicate;
+import org.hyperledger.fabric.sdk.ProposalResponse;
+
+/**
+ * Approves responses whose payload contains a given byte sequence. The payload is scanned in place, one byte at a
+ * time, so no string or array is created from it.
+ */
+public final class PayloadPatternPredicate implements AgreementPredicate {
+    /** Approves payloads containing the UTF-8 text {@code true}. */
+    public static final PayloadPatternPredicate CONTAINS_TRUE =
+            new PayloadPatternPredicate("true".getBytes(StandardCharsets.UTF_8));
+
+    private final byte[] pattern;
+    private final int[] failure;
+
+    public PayloadPatternPredicate(final byte[] pattern) {
+        if (pattern.length == 0) {
+            throw new IllegalArgumentException("Pattern must not be empty");
+        }
+
+        this.pattern = pattern.clone();
+        this.failure = failureTable(this.pattern);
+    }
+
+    /**
+     * Knuth-Morris-Pratt failure function: for each prefix length, the length of the longest proper prefix of the
+     * pattern that is also a suffix of that prefix.
+     */
+    private static int[] failureTable(final byte[] pattern) {
+        int[] table = new int[pattern.length + 1];
+        int k = 0;
+        for (int i = 1; i < pattern.length; i++) {
+            while (k > 0 && pattern[i] != pattern[k]) {
+                k = table[k];
+            }
+            if (pattern[i] == pattern[k]) {
+                k++;
+            }
+            table[i + 1] = k;
+        }
+        return table;
+    }
+
+    @Override
+    public boolean isApproval(final ProposalResponse proposalResponse) {
+        return contains(Payloads.of(proposalResponse));
+    }
+
+    boolean contains(final ByteString payload) {
+        int matched = 0;
+        ByteString.ByteIterator bytes = payload.iterator();
+        while (bytes.hasNext()) {
+            byte b = bytes.nextByte();
+            while (matched > 0 && b != pattern[matched]) {
+                matched = failure[matched];
+            }
+            if (b == pattern[matched]) {
+                matched++;
+                if (matched == pattern.length) {
+                    return true;
+                }
+            }
+        }
+        return false;
+    }
+}
@@ -0,0 +1,22 @@
+/*
+ * Copyright 2019 IBM All Rights Reserved.
+ *
+ * SPDX-License-Identifier: Apache-2.0
+ */
+
+package org.hyperledger.fabric.gateway.impl.agreement;
+
+import com.google.protobuf.ByteString;
+import org.hyperledger.fabric.sdk.ProposalResponse;
+
+/**
+ * Access to the chaincode response payload of a proposal response without copying it.
+ */
+final class Payloads {
+    // Private constructor to prevent instantiation
+    private Payloads() { }
+
+    static ByteString of(final ProposalResponse proposalResponse) {
+        return proposalResponse.getProposalResponse().getResponse().getPayload();
+    }
+}
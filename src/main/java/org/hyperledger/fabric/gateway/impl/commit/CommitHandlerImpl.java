@@ -9,13 +9,16 @@ package org.hyperledger.fabric.gateway.impl.commit;
 import java.util.Collections;
 import java.util.HashSet;
 import java.util.Set;
-import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
 import java.util.concurrent.TimeUnit;
 import java.util.concurrent.TimeoutException;
 import java.util.concurrent.atomic.AtomicReference;
 
 import org.hyperledger.fabric.gateway.ContractException;
+import org.hyperledger.fabric.gateway.GatewayRuntimeException;
 import org.hyperledger.fabric.gateway.Network;
+import org.hyperledger.fabric.gateway.impl.AsyncTimeouts;
 import org.hyperledger.fabric.gateway.impl.GatewayUtils;
 import org.hyperledger.fabric.gateway.spi.CommitHandler;
 import org.hyperledger.fabric.gateway.spi.CommitListener;
@@ -40,7 +43,7 @@ public final class CommitHandlerImpl implements CommitHandler {
         }
     };
     private final Set<Peer> peers;
-    private final CountDownLatch latch = new CountDownLatch(1);
+    private final CompletableFuture<Void> done = new CompletableFuture<>();
     private final AtomicReference<ContractException> error = new AtomicReference<>();
 
     public CommitHandlerImpl(final String transactionId, final Network network, final CommitStrategy strategy) {
@@ -62,25 +65,38 @@ public final class CommitHandlerImpl implements CommitHandler {
     @Override
     public void waitForEvents(final long timeout, final TimeUnit timeUnit) throws ContractException, TimeoutException, InterruptedException {
         try {
-            boolean complete = latch.await(timeout, timeUnit);
-            if (!complete) {
-                throw new TimeoutException("Timeout waiting for commit of transaction " + transactionId);
+            waitForEventsAsync(timeout, timeUnit).get();
+        } catch (ExecutionException e) {
+            Throwable cause = e.getCause();
+            if (cause instanceof ContractException) {
+                throw (ContractException) cause;
+            } else if (cause instanceof TimeoutException) {
+                throw (TimeoutException) cause;
             }
+            throw new GatewayRuntimeException(cause);
         } finally {
             cancelListening();
         }
+    }
 
-        ContractException cause = error.get();
-        if (cause != null) {
-            throw cause;
-        }
+    @Override
+    public CompletableFuture<Void> waitForEventsAsync(final long timeout, final TimeUnit timeUnit) {
+        return AsyncTimeouts.within(done, timeout, timeUnit,
+                () -> new TimeoutException("Timeout waiting for commit of transaction " + transactionId))
+                .whenComplete((result, e) -> cancelListening());
     }
 
     @Override
     public void cancelListening() {
-        latch.countDown();
         network.removeCommitListener(listener);
         peers.clear();
+
+        ContractException cause = error.get();
+        if (cause != null) {
+            done.completeExceptionally(cause);
+        } else {
+            done.complete(null);
+        }
     }
 
     @Override
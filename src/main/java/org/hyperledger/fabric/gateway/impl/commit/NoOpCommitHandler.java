@@ -6,6 +6,7 @@
 
 package org.hyperledger.fabric.gateway.impl.commit;
 
+import java.util.concurrent.CompletableFuture;
 import java.util.concurrent.TimeUnit;
 
 import org.hyperledger.fabric.gateway.spi.CommitHandler;
@@ -19,6 +20,11 @@ public enum NoOpCommitHandler implements CommitHandler {
     @Override
     public void waitForEvents(final long timeout, final TimeUnit timeUnit) { }
 
+    @Override
+    public CompletableFuture<Void> waitForEventsAsync(final long timeout, final TimeUnit timeUnit) {
+        return CompletableFuture.completedFuture(null);
+    }
+
     @Override
     public void cancelListening() { }
 }
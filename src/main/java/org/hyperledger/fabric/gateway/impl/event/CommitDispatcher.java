@@ -0,0 +1,133 @@
+/*
+ * Copyright 2019 IBM All Rights Reserved.
+ *
+ * SPDX-License-Identifier: Apache-2.0
+ */
+
+package org.hyperledger.fabric.gateway.impl.event;
+
+import java.util.Collection;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.function.Consumer;
+
+import org.hyperledger.fabric.gateway.impl.GatewayUtils;
+import org.hyperledger.fabric.gateway.spi.CommitListener;
+import org.hyperledger.fabric.sdk.BlockEvent;
+import org.hyperledger.fabric.sdk.Peer;
+
+/**
+ * Delivers transaction commit events to listeners waiting for specific transactions. A single block listener is
+ * attached to the block source, and each transaction in a received block is looked up by ID, so the cost of handling
+ * a block does not depend on the number of transactions awaiting commit.
+ * <p>
+ * This implementation is thread-safe.
+ * </p>
+ */
+public final class CommitDispatcher implements AutoCloseable {
+    private final BlockEventSource blockSource;
+    private final Consumer<BlockEvent> blockListener = this::receivedBlock;
+    private final Map<String, Map<CommitListener, Set<Peer>>> transactionListeners = new ConcurrentHashMap<>();
+    private final AtomicBoolean listening = new AtomicBoolean(false);
+    private volatile boolean closed = false;
+
+    public CommitDispatcher(final BlockEventSource blockSource) {
+        this.blockSource = blockSource;
+    }
+
+    /**
+     * Add a listener for commit events of a transaction from the given peers.
+     * @param listener A commit listener.
+     * @param peers Peers from which commit events are delivered.
+     * @param transactionId ID of the transaction.
+     * @return A session that removes the listener when closed.
+     * @throws IllegalStateException if the dispatcher has been closed.
+     */
+    public ListenerSession addCommitListener(final CommitListener listener,
+                                             final Collection<Peer> peers,
+                                             final String transactionId) {
+        checkNotClosed();
+
+        Set<Peer> peerSet = new HashSet<>(peers);
+        transactionListeners.compute(transactionId, (key, listeners) -> {
+            Map<CommitListener, Set<Peer>> result = listeners != null ? listeners : new ConcurrentHashMap<>();
+            result.put(listener, peerSet);
+            return result;
+        });
+
+        if (!listening.get()) {
+            startListening();
+        }
+        if (closed) {
+            // Closed while the listener was being added, possibly after the listeners were cleared
+            removeCommitListener(listener, transactionId);
+            checkNotClosed();
+        }
+
+        return () -> removeCommitListener(listener, transactionId);
+    }
+
+    private void checkNotClosed() {
+        if (closed) {
+            throw new IllegalStateException("Commit dispatcher is closed");
+        }
+    }
+
+    private synchronized void startListening() {
+        if (!closed && listening.compareAndSet(false, true)) {
+            blockSource.addBlockListener(blockListener);
+        }
+    }
+
+    private void removeCommitListener(final CommitListener listener, final String transactionId) {
+        transactionListeners.computeIfPresent(transactionId, (key, listeners) -> {
+            listeners.remove(listener);
+            return listeners.isEmpty() ? null : listeners;
+        });
+    }
+
+    /**
+     * Number of transactions with at least one listener.
+     * @return Pending transaction count.
+     */
+    public int getPendingTransactionCount() {
+        return transactionListeners.size();
+    }
+
+    private void receivedBlock(final BlockEvent blockEvent) {
+        for (BlockEvent.TransactionEvent transactionEvent : blockEvent.getTransactionEvents()) {
+            Map<CommitListener, Set<Peer>> listeners = transactionListeners.get(transactionEvent.getTransactionID());
+            if (listeners != null) {
+                listeners.forEach((listener, peers) -> {
+                    if (peers.contains(transactionEvent.getPeer())) {
+                        listener.acceptCommit(transactionEvent);
+                    }
+                });
+            }
+        }
+    }
+
+    /**
+     * Stop receiving blocks and remove all listeners. Listeners cannot be added once the dispatcher is closed.
+     */
+    @Override
+    public void close() {
+        synchronized (this) {
+            closed = true;
+            if (listening.getAndSet(false)) {
+                blockSource.removeBlockListener(blockListener);
+            }
+        }
+        transactionListeners.clear();
+    }
+
+    @Override
+    public String toString() {
+        return GatewayUtils.toString(this,
+                "blockSource=" + blockSource,
+                "pendingTransactions=" + transactionListeners.size());
+    }
+}
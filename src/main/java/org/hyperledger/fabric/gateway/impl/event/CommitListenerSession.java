@@ -7,47 +7,38 @@
 package org.hyperledger.fabric.gateway.impl.event;
 
 import java.util.Collection;
-import java.util.function.Consumer;
-import java.util.stream.Collectors;
 
 import org.hyperledger.fabric.gateway.impl.GatewayUtils;
 import org.hyperledger.fabric.gateway.spi.CommitListener;
-import org.hyperledger.fabric.gateway.spi.PeerDisconnectEvent;
-import org.hyperledger.fabric.sdk.BlockEvent;
 import org.hyperledger.fabric.sdk.Peer;
 
 /**
- * Adds and removes listeners to transactions commit events (from a given block source) and disconnect events (from given
- * peers).
+ * Adds and removes listeners to transactions commit events (from a given commit dispatcher) and disconnect events (from
+ * given peers, through a peer health registry).
  */
 public final class CommitListenerSession implements ListenerSession {
-    private final BlockListenerSession blockListenerSession;
-    private final Collection<PeerDisconnectListenerSession> disconnectListenerSessions;
+    private final ListenerSession commitListenerSession;
+    private final ListenerSession disconnectListenerSession;
 
-    public CommitListenerSession(final BlockEventSource blockSource,
+    public CommitListenerSession(final CommitDispatcher commitDispatcher,
+                                 final PeerHealthRegistry peerHealthRegistry,
                                  final CommitListener commitListener,
                                  final Collection<Peer> peers,
                                  final String transactionId) {
-        Consumer<BlockEvent.TransactionEvent> transactionListener = Listeners.transaction(commitListener, peers, transactionId);
-        Consumer<BlockEvent> blockListener = Listeners.fromTransaction(transactionListener);
-        blockListenerSession = new BlockListenerSession(blockSource, blockListener);
-
-        Consumer<PeerDisconnectEvent> disconnectListener = commitListener::acceptDisconnect;
-        disconnectListenerSessions = peers.stream()
-                .map(peer -> new PeerDisconnectListenerSession(peer, disconnectListener))
-                .collect(Collectors.toList());
+        commitListenerSession = commitDispatcher.addCommitListener(commitListener, peers, transactionId);
+        disconnectListenerSession = peerHealthRegistry.addCommitListener(commitListener, peers);
     }
 
     @Override
     public void close() {
-        blockListenerSession.close();
-        disconnectListenerSessions.forEach(PeerDisconnectListenerSession::close);
+        commitListenerSession.close();
+        disconnectListenerSession.close();
     }
 
     @Override
     public String toString() {
         return GatewayUtils.toString(this,
-                "blockListenerSession=" + blockListenerSession,
-                "disconnectListenerSessions=" + disconnectListenerSessions);
+                "commitListenerSession=" + commitListenerSession,
+                "disconnectListenerSession=" + disconnectListenerSession);
     }
 }
@@ -8,10 +8,7 @@ package org.hyperledger.fabric.gateway.impl.event;
 
 import java.io.IOException;
 import java.io.UncheckedIOException;
-import java.util.Collection;
-import java.util.HashSet;
 import java.util.Objects;
-import java.util.Set;
 import java.util.function.Consumer;
 import java.util.regex.Pattern;
 import java.util.stream.StreamSupport;
@@ -20,10 +17,8 @@ import org.apache.commons.logging.Log;
 import org.apache.commons.logging.LogFactory;
 import org.hyperledger.fabric.gateway.ContractEvent;
 import org.hyperledger.fabric.gateway.spi.Checkpointer;
-import org.hyperledger.fabric.gateway.spi.CommitListener;
 import org.hyperledger.fabric.sdk.BlockEvent;
 import org.hyperledger.fabric.sdk.BlockInfo;
-import org.hyperledger.fabric.sdk.Peer;
 
 public final class Listeners {
     private static final Log LOG = LogFactory.getLog(Listeners.class);
@@ -117,16 +112,5 @@ public final class Listeners {
         }, chaincodeId);
     }
 
-    public static Consumer<BlockEvent.TransactionEvent> transaction(final CommitListener listener,
-                                                                    final Collection<Peer> peers,
-                                                                    final String transactionId) {
-        Set<Peer> peerSet = new HashSet<>(peers);
-        return transactionEvent -> {
-            if (transactionEvent.getTransactionID().equals(transactionId) && peerSet.contains(transactionEvent.getPeer())) {
-                listener.acceptCommit(transactionEvent);
-            }
-        };
-    }
-
     private Listeners() { }
 }
@@ -0,0 +1,144 @@
+/*
+ * Copyright 2019 IBM All Rights Reserved.
+ *
+ * SPDX-License-Identifier: Apache-2.0
+ */
+
+package org.hyperledger.fabric.gateway.impl.event;
+
+import java.util.Collection;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.hyperledger.fabric.gateway.impl.GatewayUtils;
+import org.hyperledger.fabric.gateway.spi.CommitListener;
+import org.hyperledger.fabric.gateway.spi.PeerDisconnectEvent;
+import org.hyperledger.fabric.sdk.Peer;
+
+/**
+ * Tracks the commit listeners waiting on each peer and delivers peer disconnects to them. Only one disconnect listener
+ * is attached to each peer while any commit listeners are waiting on it, so adding and removing commit listeners does
+ * not subscribe to or unsubscribe from peer disconnect events each time. A peer is no longer tracked once its last
+ * commit listener is removed. When a peer disconnects, every commit listener waiting on it is notified in a single
+ * pass.
+ * <p>
+ * This implementation is thread-safe.
+ * </p>
+ */
+public final class PeerHealthRegistry implements AutoCloseable {
+    private final Map<Peer, PeerState> peerStates = new ConcurrentHashMap<>();
+    private volatile boolean closed = false;
+
+    private static final class PeerState {
+        private final Set<CommitListener> listeners = ConcurrentHashMap.newKeySet();
+        private final AtomicLong disconnectCount = new AtomicLong(0);
+        private final PeerDisconnectListenerSession session;
+
+        PeerState(final Peer peer) {
+            session = new PeerDisconnectListenerSession(peer, this::disconnected);
+        }
+
+        private void disconnected(final PeerDisconnectEvent event) {
+            disconnectCount.incrementAndGet();
+            for (CommitListener listener : listeners) {
+                listener.acceptDisconnect(event);
+            }
+        }
+    }
+
+    /**
+     * Add a commit listener to be notified if any of the given peers disconnects.
+     * @param listener A commit listener.
+     * @param peers Peers on which the listener is waiting.
+     * @return A session that removes the listener when closed.
+     * @throws IllegalStateException if the registry has been closed.
+     */
+    public ListenerSession addCommitListener(final CommitListener listener, final Collection<Peer> peers) {
+        checkNotClosed();
+
+        for (Peer peer : peers) {
+            peerStates.compute(peer, (key, state) -> {
+                PeerState result = state != null ? state : new PeerState(key);
+                result.listeners.add(listener);
+                return result;
+            });
+        }
+        if (closed) {
+            // Closed while the listener was being added, possibly after the peers were released
+            removeCommitListener(listener, peers);
+            checkNotClosed();
+        }
+
+        return () -> removeCommitListener(listener, peers);
+    }
+
+    private void checkNotClosed() {
+        if (closed) {
+            throw new IllegalStateException("Peer health registry is closed");
+        }
+    }
+
+    private void removeCommitListener(final CommitListener listener, final Collection<Peer> peers) {
+        for (Peer peer : peers) {
+            peerStates.computeIfPresent(peer, (key, state) -> {
+                state.listeners.remove(listener);
+                if (!state.listeners.isEmpty()) {
+                    return state;
+                }
+                state.session.close();
+                return null;
+            });
+        }
+    }
+
+    /**
+     * Number of commit listeners waiting on a peer.
+     * @param peer A peer.
+     * @return Pending listener count.
+     */
+    public int getPendingCount(final Peer peer) {
+        PeerState state = peerStates.get(peer);
+        return state != null ? state.listeners.size() : 0;
+    }
+
+    /**
+     * Number of disconnects observed for a peer since it was last tracked, which is while commit listeners have been
+     * continuously waiting on it.
+     * @param peer A peer.
+     * @return Disconnect count.
+     */
+    public long getDisconnectCount(final Peer peer) {
+        PeerState state = peerStates.get(peer);
+        return state != null ? state.disconnectCount.get() : 0;
+    }
+
+    /**
+     * Number of peers on which commit listeners are waiting.
+     * @return Tracked peer count.
+     */
+    public int getTrackedPeerCount() {
+        return peerStates.size();
+    }
+
+    /**
+     * Stop listening for peer disconnects and remove all commit listeners. Commit listeners cannot be added once the
+     * registry is closed.
+     */
+    @Override
+    public void close() {
+        closed = true;
+        peerStates.keySet().forEach(peer -> peerStates.computeIfPresent(peer, (key, state) -> {
+            state.session.close();
+            state.listeners.clear();
+            return null;
+        }));
+    }
+
+    @Override
+    public String toString() {
+        return GatewayUtils.toString(this,
+                "peers=" + peerStates.keySet());
+    }
+}
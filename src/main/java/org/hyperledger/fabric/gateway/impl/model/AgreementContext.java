@@ -0,0 +1,249 @@
+/*
+ * Copyright 2019 IBM All Rights Reserved.
+ *
+ * SPDX-License-Identifier: Apache-2.0
+ */
+
+package org.hyperledger.fabric.gateway.impl.model;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+
+import org.hyperledger.fabric.gateway.impl.GatewayUtils;
+import org.hyperledger.fabric.gateway.model.AgreementResponseDTO;
+import org.hyperledger.fabric.gateway.spi.AgreementPredicate;
+import org.hyperledger.fabric.gateway.spi.AgreementPredicateFactory;
+import org.hyperledger.fabric.protos.peer.ProposalResponsePackage;
+import org.hyperledger.fabric.sdk.Channel;
+import org.hyperledger.fabric.sdk.Peer;
+import org.hyperledger.fabric.sdk.ProposalResponse;
+import org.hyperledger.fabric.sdk.TransactionProposalRequest;
+import org.hyperledger.fabric.sdk.exception.InvalidArgumentException;
+
+/**
+ * State of a single model-based endorsement, created per call so that the endorsement service itself can be shared
+ * between concurrent transactions. Instances are not thread-safe; an asynchronous endorsement may move between
+ * threads as proposals complete, but only one thread uses the context at a time.
+ */
+public final class AgreementContext {
+    private static final int STATUS_OK = 200;
+
+    private final Channel channel;
+    private final TransactionProposalRequest request;
+    private final Collection<Peer> endorsingPeers;
+    private final AnalyticsSnapshot analytics;
+    private final AgreementStateMachine stateMachine;
+    private final AgreementPredicateFactory predicateFactory;
+    private final AgreementResponseDTO result = new AgreementResponseDTO();
+    private int wastedProposals = 0;
+    private CompletableFuture<ProposalResponse> referenceResponse = CompletableFuture.completedFuture(null);
+    private int referenceOrganization = -1;
+    private long transactionHash = 0;
+    private AgreementPredicate predicate = null;
+    private List<Collection<Peer>> peersByOrganization = null;
+
+    public AgreementContext(final Channel channel,
+                            final TransactionProposalRequest request,
+                            final Collection<Peer> endorsingPeers,
+                            final AnalyticsSnapshot analytics,
+                            final AgreementStateMachine stateMachine,
+                            final AgreementPredicateFactory predicateFactory) {
+        this.channel = channel;
+        this.request = request;
+        this.endorsingPeers = endorsingPeers;
+        this.analytics = analytics;
+        this.stateMachine = stateMachine;
+        this.predicateFactory = predicateFactory;
+    }
+
+    public Channel getChannel() {
+        return channel;
+    }
+
+    public TransactionProposalRequest getRequest() {
+        return request;
+    }
+
+    public AgreementStateMachine getStateMachine() {
+        return stateMachine;
+    }
+
+    public CompiledModel getModel() {
+        return stateMachine.getModel();
+    }
+
+    /**
+     * Number of proposals sent during this endorsement whose replies were discarded.
+     * @return Wasted proposal count.
+     */
+    public int getWastedProposals() {
+        return wastedProposals;
+    }
+
+    public void addWastedProposals(final int count) {
+        wastedProposals += count;
+    }
+
+    public AgreementResponseDTO getResult() {
+        return result;
+    }
+
+    /**
+     * Set the response against which the responses of other organizations are judged.
+     * @param referenceResponse Future reference response, which may complete with null if there is no reference.
+     * @param organization Index of the organization that provides the reference response, or -1 if it is not an
+     *                     organization in the model.
+     */
+    public void setReferenceResponse(final CompletableFuture<ProposalResponse> referenceResponse,
+                                     final int organization) {
+        this.referenceResponse = referenceResponse;
+        this.referenceOrganization = organization;
+    }
+
+    public CompletableFuture<ProposalResponse> getReferenceResponse() {
+        return referenceResponse;
+    }
+
+    /**
+     * Index of the organization that provides the reference response.
+     * @return An organization index, or -1 if the reference does not come from an organization in the model.
+     */
+    public int getReferenceOrganization() {
+        return referenceOrganization;
+    }
+
+    /**
+     * Hash of the transaction ID, used to identify the endorsement in the decision journal.
+     * @return Hash from {@link DecisionJournal#hash(String)}, or zero if no response has been received yet.
+     */
+    public long getTransactionHash() {
+        return transactionHash;
+    }
+
+    public void setTransactionHash(final long transactionHash) {
+        this.transactionHash = transactionHash;
+    }
+
+    /**
+     * Get the index of an organization in the model.
+     * @param organizationName Organization name.
+     * @return Organization index, or -1 if the organization is not in the model.
+     */
+    public int indexOfOrganization(final String organizationName) {
+        return analytics.getOrganizations().indexOf(organizationName);
+    }
+
+    /**
+     * Get the name of an organization in the model.
+     * @param organization Organization index.
+     * @return Organization name.
+     */
+    public String getOrganizationName(final int organization) {
+        return analytics.getOrganizations().get(organization);
+    }
+
+    /**
+     * Get the endorsing peers of an organization, among which proposals for that organization are balanced. Peers
+     * are found from the channel's MSP membership, with the organization name taken as an MSP ID; if the channel
+     * has no endorsing peers for that MSP ID, the endorsing peer whose name matches the organization name is used.
+     * The index of all organizations is built on first use and kept for the remainder of the endorsement.
+     * @param organization Organization index.
+     * @return Peers for the organization.
+     * @throws InvalidArgumentException if no endorsing peer matches the organization.
+     */
+    public Collection<Peer> getPeers(final int organization) throws InvalidArgumentException {
+        if (peersByOrganization == null) {
+            peersByOrganization = indexPeers();
+        }
+
+        Collection<Peer> peers = peersByOrganization.get(organization);
+        if (peers.isEmpty()) {
+            throw new InvalidArgumentException(String.format("Cannot find organization with name %s",
+                    getOrganizationName(organization)));
+        }
+        return peers;
+    }
+
+    private List<Collection<Peer>> indexPeers() throws InvalidArgumentException {
+        Set<Peer> endorsers = Collections.newSetFromMap(new IdentityHashMap<>());
+        endorsers.addAll(endorsingPeers);
+        Map<String, Peer> peersByName = new HashMap<>();
+        endorsingPeers.forEach(peer -> peersByName.putIfAbsent(peer.getName(), peer));
+
+        List<String> organizations = analytics.getOrganizations();
+        List<Collection<Peer>> index = new ArrayList<>(organizations.size());
+        for (String organization : organizations) {
+            List<Peer> peers = new ArrayList<>();
+            Collection<Peer> mspPeers = channel.getPeersForOrganization(organization);
+            if (mspPeers != null) {
+                mspPeers.stream()
+                        .filter(endorsers::contains)
+                        .forEach(peers::add);
+            }
+            if (peers.isEmpty() && peersByName.containsKey(organization)) {
+                peers.add(peersByName.get(organization));
+            }
+            index.add(peers);
+        }
+        return index;
+    }
+
+    /**
+     * Find the endorsing peers for an organization that may not be part of the model.
+     * @param organizationName Organization name.
+     * @return Peers for the organization.
+     * @throws InvalidArgumentException if no endorsing peer matches the organization.
+     */
+    public Collection<Peer> getPeers(final String organizationName) throws InvalidArgumentException {
+        int organization = indexOfOrganization(organizationName);
+        if (organization >= 0) {
+            return getPeers(organization);
+        }
+
+        for (Peer peer : endorsingPeers) {
+            if (peer.getName().equals(organizationName)) {
+                return Collections.singleton(peer);
+            }
+        }
+        throw new InvalidArgumentException(String.format("Cannot find organization with name %s", organizationName));
+    }
+
+    /**
+     * Determine whether a proposal response counts as an approval. The response must have a successful status and
+     * satisfy the agreement predicate, which is created from the reference response on first use. Must only be
+     * called once the reference response is complete.
+     * @param proposalResponse A proposal response.
+     * @return 1 for approval; otherwise 0.
+     */
+    public int getReply(final ProposalResponse proposalResponse) {
+        if (proposalResponse.getProposalResponse() == null) {
+            // No reply from any peer of the organization
+            return 0;
+        }
+        ProposalResponsePackage.Response response = proposalResponse.getProposalResponse().getResponse();
+
+        if (response.getStatus() != STATUS_OK) {
+            return 0;
+        }
+
+        if (predicate == null) {
+            predicate = predicateFactory.create(referenceResponse.getNow(null));
+        }
+
+        return predicate.isApproval(proposalResponse) ? 1 : 0;
+    }
+
+    @Override
+    public String toString() {
+        return GatewayUtils.toString(this,
+                "stateMachine=" + stateMachine,
+                "wastedProposals=" + wastedProposals);
+    }
+}
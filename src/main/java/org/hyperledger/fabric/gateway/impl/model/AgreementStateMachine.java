@@ -0,0 +1,371 @@
+/*
+ * Copyright 2019 IBM All Rights Reserved.
+ *
+ * SPDX-License-Identifier: Apache-2.0
+ */
+
+package org.hyperledger.fabric.gateway.impl.model;
+
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+import org.hyperledger.fabric.gateway.impl.GatewayUtils;
+
+/**
+ * Walks a compiled model for a single transaction, one organization reply at a time. The caller asks which
+ * organization to send to next with {@link #getCurrentOrganization()}, sends the proposal, and feeds the reply back
+ * using {@link #onReply(int)} until a terminal step is returned.
+ * <p>
+ * All state is held in primitive fields and arrays allocated at construction, so driving the machine does not
+ * allocate. Instances hold the state of one transaction and are not thread-safe.
+ * </p>
+ */
+public final class AgreementStateMachine {
+    private static final Log LOG = LogFactory.getLog(AgreementStateMachine.class);
+
+    /**
+     * Result of recording an organization reply.
+     */
+    public enum Step {
+        /** The responses satisfy the specification. Terminal. */
+        AGREEMENT_REACHED(true),
+        /** The maximum number of messages has been sent without reaching agreement. Terminal. */
+        MAX_MESSAGES_SENT(true),
+        /** Every organization has replied without reaching agreement. Terminal. */
+        END_OF_TREE(true),
+        /** The decision table shows that the specification can no longer be reached in this walk. Terminal. */
+        SPECIFICATION_UNREACHABLE(true),
+        /** A backward transition reset the responses; the walk restarts from the first organization. */
+        BACKWARD_TRANSITION(false),
+        /** The walk continues with the next organization. */
+        FORWARD(false);
+
+        private final boolean terminal;
+
+        Step(final boolean terminal) {
+            this.terminal = terminal;
+        }
+
+        public boolean isTerminal() {
+            return terminal;
+        }
+    }
+
+    private final AnalyticsSnapshot analytics;
+    private final CompiledModel model;
+    private final int organizationCount;
+    private final int maxRequestsPerOrganization;
+    private final int maxTotalMessages;
+    private final int[] requestsPerOrganization;
+    private final int[] organizationOrder;
+    private final int[] organizationClasses;
+    private final DecisionTable decisionTable;
+
+    private LongHashSet removedBackwardTransitions = null;
+    private long stateKey = StateKeys.INITIAL;
+    private int currentOrganization;
+    private int answeredCount = 0;
+    private int messageCount = 0;
+    private boolean backwardTransitionRemoved = false;
+
+    /**
+     * Create a state machine positioned at the first organization with no responses.
+     * @param analytics Analytics containing the organizations and specification.
+     * @param model Model to follow.
+     * @param maxRequestsPerOrganization Number of requests to an organization after which its backward transitions
+     *                                   are no longer followed.
+     * @param maxTotalMessages Index of the last message that may be sent, counting from zero.
+     */
+    public AgreementStateMachine(final AnalyticsSnapshot analytics, final CompiledModel model,
+                                 final int maxRequestsPerOrganization, final int maxTotalMessages) {
+        this(analytics, model, maxRequestsPerOrganization, maxTotalMessages, null);
+    }
+
+    /**
+     * Create a state machine that visits organizations in an order close to the given preference instead of the
+     * order of the analytics file. Specification and backward transition states are those reached by asking
+     * organizations in analytics file order, so an organization is only moved to the position of another that the
+     * model treats alike, as given by {@link AnalyticsSnapshot#getInterchangeableClasses(CompiledModel)}. Each
+     * position is given the most preferred organization of its class that has not yet been placed; when no two
+     * organizations are interchangeable, the analytics file order is used.
+     * @param analytics Analytics containing the organizations and specification.
+     * @param model Model to follow.
+     * @param maxRequestsPerOrganization Number of requests to an organization after which its backward transitions
+     *                                   are no longer followed.
+     * @param maxTotalMessages Index of the last message that may be sent, counting from zero.
+     * @param organizationOrder Permutation of organization indexes in order of preference, or null to use the
+     *                          analytics file order.
+     */
+    public AgreementStateMachine(final AnalyticsSnapshot analytics, final CompiledModel model,
+                                 final int maxRequestsPerOrganization, final int maxTotalMessages,
+                                 final int[] organizationOrder) {
+        this(analytics, model, maxRequestsPerOrganization, maxTotalMessages, organizationOrder, null);
+    }
+
+    /**
+     * Create a state machine that chooses the next organization from a precomputed decision table. The organization
+     * order is used for states that are not in the table, and as a guess at which organizations will be asked later.
+     * @param analytics Analytics containing the organizations and specification.
+     * @param model Model to follow.
+     * @param maxRequestsPerOrganization Number of requests to an organization after which its backward transitions
+     *                                   are no longer followed.
+     * @param maxTotalMessages Index of the last message that may be sent, counting from zero.
+     * @param organizationOrder Permutation of organization indexes in order of preference, or null to use the
+     *                          analytics file order.
+     * @param decisionTable Table compiled for the model, or null to follow the organization order.
+     */
+    public AgreementStateMachine(final AnalyticsSnapshot analytics, final CompiledModel model,
+                                 final int maxRequestsPerOrganization, final int maxTotalMessages,
+                                 final int[] organizationOrder, final DecisionTable decisionTable) {
+        this.analytics = analytics;
+        this.model = model;
+        this.organizationCount = analytics.getOrganizationCount();
+        this.maxRequestsPerOrganization = maxRequestsPerOrganization;
+        this.maxTotalMessages = maxTotalMessages;
+        this.requestsPerOrganization = new int[organizationCount];
+
+        if (organizationCount == 0) {
+            throw new IllegalArgumentException("Model has no organizations");
+        }
+
+        this.organizationClasses = analytics.getInterchangeableClasses(model);
+        if (organizationOrder != null) {
+            checkPermutation(organizationOrder, organizationCount);
+            this.organizationOrder = fitToClasses(organizationOrder, organizationClasses);
+        } else {
+            this.organizationOrder = identity(organizationCount);
+        }
+        this.decisionTable = decisionTable;
+        this.currentOrganization = this.organizationOrder[0];
+        applyDecision();
+    }
+
+    private static int[] identity(final int size) {
+        int[] order = new int[size];
+        for (int i = 0; i < size; i++) {
+            order[i] = i;
+        }
+        return order;
+    }
+
+    private static int[] fitToClasses(final int[] preferredOrder, final int[] classes) {
+        int[] order = new int[preferredOrder.length];
+        boolean[] placed = new boolean[preferredOrder.length];
+        for (int position = 0; position < order.length; position++) {
+            for (int organization : preferredOrder) {
+                if (!placed[organization] && classes[organization] == classes[position]) {
+                    order[position] = organization;
+                    placed[organization] = true;
+                    break;
+                }
+            }
+        }
+        return order;
+    }
+
+    private static void checkPermutation(final int[] order, final int size) {
+        if (order.length != size) {
+            throw new IllegalArgumentException("Organization order has " + order.length + " entries but model has "
+                    + size + " organizations");
+        }
+        boolean[] seen = new boolean[size];
+        for (int organization : order) {
+            if (organization < 0 || organization >= size || seen[organization]) {
+                throw new IllegalArgumentException("Organization order is not a permutation: " + organization);
+            }
+            seen[organization] = true;
+        }
+    }
+
+    /**
+     * Index of the organization to which the next proposal should be sent.
+     * @return An organization index.
+     */
+    public int getCurrentOrganization() {
+        return currentOrganization;
+    }
+
+    /**
+     * Number of organizations that have replied since the walk last started from the beginning. This is also the
+     * position of the current organization in the visiting order.
+     * @return Position in the visiting order.
+     */
+    public int getPosition() {
+        return answeredCount;
+    }
+
+    /**
+     * Organization visited at a given position in the visiting order.
+     * @param position Position, from zero to one less than the organization count.
+     * @return An organization index.
+     */
+    public int getOrganizationAt(final int position) {
+        return organizationOrder[position];
+    }
+
+    /**
+     * Check whether the organization at a later position in the visiting order can be asked in place of the current
+     * one. The organizations must be interchangeable in the model, so that exchanging them reaches the same states.
+     * @param position Position in the visiting order.
+     * @return true if {@link #swapWithPosition(int)} would accept the position.
+     */
+    public boolean canSwapWithPosition(final int position) {
+        return position > answeredCount && position < organizationCount
+                && organizationClasses[organizationOrder[position]] == organizationClasses[currentOrganization];
+    }
+
+    /**
+     * Ask a later organization in the visiting order before the current one, for example because the current
+     * organization cannot be sent a request right now. The two organizations exchange positions, so the current
+     * organization is still asked later in this walk.
+     * @param position Position of an organization that has not yet replied in this walk and is interchangeable with
+     *                 the current organization, as checked by {@link #canSwapWithPosition(int)}.
+     */
+    public void swapWithPosition(final int position) {
+        if (position <= answeredCount || position >= organizationCount) {
+            throw new IllegalArgumentException("Position " + position + " is not after the current position "
+                    + answeredCount);
+        }
+        if (!canSwapWithPosition(position)) {
+            throw new IllegalArgumentException("Organization " + organizationOrder[position]
+                    + " is not interchangeable with organization " + currentOrganization);
+        }
+
+        organizationOrder[answeredCount] = organizationOrder[position];
+        organizationOrder[position] = currentOrganization;
+        currentOrganization = organizationOrder[answeredCount];
+    }
+
+    /**
+     * Record the reply of the current organization and advance to the next state.
+     * @param reply 1 if the organization approved; otherwise 0.
+     * @return The resulting step.
+     */
+    public Step onReply(final int reply) {
+        final int organization = currentOrganization;
+        final int requestsBefore = requestsPerOrganization[organization]++;
+        final int messageIndex = messageCount++;
+
+        stateKey = StateKeys.withResponse(stateKey, organization, reply);
+        answeredCount++;
+
+        boolean backward = isBackwardTransition(stateKey);
+        backwardTransitionRemoved = backward && requestsBefore >= maxRequestsPerOrganization;
+        if (backwardTransitionRemoved) {
+            // Only for this transaction; the compiled model is shared
+            removeBackwardTransition(stateKey);
+            backward = false;
+        }
+
+        if (analytics.isSpecification(stateKey)) {
+            return Step.AGREEMENT_REACHED;
+        } else if (messageIndex == maxTotalMessages) {
+            return Step.MAX_MESSAGES_SENT;
+        } else if (backward && reply != 1) {
+            stateKey = StateKeys.INITIAL;
+            answeredCount = 0;
+            currentOrganization = organizationOrder[0];
+            applyDecision();
+            return Step.BACKWARD_TRANSITION;
+        } else if (answeredCount == organizationCount) {
+            return Step.END_OF_TREE;
+        }
+
+        currentOrganization = organizationOrder[answeredCount];
+        return applyDecision() ? Step.FORWARD : Step.SPECIFICATION_UNREACHABLE;
+    }
+
+    /**
+     * Move the organization chosen by the decision table for the current state to the current position, if it is
+     * interchangeable with the current organization. Tables from {@link DecisionTableCompiler} only choose such
+     * organizations; any other decision is ignored and the organization order is followed instead.
+     * @return false if the table shows that the specification cannot be reached from the current state.
+     */
+    private boolean applyDecision() {
+        if (decisionTable == null) {
+            return true;
+        }
+
+        int decision = decisionTable.nextOrganization(stateKey);
+        if (decision == DecisionTable.GIVE_UP) {
+            return false;
+        }
+        if (decision == DecisionTable.UNKNOWN || decision == currentOrganization) {
+            return true;
+        }
+
+        for (int position = answeredCount + 1; position < organizationCount; position++) {
+            if (organizationOrder[position] == decision) {
+                if (canSwapWithPosition(position)) {
+                    swapWithPosition(position);
+                } else if (LOG.isDebugEnabled()) {
+                    LOG.debug("Ignoring decision table choice of organization " + decision
+                            + ", which is not interchangeable with organization " + currentOrganization);
+                }
+                break;
+            }
+        }
+        return true;
+    }
+
+    private boolean isBackwardTransition(final long key) {
+        return model.isBackwardTransition(key)
+                && (removedBackwardTransitions == null || !removedBackwardTransitions.contains(key));
+    }
+
+    private void removeBackwardTransition(final long key) {
+        if (removedBackwardTransitions == null) {
+            removedBackwardTransitions = new LongHashSet();
+        }
+        removedBackwardTransitions.add(key);
+    }
+
+    /**
+     * Whether the last reply hit a backward transition that was removed because the organization had reached its
+     * maximum number of requests.
+     * @return true if a backward transition was removed.
+     */
+    public boolean isBackwardTransitionRemoved() {
+        return backwardTransitionRemoved;
+    }
+
+    /**
+     * Packed response vector of the current state.
+     * @return A state key.
+     */
+    public long getStateKey() {
+        return stateKey;
+    }
+
+    /**
+     * Total number of replies recorded.
+     * @return Message count.
+     */
+    public int getMessageCount() {
+        return messageCount;
+    }
+
+    /**
+     * Number of replies recorded for a given organization.
+     * @param organization Organization index.
+     * @return Request count.
+     */
+    public int getRequestCount(final int organization) {
+        return requestsPerOrganization[organization];
+    }
+
+    public int getOrganizationCount() {
+        return organizationCount;
+    }
+
+    public CompiledModel getModel() {
+        return model;
+    }
+
+    @Override
+    public String toString() {
+        return GatewayUtils.toString(this,
+                "modelId=" + model.getId(),
+                "currentOrganization=" + currentOrganization,
+                "messageCount=" + messageCount);
+    }
+}
@@ -0,0 +1,191 @@
+/*
+ * Copyright 2019 IBM All Rights Reserved.
+ *
+ * SPDX-License-Identifier: Apache-2.0
+ */
+
+package org.hyperledger.fabric.gateway.impl.model;
+
+import java.nio.file.attribute.BasicFileAttributes;
+import java.nio.file.attribute.FileTime;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+import org.hyperledger.fabric.gateway.impl.GatewayUtils;
+
+/**
+ * Immutable view of a parsed model-checker analytics file, with the models it contains indexed by ID and the
+ * specification compiled to packed state keys.
+ */
+public final class AnalyticsSnapshot {
+    private final FileTime lastModified;
+    private final long size;
+    private final List<String> organizations;
+    private final StateKeySet specification;
+    private final Map<Integer, CompiledModel> models;
+    private final boolean complete;
+    private final Map<CompiledModel, int[]> interchangeableClasses = new ConcurrentHashMap<>();
+
+    AnalyticsSnapshot(final BasicFileAttributes attributes,
+                      final List<String> organizations,
+                      final StateKeySet specification,
+                      final Map<Integer, CompiledModel> models) {
+        this(attributes.lastModifiedTime(), attributes.size(), Collections.unmodifiableList(organizations),
+                specification, models, true);
+    }
+
+    private AnalyticsSnapshot(final FileTime lastModified,
+                              final long size,
+                              final List<String> organizations,
+                              final StateKeySet specification,
+                              final Map<Integer, CompiledModel> models,
+                              final boolean complete) {
+        this.lastModified = lastModified;
+        this.size = size;
+        this.organizations = organizations;
+        this.specification = specification;
+        this.models = Collections.unmodifiableMap(models);
+        this.complete = complete;
+    }
+
+    /**
+     * Create a snapshot holding only some of the models in the file.
+     * @param attributes Attributes of the analytics file.
+     * @param organizations Organizations in the file.
+     * @param specification Compiled specification.
+     * @param model A model, or null if none were loaded.
+     * @return A partial snapshot.
+     */
+    static AnalyticsSnapshot partial(final BasicFileAttributes attributes,
+                                     final List<String> organizations,
+                                     final StateKeySet specification,
+                                     final CompiledModel model) {
+        Map<Integer, CompiledModel> models = new HashMap<>();
+        if (model != null) {
+            models.put(model.getId(), model);
+        }
+        return new AnalyticsSnapshot(attributes.lastModifiedTime(), attributes.size(),
+                Collections.unmodifiableList(organizations), specification, models, false);
+    }
+
+    /**
+     * Create a partial snapshot of the same file with an additional model.
+     * @param model A model loaded from the same file.
+     * @return A new snapshot.
+     */
+    AnalyticsSnapshot withModel(final CompiledModel model) {
+        Map<Integer, CompiledModel> merged = new HashMap<>(models);
+        merged.putIfAbsent(model.getId(), model);
+        return new AnalyticsSnapshot(lastModified, size, organizations, specification, merged, false);
+    }
+
+    /**
+     * Whether this snapshot holds every model in the file, rather than only the models that have been requested.
+     * @return true if all models were loaded.
+     */
+    boolean isComplete() {
+        return complete;
+    }
+
+    /**
+     * Check whether this snapshot still reflects the file with the given attributes.
+     * @param attributes Current attributes of the analytics file.
+     * @return true if the file has not changed since the snapshot was loaded.
+     */
+    boolean isCurrent(final BasicFileAttributes attributes) {
+        return lastModified.equals(attributes.lastModifiedTime()) && size == attributes.size();
+    }
+
+    public List<String> getOrganizations() {
+        return organizations;
+    }
+
+    public int getOrganizationCount() {
+        return organizations.size();
+    }
+
+    /**
+     * Check whether a response state satisfies the specification, meaning agreement is reached.
+     * @param stateKey Packed response vector.
+     * @return true if the state is in the specification.
+     */
+    public boolean isSpecification(final long stateKey) {
+        return specification.contains(stateKey);
+    }
+
+    /**
+     * Group organizations that a model treats alike. Specification and backward transition states are the states a
+     * walk reaches when asking organizations in analytics file order, so they depend on that order. Two organizations
+     * are interchangeable if exchanging their responses maps both the specification and the model's backward
+     * transitions onto themselves; asking one in the other's place then reaches the same states up to that exchange.
+     * The relation is an equivalence, so organizations may be reordered freely within a class.
+     * @param model A model of this analytics file.
+     * @return Class of each organization, as the index of the first organization in the same class.
+     */
+    public int[] getInterchangeableClasses(final CompiledModel model) {
+        return interchangeableClasses.computeIfAbsent(model, this::computeInterchangeableClasses).clone();
+    }
+
+    private int[] computeInterchangeableClasses(final CompiledModel model) {
+        return computeInterchangeableClasses(organizations.size(), specification, model);
+    }
+
+    /**
+     * Group organizations that a model treats alike, as described for
+     * {@link #getInterchangeableClasses(CompiledModel)}.
+     * @param organizationCount Number of organizations.
+     * @param specification Compiled specification.
+     * @param model A model with the same organizations.
+     * @return Class of each organization, as the index of the first organization in the same class.
+     */
+    static int[] computeInterchangeableClasses(final int organizationCount, final StateKeySet specification,
+                                               final CompiledModel model) {
+        int[] classes = new int[organizationCount];
+        for (int organization = 0; organization < organizationCount; organization++) {
+            classes[organization] = organization;
+            // If an organization cannot be exchanged with the first member of a class, it cannot be exchanged with
+            // any other member either, since that exchange would compose with exchanges inside the class
+            for (int first = 0; first < organization; first++) {
+                if (classes[first] == first && isSwapInvariant(first, organization, specification, model)) {
+                    classes[organization] = first;
+                    break;
+                }
+            }
+        }
+        return classes;
+    }
+
+    private static boolean isSwapInvariant(final int first, final int second, final StateKeySet specification,
+                                           final CompiledModel model) {
+        StateKeySet backwardTransitions = model.getBackwardTransitions();
+        return specification.allMatch(key -> specification.contains(StateKeys.swap(key, first, second)))
+                && backwardTransitions.allMatch(key ->
+                        backwardTransitions.contains(StateKeys.swap(key, first, second)));
+    }
+
+    /**
+     * Get a model by its ID.
+     * @param modelId A model ID.
+     * @return The model, or null if the analytics file contains no model with that ID.
+     */
+    public CompiledModel getModel(final int modelId) {
+        return models.get(modelId);
+    }
+
+    Collection<CompiledModel> getModels() {
+        return models.values();
+    }
+
+    @Override
+    public String toString() {
+        return GatewayUtils.toString(this,
+                "lastModified=" + lastModified,
+                "organizations=" + organizations,
+                "modelIds=" + models.keySet(),
+                "complete=" + complete);
+    }
+}
@@ -0,0 +1,194 @@
+/*
+ * Copyright 2019 IBM All Rights Reserved.
+ *
+ * SPDX-License-Identifier: Apache-2.0
+ */
+
+package org.hyperledger.fabric.gateway.impl.model;
+
+import java.io.IOException;
+import java.nio.file.ClosedWatchServiceException;
+import java.nio.file.Path;
+import java.nio.file.StandardWatchEventKinds;
+import java.nio.file.WatchEvent;
+import java.nio.file.WatchKey;
+import java.nio.file.WatchService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
+
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+import org.hyperledger.fabric.gateway.impl.GatewayUtils;
+
+/**
+ * Watches an analytics file and publishes new versions of its models as they are written, so that endorsements never
+ * read or parse the file themselves. Changes are detected with a {@link WatchService} on the directory containing the
+ * file. Once the file has been quiet for a short period, the new version is loaded and validated on the watcher thread
+ * and then published by swapping a single reference. A version that fails to load, for example because it is still
+ * being written, is ignored and the current version stays in use.
+ * <p>
+ * A new version is published only if a model was added or removed, the organizations changed, or a model has a newer
+ * epoch timestamp. A file in which any model has an older epoch timestamp than the published version is rejected as
+ * stale. Endorsements already in progress keep the models they started with.
+ * </p>
+ * <p>
+ * This implementation is thread-safe.
+ * </p>
+ */
+public final class AnalyticsWatcher implements AutoCloseable {
+    private static final Log LOG = LogFactory.getLog(AnalyticsWatcher.class);
+    static final long DEFAULT_QUIET_PERIOD_MILLIS = 200;
+
+    private final ModelRegistry registry;
+    private final Path path;
+    private final long quietPeriodMillis;
+    private final WatchService watchService;
+    private final AtomicReference<AnalyticsSnapshot> current;
+    private final AtomicLong publishedCount = new AtomicLong(0);
+    private final AtomicLong rejectedCount = new AtomicLong(0);
+    private final Thread thread;
+
+    AnalyticsWatcher(final ModelRegistry registry, final Path path, final AnalyticsSnapshot initial,
+                     final long quietPeriodMillis) throws IOException {
+        this.registry = registry;
+        this.path = path;
+        this.quietPeriodMillis = quietPeriodMillis;
+        this.current = new AtomicReference<>(initial);
+
+        watchService = path.getFileSystem().newWatchService();
+        path.getParent().register(watchService, StandardWatchEventKinds.ENTRY_CREATE,
+                StandardWatchEventKinds.ENTRY_MODIFY);
+
+        thread = new Thread(this::watch, "model-analytics-watcher");
+        thread.setDaemon(true);
+        thread.start();
+    }
+
+    /**
+     * Get the published version of the analytics file.
+     * @return Parsed analytics.
+     */
+    public AnalyticsSnapshot getSnapshot() {
+        return current.get();
+    }
+
+    public Path getPath() {
+        return path;
+    }
+
+    /**
+     * Number of new versions published since the watcher started.
+     * @return Published version count.
+     */
+    public long getPublishedCount() {
+        return publishedCount.get();
+    }
+
+    /**
+     * Number of changes to the file that could not be loaded or were rejected as stale.
+     * @return Rejected version count.
+     */
+    public long getRejectedCount() {
+        return rejectedCount.get();
+    }
+
+    private void watch() {
+        boolean changed = false;
+        try {
+            while (true) {
+                // Wait for the file to be quiet before reading it
+                WatchKey key = changed
+                        ? watchService.poll(quietPeriodMillis, TimeUnit.MILLISECONDS)
+                        : watchService.take();
+                if (key == null) {
+                    changed = false;
+                    reload();
+                    continue;
+                }
+
+                changed |= isAnalyticsChange(key);
+                key.reset();
+            }
+        } catch (ClosedWatchServiceException e) {
+            LOG.debug("Stopped watching " + path);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private boolean isAnalyticsChange(final WatchKey key) {
+        boolean changed = false;
+        for (WatchEvent<?> event : key.pollEvents()) {
+            if (event.kind() == StandardWatchEventKinds.OVERFLOW || path.getFileName().equals(event.context())) {
+                changed = true;
+            }
+        }
+        return changed;
+    }
+
+    /**
+     * Load the file and publish it if it is a newer version.
+     */
+    void reload() {
+        AnalyticsSnapshot previous = current.get();
+        AnalyticsSnapshot candidate;
+        try {
+            candidate = registry.reload(path, previous);
+        } catch (IOException e) {
+            rejectedCount.incrementAndGet();
+            LOG.warn("Keeping current models, failed to load analytics file " + path, e);
+            return;
+        }
+
+        if (candidate == previous || !isNewerVersion(candidate, previous)) {
+            return;
+        }
+        if (current.compareAndSet(previous, candidate)) {
+            publishedCount.incrementAndGet();
+            LOG.info("Published new models from analytics file " + path + ": " + candidate);
+        }
+    }
+
+    private boolean isNewerVersion(final AnalyticsSnapshot candidate, final AnalyticsSnapshot previous) {
+        boolean changed = !candidate.getOrganizations().equals(previous.getOrganizations())
+                || candidate.getModels().size() != previous.getModels().size();
+
+        for (CompiledModel model : candidate.getModels()) {
+            CompiledModel published = previous.getModel(model.getId());
+            if (published == null || model.getEpochTimestamp() > published.getEpochTimestamp()) {
+                changed = true;
+            } else if (model.getEpochTimestamp() < published.getEpochTimestamp()) {
+                rejectedCount.incrementAndGet();
+                LOG.warn("Ignoring stale analytics file " + path + ": model " + model.getId()
+                        + " has epoch timestamp " + model.getEpochTimestamp() + " but "
+                        + published.getEpochTimestamp() + " is already published");
+                return false;
+            }
+        }
+        return changed;
+    }
+
+    /**
+     * Stop watching the file. Endorsements then read the file directly again.
+     * @throws IOException if the watch service cannot be closed.
+     */
+    @Override
+    public void close() throws IOException {
+        registry.unwatch(this);
+        watchService.close();
+        try {
+            thread.join();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    @Override
+    public String toString() {
+        return GatewayUtils.toString(this,
+                "path=" + path,
+                "published=" + publishedCount.get(),
+                "rejected=" + rejectedCount.get());
+    }
+}
@@ -0,0 +1,107 @@
+/*
+ * Copyright 2019 IBM All Rights Reserved.
+ *
+ * SPDX-License-Identifier: Apache-2.0
+ */
+
+package org.hyperledger.fabric.gateway.impl.model;
+
+import java.util.Set;
+
+import org.hyperledger.fabric.gateway.impl.GatewayUtils;
+import org.hyperledger.fabric.gateway.impl.SendingConfirmationServiceImpl.ModelCheckResult;
+
+/**
+ * A model-checker result compiled for matching at runtime, with its backward transitions held as packed state keys.
+ * Instances are immutable and may be shared between threads.
+ */
+public final class CompiledModel {
+    private final int id;
+    private final double probability;
+    private final double expectedMessages;
+    private final long epochTimestamp;
+    private final StateKeySet backwardTransitions;
+
+    /**
+     * Compile a model parsed from an analytics file.
+     * @param result Parsed model.
+     * @param organizationCount Number of organizations in each response vector.
+     * @return Compiled model.
+     * @throws IllegalArgumentException if the model contains an invalid response vector.
+     */
+    public static CompiledModel compile(final ModelCheckResult result, final int organizationCount) {
+        return new CompiledModel(result.getId(), result.getProbability(), result.getExpectedMessages(),
+                result.getEpochTimestamp(), compileVectors(result.getBackwardTransitions(), organizationCount));
+    }
+
+    /**
+     * Compile a set of response vectors into packed state keys.
+     * @param vectors Response vectors.
+     * @param organizationCount Expected length of each vector.
+     * @return Packed state keys.
+     * @throws IllegalArgumentException if any vector has the wrong length or an invalid response value.
+     */
+    public static LongHashSet compileVectors(final Set<int[]> vectors, final int organizationCount) {
+        if (vectors == null) {
+            return new LongHashSet();
+        }
+
+        LongHashSet keys = new LongHashSet(vectors.size());
+        for (int[] vector : vectors) {
+            if (vector.length != organizationCount) {
+                throw new IllegalArgumentException("Expected response vector of length " + organizationCount
+                        + " but was " + vector.length);
+            }
+            keys.add(StateKeys.encode(vector));
+        }
+        return keys;
+    }
+
+    CompiledModel(final int id, final double probability, final double expectedMessages, final long epochTimestamp,
+                  final StateKeySet backwardTransitions) {
+        this.id = id;
+        this.probability = probability;
+        this.expectedMessages = expectedMessages;
+        this.epochTimestamp = epochTimestamp;
+        this.backwardTransitions = backwardTransitions;
+    }
+
+    public int getId() {
+        return id;
+    }
+
+    public double getProbability() {
+        return probability;
+    }
+
+    public double getExpectedMessages() {
+        return expectedMessages;
+    }
+
+    public long getEpochTimestamp() {
+        return epochTimestamp;
+    }
+
+    /**
+     * Check whether a response state has a backward transition in this model.
+     * @param stateKey Packed response vector.
+     * @return true if a backward transition exists for the state.
+     */
+    public boolean isBackwardTransition(final long stateKey) {
+        return backwardTransitions.contains(stateKey);
+    }
+
+    StateKeySet getBackwardTransitions() {
+        return backwardTransitions;
+    }
+
+    @Override
+    public String toString() {
+        return GatewayUtils.toString(this,
+                "id=" + id,
+                "epochTimestamp=" + epochTimestamp,
+                "probability=" + probability,
+                "expectedMessages=" + expectedMessages,
+                "backwardTransitions=" + backwardTransitions.size());
+    }
+}
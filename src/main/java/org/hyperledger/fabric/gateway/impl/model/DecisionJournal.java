@@ -0,0 +1,303 @@
+/*
+ * Copyright 2019 IBM All Rights Reserved.
+ *
+ * SPDX-License-Identifier: Apache-2.0
+ */
+
+package org.hyperledger.fabric.gateway.impl.model;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.locks.LockSupport;
+
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+import org.hyperledger.fabric.gateway.impl.GatewayUtils;
+
+/**
+ * Binary journal of model-based endorsement decisions, kept as an audit trail and for recalibrating models.
+ * <p>
+ * Each decision is a fixed-size record placed in a preallocated ring buffer, so recording one does not allocate,
+ * format text or perform I/O. A background thread drains the ring buffer to a journal file, which is rolled once it
+ * reaches a maximum size. If the ring buffer is full because the drain thread has fallen behind, new records are
+ * dropped and counted rather than blocking the endorsement. Journal files are decoded with
+ * {@link DecisionJournalReader}.
+ * </p>
+ * <p>
+ * A journal file starts with a header of magic number, format version, record size, wall-clock time in milliseconds
+ * and the corresponding {@link System#nanoTime()} value. Each record then holds, big-endian: timestamp (nanoTime),
+ * transaction ID hash, reply latency in nanoseconds, message count, organization index, reply and step.
+ * </p>
+ * <p>
+ * This implementation is thread-safe.
+ * </p>
+ */
+public final class DecisionJournal implements AutoCloseable {
+    private static final Log LOG = LogFactory.getLog(DecisionJournal.class);
+
+    static final int MAGIC = 0x464D444A; // "FMDJ"
+    static final int VERSION = 1;
+    static final int HEADER_SIZE = Integer.BYTES * 3 + Long.BYTES * 2;
+    static final int RECORD_SIZE = Long.BYTES * 3 + Integer.BYTES + Short.BYTES + Byte.BYTES * 2;
+    /** Name of the journal file being written; rolled files have a numeric suffix. */
+    public static final String FILE_NAME = "decisions.journal";
+
+    private static final int LONGS_PER_RECORD = 4;
+    private static final long DRAIN_INTERVAL_NANOS = TimeUnit.MILLISECONDS.toNanos(10);
+    private static final int RECORDS_PER_WRITE = 1024;
+
+    private final Path directory;
+    private final long maxFileBytes;
+    private final int maxFiles;
+    private final int capacity;
+    private final int mask;
+    private final long[] slots;
+    private final AtomicLongArray published;
+    private final AtomicLong head = new AtomicLong(0);
+    private final AtomicLong dropped = new AtomicLong(0);
+    private volatile long tail = 0;
+    private volatile boolean running = true;
+    private final Thread drainThread;
+
+    // Used only by the drain thread
+    private final ByteBuffer writeBuffer = ByteBuffer.allocate(RECORD_SIZE * RECORDS_PER_WRITE);
+    private FileChannel file;
+    private long fileBytes;
+
+    /**
+     * Open a journal and start the thread that drains it to disk.
+     * @param directory Directory for journal files, which is created if necessary.
+     * @param capacity Number of records the ring buffer holds, rounded up to a power of two.
+     * @param maxFileBytes Size at which the journal file is rolled.
+     * @param maxFiles Number of journal files to keep, including the one being written.
+     * @throws IOException if the journal file cannot be created.
+     */
+    public DecisionJournal(final Path directory, final int capacity, final long maxFileBytes, final int maxFiles)
+            throws IOException {
+        if (capacity < 1 || capacity > 1 << 24) {
+            throw new IllegalArgumentException("Capacity must be between 1 and 2^24: " + capacity);
+        }
+        if (maxFileBytes < HEADER_SIZE + RECORD_SIZE) {
+            throw new IllegalArgumentException("Maximum file size too small: " + maxFileBytes);
+        }
+        if (maxFiles < 1) {
+            throw new IllegalArgumentException("Maximum file count must be at least 1: " + maxFiles);
+        }
+
+        this.directory = directory;
+        this.maxFileBytes = maxFileBytes;
+        this.maxFiles = maxFiles;
+        int roundedCapacity = 1;
+        while (roundedCapacity < capacity) {
+            roundedCapacity <<= 1;
+        }
+        this.capacity = roundedCapacity;
+        this.mask = this.capacity - 1;
+        this.slots = new long[this.capacity * LONGS_PER_RECORD];
+        this.published = new AtomicLongArray(this.capacity);
+
+        Files.createDirectories(directory);
+        openFile();
+
+        drainThread = new Thread(this::drainLoop, "model-decision-journal");
+        drainThread.setDaemon(true);
+        drainThread.start();
+    }
+
+    /**
+     * Hash a transaction ID for inclusion in a record, using 64-bit FNV-1a over its characters.
+     * @param transactionId A transaction ID, or null.
+     * @return Hash of the transaction ID, or zero if it is null.
+     */
+    public static long hash(final String transactionId) {
+        if (transactionId == null) {
+            return 0;
+        }
+
+        long hash = 0xcbf29ce484222325L;
+        for (int i = 0; i < transactionId.length(); i++) {
+            hash ^= transactionId.charAt(i);
+            hash *= 0x100000001b3L;
+        }
+        return hash;
+    }
+
+    /**
+     * Record a decision. Does not block or allocate.
+     * @param transactionHash Hash of the transaction ID, from {@link #hash(String)}.
+     * @param organization Index of the organization that replied.
+     * @param reply 1 for approval, 0 for rejection, or -1 if the organization did not reply in time.
+     * @param step Resulting step of the state machine.
+     * @param messageCount Number of replies recorded for the transaction, including this one.
+     * @param latencyNanos Reply latency.
+     * @return false if the record was dropped because the ring buffer is full or the journal is closed.
+     */
+    public boolean record(final long transactionHash, final int organization, final int reply,
+                          final AgreementStateMachine.Step step, final int messageCount, final long latencyNanos) {
+        if (!running) {
+            return false;
+        }
+
+        long sequence;
+        do {
+            sequence = head.get();
+            if (sequence - tail >= capacity) {
+                dropped.incrementAndGet();
+                return false;
+            }
+        } while (!head.compareAndSet(sequence, sequence + 1));
+
+        int index = (int) sequence & mask;
+        int base = index * LONGS_PER_RECORD;
+        slots[base] = System.nanoTime();
+        slots[base + 1] = transactionHash;
+        slots[base + 2] = latencyNanos;
+        slots[base + 3] = ((long) messageCount << 32)
+                | ((organization & 0xFFFFL) << 16)
+                | ((reply & 0xFFL) << 8)
+                | (step.ordinal() & 0xFFL);
+        // Publish after the slot is written; the drain thread reads the slot only once it sees this sequence
+        published.lazySet(index, sequence + 1);
+        return true;
+    }
+
+    /**
+     * Number of records dropped because the ring buffer was full.
+     * @return Dropped record count.
+     */
+    public long getDroppedCount() {
+        return dropped.get();
+    }
+
+    private void drainLoop() {
+        while (running) {
+            try {
+                if (drain() == 0) {
+                    LockSupport.parkNanos(DRAIN_INTERVAL_NANOS);
+                }
+            } catch (IOException e) {
+                LOG.error("Failed to write decision journal", e);
+                LockSupport.parkNanos(DRAIN_INTERVAL_NANOS);
+            }
+        }
+    }
+
+    private int drain() throws IOException {
+        long sequence = tail;
+        int count = 0;
+        writeBuffer.clear();
+
+        while (count < RECORDS_PER_WRITE) {
+            int index = (int) sequence & mask;
+            if (published.get(index) != sequence + 1) {
+                break;
+            }
+
+            int base = index * LONGS_PER_RECORD;
+            long packed = slots[base + 3];
+            writeBuffer.putLong(slots[base])
+                    .putLong(slots[base + 1])
+                    .putLong(slots[base + 2])
+                    .putInt((int) (packed >>> 32))
+                    .putShort((short) (packed >>> 16))
+                    .put((byte) (packed >>> 8))
+                    .put((byte) packed);
+            sequence++;
+            count++;
+        }
+        // Slots may be reused as soon as the tail moves past them
+        tail = sequence;
+
+        if (count > 0) {
+            writeBuffer.flip();
+            if (fileBytes + writeBuffer.remaining() > maxFileBytes) {
+                roll();
+            }
+            while (writeBuffer.hasRemaining()) {
+                fileBytes += file.write(writeBuffer);
+            }
+        }
+        return count;
+    }
+
+    private void openFile() throws IOException {
+        file = FileChannel.open(directory.resolve(FILE_NAME), StandardOpenOption.CREATE,
+                StandardOpenOption.TRUNCATE_EXISTING, StandardOpenOption.WRITE);
+
+        ByteBuffer header = ByteBuffer.allocate(HEADER_SIZE)
+                .putInt(MAGIC)
+                .putInt(VERSION)
+                .putInt(RECORD_SIZE)
+                .putLong(System.currentTimeMillis())
+                .putLong(System.nanoTime());
+        header.flip();
+        while (header.hasRemaining()) {
+            file.write(header);
+        }
+        fileBytes = HEADER_SIZE;
+    }
+
+    private void roll() throws IOException {
+        file.close();
+
+        // With a single file, the current file is simply truncated when reopened
+        if (maxFiles > 1) {
+            Files.deleteIfExists(rolledFile(maxFiles - 1));
+            for (int i = maxFiles - 2; i >= 1; i--) {
+                Path rolled = rolledFile(i);
+                if (Files.exists(rolled)) {
+                    Files.move(rolled, rolledFile(i + 1), StandardCopyOption.REPLACE_EXISTING);
+                }
+            }
+            Files.move(directory.resolve(FILE_NAME), rolledFile(1), StandardCopyOption.REPLACE_EXISTING);
+        }
+
+        openFile();
+    }
+
+    private Path rolledFile(final int index) {
+        return directory.resolve(FILE_NAME + "." + index);
+    }
+
+    /**
+     * Stop recording, write any records still in the ring buffer and close the journal file.
+     * @throws IOException if the remaining records cannot be written.
+     */
+    @Override
+    public void close() throws IOException {
+        if (!running) {
+            return;
+        }
+        running = false;
+
+        try {
+            drainThread.join();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+
+        try {
+            while (drain() > 0) {
+                // Keep draining
+            }
+        } finally {
+            file.close();
+        }
+    }
+
+    @Override
+    public String toString() {
+        return GatewayUtils.toString(this,
+                "directory=" + directory,
+                "capacity=" + capacity,
+                "dropped=" + dropped.get());
+    }
+}
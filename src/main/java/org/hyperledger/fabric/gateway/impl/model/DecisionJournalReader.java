@@ -0,0 +1,194 @@
+/*
+ * Copyright 2019 IBM All Rights Reserved.
+ *
+ * SPDX-License-Identifier: Apache-2.0
+ */
+
+package org.hyperledger.fabric.gateway.impl.model;
+
+import java.io.BufferedInputStream;
+import java.io.DataInputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.time.Instant;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
+
+import org.hyperledger.fabric.gateway.impl.GatewayUtils;
+
+/**
+ * Decodes journal files written by {@link DecisionJournal}.
+ */
+public final class DecisionJournalReader {
+    private static final AgreementStateMachine.Step[] STEPS = AgreementStateMachine.Step.values();
+
+    /**
+     * A decoded journal record.
+     */
+    public static final class Entry {
+        private final long timestampMillis;
+        private final long transactionHash;
+        private final long latencyNanos;
+        private final int messageCount;
+        private final int organization;
+        private final int reply;
+        private final AgreementStateMachine.Step step;
+
+        Entry(final long timestampMillis, final long transactionHash, final long latencyNanos, final int messageCount,
+              final int organization, final int reply, final AgreementStateMachine.Step step) {
+            this.timestampMillis = timestampMillis;
+            this.transactionHash = transactionHash;
+            this.latencyNanos = latencyNanos;
+            this.messageCount = messageCount;
+            this.organization = organization;
+            this.reply = reply;
+            this.step = step;
+        }
+
+        /**
+         * Wall-clock time at which the decision was recorded.
+         * @return Milliseconds since the epoch.
+         */
+        public long getTimestampMillis() {
+            return timestampMillis;
+        }
+
+        /**
+         * Hash of the transaction ID, comparable with {@link DecisionJournal#hash(String)}.
+         * @return Transaction ID hash.
+         */
+        public long getTransactionHash() {
+            return transactionHash;
+        }
+
+        public long getLatencyNanos() {
+            return latencyNanos;
+        }
+
+        public int getMessageCount() {
+            return messageCount;
+        }
+
+        public int getOrganization() {
+            return organization;
+        }
+
+        /**
+         * Reply of the organization.
+         * @return 1 for approval, 0 for rejection, or -1 if the organization did not reply in time.
+         */
+        public int getReply() {
+            return reply;
+        }
+
+        public AgreementStateMachine.Step getStep() {
+            return step;
+        }
+
+        @Override
+        public String toString() {
+            return GatewayUtils.toString(this,
+                    "timestamp=" + Instant.ofEpochMilli(timestampMillis),
+                    "transactionHash=" + Long.toHexString(transactionHash),
+                    "organization=" + organization,
+                    "reply=" + reply,
+                    "step=" + step,
+                    "messageCount=" + messageCount,
+                    "latencyNanos=" + latencyNanos);
+        }
+    }
+
+    private DecisionJournalReader() { }
+
+    /**
+     * Read every record in a journal file.
+     * @param path Journal file.
+     * @param consumer Receives each record in the order it was written.
+     * @throws IOException if the file cannot be read or is not a journal file.
+     */
+    public static void read(final Path path, final Consumer<Entry> consumer) throws IOException {
+        try (InputStream in = Files.newInputStream(path)) {
+            read(in, consumer);
+        }
+    }
+
+    /**
+     * Read every record from a journal stream.
+     * @param in Journal data, which is not closed.
+     * @param consumer Receives each record in the order it was written.
+     * @throws IOException if the stream cannot be read or does not contain a journal.
+     */
+    public static void read(final InputStream in, final Consumer<Entry> consumer) throws IOException {
+        DataInputStream data = new DataInputStream(new BufferedInputStream(in));
+
+        if (data.readInt() != DecisionJournal.MAGIC) {
+            throw new IOException("Not a decision journal");
+        }
+        int version = data.readInt();
+        if (version != DecisionJournal.VERSION) {
+            throw new IOException("Unsupported decision journal version: " + version);
+        }
+        int recordSize = data.readInt();
+        if (recordSize != DecisionJournal.RECORD_SIZE) {
+            throw new IOException("Unexpected decision journal record size: " + recordSize);
+        }
+        long baseMillis = data.readLong();
+        long baseNanos = data.readLong();
+
+        byte[] record = new byte[DecisionJournal.RECORD_SIZE];
+        ByteBuffer buffer = ByteBuffer.wrap(record);
+        while (true) {
+            try {
+                data.readFully(record);
+            } catch (EOFException e) {
+                // End of journal, possibly with a partly written final record
+                return;
+            }
+
+            buffer.clear();
+            long timestampNanos = buffer.getLong();
+            long transactionHash = buffer.getLong();
+            long latencyNanos = buffer.getLong();
+            int messageCount = buffer.getInt();
+            int organization = buffer.getShort() & 0xFFFF;
+            int reply = buffer.get();
+            int stepCode = buffer.get() & 0xFF;
+            if (stepCode >= STEPS.length) {
+                throw new IOException("Invalid step in decision journal: " + stepCode);
+            }
+
+            long timestampMillis = baseMillis + TimeUnit.NANOSECONDS.toMillis(timestampNanos - baseNanos);
+            consumer.accept(new Entry(timestampMillis, transactionHash, latencyNanos, messageCount, organization,
+                    reply, STEPS[stepCode]));
+        }
+    }
+
+    /**
+     * Print the records of journal files as tab-separated text.
+     * @param args Journal file paths.
+     * @throws IOException if a file cannot be read.
+     */
+    public static void main(final String[] args) throws IOException {
+        if (args.length == 0) {
+            System.err.println("Usage: " + DecisionJournalReader.class.getName() + " <journal>...");
+            System.exit(1);
+        }
+
+        System.out.println("timestamp\ttransactionHash\torganization\treply\tstep\tmessageCount\tlatencyMicros");
+        for (String arg : args) {
+            read(Paths.get(arg), entry -> System.out.println(
+                    Instant.ofEpochMilli(entry.getTimestampMillis())
+                    + "\t" + Long.toHexString(entry.getTransactionHash())
+                    + "\t" + entry.getOrganization()
+                    + "\t" + entry.getReply()
+                    + "\t" + entry.getStep()
+                    + "\t" + entry.getMessageCount()
+                    + "\t" + TimeUnit.NANOSECONDS.toMicros(entry.getLatencyNanos())));
+        }
+    }
+}
@@ -0,0 +1,216 @@
+/*
+ * Copyright 2019 IBM All Rights Reserved.
+ *
+ * SPDX-License-Identifier: Apache-2.0
+ */
+
+package org.hyperledger.fabric.gateway.impl.model;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.node.ArrayNode;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+import org.hyperledger.fabric.gateway.impl.GatewayUtils;
+
+/**
+ * Precomputed visiting policy for a model, produced by {@link DecisionTableCompiler}. For each response state that
+ * can occur during a walk, the table gives the organization to ask next, or {@link #GIVE_UP} if the specification
+ * can no longer be reached from that state. Lookups are a binary search over a sorted array of state keys and do not
+ * allocate.
+ * <p>
+ * This implementation is thread-safe.
+ * </p>
+ */
+public final class DecisionTable {
+    /** Returned for states from which the specification can no longer be reached. */
+    public static final int GIVE_UP = -1;
+    /** Returned for states that are not in the table. */
+    public static final int UNKNOWN = -2;
+
+    private static final ObjectMapper OBJECT_MAPPER = new ObjectMapper();
+
+    private final List<String> organizations;
+    private final int modelId;
+    private final long epochTimestamp;
+    private final double successProbability;
+    private final double expectedMessages;
+    private final long[] stateKeys;
+    private final int[] decisions;
+
+    /**
+     * Create a table.
+     * @param organizations Organizations of the model.
+     * @param modelId ID of the model.
+     * @param epochTimestamp Timestamp of the model, used to detect tables compiled for an older model.
+     * @param successProbability Probability that a walk following the table reaches the specification.
+     * @param expectedMessages Expected number of messages in a walk following the table.
+     * @param stateKeys State keys in ascending order.
+     * @param decisions Decision for the state key at the same index.
+     */
+    DecisionTable(final List<String> organizations, final int modelId, final long epochTimestamp,
+                  final double successProbability, final double expectedMessages,
+                  final long[] stateKeys, final int[] decisions) {
+        if (stateKeys.length != decisions.length) {
+            throw new IllegalArgumentException("Expected " + stateKeys.length + " decisions but was "
+                    + decisions.length);
+        }
+        for (int i = 1; i < stateKeys.length; i++) {
+            if (stateKeys[i - 1] >= stateKeys[i]) {
+                throw new IllegalArgumentException("State keys are not in ascending order");
+            }
+        }
+        for (int decision : decisions) {
+            if (decision < GIVE_UP || decision >= organizations.size()) {
+                throw new IllegalArgumentException("Invalid decision: " + decision);
+            }
+        }
+
+        this.organizations = Collections.unmodifiableList(new ArrayList<>(organizations));
+        this.modelId = modelId;
+        this.epochTimestamp = epochTimestamp;
+        this.successProbability = successProbability;
+        this.expectedMessages = expectedMessages;
+        this.stateKeys = stateKeys;
+        this.decisions = decisions;
+    }
+
+    /**
+     * Get the organization to ask next from a response state.
+     * @param stateKey Packed response vector.
+     * @return An organization index, {@link #GIVE_UP}, or {@link #UNKNOWN} if the state is not in the table.
+     */
+    public int nextOrganization(final long stateKey) {
+        int index = Arrays.binarySearch(stateKeys, stateKey);
+        return index >= 0 ? decisions[index] : UNKNOWN;
+    }
+
+    /**
+     * Check whether this table was compiled for a model.
+     * @param analyticsOrganizations Organizations of the analytics containing the model.
+     * @param model A model.
+     * @return true if the organizations, model ID and model timestamp all match.
+     */
+    public boolean isCompiledFor(final List<String> analyticsOrganizations, final CompiledModel model) {
+        return organizations.equals(analyticsOrganizations)
+                && modelId == model.getId()
+                && epochTimestamp == model.getEpochTimestamp();
+    }
+
+    public List<String> getOrganizations() {
+        return organizations;
+    }
+
+    public int getModelId() {
+        return modelId;
+    }
+
+    public long getEpochTimestamp() {
+        return epochTimestamp;
+    }
+
+    public double getSuccessProbability() {
+        return successProbability;
+    }
+
+    public double getExpectedMessages() {
+        return expectedMessages;
+    }
+
+    /**
+     * Number of states in the table.
+     * @return State count.
+     */
+    public int size() {
+        return stateKeys.length;
+    }
+
+    /**
+     * Write the table as JSON, with states as response vectors in the same form as the analytics file.
+     * @param out Output stream, which is not closed.
+     * @throws IOException if the table cannot be written.
+     */
+    public void write(final OutputStream out) throws IOException {
+        ObjectNode root = OBJECT_MAPPER.createObjectNode();
+        ArrayNode organizationNames = root.putArray("organizations");
+        organizations.forEach(organizationNames::add);
+        root.put("id", modelId)
+                .put("epochTimestamp", epochTimestamp)
+                .put("probability", successProbability)
+                .put("expectedMessages", expectedMessages);
+
+        ArrayNode decisionNodes = root.putArray("decisions");
+        for (int i = 0; i < stateKeys.length; i++) {
+            ObjectNode decision = decisionNodes.addObject();
+            ArrayNode state = decision.putArray("state");
+            for (int response : StateKeys.decode(stateKeys[i], organizations.size())) {
+                state.add(response);
+            }
+            decision.put("next", decisions[i]);
+        }
+
+        OBJECT_MAPPER.writer()
+                .without(JsonGenerator.Feature.AUTO_CLOSE_TARGET)
+                .writeValue(out, root);
+    }
+
+    /**
+     * Read a table written by {@link #write(OutputStream)}.
+     * @param path Table file.
+     * @return The table.
+     * @throws IOException if the file cannot be read or is not a valid table.
+     */
+    public static DecisionTable read(final Path path) throws IOException {
+        JsonNode root = OBJECT_MAPPER.readTree(path.toFile());
+        try {
+            return fromJson(root);
+        } catch (IllegalArgumentException e) {
+            throw new IOException("Invalid decision table " + path, e);
+        }
+    }
+
+    private static DecisionTable fromJson(final JsonNode root) {
+        List<String> organizations = new ArrayList<>();
+        root.path("organizations").forEach(node -> organizations.add(node.asText()));
+
+        JsonNode decisionNodes = root.path("decisions");
+        long[] stateKeys = new long[decisionNodes.size()];
+        int[] decisions = new int[decisionNodes.size()];
+        for (int i = 0; i < decisionNodes.size(); i++) {
+            JsonNode decision = decisionNodes.get(i);
+            JsonNode state = decision.path("state");
+            if (state.size() != organizations.size()) {
+                throw new IllegalArgumentException("Expected response vector of length " + organizations.size()
+                        + " but was " + state.size());
+            }
+            int[] vector = new int[state.size()];
+            for (int j = 0; j < vector.length; j++) {
+                vector[j] = state.get(j).asInt();
+            }
+            stateKeys[i] = StateKeys.encode(vector);
+            decisions[i] = decision.path("next").asInt();
+        }
+
+        return new DecisionTable(organizations, root.path("id").asInt(), root.path("epochTimestamp").asLong(),
+                root.path("probability").asDouble(), root.path("expectedMessages").asDouble(),
+                stateKeys, decisions);
+    }
+
+    @Override
+    public String toString() {
+        return GatewayUtils.toString(this,
+                "modelId=" + modelId,
+                "epochTimestamp=" + epochTimestamp,
+                "probability=" + successProbability,
+                "expectedMessages=" + expectedMessages,
+                "states=" + stateKeys.length);
+    }
+}
@@ -0,0 +1,286 @@
+/*
+ * Copyright 2019 IBM All Rights Reserved.
+ *
+ * SPDX-License-Identifier: Apache-2.0
+ */
+
+package org.hyperledger.fabric.gateway.impl.model;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.hyperledger.fabric.gateway.impl.SendingConfirmationServiceImpl.ModelCheckResult;
+import org.hyperledger.fabric.gateway.impl.SendingConfirmationServiceImpl.ModelCheckerResultWrapper;
+
+/**
+ * Compiles a model into a {@link DecisionTable} that chooses which organization to ask next in each response state.
+ * <p>
+ * Each organization is assumed to approve independently with a given probability. The compiler searches every order
+ * in which the organizations can be asked, as a decision tree over response states, and picks at each state the
+ * organization that first maximizes the probability of reaching a specification state and then minimizes the
+ * expected number of messages. States from which no specification state can be reached are marked so that the walk
+ * gives up early instead of asking the remaining organizations.
+ * </p>
+ * <p>
+ * Only states that are part of some specification vector can lead to agreement, so the search is limited to those
+ * states and grows with the size of the specification rather than with the number of possible response vectors.
+ * Backward transitions are not planned for; when one is taken at run time the walk restarts from the initial state of
+ * the table.
+ * </p>
+ * <p>
+ * A walk can only ask an organization at a position of the analytics file order held by an organization that the
+ * model treats alike, as given by {@link AnalyticsSnapshot#getInterchangeableClasses(CompiledModel)}. The search is
+ * restricted in the same way, so after <i>n</i> replies only organizations interchangeable with the organization at
+ * position <i>n</i> are considered, and the success probability and expected number of messages of the table are
+ * those of walks that {@link AgreementStateMachine} can follow. When no two organizations are interchangeable the
+ * table follows the analytics file order and serves only to give up early.
+ * </p>
+ */
+public final class DecisionTableCompiler {
+    /** Probability used for organizations with no given approval probability. */
+    public static final double DEFAULT_PROBABILITY = 0.5;
+
+    /** Largest number of live states the compiler will search. */
+    private static final int MAX_STATES = 1 << 20;
+    private static final double EPSILON = 1e-12;
+
+    private final int organizationCount;
+    private final double[] probabilities;
+    private final int[] organizationClasses;
+    private final LongHashSet specification;
+    private final LongHashSet liveStates = new LongHashSet();
+    private final Map<Long, Plan> plans = new HashMap<>();
+
+    private static final class Plan {
+        private final int decision;
+        private final double successProbability;
+        private final double expectedMessages;
+
+        Plan(final int decision, final double successProbability, final double expectedMessages) {
+            this.decision = decision;
+            this.successProbability = successProbability;
+            this.expectedMessages = expectedMessages;
+        }
+    }
+
+    private static final Plan AGREED = new Plan(DecisionTable.GIVE_UP, 1, 0);
+    private static final Plan DEAD = new Plan(DecisionTable.GIVE_UP, 0, 0);
+
+    private DecisionTableCompiler(final int organizationCount, final double[] probabilities,
+                                  final int[] organizationClasses, final LongHashSet specification) {
+        this.organizationCount = organizationCount;
+        this.probabilities = probabilities;
+        this.organizationClasses = organizationClasses;
+        this.specification = specification;
+    }
+
+    /**
+     * Compile a decision table for a model.
+     * @param analytics Parsed analytics file.
+     * @param modelId ID of the model to compile.
+     * @param probabilities Approval probability of each organization, by name. Organizations that are not present
+     *                      use {@link #DEFAULT_PROBABILITY}.
+     * @return The decision table.
+     * @throws IllegalArgumentException if the model does not exist, the analytics contain an invalid response vector,
+     * a probability is outside the range 0 to 1, or the specification is too large to compile.
+     */
+    public static DecisionTable compile(final ModelCheckerResultWrapper analytics, final int modelId,
+                                        final Map<String, Double> probabilities) {
+        ModelCheckResult model = analytics.getModelCheckResultList().stream()
+                .filter(result -> result.getId() == modelId)
+                .findFirst()
+                .orElseThrow(() -> new IllegalArgumentException("Could not find model with the given id: " + modelId));
+
+        List<String> organizations = analytics.getOrganizations();
+        int organizationCount = organizations.size();
+        StateKeys.checkOrganizationCount(organizationCount);
+
+        double[] organizationProbabilities = new double[organizationCount];
+        for (int i = 0; i < organizationCount; i++) {
+            double probability = probabilities.getOrDefault(organizations.get(i), DEFAULT_PROBABILITY);
+            if (!(probability >= 0 && probability <= 1)) {
+                throw new IllegalArgumentException("Invalid probability for organization " + organizations.get(i)
+                        + ": " + probability);
+            }
+            organizationProbabilities[i] = probability;
+        }
+
+        Set<int[]> specificationVectors = analytics.getSpecification();
+        LongHashSet specification = CompiledModel.compileVectors(specificationVectors, organizationCount);
+        int[] organizationClasses = AnalyticsSnapshot.computeInterchangeableClasses(organizationCount, specification,
+                CompiledModel.compile(model, organizationCount));
+        DecisionTableCompiler compiler = new DecisionTableCompiler(organizationCount, organizationProbabilities,
+                organizationClasses, specification);
+        if (specificationVectors != null) {
+            specificationVectors.forEach(compiler::addLiveStates);
+        }
+
+        Plan root = compiler.solve(StateKeys.INITIAL);
+        return compiler.toTable(organizations, model, root);
+    }
+
+    /**
+     * Mark every state that is a prefix of a specification vector, in any order, as live.
+     */
+    private void addLiveStates(final int[] vector) {
+        int[] answered = new int[vector.length];
+        int answeredCount = 0;
+        for (int i = 0; i < vector.length; i++) {
+            if (vector[i] != -1) {
+                answered[answeredCount++] = i;
+            }
+        }
+        if (answeredCount >= Integer.SIZE - 1 || liveStates.size() + (1L << answeredCount) > MAX_STATES) {
+            throw new IllegalArgumentException("Specification is too large to compile");
+        }
+
+        for (int subset = 0; subset < (1 << answeredCount); subset++) {
+            long key = StateKeys.INITIAL;
+            for (int bit = 0; bit < answeredCount; bit++) {
+                if ((subset & (1 << bit)) != 0) {
+                    int organization = answered[bit];
+                    key = StateKeys.withResponse(key, organization, vector[organization]);
+                }
+            }
+            liveStates.add(key);
+        }
+    }
+
+    private Plan solve(final long stateKey) {
+        if (specification.contains(stateKey)) {
+            return AGREED;
+        }
+        if (!liveStates.contains(stateKey)) {
+            return DEAD;
+        }
+
+        Plan plan = plans.get(stateKey);
+        if (plan != null) {
+            return plan;
+        }
+
+        // The walk fills positions in order, so only organizations that can take the next position may be chosen
+        int answered = answeredCount(stateKey);
+        if (answered == organizationCount) {
+            return DEAD;
+        }
+        int positionClass = organizationClasses[answered];
+        int bestDecision = DecisionTable.GIVE_UP;
+        double bestSuccess = 0;
+        double bestMessages = 0;
+        for (int organization = 0; organization < organizationCount; organization++) {
+            if (StateKeys.responseAt(stateKey, organization) != -1
+                    || organizationClasses[organization] != positionClass) {
+                continue;
+            }
+
+            double p = probabilities[organization];
+            Plan approved = solve(StateKeys.withResponse(stateKey, organization, 1));
+            Plan rejected = solve(StateKeys.withResponse(stateKey, organization, 0));
+            double success = p * approved.successProbability + (1 - p) * rejected.successProbability;
+            double messages = 1 + p * approved.expectedMessages + (1 - p) * rejected.expectedMessages;
+
+            if (success > bestSuccess + EPSILON
+                    || (success > EPSILON && Math.abs(success - bestSuccess) <= EPSILON && messages < bestMessages)) {
+                bestDecision = organization;
+                bestSuccess = success;
+                bestMessages = messages;
+            }
+        }
+
+        plan = bestDecision == DecisionTable.GIVE_UP ? DEAD : new Plan(bestDecision, bestSuccess, bestMessages);
+        plans.put(stateKey, plan);
+        return plan;
+    }
+
+    private int answeredCount(final long stateKey) {
+        int count = 0;
+        for (int organization = 0; organization < organizationCount; organization++) {
+            if (StateKeys.responseAt(stateKey, organization) != -1) {
+                count++;
+            }
+        }
+        return count;
+    }
+
+    /**
+     * Record the decisions for states reachable from the initial state when following the plan, including the states
+     * at which the walk gives up.
+     */
+    private DecisionTable toTable(final List<String> organizations, final ModelCheckResult model, final Plan root) {
+        Map<Long, Integer> reachable = new HashMap<>();
+        collect(StateKeys.INITIAL, reachable);
+
+        long[] stateKeys = new long[reachable.size()];
+        int count = 0;
+        for (long key : reachable.keySet()) {
+            stateKeys[count++] = key;
+        }
+        Arrays.sort(stateKeys);
+
+        int[] decisions = new int[stateKeys.length];
+        for (int i = 0; i < stateKeys.length; i++) {
+            decisions[i] = reachable.get(stateKeys[i]);
+        }
+
+        return new DecisionTable(organizations, model.getId(), model.getEpochTimestamp(), root.successProbability,
+                root.expectedMessages, stateKeys, decisions);
+    }
+
+    private void collect(final long stateKey, final Map<Long, Integer> reachable) {
+        if (specification.contains(stateKey) || reachable.containsKey(stateKey)) {
+            return;
+        }
+
+        int decision = solve(stateKey).decision;
+        reachable.put(stateKey, decision);
+        if (decision != DecisionTable.GIVE_UP) {
+            collect(StateKeys.withResponse(stateKey, decision, 1), reachable);
+            collect(StateKeys.withResponse(stateKey, decision, 0), reachable);
+        }
+    }
+
+    /**
+     * Compile a decision table from the command line.
+     * @param args JSON analytics file path, model ID, organization statistics file path as written by
+     *             {@link OrganizationStatistics#export(OutputStream)} or {@code -} to use default probabilities, and
+     *             output file path.
+     * @throws IOException if a file cannot be read or written.
+     */
+    public static void main(final String[] args) throws IOException {
+        if (args.length != 4) {
+            System.err.println("Usage: " + DecisionTableCompiler.class.getName()
+                    + " <analytics.json> <modelId> <statistics.json|-> <table.json>");
+            System.exit(1);
+        }
+
+        ObjectMapper mapper = new ObjectMapper();
+        ModelCheckerResultWrapper analytics = mapper.readValue(Paths.get(args[0]).toFile(),
+                ModelCheckerResultWrapper.class);
+
+        Map<String, Double> probabilities = new HashMap<>();
+        if (!"-".equals(args[2])) {
+            JsonNode statistics = mapper.readTree(Paths.get(args[2]).toFile());
+            statistics.path("organizationStatistics").forEach(node ->
+                    probabilities.put(node.path("organization").asText(), node.path("probability").asDouble()));
+        }
+
+        DecisionTable table = compile(analytics, Integer.parseInt(args[1]), probabilities);
+
+        Path output = Paths.get(args[3]);
+        try (OutputStream out = Files.newOutputStream(output)) {
+            table.write(out);
+        }
+        System.out.println("Compiled " + table);
+    }
+}
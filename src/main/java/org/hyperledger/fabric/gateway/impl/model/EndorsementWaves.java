@@ -0,0 +1,245 @@
+/*
+ * Copyright 2019 IBM All Rights Reserved.
+ *
+ * SPDX-License-Identifier: Apache-2.0
+ */
+
+package org.hyperledger.fabric.gateway.impl.model;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Supplier;
+
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+import org.hyperledger.fabric.gateway.impl.GatewayUtils;
+import org.hyperledger.fabric.sdk.ProposalResponse;
+
+/**
+ * Groups the model steps of concurrent transactions into waves. Transactions following the same model that are in
+ * the same response state and waiting on the same organization join one wave. A wave is sent once it is full or once
+ * its oldest step has waited for the maximum delay, with all of its proposals sent concurrently. Replies are released
+ * together when every proposal in the wave has completed, so the transactions advance to their next state at the same
+ * time and tend to form a wave again at the next organization.
+ * <p>
+ * This implementation is thread-safe.
+ * </p>
+ */
+public final class EndorsementWaves {
+    private static final Log LOG = LogFactory.getLog(EndorsementWaves.class);
+
+    private final int maxWaveSize;
+    private final long maxDelayNanos;
+    private final ScheduledExecutorService scheduler;
+    private final Map<Key, Wave> pending = new HashMap<>();
+
+    private static final class Key {
+        private final CompiledModel model;
+        private final long stateKey;
+        private final int organization;
+
+        Key(final CompiledModel model, final long stateKey, final int organization) {
+            this.model = model;
+            this.stateKey = stateKey;
+            this.organization = organization;
+        }
+
+        @Override
+        public boolean equals(final Object other) {
+            if (!(other instanceof Key)) {
+                return false;
+            }
+            Key that = (Key) other;
+            return model == that.model && stateKey == that.stateKey && organization == that.organization;
+        }
+
+        @Override
+        public int hashCode() {
+            int result = System.identityHashCode(model);
+            result = 31 * result + Long.hashCode(stateKey);
+            return 31 * result + organization;
+        }
+    }
+
+    private static final class Member {
+        private final Supplier<CompletableFuture<ProposalResponse>> sender;
+        private final CompletableFuture<ProposalResponse> result = new CompletableFuture<>();
+
+        Member(final Supplier<CompletableFuture<ProposalResponse>> sender) {
+            this.sender = sender;
+        }
+    }
+
+    private static final class Wave {
+        private final List<Member> members = new ArrayList<>();
+        private volatile ScheduledFuture<?> timer = null;
+    }
+
+    /**
+     * Create waves.
+     * @param maxWaveSize Number of steps at which a wave is sent without waiting further.
+     * @param maxDelayNanos Longest time a step waits for its wave to fill.
+     * @param scheduler Runs the timers that send waves that have not filled.
+     */
+    public EndorsementWaves(final int maxWaveSize, final long maxDelayNanos, final ScheduledExecutorService scheduler) {
+        if (maxWaveSize < 1) {
+            throw new IllegalArgumentException("Maximum wave size must be at least 1: " + maxWaveSize);
+        }
+        if (maxDelayNanos < 0) {
+            throw new IllegalArgumentException("Maximum delay must not be negative: " + maxDelayNanos);
+        }
+
+        this.maxWaveSize = maxWaveSize;
+        this.maxDelayNanos = maxDelayNanos;
+        this.scheduler = scheduler;
+    }
+
+    /**
+     * Add a model step to the wave for its model, state and organization.
+     * @param model Model followed by the transaction.
+     * @param stateKey Current response state of the transaction.
+     * @param organization Organization to send to.
+     * @param sender Sends the proposal when the wave is sent.
+     * @return A future that completes with the reply once every proposal in the wave has completed. Cancelling it
+     * before the wave is sent removes the step from the wave; cancelling it afterwards cancels the step's proposal.
+     */
+    public CompletableFuture<ProposalResponse> submit(final CompiledModel model, final long stateKey,
+                                                      final int organization,
+                                                      final Supplier<CompletableFuture<ProposalResponse>> sender) {
+        Key key = new Key(model, stateKey, organization);
+        Member member = new Member(sender);
+        Wave wave;
+        Wave full = null;
+        boolean first = false;
+
+        synchronized (pending) {
+            wave = pending.get(key);
+            if (wave == null) {
+                wave = new Wave();
+                pending.put(key, wave);
+                first = true;
+            }
+            wave.members.add(member);
+            if (wave.members.size() >= maxWaveSize) {
+                pending.remove(key);
+                full = wave;
+            }
+        }
+
+        if (full != null) {
+            send(full);
+        } else if (first) {
+            schedule(key, wave);
+        }
+        return member.result;
+    }
+
+    private void schedule(final Key key, final Wave wave) {
+        try {
+            wave.timer = scheduler.schedule(() -> flush(key, wave), maxDelayNanos, TimeUnit.NANOSECONDS);
+        } catch (RejectedExecutionException e) {
+            LOG.debug("Wave timer not scheduled", e);
+            flush(key, wave);
+        }
+    }
+
+    /**
+     * Send a wave that has waited for the maximum delay. The wave is matched by identity, so a timer that fires
+     * after its wave was sent full does not send a newer wave for the same key early.
+     */
+    private void flush(final Key key, final Wave wave) {
+        boolean removed;
+        synchronized (pending) {
+            removed = pending.remove(key, wave);
+        }
+        if (removed) {
+            send(wave);
+        }
+    }
+
+    private void send(final Wave wave) {
+        ScheduledFuture<?> timer = wave.timer;
+        if (timer != null) {
+            timer.cancel(false);
+        }
+
+        List<CompletableFuture<ProposalResponse>> sent = new ArrayList<>(wave.members.size());
+        List<Member> sentMembers = new ArrayList<>(wave.members.size());
+        for (Member member : wave.members) {
+            if (member.result.isDone()) {
+                // Cancelled while waiting for the wave
+                continue;
+            }
+            sent.add(start(member));
+            sentMembers.add(member);
+        }
+
+        if (LOG.isDebugEnabled()) {
+            LOG.debug("Sending wave of " + sent.size() + " proposals");
+        }
+
+        CompletableFuture.allOf(sent.toArray(new CompletableFuture<?>[0]))
+                .whenComplete((ignored, error) -> {
+                    for (int i = 0; i < sent.size(); i++) {
+                        CompletableFuture<ProposalResponse> future = sent.get(i);
+                        CompletableFuture<ProposalResponse> result = sentMembers.get(i).result;
+                        future.whenComplete((r, e) -> {
+                            if (e != null) {
+                                result.completeExceptionally(e);
+                            } else {
+                                result.complete(r);
+                            }
+                        });
+                    }
+                });
+    }
+
+    private static CompletableFuture<ProposalResponse> start(final Member member) {
+        CompletableFuture<ProposalResponse> future;
+        try {
+            future = member.sender.get();
+        } catch (RuntimeException e) {
+            future = new CompletableFuture<>();
+            future.completeExceptionally(e);
+        }
+
+        // Cancelling a step cancels its proposal even after the wave is sent, so sends that have not started are
+        // skipped; a send already in progress completes and its reply is discarded
+        CompletableFuture<ProposalResponse> proposal = future;
+        member.result.whenComplete((r, e) -> proposal.cancel(false));
+        return proposal;
+    }
+
+    public int getMaxWaveSize() {
+        return maxWaveSize;
+    }
+
+    public long getMaxDelayNanos() {
+        return maxDelayNanos;
+    }
+
+    /**
+     * Number of waves that have not yet been sent.
+     * @return Pending wave count.
+     */
+    public int getPendingWaveCount() {
+        synchronized (pending) {
+            return pending.size();
+        }
+    }
+
+    @Override
+    public String toString() {
+        return GatewayUtils.toString(this,
+                "maxWaveSize=" + maxWaveSize,
+                "maxDelayNanos=" + maxDelayNanos,
+                "pendingWaves=" + getPendingWaveCount());
+    }
+}
@@ -0,0 +1,115 @@
+/*
+ * Copyright 2019 IBM All Rights Reserved.
+ *
+ * SPDX-License-Identifier: Apache-2.0
+ */
+
+package org.hyperledger.fabric.gateway.impl.model;
+
+/**
+ * Fixed-size latency histogram for estimating percentiles. Buckets are spaced logarithmically, with eight buckets per
+ * power of two, so estimates are within about 12% of the true value from one microsecond to several minutes.
+ * Once a histogram holds a given number of samples, all counts are halved, so older samples gradually lose their
+ * influence and percentiles follow changes in latency.
+ * <p>
+ * This implementation is not thread-safe.
+ * </p>
+ */
+final class LatencyHistogram {
+    private static final int SUB_BUCKET_BITS = 3;
+    private static final int SUB_BUCKETS = 1 << SUB_BUCKET_BITS;
+    /** Values below 2^MIN_EXPONENT nanoseconds share the first bucket. */
+    private static final int MIN_EXPONENT = 10;
+    /** Values from 2^MAX_EXPONENT nanoseconds share the last bucket. */
+    private static final int MAX_EXPONENT = 40;
+    private static final int BUCKET_COUNT = (MAX_EXPONENT - MIN_EXPONENT) * SUB_BUCKETS + 1;
+
+    private final long[] counts = new long[BUCKET_COUNT];
+    private final long maxSamples;
+    private long count = 0;
+
+    /**
+     * Create a histogram.
+     * @param maxSamples Number of samples at which counts are halved.
+     */
+    LatencyHistogram(final long maxSamples) {
+        if (maxSamples < 2) {
+            throw new IllegalArgumentException("Maximum samples must be at least 2: " + maxSamples);
+        }
+        this.maxSamples = maxSamples;
+    }
+
+    /**
+     * Add a latency sample.
+     * @param latencyNanos Latency in nanoseconds.
+     */
+    void record(final long latencyNanos) {
+        counts[bucketOf(latencyNanos)]++;
+        count++;
+
+        if (count >= maxSamples) {
+            count = 0;
+            for (int i = 0; i < counts.length; i++) {
+                counts[i] >>= 1;
+                count += counts[i];
+            }
+        }
+    }
+
+    /**
+     * Number of samples currently held, after any halving.
+     * @return Sample count.
+     */
+    long getCount() {
+        return count;
+    }
+
+    /**
+     * Estimate a latency percentile. The estimate is the upper bound of the bucket containing the percentile, so it
+     * errs on the high side.
+     * @param quantile Quantile between 0 and 1, such as 0.99.
+     * @return Latency in nanoseconds, or 0 if there are no samples.
+     */
+    long getPercentileNanos(final double quantile) {
+        if (count == 0) {
+            return 0;
+        }
+
+        long target = Math.max(1, (long) Math.ceil(quantile * count));
+        long cumulative = 0;
+        for (int i = 0; i < counts.length; i++) {
+            cumulative += counts[i];
+            if (cumulative >= target) {
+                return upperBoundOf(i);
+            }
+        }
+        return upperBoundOf(counts.length - 1);
+    }
+
+    private static int bucketOf(final long value) {
+        if (value < (1L << MIN_EXPONENT)) {
+            return 0;
+        }
+
+        int exponent = 63 - Long.numberOfLeadingZeros(value);
+        if (exponent >= MAX_EXPONENT) {
+            return BUCKET_COUNT - 1;
+        }
+
+        int subBucket = (int) (value >>> (exponent - SUB_BUCKET_BITS)) & (SUB_BUCKETS - 1);
+        return (exponent - MIN_EXPONENT) * SUB_BUCKETS + subBucket + 1;
+    }
+
+    private static long upperBoundOf(final int bucket) {
+        if (bucket == 0) {
+            return 1L << MIN_EXPONENT;
+        }
+        if (bucket == BUCKET_COUNT - 1) {
+            return 1L << MAX_EXPONENT;
+        }
+
+        int exponent = (bucket - 1) / SUB_BUCKETS + MIN_EXPONENT;
+        int subBucket = (bucket - 1) % SUB_BUCKETS;
+        return (long) (SUB_BUCKETS + subBucket + 1) << (exponent - SUB_BUCKET_BITS);
+    }
+}
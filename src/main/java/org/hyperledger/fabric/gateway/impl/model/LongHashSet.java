@@ -0,0 +1,135 @@
+/*
+ * Copyright 2019 IBM All Rights Reserved.
+ *
+ * SPDX-License-Identifier: Apache-2.0
+ */
+
+package org.hyperledger.fabric.gateway.impl.model;
+
+import java.util.Arrays;
+import java.util.function.LongPredicate;
+
+/**
+ * Open-addressing hash set of non-negative long values, used to hold packed response vectors without boxing.
+ * <p>
+ * This implementation is not thread-safe. Instances shared between threads must not be modified after publication.
+ * </p>
+ */
+public final class LongHashSet implements StateKeySet {
+    private static final long EMPTY = -1L;
+    private static final int MIN_CAPACITY = 8;
+
+    private long[] table;
+    private int mask;
+    private int size = 0;
+
+    public LongHashSet() {
+        this(MIN_CAPACITY / 2);
+    }
+
+    public LongHashSet(final int expectedSize) {
+        allocate(capacityFor(expectedSize));
+    }
+
+    private static int capacityFor(final int expectedSize) {
+        int capacity = MIN_CAPACITY;
+        while (capacity < expectedSize * 2) {
+            capacity <<= 1;
+        }
+        return capacity;
+    }
+
+    private void allocate(final int capacity) {
+        table = new long[capacity];
+        Arrays.fill(table, EMPTY);
+        mask = capacity - 1;
+    }
+
+    private static int hash(final long key) {
+        long h = key * 0x9E3779B97F4A7C15L;
+        return (int) (h ^ (h >>> 32));
+    }
+
+    /**
+     * Add a value to the set if not already present.
+     * @param key A non-negative value.
+     * @return true if the value was added; false if it was already present.
+     */
+    public boolean add(final long key) {
+        if (key < 0) {
+            throw new IllegalArgumentException("Negative values are not supported: " + key);
+        }
+        if ((size + 1) * 2 > table.length) {
+            rehash(table.length << 1);
+        }
+
+        int index = hash(key) & mask;
+        while (table[index] != EMPTY) {
+            if (table[index] == key) {
+                return false;
+            }
+            index = (index + 1) & mask;
+        }
+
+        table[index] = key;
+        size++;
+        return true;
+    }
+
+    /**
+     * Check whether a value is present in the set.
+     * @param key A value.
+     * @return true if present; otherwise false.
+     */
+    @Override
+    public boolean contains(final long key) {
+        if (key < 0) {
+            return false;
+        }
+
+        int index = hash(key) & mask;
+        long entry;
+        while ((entry = table[index]) != EMPTY) { // checkstyle:ignore-line:InnerAssignment
+            if (entry == key) {
+                return true;
+            }
+            index = (index + 1) & mask;
+        }
+        return false;
+    }
+
+    @Override
+    public int size() {
+        return size;
+    }
+
+    public boolean isEmpty() {
+        return size == 0;
+    }
+
+    @Override
+    public boolean allMatch(final LongPredicate predicate) {
+        for (long key : table) {
+            if (key != EMPTY && !predicate.test(key)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private void rehash(final int capacity) {
+        long[] oldTable = table;
+        allocate(capacity);
+        size = 0;
+        for (long key : oldTable) {
+            if (key != EMPTY) {
+                add(key);
+            }
+        }
+    }
+
+    @Override
+    public String toString() {
+        return "LongHashSet(size=" + size + ")";
+    }
+}
@@ -0,0 +1,301 @@
+/*
+ * Copyright 2019 IBM All Rights Reserved.
+ *
+ * SPDX-License-Identifier: Apache-2.0
+ */
+
+package org.hyperledger.fabric.gateway.impl.model;
+
+import java.io.BufferedOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.hyperledger.fabric.gateway.impl.SendingConfirmationServiceImpl.ModelCheckResult;
+import org.hyperledger.fabric.gateway.impl.SendingConfirmationServiceImpl.ModelCheckerResultWrapper;
+
+/**
+ * Compact binary form of a model-checker analytics file, designed to be memory-mapped.
+ * <p>
+ * All values are big-endian. The file starts with a header:
+ * </p>
+ * <ul>
+ *     <li>magic number and format version;</li>
+ *     <li>organization count and model count;</li>
+ *     <li>organization names, each as a byte length followed by UTF-8 bytes;</li>
+ *     <li>offset and count of the specification keys;</li>
+ *     <li>one index entry per model: ID, probability, expected messages, epoch timestamp, and offset and count of its
+ *     backward transition keys.</li>
+ * </ul>
+ * <p>
+ * The header is followed by 8-byte aligned arrays of packed state keys in ascending order. A mapped artifact answers
+ * membership queries by binary search against the mapped file, so heap usage does not grow with the number of
+ * vectors.
+ * </p>
+ */
+public final class ModelArtifact {
+    private static final int MAGIC = 0x464D4331; // "FMC1"
+    private static final int VERSION = 1;
+    private static final int MODEL_ENTRY_SIZE = Integer.BYTES + Double.BYTES * 2 + Long.BYTES * 2 + Integer.BYTES;
+
+    private ModelArtifact() { }
+
+    /**
+     * Check whether a file starts with the model artifact magic number.
+     * @param path A file.
+     * @return true if the file is a model artifact.
+     * @throws IOException if the file cannot be read.
+     */
+    public static boolean isArtifact(final Path path) throws IOException {
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+            ByteBuffer magic = ByteBuffer.allocate(Integer.BYTES);
+            while (magic.hasRemaining()) {
+                if (channel.read(magic) < 0) {
+                    return false;
+                }
+            }
+            magic.flip();
+            return magic.getInt() == MAGIC;
+        }
+    }
+
+    /**
+     * Convert a JSON analytics file to a model artifact. The artifact is written to a temporary file and moved into
+     * place, so readers that have the previous artifact mapped are not affected.
+     * @param analyticsPath JSON analytics file.
+     * @param artifactPath Artifact file to create or replace.
+     * @throws IOException if the analytics file cannot be read or the artifact cannot be written.
+     * @throws IllegalArgumentException if the analytics file contains an invalid response vector.
+     */
+    public static void convert(final Path analyticsPath, final Path artifactPath) throws IOException {
+        ModelCheckerResultWrapper wrapper = new ObjectMapper()
+                .readValue(analyticsPath.toFile(), ModelCheckerResultWrapper.class);
+
+        Path target = artifactPath.toAbsolutePath();
+        Path tempFile = Files.createTempFile(target.getParent(), target.getFileName().toString(), ".tmp");
+        try {
+            try (OutputStream out = Files.newOutputStream(tempFile)) {
+                write(wrapper, out);
+            }
+            try {
+                Files.move(tempFile, target, StandardCopyOption.ATOMIC_MOVE);
+            } catch (AtomicMoveNotSupportedException e) {
+                Files.move(tempFile, target, StandardCopyOption.REPLACE_EXISTING);
+            }
+        } finally {
+            Files.deleteIfExists(tempFile);
+        }
+    }
+
+    /**
+     * Write analytics as a model artifact.
+     * @param wrapper Parsed analytics.
+     * @param out Output stream, which is not closed.
+     * @throws IOException if the artifact cannot be written.
+     * @throws IllegalArgumentException if the analytics contain an invalid response vector.
+     */
+    public static void write(final ModelCheckerResultWrapper wrapper, final OutputStream out) throws IOException {
+        List<String> organizations = wrapper.getOrganizations();
+        int organizationCount = organizations.size();
+        StateKeys.checkOrganizationCount(organizationCount);
+
+        List<byte[]> names = new ArrayList<>(organizationCount);
+        for (String organization : organizations) {
+            names.add(organization.getBytes(StandardCharsets.UTF_8));
+        }
+
+        long[] specification = sortedKeys(wrapper.getSpecification(), organizationCount);
+        Map<Integer, ModelCheckResult> results = new LinkedHashMap<>();
+        Map<Integer, long[]> backwardTransitions = new HashMap<>();
+        for (ModelCheckResult result : wrapper.getModelCheckResultList()) {
+            if (!results.containsKey(result.getId())) {
+                results.put(result.getId(), result);
+                backwardTransitions.put(result.getId(),
+                        sortedKeys(result.getBackwardTransitions(), organizationCount));
+            }
+        }
+
+        long headerSize = Integer.BYTES * 4L + Long.BYTES + Integer.BYTES + (long) MODEL_ENTRY_SIZE * results.size();
+        for (byte[] name : names) {
+            headerSize += Integer.BYTES + name.length;
+        }
+        long dataOffset = align(headerSize);
+
+        DataOutputStream data = new DataOutputStream(new BufferedOutputStream(out));
+        data.writeInt(MAGIC);
+        data.writeInt(VERSION);
+        data.writeInt(organizationCount);
+        data.writeInt(results.size());
+        for (byte[] name : names) {
+            data.writeInt(name.length);
+            data.write(name);
+        }
+
+        long offset = dataOffset;
+        data.writeLong(offset);
+        data.writeInt(specification.length);
+        offset += (long) specification.length * Long.BYTES;
+
+        for (ModelCheckResult result : results.values()) {
+            long[] keys = backwardTransitions.get(result.getId());
+            data.writeInt(result.getId());
+            data.writeDouble(result.getProbability());
+            data.writeDouble(result.getExpectedMessages());
+            data.writeLong(result.getEpochTimestamp());
+            data.writeLong(offset);
+            data.writeInt(keys.length);
+            offset += (long) keys.length * Long.BYTES;
+        }
+
+        for (long i = headerSize; i < dataOffset; i++) {
+            data.writeByte(0);
+        }
+        writeKeys(data, specification);
+        for (ModelCheckResult result : results.values()) {
+            writeKeys(data, backwardTransitions.get(result.getId()));
+        }
+        data.flush();
+    }
+
+    private static long[] sortedKeys(final Set<int[]> vectors, final int organizationCount) {
+        if (vectors == null) {
+            return new long[0];
+        }
+
+        long[] keys = new long[vectors.size()];
+        int count = 0;
+        for (int[] vector : vectors) {
+            if (vector.length != organizationCount) {
+                throw new IllegalArgumentException("Expected response vector of length " + organizationCount
+                        + " but was " + vector.length);
+            }
+            keys[count++] = StateKeys.encode(vector);
+        }
+
+        Arrays.sort(keys);
+        int distinct = 0;
+        for (int i = 0; i < count; i++) {
+            if (distinct == 0 || keys[distinct - 1] != keys[i]) {
+                keys[distinct++] = keys[i];
+            }
+        }
+        return Arrays.copyOf(keys, distinct);
+    }
+
+    private static void writeKeys(final DataOutputStream data, final long[] keys) throws IOException {
+        for (long key : keys) {
+            data.writeLong(key);
+        }
+    }
+
+    private static long align(final long offset) {
+        return (offset + Long.BYTES - 1) & ~(Long.BYTES - 1L);
+    }
+
+    /**
+     * Memory-map a model artifact.
+     * @param path Artifact file.
+     * @param attributes Attributes of the file, recorded to detect later changes.
+     * @return Analytics backed by the mapped file.
+     * @throws IOException if the file cannot be mapped or is not a valid artifact.
+     */
+    public static AnalyticsSnapshot map(final Path path, final BasicFileAttributes attributes) throws IOException {
+        MappedByteBuffer buffer;
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+            long size = channel.size();
+            if (size > Integer.MAX_VALUE) {
+                throw new IOException("Model artifact too large to map: " + path);
+            }
+            // The mapping remains valid after the channel is closed
+            buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, size);
+        }
+
+        try {
+            return read(buffer, attributes);
+        } catch (BufferUnderflowException | IllegalArgumentException e) {
+            throw new IOException("Invalid model artifact " + path, e);
+        }
+    }
+
+    private static AnalyticsSnapshot read(final ByteBuffer buffer, final BasicFileAttributes attributes) {
+        if (buffer.getInt() != MAGIC) {
+            throw new IllegalArgumentException("Not a model artifact");
+        }
+        int version = buffer.getInt();
+        if (version != VERSION) {
+            throw new IllegalArgumentException("Unsupported model artifact version: " + version);
+        }
+
+        int organizationCount = buffer.getInt();
+        int modelCount = buffer.getInt();
+        StateKeys.checkOrganizationCount(organizationCount);
+
+        List<String> organizations = new ArrayList<>(organizationCount);
+        for (int i = 0; i < organizationCount; i++) {
+            byte[] name = new byte[buffer.getInt()];
+            buffer.get(name);
+            organizations.add(new String(name, StandardCharsets.UTF_8));
+        }
+
+        StateKeySet specification = keys(buffer, buffer.getLong(), buffer.getInt());
+
+        Map<Integer, CompiledModel> models = new HashMap<>(modelCount * 2);
+        for (int i = 0; i < modelCount; i++) {
+            int id = buffer.getInt();
+            double probability = buffer.getDouble();
+            double expectedMessages = buffer.getDouble();
+            long epochTimestamp = buffer.getLong();
+            StateKeySet backwardTransitions = keys(buffer, buffer.getLong(), buffer.getInt());
+            models.putIfAbsent(id,
+                    new CompiledModel(id, probability, expectedMessages, epochTimestamp, backwardTransitions));
+        }
+
+        return new AnalyticsSnapshot(attributes, organizations, specification, models);
+    }
+
+    private static StateKeySet keys(final ByteBuffer buffer, final long offset, final int count) {
+        if (count < 0 || offset < 0 || offset % Long.BYTES != 0
+                || offset + (long) count * Long.BYTES > buffer.capacity()) {
+            throw new IllegalArgumentException("Invalid key array at offset " + offset + " with count " + count);
+        }
+
+        ByteBuffer region = buffer.duplicate();
+        region.limit((int) offset + count * Long.BYTES);
+        region.position((int) offset);
+        return new SortedStateKeySet(region.slice().asLongBuffer());
+    }
+
+    /**
+     * Convert a JSON analytics file to a model artifact.
+     * @param args JSON analytics file path followed by artifact file path.
+     * @throws IOException if conversion fails.
+     */
+    public static void main(final String[] args) throws IOException {
+        if (args.length != 2) {
+            System.err.println("Usage: " + ModelArtifact.class.getName() + " <analytics.json> <artifact>");
+            System.exit(1);
+        }
+
+        convert(Paths.get(args[0]), Paths.get(args[1]));
+    }
+}
@@ -0,0 +1,267 @@
+/*
+ * Copyright 2019 IBM All Rights Reserved.
+ *
+ * SPDX-License-Identifier: Apache-2.0
+ */
+
+package org.hyperledger.fabric.gateway.impl.model;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+import org.hyperledger.fabric.gateway.impl.GatewayUtils;
+import org.hyperledger.fabric.gateway.impl.SendingConfirmationServiceImpl.ModelCheckResult;
+import org.hyperledger.fabric.gateway.impl.SendingConfirmationServiceImpl.ModelCheckerResultWrapper;
+
+/**
+ * Shared cache of parsed model-checker analytics files. Each file is parsed and compiled once, with its models indexed
+ * by ID. A file is parsed again only when its last modified time or size changes, and on reload a model is replaced
+ * only if its epoch timestamp has changed. Files in the binary {@link ModelArtifact} format are memory-mapped instead
+ * of parsed. A file can instead be watched, in which case new versions are loaded in the background by an
+ * {@link AnalyticsWatcher} and the file is no longer checked when models are requested.
+ * <p>
+ * This implementation is thread-safe.
+ * </p>
+ */
+public final class ModelRegistry {
+    private static final Log LOG = LogFactory.getLog(ModelRegistry.class);
+    private static final ModelRegistry INSTANCE = new ModelRegistry();
+
+    private final ObjectMapper objectMapper = new ObjectMapper();
+    private final Map<Path, AnalyticsSnapshot> snapshots = new ConcurrentHashMap<>();
+    private final Map<Path, AnalyticsWatcher> watchers = new ConcurrentHashMap<>();
+
+    public static ModelRegistry getInstance() {
+        return INSTANCE;
+    }
+
+    // Non-private only for testing
+    ModelRegistry() { }
+
+    /**
+     * Get the current models for an analytics file, parsing the file only if it has changed since it was last read.
+     * @param analyticsPath Path to the analytics file.
+     * @return Parsed analytics.
+     * @throws IOException if the file can not be read or parsed.
+     */
+    public AnalyticsSnapshot getSnapshot(final Path analyticsPath) throws IOException {
+        final Path key = analyticsPath.toAbsolutePath().normalize();
+        AnalyticsWatcher watcher = watchers.get(key);
+        if (watcher != null) {
+            return watcher.getSnapshot();
+        }
+
+        final BasicFileAttributes attributes = Files.readAttributes(key, BasicFileAttributes.class);
+
+        AnalyticsSnapshot snapshot = snapshots.get(key);
+        if (snapshot != null && snapshot.isCurrent(attributes) && snapshot.isComplete()) {
+            return snapshot;
+        }
+
+        try {
+            return snapshots.compute(key, (k, previous) -> {
+                if (previous != null && previous.isCurrent(attributes) && previous.isComplete()) {
+                    // Reloaded by another thread
+                    return previous;
+                }
+                return load(k, attributes, previous);
+            });
+        } catch (UncheckedIOException e) {
+            throw e.getCause();
+        }
+    }
+
+    /**
+     * Get analytics containing at least one specific model. JSON analytics files are read with a streaming parser
+     * that skips every other model, so only requested models are ever held in memory. Each model not already loaded
+     * costs one pass over the file.
+     * @param analyticsPath Path to the analytics file.
+     * @param modelId A model ID.
+     * @return Analytics that contain the model, if the file has a model with that ID.
+     * @throws IOException if the file can not be read or parsed.
+     */
+    public AnalyticsSnapshot getSnapshot(final Path analyticsPath, final int modelId) throws IOException {
+        final Path key = analyticsPath.toAbsolutePath().normalize();
+        AnalyticsWatcher watcher = watchers.get(key);
+        if (watcher != null) {
+            return watcher.getSnapshot();
+        }
+
+        final BasicFileAttributes attributes = Files.readAttributes(key, BasicFileAttributes.class);
+
+        AnalyticsSnapshot snapshot = snapshots.get(key);
+        if (snapshot != null && snapshot.isCurrent(attributes)
+                && (snapshot.isComplete() || snapshot.getModel(modelId) != null)) {
+            return snapshot;
+        }
+
+        try {
+            return snapshots.compute(key, (k, previous) -> {
+                boolean current = previous != null && previous.isCurrent(attributes);
+                if (current && (previous.isComplete() || previous.getModel(modelId) != null)) {
+                    // Loaded by another thread
+                    return previous;
+                }
+                return loadModel(k, attributes, modelId, current ? previous : null);
+            });
+        } catch (UncheckedIOException e) {
+            throw e.getCause();
+        }
+    }
+
+    /**
+     * Get a specific model from an analytics file.
+     * @param analyticsPath Path to the analytics file.
+     * @param modelId A model ID.
+     * @return The model, or null if the analytics file contains no model with that ID.
+     * @throws IOException if the file can not be read or parsed.
+     */
+    public CompiledModel getModel(final Path analyticsPath, final int modelId) throws IOException {
+        return getSnapshot(analyticsPath).getModel(modelId);
+    }
+
+    /**
+     * Discard any cached content for an analytics file.
+     * @param analyticsPath Path to the analytics file.
+     */
+    public void invalidate(final Path analyticsPath) {
+        snapshots.remove(analyticsPath.toAbsolutePath().normalize());
+    }
+
+    /**
+     * Watch an analytics file and load new versions of it in the background. Until the watcher is closed, requests
+     * for the file are answered from the latest published version without checking the file. If the file is already
+     * watched, the existing watcher is returned.
+     * @param analyticsPath Path to the analytics file.
+     * @return The watcher, which must be closed to stop watching.
+     * @throws IOException if the file can not be read or parsed, or cannot be watched.
+     */
+    public AnalyticsWatcher watch(final Path analyticsPath) throws IOException {
+        return watch(analyticsPath, AnalyticsWatcher.DEFAULT_QUIET_PERIOD_MILLIS);
+    }
+
+    AnalyticsWatcher watch(final Path analyticsPath, final long quietPeriodMillis) throws IOException {
+        final Path key = analyticsPath.toAbsolutePath().normalize();
+        AnalyticsWatcher watcher = watchers.get(key);
+        if (watcher != null) {
+            return watcher;
+        }
+
+        AnalyticsSnapshot initial = getSnapshot(key);
+        if (!initial.isComplete()) {
+            initial = reload(key, null);
+        }
+        try {
+            final AnalyticsSnapshot snapshot = initial;
+            return watchers.computeIfAbsent(key, k -> {
+                try {
+                    return new AnalyticsWatcher(this, k, snapshot, quietPeriodMillis);
+                } catch (IOException e) {
+                    throw new UncheckedIOException(e);
+                }
+            });
+        } catch (UncheckedIOException e) {
+            throw e.getCause();
+        }
+    }
+
+    void unwatch(final AnalyticsWatcher watcher) {
+        watchers.remove(watcher.getPath(), watcher);
+    }
+
+    /**
+     * Read every model in an analytics file, reusing compiled models from a previous version where they are unchanged.
+     * @param path Normalized path to the analytics file.
+     * @param previous Previous version, or null.
+     * @return The previous version if the file has not changed since it was loaded, otherwise a new version.
+     * @throws IOException if the file can not be read or parsed.
+     */
+    AnalyticsSnapshot reload(final Path path, final AnalyticsSnapshot previous) throws IOException {
+        BasicFileAttributes attributes = Files.readAttributes(path, BasicFileAttributes.class);
+        if (previous != null && previous.isCurrent(attributes) && previous.isComplete()) {
+            return previous;
+        }
+
+        try {
+            return load(path, attributes, previous);
+        } catch (UncheckedIOException e) {
+            throw e.getCause();
+        }
+    }
+
+    private AnalyticsSnapshot load(final Path path, final BasicFileAttributes attributes, final AnalyticsSnapshot previous) {
+        LOG.debug("load: Reading analytics file " + path);
+
+        try {
+            if (ModelArtifact.isArtifact(path)) {
+                return ModelArtifact.map(path, attributes);
+            }
+            ModelCheckerResultWrapper wrapper = objectMapper.readValue(path.toFile(), ModelCheckerResultWrapper.class);
+            return compile(wrapper, attributes, previous);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        } catch (IllegalArgumentException e) {
+            throw new UncheckedIOException(new IOException("Invalid analytics file " + path, e));
+        }
+    }
+
+    private AnalyticsSnapshot loadModel(final Path path, final BasicFileAttributes attributes, final int modelId,
+                                        final AnalyticsSnapshot current) {
+        LOG.debug("loadModel: Reading model " + modelId + " from analytics file " + path);
+
+        try {
+            if (ModelArtifact.isArtifact(path)) {
+                return ModelArtifact.map(path, attributes);
+            }
+            return StreamingAnalyticsLoader.load(objectMapper.getFactory(), path, attributes, modelId, current);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        } catch (IllegalArgumentException e) {
+            throw new UncheckedIOException(new IOException("Invalid analytics file " + path, e));
+        }
+    }
+
+    private static AnalyticsSnapshot compile(final ModelCheckerResultWrapper wrapper,
+                                             final BasicFileAttributes attributes,
+                                             final AnalyticsSnapshot previous) {
+        int organizationCount = wrapper.getOrganizations().size();
+        StateKeys.checkOrganizationCount(organizationCount);
+        LongHashSet specification = CompiledModel.compileVectors(wrapper.getSpecification(), organizationCount);
+
+        Map<Integer, CompiledModel> models = new HashMap<>();
+        for (ModelCheckResult result : wrapper.getModelCheckResultList()) {
+            if (!models.containsKey(result.getId())) {
+                models.put(result.getId(), unchangedOrCompile(previous, result, organizationCount));
+            }
+        }
+
+        return new AnalyticsSnapshot(attributes, wrapper.getOrganizations(), specification, models);
+    }
+
+    private static CompiledModel unchangedOrCompile(final AnalyticsSnapshot previous,
+                                                    final ModelCheckResult result,
+                                                    final int organizationCount) {
+        if (previous != null && previous.getOrganizationCount() == organizationCount) {
+            CompiledModel cached = previous.getModel(result.getId());
+            if (cached != null && cached.getEpochTimestamp() == result.getEpochTimestamp()) {
+                return cached;
+            }
+        }
+        return CompiledModel.compile(result, organizationCount);
+    }
+
+    @Override
+    public String toString() {
+        return GatewayUtils.toString(this,
+                "snapshots=" + snapshots.values());
+    }
+}
@@ -0,0 +1,120 @@
+/*
+ * Copyright 2019 IBM All Rights Reserved.
+ *
+ * SPDX-License-Identifier: Apache-2.0
+ */
+
+package org.hyperledger.fabric.gateway.impl.model;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+import org.hyperledger.fabric.gateway.impl.GatewayUtils;
+
+/**
+ * Request budgets for organizations, shared by all model-based endorsements on a network. Each organization with a
+ * budget has a {@link TokenBucket}, and a proposal may only be sent to an organization if a token can be taken from
+ * its bucket. Organizations have unlimited budgets unless a default or organization-specific budget is configured.
+ * <p>
+ * This implementation is thread-safe.
+ * </p>
+ */
+public final class OrganizationBudgets {
+    /**
+     * What an endorsement does when the next organization in its walk has no budget left.
+     */
+    public enum ExhaustedPolicy {
+        /**
+         * Ask a later organization that the model treats alike and that has budget first, and fail only if none has.
+         */
+        DEFER,
+        /** Fail the endorsement immediately. */
+        FAIL_FAST
+    }
+
+    private static final class Budget {
+        private final double capacity;
+        private final double refillPerSecond;
+
+        Budget(final double capacity, final double refillPerSecond) {
+            this.capacity = capacity;
+            this.refillPerSecond = refillPerSecond;
+        }
+
+        TokenBucket newBucket() {
+            return new TokenBucket(capacity, refillPerSecond);
+        }
+    }
+
+    private final Map<String, Budget> budgets = new ConcurrentHashMap<>();
+    private final Map<String, TokenBucket> buckets = new ConcurrentHashMap<>();
+    private volatile Budget defaultBudget = null;
+
+    /**
+     * Set the budget for organizations without a specific budget.
+     * @param capacity Maximum number of requests that can be sent in a burst.
+     * @param refillPerSecond Sustained number of requests per second.
+     */
+    public void setDefaultBudget(final double capacity, final double refillPerSecond) {
+        Budget budget = new Budget(capacity, refillPerSecond);
+        budget.newBucket(); // Validate arguments
+        defaultBudget = budget;
+        buckets.keySet().removeIf(organization -> !budgets.containsKey(organization));
+    }
+
+    /**
+     * Set the budget for a specific organization.
+     * @param organization Organization name.
+     * @param capacity Maximum number of requests that can be sent in a burst.
+     * @param refillPerSecond Sustained number of requests per second.
+     */
+    public void setBudget(final String organization, final double capacity, final double refillPerSecond) {
+        Budget budget = new Budget(capacity, refillPerSecond);
+        buckets.put(organization, budget.newBucket());
+        budgets.put(organization, budget);
+    }
+
+    /**
+     * Remove all budgets so that every organization is unlimited.
+     */
+    public void clear() {
+        defaultBudget = null;
+        budgets.clear();
+        buckets.clear();
+    }
+
+    /**
+     * Take a request from an organization's budget.
+     * @param organization Organization name.
+     * @return true if the request may be sent; false if the organization's budget is exhausted.
+     */
+    public boolean tryAcquire(final String organization) {
+        TokenBucket bucket = buckets.get(organization);
+        if (bucket == null) {
+            Budget budget = defaultBudget;
+            if (budget == null) {
+                return true;
+            }
+            bucket = buckets.computeIfAbsent(organization, k -> budget.newBucket());
+        }
+        return bucket.tryAcquire();
+    }
+
+    /**
+     * Return a request taken with {@link #tryAcquire(String)} that was not answered, such as a proposal cancelled
+     * before its reply arrived.
+     * @param organization Organization name.
+     */
+    public void release(final String organization) {
+        TokenBucket bucket = buckets.get(organization);
+        if (bucket != null) {
+            bucket.release();
+        }
+    }
+
+    @Override
+    public String toString() {
+        return GatewayUtils.toString(this,
+                "buckets=" + buckets);
+    }
+}
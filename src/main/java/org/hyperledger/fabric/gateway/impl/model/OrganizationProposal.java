@@ -0,0 +1,214 @@
+/*
+ * Copyright 2019 IBM All Rights Reserved.
+ *
+ * SPDX-License-Identifier: Apache-2.0
+ */
+
+package org.hyperledger.fabric.gateway.impl.model;
+
+import java.util.List;
+import java.util.Queue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+import org.hyperledger.fabric.gateway.impl.GatewayUtils;
+import org.hyperledger.fabric.sdk.Peer;
+import org.hyperledger.fabric.sdk.ProposalResponse;
+import org.hyperledger.fabric.sdk.exception.InvalidArgumentException;
+import org.hyperledger.fabric.sdk.exception.ProposalException;
+
+/**
+ * A proposal to one organization, sent to one of its peers at a time in order of preference. The proposal moves to
+ * the next peer if a peer cannot be reached, and may also be hedged: sent to the next peer while the first is still
+ * outstanding, once a delay has passed. The first response from any peer is used. An optional deadline completes the
+ * proposal with a {@link TimeoutException} if no peer has responded in time.
+ * <p>
+ * Completing or cancelling the returned future cancels sends that have not yet started, so they never reach a peer
+ * or occupy a thread. A send that is already in progress is not interrupted; it runs to completion and its response
+ * is discarded.
+ * </p>
+ * <p>
+ * This implementation is thread-safe.
+ * </p>
+ */
+public final class OrganizationProposal {
+    private static final Log LOG = LogFactory.getLog(OrganizationProposal.class);
+
+    /**
+     * Sends a proposal to a single peer.
+     */
+    @FunctionalInterface
+    public interface Sender {
+        /**
+         * Send the proposal.
+         * @param peer A peer.
+         * @return Response from the peer, which has no proposal response if the peer could not be reached.
+         * @throws InvalidArgumentException if the proposal is invalid.
+         * @throws ProposalException if the proposal could not be sent.
+         */
+        ProposalResponse send(Peer peer) throws InvalidArgumentException, ProposalException;
+    }
+
+    private final Sender sender;
+    private final List<Peer> peers;
+    private final PeerLoadBalancer loadBalancer;
+    private final ExecutorService executor;
+    private final CompletableFuture<ProposalResponse> result = new CompletableFuture<>();
+    private final Queue<Future<?>> attempts = new ConcurrentLinkedQueue<>();
+    private final AtomicInteger nextPeer = new AtomicInteger(0);
+    private final AtomicInteger pendingAttempts = new AtomicInteger(0);
+    private volatile ProposalResponse failResponse = null;
+    private volatile Exception failure = null;
+
+    private OrganizationProposal(final Sender sender, final List<Peer> peers, final PeerLoadBalancer loadBalancer,
+                                 final ExecutorService executor) {
+        this.sender = sender;
+        this.peers = peers;
+        this.loadBalancer = loadBalancer;
+        this.executor = executor;
+    }
+
+    /**
+     * Send a proposal to an organization.
+     * @param sender Sends the proposal to a single peer.
+     * @param peers Peers of the organization, most preferred first.
+     * @param loadBalancer Records the load of each peer.
+     * @param executor Runs the blocking sends.
+     * @param scheduler Runs hedging and deadline timers.
+     * @param hedgeDelayNanos Delay after which the proposal is also sent to the next peer, or zero not to hedge.
+     * @param deadlineNanos Time after which the proposal times out, or zero for no deadline.
+     * @return A future that completes with the first response from a peer, or the response of the last peer tried if
+     * none could be reached.
+     */
+    public static CompletableFuture<ProposalResponse> send(final Sender sender, final List<Peer> peers,
+                                                           final PeerLoadBalancer loadBalancer,
+                                                           final ExecutorService executor,
+                                                           final ScheduledExecutorService scheduler,
+                                                           final long hedgeDelayNanos, final long deadlineNanos) {
+        OrganizationProposal proposal = new OrganizationProposal(sender, peers, loadBalancer, executor);
+        proposal.result.whenComplete((response, e) -> proposal.cancelAttempts());
+        if (!proposal.tryNextPeer()) {
+            proposal.result.completeExceptionally(new InvalidArgumentException("No peers provided"));
+            return proposal.result;
+        }
+
+        if (hedgeDelayNanos > 0 && peers.size() > 1) {
+            proposal.schedule(scheduler, proposal::hedge, hedgeDelayNanos);
+        }
+        if (deadlineNanos > 0) {
+            proposal.schedule(scheduler, () -> proposal.result.completeExceptionally(new TimeoutException(
+                    "No proposal response within " + TimeUnit.NANOSECONDS.toMillis(deadlineNanos) + " ms")),
+                    deadlineNanos);
+        }
+        return proposal.result;
+    }
+
+    /**
+     * Schedule a timer that is cancelled once the result completes, so that finished proposals do not leave timers
+     * queued on the scheduler until they expire.
+     */
+    private void schedule(final ScheduledExecutorService scheduler, final Runnable task, final long delayNanos) {
+        try {
+            ScheduledFuture<?> timer = scheduler.schedule(task, delayNanos, TimeUnit.NANOSECONDS);
+            result.whenComplete((response, e) -> timer.cancel(false));
+        } catch (RejectedExecutionException e) {
+            LOG.debug("Proposal timer not scheduled", e);
+        }
+    }
+
+    private void hedge() {
+        if (!result.isDone() && tryNextPeer()) {
+            LOG.debug("Sent hedged proposal");
+        }
+    }
+
+    private boolean tryNextPeer() {
+        int index = nextPeer.getAndIncrement();
+        if (index >= peers.size()) {
+            return false;
+        }
+
+        Peer peer = peers.get(index);
+        pendingAttempts.incrementAndGet();
+        try {
+            attempts.add(executor.submit(() -> attempt(peer)));
+        } catch (RejectedExecutionException e) {
+            failure = e;
+            onAttemptFailed();
+        }
+        if (result.isDone()) {
+            // Completed while this attempt was being submitted
+            cancelAttempts();
+        }
+        return true;
+    }
+
+    private void cancelAttempts() {
+        Future<?> attempt;
+        while ((attempt = attempts.poll()) != null) { // checkstyle:ignore-line:InnerAssignment
+            attempt.cancel(false);
+        }
+    }
+
+    private void attempt(final Peer peer) {
+        if (result.isDone()) {
+            pendingAttempts.decrementAndGet();
+            return;
+        }
+
+        long startNanos = System.nanoTime();
+        loadBalancer.onSend(peer);
+        try {
+            ProposalResponse response = sender.send(peer);
+            if (response.getProposalResponse() != null) {
+                loadBalancer.onReply(peer, System.nanoTime() - startNanos);
+                pendingAttempts.decrementAndGet();
+                result.complete(response);
+                return;
+            }
+            loadBalancer.onFailure(peer, System.nanoTime() - startNanos);
+            LOG.warn("No response from peer " + peer.getName() + ": " + response.getMessage());
+            failResponse = response;
+        } catch (InvalidArgumentException | ProposalException | RuntimeException e) {
+            loadBalancer.onFailure(peer, System.nanoTime() - startNanos);
+            LOG.warn("Failed to send proposal to peer " + peer.getName(), e);
+            failure = e;
+        }
+
+        tryNextPeer();
+        onAttemptFailed();
+    }
+
+    /**
+     * Complete with the last failure once no attempts remain. A failover attempt is counted as pending before the
+     * attempt that started it finishes, so the count only reaches zero when every peer has been tried.
+     */
+    private void onAttemptFailed() {
+        if (pendingAttempts.decrementAndGet() > 0) {
+            return;
+        }
+
+        if (failResponse != null) {
+            result.complete(failResponse);
+        } else {
+            result.completeExceptionally(failure);
+        }
+    }
+
+    @Override
+    public String toString() {
+        return GatewayUtils.toString(this,
+                "peers=" + peers.size(),
+                "done=" + result.isDone());
+    }
+}
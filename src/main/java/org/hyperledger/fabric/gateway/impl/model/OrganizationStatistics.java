@@ -0,0 +1,241 @@
+/*
+ * Copyright 2019 IBM All Rights Reserved.
+ *
+ * SPDX-License-Identifier: Apache-2.0
+ */
+
+package org.hyperledger.fabric.gateway.impl.model;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.TimeUnit;
+
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.node.ArrayNode;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+import org.hyperledger.fabric.gateway.impl.GatewayUtils;
+
+/**
+ * Observed approval outcomes and reply latencies of organizations during model-based endorsement. Used to order
+ * organizations so that those most likely to approve quickly are asked first, and exported so that offline models
+ * can be recalibrated against observed behaviour.
+ * <p>
+ * This implementation is thread-safe.
+ * </p>
+ */
+public final class OrganizationStatistics {
+    /** Weight given to the newest latency sample in the moving average. */
+    private static final double LATENCY_SMOOTHING = 0.2;
+    /** Number of samples after which the latency histogram is aged. */
+    private static final long HISTOGRAM_SAMPLES = 1024;
+
+    private static final ObjectMapper OBJECT_MAPPER = new ObjectMapper();
+
+    private final ConcurrentMap<String, Entry> entries = new ConcurrentHashMap<>();
+
+    private static final class Entry {
+        private long approvals = 0;
+        private long rejections = 0;
+        private long timeouts = 0;
+        private double meanLatencyNanos = 0;
+        private final LatencyHistogram latencies = new LatencyHistogram(HISTOGRAM_SAMPLES);
+
+        synchronized void record(final boolean approved, final long latencyNanos) {
+            recordLatency(latencyNanos);
+            if (approved) {
+                approvals++;
+            } else {
+                rejections++;
+            }
+        }
+
+        synchronized void recordTimeout(final long waitedNanos) {
+            recordLatency(waitedNanos);
+            timeouts++;
+        }
+
+        private void recordLatency(final long latencyNanos) {
+            latencies.record(latencyNanos);
+            if (approvals + rejections + timeouts == 0) {
+                meanLatencyNanos = latencyNanos;
+            } else {
+                meanLatencyNanos += LATENCY_SMOOTHING * (latencyNanos - meanLatencyNanos);
+            }
+        }
+
+        synchronized long getApprovals() {
+            return approvals;
+        }
+
+        synchronized long getRejections() {
+            return rejections;
+        }
+
+        synchronized long getTimeouts() {
+            return timeouts;
+        }
+
+        synchronized double getApprovalRate() {
+            // Laplace smoothing so that a few early samples do not dominate
+            return (approvals + 1.0) / (approvals + rejections + timeouts + 2.0);
+        }
+
+        synchronized double getMeanLatencyNanos() {
+            return meanLatencyNanos;
+        }
+
+        synchronized long getLatencySampleCount() {
+            return latencies.getCount();
+        }
+
+        synchronized long getLatencyPercentileNanos(final double quantile) {
+            return latencies.getPercentileNanos(quantile);
+        }
+    }
+
+    /**
+     * Record the reply of an organization.
+     * @param organization Organization name.
+     * @param approved Whether the organization approved the transaction.
+     * @param latencyNanos Time from sending the proposal to receiving the reply.
+     */
+    public void record(final String organization, final boolean approved, final long latencyNanos) {
+        entries.computeIfAbsent(organization, k -> new Entry()).record(approved, latencyNanos);
+    }
+
+    /**
+     * Record that an organization did not reply before the proposal deadline. The reply would have taken at least as
+     * long as the time waited, so that time is recorded as a latency sample; leaving it out would bias latency
+     * percentiles, and deadlines derived from them, towards the replies that beat earlier deadlines. A timeout counts
+     * as a failure to approve.
+     * @param organization Organization name.
+     * @param waitedNanos Time from sending the proposal to giving up on it.
+     */
+    public void recordTimeout(final String organization, final long waitedNanos) {
+        entries.computeIfAbsent(organization, k -> new Entry()).recordTimeout(waitedNanos);
+    }
+
+    /**
+     * Number of proposals to an organization that timed out.
+     * @param organization Organization name.
+     * @return Timeout count.
+     */
+    public long getTimeouts(final String organization) {
+        Entry entry = entries.get(organization);
+        return entry != null ? entry.getTimeouts() : 0;
+    }
+
+    /**
+     * Smoothed approval rate of an organization, counting timeouts as failures. An organization with no recorded
+     * replies has a rate of 0.5.
+     * @param organization Organization name.
+     * @return Approval rate between 0 and 1.
+     */
+    public double getApprovalRate(final String organization) {
+        Entry entry = entries.get(organization);
+        return entry != null ? entry.getApprovalRate() : 0.5;
+    }
+
+    /**
+     * Moving average of the reply latency of an organization.
+     * @param organization Organization name.
+     * @return Mean latency in nanoseconds, or 0 if no replies have been recorded.
+     */
+    public double getMeanLatencyNanos(final String organization) {
+        Entry entry = entries.get(organization);
+        return entry != null ? entry.getMeanLatencyNanos() : 0;
+    }
+
+    /**
+     * Number of recent latency samples from which percentiles of an organization are estimated.
+     * @param organization Organization name.
+     * @return Sample count.
+     */
+    public long getLatencySampleCount(final String organization) {
+        Entry entry = entries.get(organization);
+        return entry != null ? entry.getLatencySampleCount() : 0;
+    }
+
+    /**
+     * Estimate a percentile of the recent reply latency of an organization.
+     * @param organization Organization name.
+     * @param quantile Quantile between 0 and 1, such as 0.99.
+     * @return Latency in nanoseconds, or 0 if no replies have been recorded.
+     */
+    public long getLatencyPercentileNanos(final String organization, final double quantile) {
+        Entry entry = entries.get(organization);
+        return entry != null ? entry.getLatencyPercentileNanos(quantile) : 0;
+    }
+
+    /**
+     * Order in which to ask organizations, cheapest first. The cost of an organization is its mean latency divided
+     * by its approval rate, which estimates the time spent per approval obtained. Organizations with no recorded
+     * replies have no cost, so they are tried early and acquire statistics. Ties keep the given order.
+     * @param organizations Organization names in analytics file order.
+     * @return Permutation of organization indexes.
+     */
+    public int[] getOrder(final List<String> organizations) {
+        int size = organizations.size();
+        int[] order = new int[size];
+        double[] costs = new double[size];
+
+        for (int i = 0; i < size; i++) {
+            String organization = organizations.get(i);
+            double cost = getMeanLatencyNanos(organization) / getApprovalRate(organization);
+
+            // Insertion sort; organization counts are small and this keeps equal costs stable
+            int j = i;
+            while (j > 0 && costs[j - 1] > cost) {
+                costs[j] = costs[j - 1];
+                order[j] = order[j - 1];
+                j--;
+            }
+            costs[j] = cost;
+            order[j] = i;
+        }
+
+        return order;
+    }
+
+    /**
+     * Write the observed statistics as JSON, using the same field names as the analytics file where they apply.
+     * @param out Output stream, which is not closed.
+     * @throws IOException if the statistics cannot be written.
+     */
+    public void export(final OutputStream out) throws IOException {
+        Map<String, Entry> sorted = new TreeMap<>(entries);
+
+        ObjectNode root = OBJECT_MAPPER.createObjectNode();
+        ArrayNode organizations = root.putArray("organizations");
+        ArrayNode statistics = root.putArray("organizationStatistics");
+
+        sorted.forEach((name, entry) -> {
+            organizations.add(name);
+            statistics.addObject()
+                    .put("organization", name)
+                    .put("approvals", entry.getApprovals())
+                    .put("rejections", entry.getRejections())
+                    .put("timeouts", entry.getTimeouts())
+                    .put("probability", entry.getApprovalRate())
+                    .put("meanLatencyMillis", entry.getMeanLatencyNanos() / TimeUnit.MILLISECONDS.toNanos(1))
+                    .put("p99LatencyMillis",
+                            (double) entry.getLatencyPercentileNanos(0.99) / TimeUnit.MILLISECONDS.toNanos(1));
+        });
+
+        OBJECT_MAPPER.writerWithDefaultPrettyPrinter()
+                .without(JsonGenerator.Feature.AUTO_CLOSE_TARGET)
+                .writeValue(out, root);
+    }
+
+    @Override
+    public String toString() {
+        return GatewayUtils.toString(this,
+                "organizations=" + entries.keySet());
+    }
+}
@@ -0,0 +1,147 @@
+/*
+ * Copyright 2019 IBM All Rights Reserved.
+ *
+ * SPDX-License-Identifier: Apache-2.0
+ */
+
+package org.hyperledger.fabric.gateway.impl.model;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.TimeUnit;
+
+import org.hyperledger.fabric.gateway.impl.GatewayUtils;
+import org.hyperledger.fabric.sdk.Peer;
+
+/**
+ * Spreads proposals for an organization across its peers. Peers are preferred by fewest outstanding requests and
+ * then by lowest mean latency, so that load moves away from peers that are busy or slow. A failed request counts as
+ * a slow one, so a peer that cannot be reached is tried after its healthy neighbours.
+ * <p>
+ * This implementation is thread-safe.
+ * </p>
+ */
+public final class PeerLoadBalancer {
+    /** Weight given to the newest latency sample in the moving average. */
+    private static final double LATENCY_SMOOTHING = 0.2;
+    /** Minimum latency recorded for a failed request. */
+    private static final long FAILURE_PENALTY_NANOS = TimeUnit.SECONDS.toNanos(1);
+
+    private final ConcurrentMap<String, Load> loads = new ConcurrentHashMap<>();
+
+    private static final class Load {
+        private int outstanding = 0;
+        private long samples = 0;
+        private double meanLatencyNanos = 0;
+
+        synchronized void start() {
+            outstanding++;
+        }
+
+        synchronized void complete(final long latencyNanos) {
+            outstanding--;
+            if (samples++ == 0) {
+                meanLatencyNanos = latencyNanos;
+            } else {
+                meanLatencyNanos += LATENCY_SMOOTHING * (latencyNanos - meanLatencyNanos);
+            }
+        }
+
+        synchronized int getOutstanding() {
+            return outstanding;
+        }
+
+        synchronized double getMeanLatencyNanos() {
+            return meanLatencyNanos;
+        }
+    }
+
+    /**
+     * Order peers of an organization by preference. Ties keep the given order.
+     * @param peers Peers of an organization.
+     * @return The same peers, most preferred first.
+     */
+    public List<Peer> order(final Collection<Peer> peers) {
+        int size = peers.size();
+        List<Peer> ordered = new ArrayList<>(size);
+        int[] outstanding = new int[size];
+        double[] latencies = new double[size];
+
+        for (Peer peer : peers) {
+            Load load = loads.get(peer.getName());
+            int peerOutstanding = load != null ? load.getOutstanding() : 0;
+            double peerLatency = load != null ? load.getMeanLatencyNanos() : 0;
+
+            // Insertion sort; peer counts per organization are small and this keeps ties stable
+            int j = ordered.size();
+            ordered.add(peer);
+            while (j > 0 && (outstanding[j - 1] > peerOutstanding
+                    || (outstanding[j - 1] == peerOutstanding && latencies[j - 1] > peerLatency))) {
+                ordered.set(j, ordered.get(j - 1));
+                outstanding[j] = outstanding[j - 1];
+                latencies[j] = latencies[j - 1];
+                j--;
+            }
+            ordered.set(j, peer);
+            outstanding[j] = peerOutstanding;
+            latencies[j] = peerLatency;
+        }
+
+        return ordered;
+    }
+
+    /**
+     * Record that a request has been sent to a peer.
+     * @param peer A peer.
+     */
+    public void onSend(final Peer peer) {
+        loads.computeIfAbsent(peer.getName(), k -> new Load()).start();
+    }
+
+    /**
+     * Record that a peer replied to a request.
+     * @param peer A peer.
+     * @param latencyNanos Time from sending the request to receiving the reply.
+     */
+    public void onReply(final Peer peer, final long latencyNanos) {
+        loads.computeIfAbsent(peer.getName(), k -> new Load()).complete(latencyNanos);
+    }
+
+    /**
+     * Record that a request to a peer failed without a reply.
+     * @param peer A peer.
+     * @param latencyNanos Time from sending the request to the failure.
+     */
+    public void onFailure(final Peer peer, final long latencyNanos) {
+        onReply(peer, Math.max(latencyNanos, FAILURE_PENALTY_NANOS));
+    }
+
+    /**
+     * Number of requests sent to a peer that have not yet completed.
+     * @param peer A peer.
+     * @return Outstanding request count.
+     */
+    public int getOutstanding(final Peer peer) {
+        Load load = loads.get(peer.getName());
+        return load != null ? load.getOutstanding() : 0;
+    }
+
+    /**
+     * Moving average of the reply latency of a peer.
+     * @param peer A peer.
+     * @return Mean latency in nanoseconds, or 0 if no requests have completed.
+     */
+    public double getMeanLatencyNanos(final Peer peer) {
+        Load load = loads.get(peer.getName());
+        return load != null ? load.getMeanLatencyNanos() : 0;
+    }
+
+    @Override
+    public String toString() {
+        return GatewayUtils.toString(this,
+                "peers=" + loads.keySet());
+    }
+}
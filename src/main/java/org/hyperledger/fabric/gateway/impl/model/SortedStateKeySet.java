@@ -0,0 +1,68 @@
+/*
+ * Copyright 2019 IBM All Rights Reserved.
+ *
+ * SPDX-License-Identifier: Apache-2.0
+ */
+
+package org.hyperledger.fabric.gateway.impl.model;
+
+import java.nio.LongBuffer;
+import java.util.function.LongPredicate;
+
+import org.hyperledger.fabric.gateway.impl.GatewayUtils;
+
+/**
+ * State key set backed by a buffer of ascending, distinct keys, typically a region of a memory-mapped model artifact.
+ * Membership is answered by binary search directly against the buffer, so no keys are copied onto the heap.
+ * <p>
+ * Only absolute reads are made on the buffer, so instances may be shared between threads.
+ * </p>
+ */
+final class SortedStateKeySet implements StateKeySet {
+    private final LongBuffer keys;
+
+    SortedStateKeySet(final LongBuffer keys) {
+        this.keys = keys;
+    }
+
+    @Override
+    public boolean contains(final long key) {
+        int low = 0;
+        int high = keys.limit() - 1;
+
+        while (low <= high) {
+            int mid = (low + high) >>> 1;
+            long value = keys.get(mid);
+            if (value < key) {
+                low = mid + 1;
+            } else if (value > key) {
+                high = mid - 1;
+            } else {
+                return true;
+            }
+        }
+
+        return false;
+    }
+
+    @Override
+    public int size() {
+        return keys.limit();
+    }
+
+    @Override
+    public boolean allMatch(final LongPredicate predicate) {
+        for (int i = 0; i < keys.limit(); i++) {
+            if (!predicate.test(keys.get(i))) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    @Override
+    public String toString() {
+        return GatewayUtils.toString(this,
+                "size=" + size());
+    }
+}
@@ -0,0 +1,69 @@
+/*
+ * Copyright 2019 IBM All Rights Reserved.
+ *
+ * SPDX-License-Identifier: Apache-2.0
+ */
+
+package org.hyperledger.fabric.gateway.impl.model;
+
+/**
+ * Decides how many organizations to send proposals to at once during a speculative model-based endorsement.
+ * <p>
+ * The state machine only moves forward one organization at a time, so any proposal sent ahead of it is consumed
+ * unless the walk ends or takes a backward transition first. The window is sized from the model: roughly the
+ * number of messages the model expects to need, scaled down by its probability of reaching agreement, since a less
+ * likely model is more likely to restart and discard speculative replies.
+ * </p>
+ */
+public final class SpeculationPolicy {
+    private final int maxWindow;
+    private final int maxWastedProposals;
+
+    /**
+     * Create a speculation policy.
+     * @param maxWindow Maximum number of proposals in flight at once. A value of 1 disables speculation.
+     * @param maxWastedProposals Maximum number of proposals per endorsement whose replies may be discarded.
+     */
+    public SpeculationPolicy(final int maxWindow, final int maxWastedProposals) {
+        if (maxWindow < 1) {
+            throw new IllegalArgumentException("Maximum window must be at least 1: " + maxWindow);
+        }
+        if (maxWastedProposals < 0) {
+            throw new IllegalArgumentException("Maximum wasted proposals must not be negative: " + maxWastedProposals);
+        }
+
+        this.maxWindow = maxWindow;
+        this.maxWastedProposals = maxWastedProposals;
+    }
+
+    public boolean isEnabled() {
+        return maxWindow > 1 && maxWastedProposals > 0;
+    }
+
+    public int getMaxWastedProposals() {
+        return maxWastedProposals;
+    }
+
+    /**
+     * Number of consecutive organizations, starting with the current one, that should have a proposal in flight.
+     * @param model Model being followed.
+     * @param remainingOrganizations Organizations from the current one to the end of the model, inclusive.
+     * @param remainingMessages Messages that may still be sent before the message limit is reached.
+     * @param wastedProposals Proposals already discarded during this endorsement.
+     * @return A window of at least 1.
+     */
+    public int getWindow(final CompiledModel model, final int remainingOrganizations, final int remainingMessages,
+                         final int wastedProposals) {
+        if (!isEnabled()) {
+            return 1;
+        }
+
+        int window = (int) Math.round(model.getExpectedMessages() * model.getProbability());
+        window = Math.min(window, maxWindow);
+        window = Math.min(window, remainingOrganizations);
+        window = Math.min(window, remainingMessages);
+        // Everything beyond the current organization may be wasted
+        window = Math.min(window, 1 + Math.max(0, maxWastedProposals - wastedProposals));
+        return Math.max(window, 1);
+    }
+}
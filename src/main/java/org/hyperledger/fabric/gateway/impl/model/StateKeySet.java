@@ -0,0 +1,34 @@
+/*
+ * Copyright 2019 IBM All Rights Reserved.
+ *
+ * SPDX-License-Identifier: Apache-2.0
+ */
+
+package org.hyperledger.fabric.gateway.impl.model;
+
+import java.util.function.LongPredicate;
+
+/**
+ * Read-only set of packed state keys, used for specification and backward transition membership checks.
+ */
+interface StateKeySet {
+    /**
+     * Check whether a state key is in the set.
+     * @param key Packed response vector.
+     * @return true if the key is present.
+     */
+    boolean contains(long key);
+
+    /**
+     * Number of keys in the set.
+     * @return Key count.
+     */
+    int size();
+
+    /**
+     * Check whether every key in the set matches a predicate, stopping at the first that does not.
+     * @param predicate Test applied to each key.
+     * @return true if every key matches, or the set is empty.
+     */
+    boolean allMatch(LongPredicate predicate);
+}
@@ -0,0 +1,113 @@
+/*
+ * Copyright 2019 IBM All Rights Reserved.
+ *
+ * SPDX-License-Identifier: Apache-2.0
+ */
+
+package org.hyperledger.fabric.gateway.impl.model;
+
+/**
+ * Encodes organization response vectors as packed base-3 keys. Each position holds -1 (no response yet), 0 (rejected)
+ * or 1 (approved), stored as the base-3 digit {@code value + 1}. The vector with no responses therefore encodes as
+ * zero, and recording a response for a single organization is a single addition.
+ */
+public final class StateKeys {
+    /** Largest number of organizations whose response vector fits in a non-negative long. */
+    public static final int MAX_ORGANIZATIONS = 39;
+
+    /** Key of the response vector in which no organization has responded. */
+    public static final long INITIAL = 0L;
+
+    private static final long[] POWERS_OF_THREE = new long[MAX_ORGANIZATIONS];
+
+    static {
+        long power = 1;
+        for (int i = 0; i < MAX_ORGANIZATIONS; i++) {
+            POWERS_OF_THREE[i] = power;
+            power *= 3;
+        }
+    }
+
+    // Private constructor to prevent instantiation
+    private StateKeys() { }
+
+    /**
+     * Encode a complete response vector.
+     * @param responses Response for each organization; one of -1, 0 or 1.
+     * @return Packed key.
+     * @throws IllegalArgumentException if the vector is too long or contains an invalid response value.
+     */
+    public static long encode(final int[] responses) {
+        checkOrganizationCount(responses.length);
+
+        long key = INITIAL;
+        for (int i = 0; i < responses.length; i++) {
+            int response = responses[i];
+            if (response < -1 || response > 1) {
+                throw new IllegalArgumentException("Invalid response value " + response + " at position " + i);
+            }
+            key += (response + 1) * POWERS_OF_THREE[i];
+        }
+        return key;
+    }
+
+    /**
+     * Record the response of an organization that has not yet responded.
+     * @param key Current key, in which the organization has no response.
+     * @param index Organization index.
+     * @param response Response value; either 0 or 1.
+     * @return Updated key.
+     */
+    public static long withResponse(final long key, final int index, final int response) {
+        return key + (response + 1) * POWERS_OF_THREE[index];
+    }
+
+    /**
+     * Get the response of an organization from a key.
+     * @param key Packed key.
+     * @param index Organization index.
+     * @return Response value; one of -1, 0 or 1.
+     */
+    public static int responseAt(final long key, final int index) {
+        return (int) (key / POWERS_OF_THREE[index] % 3) - 1;
+    }
+
+    /**
+     * Exchange the responses of two organizations.
+     * @param key Packed key.
+     * @param first Index of one organization.
+     * @param second Index of the other organization.
+     * @return Key in which each organization has the response the other had.
+     */
+    public static long swap(final long key, final int first, final int second) {
+        long firstDigit = key / POWERS_OF_THREE[first] % 3;
+        long secondDigit = key / POWERS_OF_THREE[second] % 3;
+        return key + (secondDigit - firstDigit) * POWERS_OF_THREE[first]
+                + (firstDigit - secondDigit) * POWERS_OF_THREE[second];
+    }
+
+    /**
+     * Decode a key to a response vector.
+     * @param key Packed key.
+     * @param organizationCount Number of organizations.
+     * @return Response for each organization.
+     */
+    public static int[] decode(final long key, final int organizationCount) {
+        checkOrganizationCount(organizationCount);
+
+        int[] responses = new int[organizationCount];
+        long remainder = key;
+        for (int i = 0; i < organizationCount; i++) {
+            responses[i] = (int) (remainder % 3) - 1;
+            remainder /= 3;
+        }
+        return responses;
+    }
+
+    static void checkOrganizationCount(final int organizationCount) {
+        if (organizationCount > MAX_ORGANIZATIONS) {
+            throw new IllegalArgumentException("Models with more than " + MAX_ORGANIZATIONS
+                    + " organizations are not supported: " + organizationCount);
+        }
+    }
+}
@@ -0,0 +1,222 @@
+/*
+ * Copyright 2019 IBM All Rights Reserved.
+ *
+ * SPDX-License-Identifier: Apache-2.0
+ */
+
+package org.hyperledger.fabric.gateway.impl.model;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.ArrayList;
+import java.util.List;
+
+import com.fasterxml.jackson.core.JsonFactory;
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonToken;
+
+/**
+ * Reads a single model from a JSON analytics file using the Jackson streaming parser. Every other entry in
+ * {@code modelCheckResultList} is skipped without being materialized, and response vectors are encoded to state keys
+ * as they are read, so no {@code int[]} vectors or boxed sets are created.
+ */
+final class StreamingAnalyticsLoader {
+    private final JsonParser parser;
+    private final int modelId;
+    private int vectorLength = -1;
+
+    private StreamingAnalyticsLoader(final JsonParser parser, final int modelId) {
+        this.parser = parser;
+        this.modelId = modelId;
+    }
+
+    /**
+     * Load a model from an analytics file.
+     * @param jsonFactory Factory used to create the parser.
+     * @param path Analytics file.
+     * @param attributes Attributes of the file, recorded to detect later changes.
+     * @param modelId ID of the model to load.
+     * @param current Snapshot already loaded from the same, unchanged file, whose organizations and specification are
+     *                reused and whose models are retained; or null to read everything from the file.
+     * @return Snapshot containing the requested model, if the file has one, in addition to any models from the
+     * current snapshot.
+     * @throws IOException if the file cannot be read or is not valid JSON.
+     * @throws IllegalArgumentException if the file contains an invalid response vector.
+     */
+    static AnalyticsSnapshot load(final JsonFactory jsonFactory, final Path path, final BasicFileAttributes attributes,
+                                  final int modelId, final AnalyticsSnapshot current) throws IOException {
+        try (JsonParser parser = jsonFactory.createParser(path.toFile())) {
+            return new StreamingAnalyticsLoader(parser, modelId).read(attributes, current);
+        }
+    }
+
+    private AnalyticsSnapshot read(final BasicFileAttributes attributes, final AnalyticsSnapshot current)
+            throws IOException {
+        expect(parser.nextToken(), JsonToken.START_OBJECT);
+
+        List<String> organizations = null;
+        LongHashSet specification = null;
+        CompiledModel model = null;
+
+        while (parser.nextToken() == JsonToken.FIELD_NAME) {
+            String field = parser.getCurrentName();
+            parser.nextToken();
+
+            if ("organizations".equals(field) && current == null) {
+                organizations = readStrings();
+            } else if ("specification".equals(field) && current == null) {
+                specification = readVectors();
+            } else if ("modelCheckResultList".equals(field)) {
+                model = readModelList();
+            } else {
+                parser.skipChildren();
+            }
+        }
+
+        if (current != null) {
+            checkVectorLength(current.getOrganizationCount());
+            return model != null ? current.withModel(model) : current;
+        }
+
+        if (organizations == null) {
+            organizations = new ArrayList<>();
+        }
+        StateKeys.checkOrganizationCount(organizations.size());
+        checkVectorLength(organizations.size());
+
+        return AnalyticsSnapshot.partial(attributes, organizations,
+                specification != null ? specification : new LongHashSet(), model);
+    }
+
+    private CompiledModel readModelList() throws IOException {
+        if (parser.currentToken() == JsonToken.VALUE_NULL) {
+            return null;
+        }
+        expect(parser.currentToken(), JsonToken.START_ARRAY);
+
+        CompiledModel model = null;
+        while (parser.nextToken() != JsonToken.END_ARRAY) {
+            if (model != null) {
+                // First model with a given ID wins
+                parser.skipChildren();
+            } else {
+                model = readModel();
+            }
+        }
+        return model;
+    }
+
+    /**
+     * Read a model entry, returning null and skipping the rest of the entry as soon as its ID is known not to match.
+     */
+    private CompiledModel readModel() throws IOException {
+        expect(parser.currentToken(), JsonToken.START_OBJECT);
+
+        Integer id = null;
+        double probability = 0;
+        double expectedMessages = 0;
+        long epochTimestamp = 0;
+        LongHashSet backwardTransitions = null;
+
+        while (parser.nextToken() == JsonToken.FIELD_NAME) {
+            String field = parser.getCurrentName();
+            parser.nextToken();
+
+            if ("id".equals(field)) {
+                id = parser.getIntValue();
+                if (id != modelId) {
+                    skipRestOfObject();
+                    return null;
+                }
+            } else if ("probability".equals(field)) {
+                probability = parser.getDoubleValue();
+            } else if ("expectedMessages".equals(field)) {
+                expectedMessages = parser.getDoubleValue();
+            } else if ("epochTimestamp".equals(field)) {
+                epochTimestamp = parser.getLongValue();
+            } else if ("backwardTransitions".equals(field)) {
+                backwardTransitions = readVectors();
+            } else {
+                parser.skipChildren();
+            }
+        }
+
+        if (id == null) {
+            return null;
+        }
+        return new CompiledModel(id, probability, expectedMessages, epochTimestamp,
+                backwardTransitions != null ? backwardTransitions : new LongHashSet());
+    }
+
+    private void skipRestOfObject() throws IOException {
+        while (parser.nextToken() == JsonToken.FIELD_NAME) {
+            parser.nextToken();
+            parser.skipChildren();
+        }
+    }
+
+    private List<String> readStrings() throws IOException {
+        List<String> values = new ArrayList<>();
+        if (parser.currentToken() == JsonToken.VALUE_NULL) {
+            return values;
+        }
+        expect(parser.currentToken(), JsonToken.START_ARRAY);
+
+        while (parser.nextToken() != JsonToken.END_ARRAY) {
+            values.add(parser.getValueAsString());
+        }
+        return values;
+    }
+
+    private LongHashSet readVectors() throws IOException {
+        LongHashSet keys = new LongHashSet();
+        if (parser.currentToken() == JsonToken.VALUE_NULL) {
+            return keys;
+        }
+        expect(parser.currentToken(), JsonToken.START_ARRAY);
+
+        while (parser.nextToken() != JsonToken.END_ARRAY) {
+            keys.add(readVector());
+        }
+        return keys;
+    }
+
+    private long readVector() throws IOException {
+        expect(parser.currentToken(), JsonToken.START_ARRAY);
+
+        long key = StateKeys.INITIAL;
+        int index = 0;
+        while (parser.nextToken() != JsonToken.END_ARRAY) {
+            int response = parser.getIntValue();
+            if (response < -1 || response > 1) {
+                throw new IllegalArgumentException("Invalid response value " + response + " at position " + index);
+            }
+            StateKeys.checkOrganizationCount(index + 1);
+            key = StateKeys.withResponse(key, index, response);
+            index++;
+        }
+
+        if (vectorLength < 0) {
+            vectorLength = index;
+        } else if (vectorLength != index) {
+            throw new IllegalArgumentException("Expected response vector of length " + vectorLength
+                    + " but was " + index);
+        }
+        return key;
+    }
+
+    private void checkVectorLength(final int organizationCount) {
+        if (vectorLength >= 0 && vectorLength != organizationCount) {
+            throw new IllegalArgumentException("Expected response vector of length " + organizationCount
+                    + " but was " + vectorLength);
+        }
+    }
+
+    private void expect(final JsonToken actual, final JsonToken expected) throws IOException {
+        if (actual != expected) {
+            throw new IOException("Expected " + expected + " but found " + actual + " at "
+                    + parser.getCurrentLocation());
+        }
+    }
+}
@@ -0,0 +1,94 @@
+/*
+ * Copyright 2019 IBM All Rights Reserved.
+ *
+ * SPDX-License-Identifier: Apache-2.0
+ */
+
+package org.hyperledger.fabric.gateway.impl.model;
+
+import java.util.concurrent.TimeUnit;
+import java.util.function.LongSupplier;
+
+import org.hyperledger.fabric.gateway.impl.GatewayUtils;
+
+/**
+ * Token bucket rate limiter. The bucket starts full, holds at most {@code capacity} tokens, and is refilled
+ * continuously at {@code refillPerSecond} tokens per second.
+ * <p>
+ * This implementation is thread-safe.
+ * </p>
+ */
+public final class TokenBucket {
+    private static final double NANOS_PER_SECOND = TimeUnit.SECONDS.toNanos(1);
+
+    private final double capacity;
+    private final double refillPerNano;
+    private final LongSupplier nanoClock;
+
+    private double tokens;
+    private long lastRefillNanos;
+
+    public TokenBucket(final double capacity, final double refillPerSecond) {
+        this(capacity, refillPerSecond, System::nanoTime);
+    }
+
+    // Non-private only for testing
+    TokenBucket(final double capacity, final double refillPerSecond, final LongSupplier nanoClock) {
+        if (capacity < 1) {
+            throw new IllegalArgumentException("Capacity must be at least 1: " + capacity);
+        }
+        if (refillPerSecond < 0) {
+            throw new IllegalArgumentException("Refill rate must not be negative: " + refillPerSecond);
+        }
+
+        this.capacity = capacity;
+        this.refillPerNano = refillPerSecond / NANOS_PER_SECOND;
+        this.nanoClock = nanoClock;
+        this.tokens = capacity;
+        this.lastRefillNanos = nanoClock.getAsLong();
+    }
+
+    /**
+     * Take a token if one is available.
+     * @return true if a token was taken; false if the bucket is empty.
+     */
+    public synchronized boolean tryAcquire() {
+        refill();
+        if (tokens < 1) {
+            return false;
+        }
+        tokens -= 1;
+        return true;
+    }
+
+    /**
+     * Return a token that was taken but not used, for example because the request it was taken for was cancelled
+     * before being answered. The bucket is not filled beyond its capacity.
+     */
+    public synchronized void release() {
+        refill();
+        tokens = Math.min(capacity, tokens + 1);
+    }
+
+    /**
+     * Number of tokens currently available, including any fraction of a token.
+     * @return Available tokens.
+     */
+    public synchronized double getAvailableTokens() {
+        refill();
+        return tokens;
+    }
+
+    private void refill() {
+        long now = nanoClock.getAsLong();
+        tokens = Math.min(capacity, tokens + (now - lastRefillNanos) * refillPerNano);
+        lastRefillNanos = now;
+    }
+
+    @Override
+    public String toString() {
+        return GatewayUtils.toString(this,
+                "capacity=" + capacity,
+                "refillPerSecond=" + refillPerNano * NANOS_PER_SECOND);
+    }
+}
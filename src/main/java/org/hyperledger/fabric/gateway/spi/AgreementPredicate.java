@@ -0,0 +1,25 @@
+/*
+ * Copyright 2019 IBM All Rights Reserved.
+ *
+ * SPDX-License-Identifier: Apache-2.0
+ */
+
+package org.hyperledger.fabric.gateway.spi;
+
+import org.hyperledger.fabric.sdk.ProposalResponse;
+
+/**
+ * Decides whether an organization's proposal response counts as approval of a transaction during model-based
+ * endorsement. A predicate is created for each endorsement by an {@link AgreementPredicateFactory}, and is only
+ * called for responses with a successful status.
+ * <p>A predicate is used by one endorsement at a time, so implementations need not be thread-safe.</p>
+ */
+@FunctionalInterface
+public interface AgreementPredicate {
+    /**
+     * Called for each successful proposal response received during an endorsement.
+     * @param proposalResponse A proposal response.
+     * @return true if the response approves the transaction.
+     */
+    boolean isApproval(ProposalResponse proposalResponse);
+}
@@ -0,0 +1,24 @@
+/*
+ * Copyright 2019 IBM All Rights Reserved.
+ *
+ * SPDX-License-Identifier: Apache-2.0
+ */
+
+package org.hyperledger.fabric.gateway.spi;
+
+import org.hyperledger.fabric.sdk.ProposalResponse;
+
+/**
+ * Functional interface describing a factory function for constructing {@link AgreementPredicate} instances.
+ * <p>Default implementations can be obtained from {@link org.hyperledger.fabric.gateway.DefaultAgreementPredicates}.</p>
+ */
+@FunctionalInterface
+public interface AgreementPredicateFactory {
+    /**
+     * Factory function to create an agreement predicate for a single endorsement.
+     * @param referenceResponse Response of the organization with the highest probability of giving a correct response,
+     *                          or null if the endorsement has no reference response.
+     * @return An agreement predicate.
+     */
+    AgreementPredicate create(ProposalResponse referenceResponse);
+}
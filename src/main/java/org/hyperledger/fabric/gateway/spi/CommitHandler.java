@@ -6,6 +6,8 @@
 
 package org.hyperledger.fabric.gateway.spi;
 
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
 import java.util.concurrent.TimeUnit;
 import java.util.concurrent.TimeoutException;
 
@@ -37,6 +39,26 @@ public interface CommitHandler {
      */
     void waitForEvents(long timeout, TimeUnit timeUnit) throws ContractException, TimeoutException, InterruptedException;
 
+    /**
+     * Get a future that completes once enough transaction commit events have been received to satisfy the event
+     * handling strategy. The future completes exceptionally with the same exceptions thrown by
+     * {@link #waitForEvents(long, TimeUnit)}.
+     * <p>The default implementation waits for events on a pool thread. Implementations should override it so that no
+     * thread is blocked while waiting.</p>
+     * @param timeout the maximum time to wait.
+     * @param timeUnit the time unit of the timeout argument.
+     * @return A future that completes when the transaction is committed.
+     */
+    default CompletableFuture<Void> waitForEventsAsync(long timeout, TimeUnit timeUnit) {
+        return CompletableFuture.runAsync(() -> {
+            try {
+                waitForEvents(timeout, timeUnit);
+            } catch (ContractException | TimeoutException | InterruptedException e) {
+                throw new CompletionException(e);
+            }
+        });
+    }
+
     /**
      * Called to interrupt the waiting state of {@link #waitForEvents(long, TimeUnit)} before completion.
      */
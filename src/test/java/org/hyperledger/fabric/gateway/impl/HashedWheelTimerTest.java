@@ -0,0 +1,142 @@
+/*
+ * Copyright 2019 IBM All Rights Reserved.
+ *
+ * SPDX-License-Identifier: Apache-2.0
+ */
+
+package org.hyperledger.fabric.gateway.impl;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+public class HashedWheelTimerTest {
+    private HashedWheelTimer timer;
+
+    @BeforeEach
+    public void beforeEach() {
+        timer = new HashedWheelTimer("test-timer", 1, TimeUnit.MILLISECONDS, 8);
+    }
+
+    @AfterEach
+    public void afterEach() {
+        timer.close();
+    }
+
+    @Test
+    public void task_runs_after_delay() throws InterruptedException {
+        CountDownLatch latch = new CountDownLatch(1);
+        long startNanos = System.nanoTime();
+        AtomicLong elapsedNanos = new AtomicLong();
+
+        HashedWheelTimer.Timeout timeout = timer.schedule(() -> {
+            elapsedNanos.set(System.nanoTime() - startNanos);
+            latch.countDown();
+        }, 20, TimeUnit.MILLISECONDS);
+
+        assertThat(latch.await(10, TimeUnit.SECONDS)).isTrue();
+        assertThat(elapsedNanos.get()).isGreaterThanOrEqualTo(TimeUnit.MILLISECONDS.toNanos(20));
+        assertThat(timeout.isExpired()).isTrue();
+    }
+
+    @Test
+    public void task_longer_than_one_rotation_does_not_run_early() throws InterruptedException {
+        CountDownLatch latch = new CountDownLatch(1);
+        long startNanos = System.nanoTime();
+        AtomicLong elapsedNanos = new AtomicLong();
+
+        // Eight one millisecond buckets, so the wheel rotates several times before expiry
+        timer.schedule(() -> {
+            elapsedNanos.set(System.nanoTime() - startNanos);
+            latch.countDown();
+        }, 50, TimeUnit.MILLISECONDS);
+
+        assertThat(latch.await(10, TimeUnit.SECONDS)).isTrue();
+        assertThat(elapsedNanos.get()).isGreaterThanOrEqualTo(TimeUnit.MILLISECONDS.toNanos(50));
+    }
+
+    @Test
+    public void cancelled_task_does_not_run() throws InterruptedException {
+        AtomicBoolean ran = new AtomicBoolean(false);
+        HashedWheelTimer.Timeout timeout = timer.schedule(() -> ran.set(true), 10, TimeUnit.MILLISECONDS);
+
+        boolean cancelled = timeout.cancel();
+        Thread.sleep(50);
+
+        assertThat(cancelled).isTrue();
+        assertThat(timeout.isCancelled()).isTrue();
+        assertThat(ran.get()).isFalse();
+    }
+
+    @Test
+    public void expired_task_cannot_be_cancelled() throws InterruptedException {
+        CountDownLatch latch = new CountDownLatch(1);
+        HashedWheelTimer.Timeout timeout = timer.schedule(latch::countDown, 1, TimeUnit.MILLISECONDS);
+
+        assertThat(latch.await(10, TimeUnit.SECONDS)).isTrue();
+        assertThat(timeout.cancel()).isFalse();
+    }
+
+    @Test
+    public void cancelled_timeouts_are_not_pending() {
+        List<HashedWheelTimer.Timeout> timeouts = new ArrayList<>();
+        for (int i = 0; i < 50000; i++) {
+            timeouts.add(timer.schedule(() -> { }, 1, TimeUnit.HOURS));
+        }
+        assertThat(timer.getPendingCount()).isEqualTo(50000);
+
+        timeouts.forEach(HashedWheelTimer.Timeout::cancel);
+
+        assertThat(timer.getPendingCount()).isZero();
+    }
+
+    @Test
+    public void failing_task_does_not_stop_timer() throws InterruptedException {
+        CountDownLatch latch = new CountDownLatch(1);
+        timer.schedule(() -> {
+            throw new IllegalStateException("Failed");
+        }, 1, TimeUnit.MILLISECONDS);
+        timer.schedule(latch::countDown, 5, TimeUnit.MILLISECONDS);
+
+        assertThat(latch.await(10, TimeUnit.SECONDS)).isTrue();
+    }
+
+    @Test
+    public void schedule_after_close_throws() {
+        timer.close();
+
+        assertThatThrownBy(() -> timer.schedule(() -> { }, 1, TimeUnit.MILLISECONDS))
+                .isInstanceOf(IllegalStateException.class);
+    }
+
+    @Test
+    public void future_completes_exceptionally_on_timeout() {
+        CompletableFuture<String> future = AsyncTimeouts.within(new CompletableFuture<>(), 10, TimeUnit.MILLISECONDS,
+                () -> new TimeoutException("Timed out"));
+
+        assertThatThrownBy(future::get).hasCauseInstanceOf(TimeoutException.class);
+    }
+
+    @Test
+    public void future_completed_in_time_keeps_result() throws Exception {
+        CompletableFuture<String> source = new CompletableFuture<>();
+        CompletableFuture<String> future = AsyncTimeouts.within(source, 1, TimeUnit.MINUTES,
+                () -> new TimeoutException("Timed out"));
+
+        source.complete("result");
+
+        assertThat(future.get()).isEqualTo("result");
+    }
+}
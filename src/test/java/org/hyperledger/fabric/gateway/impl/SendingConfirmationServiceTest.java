@@ -0,0 +1,352 @@
+/*
+ * Copyright 2019 IBM All Rights Reserved.
+ *
+ * SPDX-License-Identifier: Apache-2.0
+ */
+
+package org.hyperledger.fabric.gateway.impl;
+
+import java.io.IOException;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.hyperledger.fabric.gateway.TestUtils;
+import org.hyperledger.fabric.gateway.impl.model.AgreementStateMachine;
+import org.hyperledger.fabric.gateway.impl.model.DecisionJournal;
+import org.hyperledger.fabric.gateway.impl.model.DecisionJournalReader;
+import org.hyperledger.fabric.gateway.impl.simulation.SimulatedAnalytics;
+import org.hyperledger.fabric.gateway.impl.simulation.SimulatedNetwork;
+import org.hyperledger.fabric.gateway.model.AgreementResponseDTO;
+import org.hyperledger.fabric.sdk.Channel;
+import org.hyperledger.fabric.sdk.Peer;
+import org.hyperledger.fabric.sdk.ProposalResponse;
+import org.hyperledger.fabric.sdk.TransactionProposalRequest;
+import org.hyperledger.fabric.sdk.exception.ProposalException;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.Mockito;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+public class SendingConfirmationServiceTest {
+    private static final TestUtils testUtils = TestUtils.getInstance();
+    private static final List<String> ORGANIZATIONS = Arrays.asList("org1", "org2", "org3", "org4", "org5");
+    private static final int THRESHOLD = 3;
+    private static final long MILLIS = TimeUnit.MILLISECONDS.toNanos(1);
+
+    private final CountDownLatch release = new CountDownLatch(1);
+    private final AtomicInteger sending = new AtomicInteger(0);
+    private final AtomicInteger maxSending = new AtomicInteger(0);
+    private Path analyticsFile;
+    private SendingConfirmationServiceImpl service;
+
+    @BeforeEach
+    public void beforeEach() throws IOException {
+        analyticsFile = testUtils.createTempFile();
+        SimulatedAnalytics.write(analyticsFile, ORGANIZATIONS, THRESHOLD, 100, 1);
+        service = new SendingConfirmationServiceImpl();
+    }
+
+    @AfterEach
+    public void afterEach() {
+        release.countDown();
+        service.close();
+    }
+
+    private Channel newBlockingChannel() throws Exception {
+        ProposalResponse response = testUtils.newSuccessfulProposalResponse("peer1");
+        Channel channel = testUtils.newMockChannel("channel");
+        Mockito.when(channel.sendTransactionProposal(Mockito.any(TransactionProposalRequest.class),
+                Mockito.<Collection<Peer>>any())).thenAnswer(invocation -> {
+                    int current = sending.incrementAndGet();
+                    maxSending.accumulateAndGet(current, Math::max);
+                    release.await();
+                    sending.decrementAndGet();
+                    return Collections.singletonList(response);
+                });
+        return channel;
+    }
+
+    private CompletableFuture<ProposalResponse> sendProposalAsync(final SendingConfirmationServiceImpl sender,
+                                                                  final Channel channel) {
+        return sender.sendProposalAsync(channel, Mockito.mock(TransactionProposalRequest.class),
+                Collections.singletonList(testUtils.newMockPeer("peer1")));
+    }
+
+    private static SimulatedNetwork newNetwork(final long seed, final double approvalProbability,
+                                               final long... latencyMillis) {
+        SimulatedNetwork network = new SimulatedNetwork(seed);
+        for (int i = 0; i < latencyMillis.length; i++) {
+            network.addOrganization(ORGANIZATIONS.get(i), approvalProbability,
+                    SimulatedNetwork.LatencyDistribution.fixed(latencyMillis[i] * MILLIS));
+        }
+        return network;
+    }
+
+    private List<DecisionJournalReader.Entry> readJournal(final DecisionJournal journal, final Path directory)
+            throws IOException {
+        journal.close();
+        List<DecisionJournalReader.Entry> entries = new ArrayList<>();
+        DecisionJournalReader.read(directory.resolve(DecisionJournal.FILE_NAME), entries::add);
+        return entries;
+    }
+
+    private CompletableFuture<AgreementResponseDTO> endorseAsync(final SendingConfirmationServiceImpl endorser,
+                                                                 final SimulatedNetwork network,
+                                                                 final SimulatedNetwork.SimulatedRequest request) {
+        return endorser.sendForConfirmationCustomIdAsync(network.getChannel(), analyticsFile.toString(),
+                SimulatedAnalytics.MODEL_ID, network.getApproval(), request.getRequest(), network.getPeers());
+    }
+
+    private CompletableFuture<AgreementResponseDTO> endorseWithReferenceAsync(
+            final SimulatedNetwork network, final SimulatedNetwork.SimulatedRequest request,
+            final String referenceOrganization) {
+        return service.sendForConfirmationWithReferenceAsync(network.getChannel(), analyticsFile.toString(),
+                SimulatedAnalytics.MODEL_ID, referenceOrganization, request.getRequest(), network.getPeers());
+    }
+
+    private static void verifySentOnce(final SimulatedNetwork network, final SimulatedNetwork.SimulatedRequest request,
+                                       final int organization) throws Exception {
+        Mockito.verify(network.getChannel(), Mockito.times(1)).sendTransactionProposal(
+                Mockito.same(request.getRequest()),
+                Mockito.eq(Collections.singleton(network.getPeers().get(organization))));
+    }
+
+    @Test
+    public void reference_response_serves_as_step_of_reference_organization() throws Exception {
+        SimulatedAnalytics.write(analyticsFile, ORGANIZATIONS.subList(0, THRESHOLD), THRESHOLD, 100, 1);
+        Path journalDirectory = testUtils.createTempDirectory();
+        DecisionJournal journal = new DecisionJournal(journalDirectory, 16, 1024 * 1024, 1);
+        service.setDecisionJournal(journal);
+        SimulatedNetwork network = newNetwork(1, 1.0, 0, 0, 0);
+        SimulatedNetwork.SimulatedRequest request = network.newRequest(0);
+
+        AgreementResponseDTO result = endorseWithReferenceAsync(network, request, "org1").get(30, TimeUnit.SECONDS);
+
+        List<DecisionJournalReader.Entry> steps = readJournal(journal, journalDirectory);
+        assertThat(steps).extracting(DecisionJournalReader.Entry::getOrganization).containsExactly(0, 1, 2);
+        assertThat(result.isAgreementReached()).isTrue();
+        assertThat(request.getProposalCount()).isEqualTo(THRESHOLD);
+        verifySentOnce(network, request, 0);
+    }
+
+    @Test
+    public void reference_organization_later_in_walk_is_not_sent_again() throws Exception {
+        SimulatedAnalytics.write(analyticsFile, ORGANIZATIONS.subList(0, THRESHOLD), THRESHOLD, 100, 1);
+        SimulatedNetwork network = newNetwork(1, 1.0, 0, 0, 0);
+        SimulatedNetwork.SimulatedRequest request = network.newRequest(0);
+
+        AgreementResponseDTO result = endorseWithReferenceAsync(network, request, "org3").get(30, TimeUnit.SECONDS);
+
+        assertThat(result.isAgreementReached()).isTrue();
+        assertThat(result.getResponses()).hasSize(THRESHOLD);
+        assertThat(request.getProposalCount()).isEqualTo(THRESHOLD);
+        verifySentOnce(network, request, 2);
+    }
+
+    @Test
+    public void reference_endorsement_with_missing_analytics_file_throws() throws Exception {
+        SimulatedNetwork network = newNetwork(1, 1.0, 0, 0, 0, 0, 0);
+        SimulatedNetwork.SimulatedRequest request = network.newRequest(0);
+        String missingFile = analyticsFile.resolveSibling("missing.json").toString();
+
+        assertThatThrownBy(() -> service.sendForConfirmationWithReference(network.getChannel(), missingFile,
+                SimulatedAnalytics.MODEL_ID, "org1", request.getRequest(), network.getPeers()))
+                .isInstanceOf(ProposalException.class)
+                .hasCauseInstanceOf(NoSuchFileException.class);
+        assertThat(request.getProposalCount()).isZero();
+    }
+
+    @Test
+    public void async_reference_endorsement_with_missing_analytics_file_fails() throws Exception {
+        SimulatedNetwork network = newNetwork(1, 1.0, 0, 0, 0, 0, 0);
+        SimulatedNetwork.SimulatedRequest request = network.newRequest(0);
+        String missingFile = analyticsFile.resolveSibling("missing.json").toString();
+
+        CompletableFuture<AgreementResponseDTO> result = service.sendForConfirmationWithReferenceAsync(
+                network.getChannel(), missingFile, SimulatedAnalytics.MODEL_ID, "org1", request.getRequest(),
+                network.getPeers());
+
+        assertThatThrownBy(result::get).hasCauseInstanceOf(NoSuchFileException.class);
+    }
+
+    @Test
+    public void exhausted_organization_is_not_deferred_to_one_that_is_not_interchangeable() throws Exception {
+        // Only walk vectors, so that the first two organizations are interchangeable and the rest are not
+        SimulatedAnalytics.write(analyticsFile, ORGANIZATIONS, THRESHOLD, 10, 1);
+        service.getBudgets().setBudget("org3", 1, 0);
+        service.getBudgets().tryAcquire("org3");
+        SimulatedNetwork network = newNetwork(1, 1.0, 0, 0, 0, 0, 0);
+        SimulatedNetwork.SimulatedRequest request = network.newRequest(0);
+
+        CompletableFuture<AgreementResponseDTO> result = endorseAsync(service, network, request);
+
+        assertThatThrownBy(() -> result.get(30, TimeUnit.SECONDS)).hasCauseInstanceOf(ProposalException.class);
+        assertThat(request.getProposalCount()).isEqualTo(2);
+    }
+
+    @Test
+    public void budget_of_cancelled_speculative_proposal_is_returned() throws Exception {
+        service.setSpeculation(THRESHOLD, ORGANIZATIONS.size());
+        service.getBudgets().setDefaultBudget(1, 0);
+        // The first organization rejects, so the last is sent speculatively while waiting for the fourth, but is
+        // not needed
+        SimulatedNetwork network = new SimulatedNetwork(1)
+                .addOrganization("org1", 0.0, SimulatedNetwork.LatencyDistribution.fixed(0))
+                .addOrganization("org2", 1.0, SimulatedNetwork.LatencyDistribution.fixed(0))
+                .addOrganization("org3", 1.0, SimulatedNetwork.LatencyDistribution.fixed(0))
+                .addOrganization("org4", 1.0, SimulatedNetwork.LatencyDistribution.fixed(100 * MILLIS))
+                .addOrganization("org5", 1.0, SimulatedNetwork.LatencyDistribution.fixed(500 * MILLIS));
+        SimulatedNetwork.SimulatedRequest request = network.newRequest(0);
+
+        AgreementResponseDTO result = endorseAsync(service, network, request).get(30, TimeUnit.SECONDS);
+
+        assertThat(result.isAgreementReached()).isTrue();
+        assertThat(request.getProposalCount()).isEqualTo(ORGANIZATIONS.size());
+        assertThat(service.getBudgets().tryAcquire("org4")).isFalse();
+        assertThat(service.getBudgets().tryAcquire("org5")).isTrue();
+    }
+
+    @Test
+    public void latency_of_batched_step_excludes_time_waiting_for_wave() throws Exception {
+        long maxDelayMillis = 500;
+        service.setBatching(ORGANIZATIONS.size(), maxDelayMillis);
+        SimulatedNetwork network = newNetwork(1, 1.0, 0, 0, 0, 0, 0);
+        SimulatedNetwork.SimulatedRequest request = network.newRequest(0);
+
+        AgreementResponseDTO result = endorseAsync(service, network, request).get(30, TimeUnit.SECONDS);
+
+        assertThat(result.isAgreementReached()).isTrue();
+        assertThat(service.getStatistics().getLatencySampleCount("org1")).isEqualTo(1);
+        assertThat(service.getStatistics().getMeanLatencyNanos("org1")).isLessThan(maxDelayMillis * MILLIS);
+    }
+
+    @Test
+    public void concurrent_sends_are_limited_to_max_threads() throws Exception {
+        SendingConfirmationServiceImpl bounded = new SendingConfirmationServiceImpl(2, 100);
+        try {
+            Channel channel = newBlockingChannel();
+            List<CompletableFuture<ProposalResponse>> results = new ArrayList<>();
+            for (int i = 0; i < 10; i++) {
+                results.add(sendProposalAsync(bounded, channel));
+            }
+            Thread.sleep(100);
+
+            assertThat(maxSending.get()).isEqualTo(2);
+
+            release.countDown();
+            for (CompletableFuture<ProposalResponse> result : results) {
+                result.get(30, TimeUnit.SECONDS);
+            }
+            assertThat(maxSending.get()).isEqualTo(2);
+        } finally {
+            bounded.close();
+        }
+    }
+
+    @Test
+    public void sends_beyond_queue_capacity_are_rejected() throws Exception {
+        SendingConfirmationServiceImpl bounded = new SendingConfirmationServiceImpl(1, 1);
+        try {
+            Channel channel = newBlockingChannel();
+            sendProposalAsync(bounded, channel);
+            sendProposalAsync(bounded, channel);
+
+            CompletableFuture<ProposalResponse> rejected = sendProposalAsync(bounded, channel);
+
+            assertThatThrownBy(rejected::get).hasCauseInstanceOf(RejectedExecutionException.class);
+        } finally {
+            bounded.close();
+        }
+    }
+
+    @Test
+    public void concurrent_endorsements_on_shared_service_match_sequential_endorsements() throws Exception {
+        int transactions = 40;
+        SimulatedNetwork sequentialNetwork = newNetwork(3, 0.6, 0, 0, 0, 0, 0);
+        List<Boolean> expectedAgreements = new ArrayList<>();
+        List<Integer> expectedProposals = new ArrayList<>();
+        for (int i = 0; i < transactions; i++) {
+            SimulatedNetwork.SimulatedRequest request = sequentialNetwork.newRequest(i);
+            expectedAgreements.add(endorseAsync(service, sequentialNetwork, request).get().isAgreementReached());
+            expectedProposals.add(request.getProposalCount());
+        }
+
+        // Organizations reply after different delays, so replies for different transactions arrive out of order
+        SendingConfirmationServiceImpl shared = new SendingConfirmationServiceImpl();
+        try {
+            SimulatedNetwork network = newNetwork(3, 0.6, 4, 1, 3, 0, 2);
+            List<SimulatedNetwork.SimulatedRequest> requests = new ArrayList<>();
+            List<CompletableFuture<AgreementResponseDTO>> results = new ArrayList<>();
+            for (int i = 0; i < transactions; i++) {
+                SimulatedNetwork.SimulatedRequest request = network.newRequest(i);
+                requests.add(request);
+                results.add(endorseAsync(shared, network, request));
+            }
+
+            for (int i = 0; i < transactions; i++) {
+                assertThat(results.get(i).get(30, TimeUnit.SECONDS).isAgreementReached())
+                        .isEqualTo(expectedAgreements.get(i));
+                assertThat(requests.get(i).getProposalCount()).isEqualTo(expectedProposals.get(i));
+            }
+        } finally {
+            shared.close();
+        }
+    }
+
+    @Test
+    public void speculative_replies_arriving_out_of_order_are_applied_in_walk_order() throws Exception {
+        // Every organization must approve, so all are sent at once and none is wasted
+        SimulatedAnalytics.write(analyticsFile, ORGANIZATIONS.subList(0, THRESHOLD), THRESHOLD, 100, 1);
+        service.setSpeculation(THRESHOLD, ORGANIZATIONS.size());
+        Path journalDirectory = testUtils.createTempDirectory();
+        DecisionJournal journal = new DecisionJournal(journalDirectory, 16, 1024 * 1024, 1);
+        service.setDecisionJournal(journal);
+        // First organization replies last
+        SimulatedNetwork network = newNetwork(1, 1.0, 100, 20, 0);
+        SimulatedNetwork.SimulatedRequest request = network.newRequest(0);
+
+        AgreementResponseDTO result = endorseAsync(service, network, request).get(30, TimeUnit.SECONDS);
+
+        List<DecisionJournalReader.Entry> steps = readJournal(journal, journalDirectory);
+        assertThat(steps).extracting(DecisionJournalReader.Entry::getOrganization).containsExactly(0, 1, 2);
+        assertThat(steps).extracting(DecisionJournalReader.Entry::getStep).containsExactly(
+                AgreementStateMachine.Step.FORWARD,
+                AgreementStateMachine.Step.FORWARD,
+                AgreementStateMachine.Step.AGREEMENT_REACHED);
+        assertThat(result.isAgreementReached()).isTrue();
+        assertThat(result.getResponses()).hasSize(THRESHOLD);
+        assertThat(request.getProposalCount()).isEqualTo(THRESHOLD);
+    }
+
+    @Test
+    public void rejections_arriving_before_earlier_approvals_do_not_reach_agreement() throws Exception {
+        service.setSpeculation(THRESHOLD, ORGANIZATIONS.size());
+        Path journalDirectory = testUtils.createTempDirectory();
+        DecisionJournal journal = new DecisionJournal(journalDirectory, 16, 1024 * 1024, 1);
+        service.setDecisionJournal(journal);
+        SimulatedNetwork network = newNetwork(1, 0.0, 50, 0, 0, 0, 0);
+        SimulatedNetwork.SimulatedRequest request = network.newRequest(0);
+
+        AgreementResponseDTO result = endorseAsync(service, network, request).get(30, TimeUnit.SECONDS);
+
+        List<DecisionJournalReader.Entry> steps = readJournal(journal, journalDirectory);
+        assertThat(steps).extracting(DecisionJournalReader.Entry::getOrganization).containsExactly(0, 1, 2, 3, 4);
+        assertThat(steps.get(steps.size() - 1).getStep()).isEqualTo(AgreementStateMachine.Step.END_OF_TREE);
+        assertThat(result.isAgreementReached()).isFalse();
+        assertThat(result.getResponses()).isEmpty();
+        assertThat(request.getProposalCount()).isEqualTo(ORGANIZATIONS.size());
+    }
+}
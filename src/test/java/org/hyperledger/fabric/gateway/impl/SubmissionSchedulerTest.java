@@ -0,0 +1,238 @@
+/*
+ * Copyright 2019 IBM All Rights Reserved.
+ *
+ * SPDX-License-Identifier: Apache-2.0
+ */
+
+package org.hyperledger.fabric.gateway.impl;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicReference;
+
+import org.junit.jupiter.api.Test;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+public class SubmissionSchedulerTest {
+    private static SubmissionScheduler newScheduler(final int maxInFlight, final int queueCapacity,
+                                                    final SubmissionScheduler.OverloadPolicy policy) {
+        // Admit queued submissions on the releasing thread so that tests can check admission without waiting
+        return new SubmissionScheduler(maxInFlight, queueCapacity, policy, false, Runnable::run);
+    }
+
+    @Test
+    public void submissions_beyond_limit_are_queued() {
+        SubmissionScheduler scheduler = newScheduler(2, 10, SubmissionScheduler.OverloadPolicy.REJECT);
+
+        CompletableFuture<SubmissionScheduler.Permit> first = scheduler.acquireAsync();
+        CompletableFuture<SubmissionScheduler.Permit> second = scheduler.acquireAsync();
+        CompletableFuture<SubmissionScheduler.Permit> third = scheduler.acquireAsync();
+
+        assertThat(first).isDone();
+        assertThat(second).isDone();
+        assertThat(third).isNotDone();
+        assertThat(scheduler.getInFlight()).isEqualTo(2);
+        assertThat(scheduler.getQueueDepth()).isEqualTo(1);
+    }
+
+    @Test
+    public void queued_submission_is_admitted_on_release() {
+        SubmissionScheduler scheduler = newScheduler(1, 10, SubmissionScheduler.OverloadPolicy.REJECT);
+        SubmissionScheduler.Permit permit = scheduler.acquireAsync().join();
+        CompletableFuture<SubmissionScheduler.Permit> queued = scheduler.acquireAsync();
+
+        permit.release(null);
+
+        assertThat(queued).isDone();
+        assertThat(scheduler.getInFlight()).isEqualTo(1);
+        assertThat(scheduler.getQueueDepth()).isZero();
+    }
+
+    @Test
+    public void releasing_twice_frees_one_slot() {
+        SubmissionScheduler scheduler = newScheduler(2, 10, SubmissionScheduler.OverloadPolicy.REJECT);
+        SubmissionScheduler.Permit permit = scheduler.acquireAsync().join();
+        scheduler.acquireAsync();
+
+        permit.release(null);
+        permit.release(null);
+
+        assertThat(scheduler.getInFlight()).isEqualTo(1);
+    }
+
+    @Test
+    public void submission_is_rejected_when_queue_is_full() {
+        SubmissionScheduler scheduler = newScheduler(1, 1, SubmissionScheduler.OverloadPolicy.REJECT);
+        scheduler.acquireAsync();
+        scheduler.acquireAsync();
+
+        CompletableFuture<SubmissionScheduler.Permit> rejected = scheduler.acquireAsync();
+
+        assertThatThrownBy(rejected::get).hasCauseInstanceOf(RejectedExecutionException.class);
+        assertThat(scheduler.getRejectedCount()).isEqualTo(1);
+    }
+
+    @Test
+    public void blocking_submission_waits_for_queue_space() throws Exception {
+        SubmissionScheduler scheduler = newScheduler(1, 1, SubmissionScheduler.OverloadPolicy.BLOCK);
+        SubmissionScheduler.Permit permit = scheduler.acquireAsync().join();
+        scheduler.acquireAsync();
+
+        CountDownLatch started = new CountDownLatch(1);
+        AtomicReference<CompletableFuture<SubmissionScheduler.Permit>> blocked = new AtomicReference<>();
+        Thread thread = new Thread(() -> {
+            started.countDown();
+            blocked.set(scheduler.acquireAsync());
+        });
+        thread.start();
+        started.await();
+        Thread.sleep(50);
+
+        assertThat(blocked.get()).isNull();
+
+        permit.release(null);
+        thread.join(TimeUnit.SECONDS.toMillis(10));
+
+        assertThat(blocked.get()).isNotNull();
+        assertThat(scheduler.getRejectedCount()).isZero();
+    }
+
+    @Test
+    public void submit_releases_permit_on_completion() {
+        SubmissionScheduler scheduler = newScheduler(1, 10, SubmissionScheduler.OverloadPolicy.REJECT);
+        CompletableFuture<String> submission = new CompletableFuture<>();
+
+        CompletableFuture<String> result = scheduler.submit(() -> submission);
+        assertThat(scheduler.getInFlight()).isEqualTo(1);
+
+        submission.complete("result");
+
+        assertThat(result.join()).isEqualTo("result");
+        assertThat(scheduler.getInFlight()).isZero();
+    }
+
+    @Test
+    public void adaptive_limit_backs_off_on_timeout() {
+        SubmissionScheduler scheduler = new SubmissionScheduler(10, 10, SubmissionScheduler.OverloadPolicy.REJECT,
+                true);
+
+        scheduler.acquireAsync().join().release(new TimeoutException());
+
+        assertThat(scheduler.getLimit()).isEqualTo(9);
+    }
+
+    @Test
+    public void adaptive_limit_backs_off_once_per_round_trip() {
+        SubmissionScheduler scheduler = new SubmissionScheduler(10, 10, SubmissionScheduler.OverloadPolicy.REJECT,
+                true);
+        SubmissionScheduler.Permit first = scheduler.acquireAsync().join();
+        SubmissionScheduler.Permit second = scheduler.acquireAsync().join();
+
+        // Both started before the first back-off, so only one reduces the limit
+        first.release(new TimeoutException());
+        second.release(new TimeoutException());
+
+        assertThat(scheduler.getLimit()).isEqualTo(9);
+    }
+
+    @Test
+    public void fixed_limit_ignores_timeouts() {
+        SubmissionScheduler scheduler = newScheduler(10, 10, SubmissionScheduler.OverloadPolicy.REJECT);
+
+        scheduler.acquireAsync().join().release(new TimeoutException());
+
+        assertThat(scheduler.getLimit()).isEqualTo(10);
+    }
+
+    @Test
+    public void close_rejects_queued_submissions() {
+        SubmissionScheduler scheduler = newScheduler(1, 10, SubmissionScheduler.OverloadPolicy.REJECT);
+        scheduler.acquireAsync();
+        CompletableFuture<SubmissionScheduler.Permit> queued = scheduler.acquireAsync();
+
+        scheduler.close();
+
+        assertThatThrownBy(queued::get).hasCauseInstanceOf(RejectedExecutionException.class);
+        assertThatThrownBy(() -> scheduler.acquireAsync().get())
+                .hasCauseInstanceOf(RejectedExecutionException.class);
+    }
+
+    @Test
+    public void queued_submission_starts_on_admission_executor() throws Exception {
+        ExecutorService executor = Executors.newSingleThreadExecutor(runnable -> new Thread(runnable, "admission"));
+        try {
+            SubmissionScheduler scheduler = new SubmissionScheduler(1, 10, SubmissionScheduler.OverloadPolicy.REJECT,
+                    false, executor);
+            SubmissionScheduler.Permit permit = scheduler.acquireAsync().join();
+            AtomicReference<String> startThread = new AtomicReference<>();
+            CompletableFuture<String> result = scheduler.submit(() -> {
+                startThread.set(Thread.currentThread().getName());
+                return CompletableFuture.completedFuture("result");
+            });
+
+            permit.release(null);
+
+            assertThat(result.get(5, TimeUnit.SECONDS)).isEqualTo("result");
+            assertThat(startThread.get()).isEqualTo("admission");
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    @Test
+    public void interrupt_while_blocked_for_queue_space_is_reported_as_interruption() throws Exception {
+        SubmissionScheduler scheduler = newScheduler(1, 1, SubmissionScheduler.OverloadPolicy.BLOCK);
+        scheduler.acquireAsync();
+        scheduler.acquireAsync();
+
+        AtomicReference<Throwable> failure = new AtomicReference<>();
+        AtomicBoolean interrupted = new AtomicBoolean(false);
+        Thread thread = new Thread(() -> {
+            try {
+                scheduler.acquireAsync().get();
+            } catch (ExecutionException e) {
+                failure.set(e.getCause());
+            } catch (InterruptedException e) {
+                failure.set(e);
+            }
+            interrupted.set(Thread.currentThread().isInterrupted());
+        });
+        thread.start();
+        thread.interrupt();
+        thread.join(TimeUnit.SECONDS.toMillis(10));
+
+        assertThat(failure.get()).isInstanceOf(InterruptedException.class);
+        assertThat(interrupted.get()).isTrue();
+        assertThat(scheduler.getRejectedCount()).isZero();
+    }
+
+    @Test
+    public void blocking_acquire_throws_InterruptedException_when_interrupted() throws Exception {
+        SubmissionScheduler scheduler = newScheduler(1, 1, SubmissionScheduler.OverloadPolicy.BLOCK);
+        scheduler.acquireAsync();
+        scheduler.acquireAsync();
+
+        AtomicReference<Throwable> failure = new AtomicReference<>();
+        Thread thread = new Thread(() -> {
+            try {
+                scheduler.acquire();
+            } catch (InterruptedException | RuntimeException e) {
+                failure.set(e);
+            }
+        });
+        thread.start();
+        thread.interrupt();
+        thread.join(TimeUnit.SECONDS.toMillis(10));
+
+        assertThat(failure.get()).isInstanceOf(InterruptedException.class);
+    }
+}
@@ -6,14 +6,23 @@
 
 package org.hyperledger.fabric.gateway.impl;
 
+import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Collection;
 import java.util.Collections;
 import java.util.HashMap;
+import java.util.List;
 import java.util.Map;
 import java.util.Optional;
+import java.util.Set;
 import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.RejectedExecutionException;
 import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicInteger;
 
 import org.hyperledger.fabric.gateway.Contract;
 import org.hyperledger.fabric.gateway.ContractException;
@@ -22,8 +31,10 @@ import org.hyperledger.fabric.gateway.GatewayException;
 import org.hyperledger.fabric.gateway.Network;
 import org.hyperledger.fabric.gateway.TestUtils;
 import org.hyperledger.fabric.gateway.Transaction;
+import org.hyperledger.fabric.gateway.TransactionSpec;
 import org.hyperledger.fabric.gateway.spi.CommitHandler;
 import org.hyperledger.fabric.gateway.spi.CommitHandlerFactory;
+import org.hyperledger.fabric.sdk.BlockEvent;
 import org.hyperledger.fabric.sdk.Channel;
 import org.hyperledger.fabric.sdk.HFClient;
 import org.hyperledger.fabric.sdk.Peer;
@@ -282,6 +293,298 @@ public class TransactionTest {
         assertThat(e.getProposalResponses()).containsExactly(response);
     }
 
+    @Test
+    public void submitAsync_returns_payload() throws Exception {
+        String expected = "successful result";
+        ProposalResponse response = testUtils.newSuccessfulProposalResponse(expected);
+        when(channel.sendTransactionProposal(any())).thenReturn(Collections.singletonList(response));
+        when(commitHandler.waitForEventsAsync(anyLong(), any(TimeUnit.class)))
+                .thenReturn(CompletableFuture.completedFuture(null));
+
+        byte[] result = contract.submitTransactionAsync("txn", "arg1").get();
+
+        assertThat(new String(result)).isEqualTo(expected);
+        verify(commitHandler).waitForEventsAsync(timeout.getTime(), timeout.getTimeUnit());
+    }
+
+    @Test
+    public void submitAsync_commit_failure_completes_with_ContractException_with_proposal_responses() throws Exception {
+        ProposalResponse response = testUtils.newSuccessfulProposalResponse();
+        when(channel.sendTransactionProposal(any())).thenReturn(Collections.singletonList(response));
+        CompletableFuture<Void> commitFailure = new CompletableFuture<>();
+        commitFailure.completeExceptionally(new ContractException("Commit failed"));
+        when(commitHandler.waitForEventsAsync(anyLong(), any(TimeUnit.class))).thenReturn(commitFailure);
+
+        CompletableFuture<byte[]> future = contract.createTransaction("txn").submitAsync("arg1");
+
+        ExecutionException e = catchThrowableOfType(future::get, ExecutionException.class);
+        assertThat(e.getCause()).isInstanceOf(ContractException.class);
+        assertThat(((ContractException) e.getCause()).getProposalResponses()).containsExactly(response);
+    }
+
+    @Test
+    public void submitAsync_orderer_failure_cancels_listening() throws Exception {
+        ProposalResponse response = testUtils.newSuccessfulProposalResponse();
+        when(channel.sendTransactionProposal(any())).thenReturn(Collections.singletonList(response));
+        CompletableFuture<BlockEvent.TransactionEvent> ordererFailure = new CompletableFuture<>();
+        ordererFailure.completeExceptionally(new IllegalStateException("Orderer unavailable"));
+        when(channel.sendTransaction(anyCollection(), any(Channel.TransactionOptions.class)))
+                .thenReturn(ordererFailure);
+
+        CompletableFuture<byte[]> future = contract.submitTransactionAsync("txn", "arg1");
+
+        assertThatThrownBy(future::get).hasCauseInstanceOf(ContractException.class);
+        verify(commitHandler).cancelListening();
+    }
+
+    @Test
+    public void submit_throws_TimeoutException_if_orderer_does_not_respond_within_orderer_timeout() throws Exception {
+        ProposalResponse response = testUtils.newSuccessfulProposalResponse();
+        when(channel.sendTransactionProposal(any())).thenReturn(Collections.singletonList(response));
+        when(channel.sendTransaction(anyCollection(), any(Channel.TransactionOptions.class)))
+                .thenReturn(new CompletableFuture<>());
+
+        Transaction transaction = contract.createTransaction("txn")
+                .setOrdererTimeout(50, TimeUnit.MILLISECONDS);
+
+        assertThatThrownBy(() -> transaction.submit("arg1")).isInstanceOf(TimeoutException.class);
+        verify(commitHandler).cancelListening();
+    }
+
+    @Test
+    public void submitAsync_uses_gateway_orderer_timeout() throws Exception {
+        ProposalResponse response = testUtils.newSuccessfulProposalResponse();
+        when(channel.sendTransactionProposal(any())).thenReturn(Collections.singletonList(response));
+        when(channel.sendTransaction(anyCollection(), any(Channel.TransactionOptions.class)))
+                .thenReturn(new CompletableFuture<>());
+        gateway = gatewayBuilder
+                .ordererTimeout(50, TimeUnit.MILLISECONDS)
+                .connect();
+        contract = gateway.getNetwork("network").getContract("contract");
+
+        CompletableFuture<byte[]> future = contract.submitTransactionAsync("txn", "arg1");
+
+        assertThatThrownBy(future::get).hasCauseInstanceOf(TimeoutException.class);
+    }
+
+    @Test
+    public void submitBatch_returns_result_of_each_transaction_in_order() throws Exception {
+        ProposalResponse first = testUtils.newSuccessfulProposalResponse("first");
+        ProposalResponse second = testUtils.newSuccessfulProposalResponse("second");
+        when(channel.sendTransactionProposal(any()))
+                .thenReturn(Collections.singletonList(first))
+                .thenReturn(Collections.singletonList(second));
+        when(commitHandler.waitForEventsAsync(anyLong(), any(TimeUnit.class)))
+                .thenReturn(CompletableFuture.completedFuture(null));
+
+        List<CompletableFuture<byte[]>> results = contract.submitBatch(Arrays.asList(
+                new TransactionSpec("txn", "arg1"),
+                new TransactionSpec("txn", "arg2")), 1);
+
+        assertThat(new String(results.get(0).get())).isEqualTo("first");
+        assertThat(new String(results.get(1).get())).isEqualTo("second");
+    }
+
+    @Test
+    public void submitBatch_failed_transaction_does_not_affect_others() throws Exception {
+        ProposalResponse second = testUtils.newSuccessfulProposalResponse("second");
+        when(channel.sendTransactionProposal(any()))
+                .thenReturn(Collections.singletonList(failureResponse))
+                .thenReturn(Collections.singletonList(second));
+        when(commitHandler.waitForEventsAsync(anyLong(), any(TimeUnit.class)))
+                .thenReturn(CompletableFuture.completedFuture(null));
+
+        List<CompletableFuture<byte[]>> results = contract.submitBatch(Arrays.asList(
+                new TransactionSpec("txn", "arg1"),
+                new TransactionSpec("txn", "arg2")), 1);
+
+        assertThatThrownBy(() -> results.get(0).get()).hasCauseInstanceOf(ContractException.class);
+        assertThat(new String(results.get(1).get())).isEqualTo("second");
+    }
+
+    @Test
+    public void submitBatch_completes_every_transaction_if_endorsement_is_rejected() throws Exception {
+        ((NetworkImpl) gateway.getNetwork("network")).getEndorsementExecutor().shutdown();
+
+        List<CompletableFuture<byte[]>> results = contract.submitBatch(Arrays.asList(
+                new TransactionSpec("txn", "arg1"),
+                new TransactionSpec("txn", "arg2"),
+                new TransactionSpec("txn", "arg3")), 1);
+
+        for (CompletableFuture<byte[]> result : results) {
+            assertThatThrownBy(() -> result.get(5, TimeUnit.SECONDS))
+                    .hasCauseInstanceOf(RejectedExecutionException.class);
+        }
+    }
+
+    @Test
+    public void submitBatch_releases_scheduler_permits_if_endorsement_is_rejected() throws Exception {
+        SubmissionScheduler scheduler = new SubmissionScheduler(1, 10, SubmissionScheduler.OverloadPolicy.REJECT,
+                false);
+        NetworkImpl network = (NetworkImpl) gateway.getNetwork("network");
+        network.setSubmissionScheduler(scheduler);
+        network.getEndorsementExecutor().shutdown();
+
+        List<CompletableFuture<byte[]>> results = contract.submitBatch(Arrays.asList(
+                new TransactionSpec("txn", "arg1"),
+                new TransactionSpec("txn", "arg2")), 2);
+
+        for (CompletableFuture<byte[]> result : results) {
+            assertThatThrownBy(() -> result.get(5, TimeUnit.SECONDS))
+                    .hasCauseInstanceOf(RejectedExecutionException.class);
+        }
+        assertThat(scheduler.getInFlight()).isZero();
+        assertThat(scheduler.getQueueDepth()).isZero();
+    }
+
+    @Test
+    public void submitBatch_with_no_concurrency_throws() {
+        List<TransactionSpec> transactions = Collections.singletonList(new TransactionSpec("txn"));
+
+        assertThatThrownBy(() -> contract.submitBatch(transactions, 0))
+                .isInstanceOf(IllegalArgumentException.class);
+    }
+
+    @Test
+    public void concurrent_submitAsync_endorsements_share_bounded_executor() throws Exception {
+        int maxThreads = NetworkImpl.MAX_ENDORSEMENT_THREADS;
+        Set<Thread> threads = ConcurrentHashMap.newKeySet();
+        AtomicInteger sending = new AtomicInteger(0);
+        CountDownLatch release = new CountDownLatch(1);
+        ProposalResponse response = testUtils.newSuccessfulProposalResponse();
+        when(channel.sendTransactionProposal(any())).thenAnswer(invocation -> {
+            threads.add(Thread.currentThread());
+            sending.incrementAndGet();
+            release.await();
+            return Collections.singletonList(response);
+        });
+        when(commitHandler.waitForEventsAsync(anyLong(), any(TimeUnit.class)))
+                .thenReturn(CompletableFuture.completedFuture(null));
+
+        List<CompletableFuture<byte[]>> futures = new ArrayList<>();
+        try {
+            for (int i = 0; i < maxThreads * 2; i++) {
+                futures.add(contract.submitTransactionAsync("txn", "arg" + i));
+            }
+            long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(5);
+            while (sending.get() < maxThreads && System.nanoTime() < deadline) {
+                Thread.sleep(1);
+            }
+            Thread.sleep(50);
+
+            assertThat(sending.get()).isEqualTo(maxThreads);
+        } finally {
+            release.countDown();
+        }
+
+        for (CompletableFuture<byte[]> future : futures) {
+            future.get(5, TimeUnit.SECONDS);
+        }
+        assertThat(threads).hasSizeLessThanOrEqualTo(maxThreads)
+                .allSatisfy(thread -> assertThat(thread.getName()).isEqualTo("transaction-endorsement"));
+    }
+
+    @Test
+    public void submitAsync_fails_if_endorsement_executor_rejects() {
+        ((NetworkImpl) gateway.getNetwork("network")).getEndorsementExecutor().shutdown();
+
+        CompletableFuture<byte[]> future = contract.submitTransactionAsync("txn", "arg1");
+
+        assertThatThrownBy(future::get).hasCauseInstanceOf(RejectedExecutionException.class);
+    }
+
+    @Test
+    public void submitAsync_is_rejected_by_network_submission_scheduler_when_overloaded() {
+        SubmissionScheduler scheduler = new SubmissionScheduler(1, 0, SubmissionScheduler.OverloadPolicy.REJECT,
+                false);
+        ((NetworkImpl) gateway.getNetwork("network")).setSubmissionScheduler(scheduler);
+        scheduler.acquireAsync();
+
+        CompletableFuture<byte[]> future = contract.submitTransactionAsync("txn", "arg1");
+
+        assertThatThrownBy(future::get).hasCauseInstanceOf(RejectedExecutionException.class);
+        assertThat(scheduler.getRejectedCount()).isEqualTo(1);
+    }
+
+    @Test
+    public void submit_releases_submission_scheduler_permit() throws Exception {
+        SubmissionScheduler scheduler = new SubmissionScheduler(1, 0, SubmissionScheduler.OverloadPolicy.REJECT,
+                false);
+        ((NetworkImpl) gateway.getNetwork("network")).setSubmissionScheduler(scheduler);
+        ProposalResponse response = testUtils.newSuccessfulProposalResponse();
+        when(channel.sendTransactionProposal(any())).thenReturn(Collections.singletonList(response));
+
+        contract.submitTransaction("txn", "arg1");
+
+        assertThat(scheduler.getInFlight()).isZero();
+    }
+
+    @Test
+    public void submitBasedOnModel_is_rejected_by_network_submission_scheduler_when_overloaded() throws Exception {
+        SubmissionScheduler scheduler = new SubmissionScheduler(1, 0, SubmissionScheduler.OverloadPolicy.REJECT,
+                false);
+        ((NetworkImpl) gateway.getNetwork("network")).setSubmissionScheduler(scheduler);
+        scheduler.acquireAsync();
+        String missingFile = testUtils.createTempDirectory().resolve("missing.json").toString();
+        Transaction transaction = contract.createTransaction("txn");
+
+        assertThatThrownBy(() -> transaction.submitBasedOnModel(missingFile, 1, "org1", "arg1"))
+                .isInstanceOf(RejectedExecutionException.class);
+        assertThat(scheduler.getRejectedCount()).isEqualTo(1);
+    }
+
+    @Test
+    public void submitBasedOnModel_releases_submission_scheduler_permit() throws Exception {
+        SubmissionScheduler scheduler = new SubmissionScheduler(1, 0, SubmissionScheduler.OverloadPolicy.REJECT,
+                false);
+        ((NetworkImpl) gateway.getNetwork("network")).setSubmissionScheduler(scheduler);
+        String missingFile = testUtils.createTempDirectory().resolve("missing.json").toString();
+        Transaction transaction = contract.createTransaction("txn");
+
+        assertThatThrownBy(() -> transaction.submitBasedOnModel(missingFile, 1, "org1", "arg1"))
+                .isInstanceOf(ContractException.class);
+        assertThat(scheduler.getInFlight()).isZero();
+    }
+
+    @Test
+    public void submitBasedOnModelAsync_is_rejected_by_network_submission_scheduler_when_overloaded()
+            throws Exception {
+        SubmissionScheduler scheduler = new SubmissionScheduler(1, 0, SubmissionScheduler.OverloadPolicy.REJECT,
+                false);
+        ((NetworkImpl) gateway.getNetwork("network")).setSubmissionScheduler(scheduler);
+        scheduler.acquireAsync();
+        String missingFile = testUtils.createTempDirectory().resolve("missing.json").toString();
+
+        CompletableFuture<byte[]> future = contract.createTransaction("txn")
+                .submitBasedOnModelAsync(missingFile, 1, "org1", null, "arg1");
+
+        assertThatThrownBy(future::get).hasCauseInstanceOf(RejectedExecutionException.class);
+        assertThat(scheduler.getRejectedCount()).isEqualTo(1);
+    }
+
+    @Test
+    public void submitBasedOnModelAsync_releases_submission_scheduler_permit() throws Exception {
+        SubmissionScheduler scheduler = new SubmissionScheduler(1, 0, SubmissionScheduler.OverloadPolicy.REJECT,
+                false);
+        ((NetworkImpl) gateway.getNetwork("network")).setSubmissionScheduler(scheduler);
+        String missingFile = testUtils.createTempDirectory().resolve("missing.json").toString();
+
+        CompletableFuture<byte[]> future = contract.createTransaction("txn")
+                .submitBasedOnModelAsync(missingFile, 1, "org1", null, "arg1");
+
+        assertThatThrownBy(future::get).isInstanceOf(ExecutionException.class);
+        assertThat(scheduler.getInFlight()).isZero();
+    }
+
+    @Test
+    public void submitBasedOnModel_with_missing_analytics_file_throws_ContractException() throws Exception {
+        String missingFile = testUtils.createTempDirectory().resolve("missing.json").toString();
+        Transaction transaction = contract.createTransaction("txn");
+
+        assertThatThrownBy(() -> transaction.submitBasedOnModel(missingFile, 1, "org1", "arg1"))
+                .isInstanceOf(ContractException.class);
+    }
+
     @Test
     public void get_transaction_ID() {
         String transactionId = contract.createTransaction("txn").getTransactionId();
@@ -0,0 +1,48 @@
+/*
+ * Copyright 2019 IBM All Rights Reserved.
+ *
+ * SPDX-License-Identifier: Apache-2.0
+ */
+
+package org.hyperledger.fabric.gateway.impl.agreement;
+
+import com.google.protobuf.ByteString;
+import org.junit.jupiter.api.Test;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+public class PayloadBooleanPredicateTest {
+    private static boolean isTrue(final String payload) {
+        return PayloadBooleanPredicate.isTrue(ByteString.copyFromUtf8(payload));
+    }
+
+    @Test
+    public void plain_true_is_true() {
+        assertThat(isTrue("true")).isTrue();
+    }
+
+    @Test
+    public void letter_case_is_ignored() {
+        assertThat(isTrue("TRUE")).isTrue();
+    }
+
+    @Test
+    public void quoted_true_with_whitespace_is_true() {
+        assertThat(isTrue(" \"true\"\n")).isTrue();
+    }
+
+    @Test
+    public void false_is_not_true() {
+        assertThat(isTrue("false")).isFalse();
+    }
+
+    @Test
+    public void text_containing_true_is_not_true() {
+        assertThat(isTrue("{\"approved\":true}")).isFalse();
+    }
+
+    @Test
+    public void empty_payload_is_not_true() {
+        assertThat(isTrue("")).isFalse();
+    }
+}
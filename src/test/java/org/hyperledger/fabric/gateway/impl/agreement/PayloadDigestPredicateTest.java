@@ -0,0 +1,95 @@
+/*
+ * Copyright 2019 IBM All Rights Reserved.
+ *
+ * SPDX-License-Identifier: Apache-2.0
+ */
+
+package org.hyperledger.fabric.gateway.impl.agreement;
+
+import com.google.protobuf.ByteString;
+import org.hyperledger.fabric.protos.peer.ProposalResponsePackage;
+import org.hyperledger.fabric.sdk.ProposalResponse;
+import org.junit.jupiter.api.Test;
+import org.mockito.Mockito;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+public class PayloadDigestPredicateTest {
+    private static ProposalResponse newResponse(final ProposalResponsePackage.Response.Builder response) {
+        ProposalResponse proposalResponse = Mockito.mock(ProposalResponse.class);
+        Mockito.when(proposalResponse.getProposalResponse()).thenReturn(
+                ProposalResponsePackage.ProposalResponse.newBuilder().setResponse(response).build());
+        return proposalResponse;
+    }
+
+    private static ProposalResponse newResponse(final ByteString payload) {
+        return newResponse(ProposalResponsePackage.Response.newBuilder().setStatus(200).setPayload(payload));
+    }
+
+    private static ProposalResponse newResponse(final String payload) {
+        return newResponse(ByteString.copyFromUtf8(payload));
+    }
+
+    private static ProposalResponse newResponseWithoutPayload() {
+        return newResponse(ProposalResponsePackage.Response.newBuilder().setStatus(200));
+    }
+
+    @Test
+    public void equal_payload_is_approval() {
+        PayloadDigestPredicate predicate = new PayloadDigestPredicate(newResponse("{\"value\":42}"));
+
+        assertThat(predicate.isApproval(newResponse("{\"value\":42}"))).isTrue();
+    }
+
+    @Test
+    public void payload_split_across_buffers_is_approval() {
+        PayloadDigestPredicate predicate = new PayloadDigestPredicate(newResponse("{\"value\":42}"));
+        ByteString split = ByteString.copyFromUtf8("{\"value\"").concat(ByteString.copyFromUtf8(":42}"));
+
+        assertThat(predicate.isApproval(newResponse(split))).isTrue();
+    }
+
+    @Test
+    public void different_payload_of_same_length_is_not_approval() {
+        PayloadDigestPredicate predicate = new PayloadDigestPredicate(newResponse("{\"value\":42}"));
+
+        assertThat(predicate.isApproval(newResponse("{\"value\":43}"))).isFalse();
+    }
+
+    @Test
+    public void different_payload_length_is_not_approval() {
+        PayloadDigestPredicate predicate = new PayloadDigestPredicate(newResponse("{\"value\":42}"));
+
+        assertThat(predicate.isApproval(newResponse("{\"value\":420}"))).isFalse();
+    }
+
+    @Test
+    public void predicate_can_be_reused() {
+        PayloadDigestPredicate predicate = new PayloadDigestPredicate(newResponse("true"));
+
+        predicate.isApproval(newResponse("fals"));
+
+        assertThat(predicate.isApproval(newResponse("true"))).isTrue();
+    }
+
+    @Test
+    public void missing_payload_is_not_approval() {
+        PayloadDigestPredicate predicate = new PayloadDigestPredicate(newResponse("true"));
+
+        assertThat(predicate.isApproval(newResponseWithoutPayload())).isFalse();
+    }
+
+    @Test
+    public void payload_is_not_approval_if_reference_payload_missing() {
+        PayloadDigestPredicate predicate = new PayloadDigestPredicate(newResponseWithoutPayload());
+
+        assertThat(predicate.isApproval(newResponse("true"))).isFalse();
+    }
+
+    @Test
+    public void missing_payload_is_approval_if_reference_payload_missing() {
+        PayloadDigestPredicate predicate = new PayloadDigestPredicate(newResponseWithoutPayload());
+
+        assertThat(predicate.isApproval(newResponseWithoutPayload())).isTrue();
+    }
+}
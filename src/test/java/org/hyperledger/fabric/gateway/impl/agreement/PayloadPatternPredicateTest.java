@@ -0,0 +1,57 @@
+/*
+ * Copyright 2019 IBM All Rights Reserved.
+ *
+ * SPDX-License-Identifier: Apache-2.0
+ */
+
+package org.hyperledger.fabric.gateway.impl.agreement;
+
+import java.nio.charset.StandardCharsets;
+
+import com.google.protobuf.ByteString;
+import org.junit.jupiter.api.Test;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+public class PayloadPatternPredicateTest {
+    private final PayloadPatternPredicate containsTrue = PayloadPatternPredicate.CONTAINS_TRUE;
+
+    @Test
+    public void finds_pattern_at_start() {
+        assertThat(containsTrue.contains(ByteString.copyFromUtf8("true"))).isTrue();
+    }
+
+    @Test
+    public void finds_pattern_inside_payload() {
+        assertThat(containsTrue.contains(ByteString.copyFromUtf8("{\"approved\":true}"))).isTrue();
+    }
+
+    @Test
+    public void finds_pattern_after_partial_match() {
+        assertThat(containsTrue.contains(ByteString.copyFromUtf8("trutrue"))).isTrue();
+    }
+
+    @Test
+    public void missing_pattern_is_not_found() {
+        assertThat(containsTrue.contains(ByteString.copyFromUtf8("{\"approved\":false}"))).isFalse();
+    }
+
+    @Test
+    public void empty_payload_does_not_match() {
+        assertThat(containsTrue.contains(ByteString.copyFromUtf8(""))).isFalse();
+    }
+
+    @Test
+    public void self_overlapping_pattern_is_found() {
+        PayloadPatternPredicate predicate = new PayloadPatternPredicate("aab".getBytes(StandardCharsets.UTF_8));
+
+        assertThat(predicate.contains(ByteString.copyFromUtf8("aaab"))).isTrue();
+    }
+
+    @Test
+    public void empty_pattern_throws() {
+        assertThatThrownBy(() -> new PayloadPatternPredicate(new byte[0]))
+                .isInstanceOf(IllegalArgumentException.class);
+    }
+}
@@ -10,6 +10,8 @@ import java.util.Collection;
 import java.util.Collections;
 import java.util.HashMap;
 import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
 import java.util.concurrent.TimeUnit;
 import java.util.concurrent.TimeoutException;
 
@@ -25,6 +27,7 @@ import org.junit.jupiter.api.AfterEach;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 
+import static org.assertj.core.api.Assertions.assertThat;
 import static org.assertj.core.api.Assertions.assertThatCode;
 import static org.assertj.core.api.Assertions.assertThatThrownBy;
 import static org.mockito.Mockito.any;
@@ -229,4 +232,38 @@ public class CommitHandlerImplTest {
         assertThatCode(() -> commitHandler.waitForEvents(timeout, timeUnit))
                 .doesNotThrowAnyException();
     }
+
+    @Test
+    public void async_wait_completes_if_peer_commit_causes_strategy_success() throws Exception {
+        when(strategy.onEvent(any())).thenReturn(CommitStrategy.Result.SUCCESS);
+
+        commitHandler.startListening();
+        CompletableFuture<Void> future = commitHandler.waitForEventsAsync(timeout, timeUnit);
+        sendValidTransactionEvent();
+
+        assertThat(future.get(timeout, timeUnit)).isNull();
+    }
+
+    @Test
+    public void async_wait_fails_with_contract_exception_if_peer_commit_fails() {
+        when(strategy.onEvent(any())).thenReturn(CommitStrategy.Result.CONTINUE);
+
+        commitHandler.startListening();
+        CompletableFuture<Void> future = commitHandler.waitForEventsAsync(timeout, timeUnit);
+        sendInvalidTransactionEvent();
+
+        assertThatThrownBy(() -> future.get(timeout, timeUnit))
+                .hasCauseInstanceOf(ContractException.class)
+                .hasRootCauseExactlyInstanceOf(TransactionEventException.class);
+    }
+
+    @Test
+    public void async_wait_fails_on_timeout() {
+        commitHandler.startListening();
+        CompletableFuture<Void> future = commitHandler.waitForEventsAsync(1, TimeUnit.MILLISECONDS);
+
+        assertThatThrownBy(() -> future.get(timeout, timeUnit))
+                .isInstanceOf(ExecutionException.class)
+                .hasCauseInstanceOf(TimeoutException.class);
+    }
 }
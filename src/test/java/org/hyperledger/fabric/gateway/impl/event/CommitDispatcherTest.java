@@ -0,0 +1,144 @@
+/*
+ * Copyright 2019 IBM All Rights Reserved.
+ *
+ * SPDX-License-Identifier: Apache-2.0
+ */
+
+package org.hyperledger.fabric.gateway.impl.event;
+
+import java.util.Collections;
+
+import org.hyperledger.fabric.gateway.TestUtils;
+import org.hyperledger.fabric.gateway.spi.CommitListener;
+import org.hyperledger.fabric.sdk.BlockEvent;
+import org.hyperledger.fabric.sdk.Peer;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.mockito.Mockito.any;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+
+public class CommitDispatcherTest {
+    private static final TestUtils testUtils = TestUtils.getInstance();
+
+    private StubBlockEventSource blockSource;
+    private CommitDispatcher dispatcher;
+    private Peer peer1;
+    private Peer peer2;
+
+    @BeforeEach
+    public void beforeEach() {
+        blockSource = new StubBlockEventSource();
+        dispatcher = new CommitDispatcher(blockSource);
+        peer1 = testUtils.newMockPeer("peer1");
+        peer2 = testUtils.newMockPeer("peer2");
+    }
+
+    @AfterEach
+    public void afterEach() {
+        dispatcher.close();
+        blockSource.close();
+    }
+
+    private BlockEvent.TransactionEvent sendTransactionEvent(final Peer peer, final String transactionId) {
+        BlockEvent.TransactionEvent txEvent = testUtils.newValidMockTransactionEvent(peer, transactionId);
+        BlockEvent.TransactionEvent otherEvent = testUtils.newValidMockTransactionEvent(peer, "otherTxId");
+        blockSource.sendEvent(testUtils.newMockBlockEvent(peer, 1, otherEvent, txEvent));
+        return txEvent;
+    }
+
+    @Test
+    public void delivers_commit_of_transaction_from_listened_peer() {
+        CommitListener listener = mock(CommitListener.class);
+        dispatcher.addCommitListener(listener, Collections.singleton(peer1), "txId");
+
+        BlockEvent.TransactionEvent event = sendTransactionEvent(peer1, "txId");
+
+        verify(listener).acceptCommit(event);
+    }
+
+    @Test
+    public void ignores_commit_from_other_peer() {
+        CommitListener listener = mock(CommitListener.class);
+        dispatcher.addCommitListener(listener, Collections.singleton(peer1), "txId");
+
+        sendTransactionEvent(peer2, "txId");
+
+        verify(listener, never()).acceptCommit(any());
+    }
+
+    @Test
+    public void ignores_commit_of_other_transaction() {
+        CommitListener listener = mock(CommitListener.class);
+        dispatcher.addCommitListener(listener, Collections.singleton(peer1), "txId");
+
+        sendTransactionEvent(peer1, "anotherTxId");
+
+        verify(listener, never()).acceptCommit(any());
+    }
+
+    @Test
+    public void delivers_commit_to_all_listeners_of_transaction() {
+        CommitListener listener1 = mock(CommitListener.class);
+        CommitListener listener2 = mock(CommitListener.class);
+        dispatcher.addCommitListener(listener1, Collections.singleton(peer1), "txId");
+        dispatcher.addCommitListener(listener2, Collections.singleton(peer1), "txId");
+
+        BlockEvent.TransactionEvent event = sendTransactionEvent(peer1, "txId");
+
+        verify(listener1).acceptCommit(event);
+        verify(listener2).acceptCommit(event);
+    }
+
+    @Test
+    public void closed_session_receives_no_commits() {
+        CommitListener listener = mock(CommitListener.class);
+        ListenerSession session = dispatcher.addCommitListener(listener, Collections.singleton(peer1), "txId");
+
+        session.close();
+        sendTransactionEvent(peer1, "txId");
+
+        verify(listener, never()).acceptCommit(any());
+        assertThat(dispatcher.getPendingTransactionCount()).isZero();
+    }
+
+    @Test
+    public void closing_one_session_keeps_other_listeners_of_transaction() {
+        CommitListener listener1 = mock(CommitListener.class);
+        CommitListener listener2 = mock(CommitListener.class);
+        ListenerSession session = dispatcher.addCommitListener(listener1, Collections.singleton(peer1), "txId");
+        dispatcher.addCommitListener(listener2, Collections.singleton(peer1), "txId");
+
+        session.close();
+        BlockEvent.TransactionEvent event = sendTransactionEvent(peer1, "txId");
+
+        verify(listener2).acceptCommit(event);
+        assertThat(dispatcher.getPendingTransactionCount()).isEqualTo(1);
+    }
+
+    @Test
+    public void add_listener_after_close_throws() {
+        dispatcher.close();
+
+        assertThatThrownBy(() -> dispatcher.addCommitListener(mock(CommitListener.class),
+                Collections.singleton(peer1), "txId"))
+                .isInstanceOf(IllegalStateException.class);
+        assertThat(dispatcher.getPendingTransactionCount()).isZero();
+    }
+
+    @Test
+    public void closed_dispatcher_receives_no_commits() {
+        CommitListener listener = mock(CommitListener.class);
+        dispatcher.addCommitListener(listener, Collections.singleton(peer1), "txId");
+
+        dispatcher.close();
+        sendTransactionEvent(peer1, "txId");
+
+        verify(listener, never()).acceptCommit(any());
+    }
+}
@@ -0,0 +1,150 @@
+/*
+ * Copyright 2019 IBM All Rights Reserved.
+ *
+ * SPDX-License-Identifier: Apache-2.0
+ */
+
+package org.hyperledger.fabric.gateway.impl.event;
+
+import java.util.Arrays;
+import java.util.Collections;
+
+import org.hyperledger.fabric.gateway.TestUtils;
+import org.hyperledger.fabric.gateway.spi.CommitListener;
+import org.hyperledger.fabric.gateway.spi.PeerDisconnectEvent;
+import org.hyperledger.fabric.sdk.Peer;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.mockito.Mockito.any;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+
+public class PeerHealthRegistryTest {
+    private static final TestUtils testUtils = TestUtils.getInstance();
+
+    private Peer peer1;
+    private Peer peer2;
+    private StubPeerDisconnectEventSource peer1DisconnectSource;
+    private StubPeerDisconnectEventSource peer2DisconnectSource;
+    private PeerHealthRegistry registry;
+
+    @BeforeEach
+    public void beforeEach() {
+        peer1 = testUtils.newMockPeer("peer1");
+        peer2 = testUtils.newMockPeer("peer2");
+        peer1DisconnectSource = new StubPeerDisconnectEventSource(peer1);
+        peer2DisconnectSource = new StubPeerDisconnectEventSource(peer2);
+        registry = new PeerHealthRegistry();
+    }
+
+    @AfterEach
+    public void afterEach() {
+        registry.close();
+        peer1DisconnectSource.close();
+        peer2DisconnectSource.close();
+    }
+
+    private PeerDisconnectEvent disconnect(final StubPeerDisconnectEventSource source, final Peer peer) {
+        PeerDisconnectEvent event = testUtils.newPeerDisconnectedEvent(peer);
+        source.sendEvent(event);
+        return event;
+    }
+
+    @Test
+    public void disconnect_is_delivered_to_all_listeners_waiting_on_peer() {
+        CommitListener listener1 = mock(CommitListener.class);
+        CommitListener listener2 = mock(CommitListener.class);
+        registry.addCommitListener(listener1, Collections.singleton(peer1));
+        registry.addCommitListener(listener2, Arrays.asList(peer1, peer2));
+
+        PeerDisconnectEvent event = disconnect(peer1DisconnectSource, peer1);
+
+        verify(listener1).acceptDisconnect(event);
+        verify(listener2).acceptDisconnect(event);
+        assertThat(registry.getDisconnectCount(peer1)).isEqualTo(1);
+    }
+
+    @Test
+    public void disconnect_is_not_delivered_to_listeners_waiting_on_other_peers() {
+        CommitListener listener = mock(CommitListener.class);
+        registry.addCommitListener(listener, Collections.singleton(peer1));
+
+        disconnect(peer2DisconnectSource, peer2);
+
+        verify(listener, never()).acceptDisconnect(any());
+    }
+
+    @Test
+    public void closed_session_receives_no_disconnects() {
+        CommitListener listener = mock(CommitListener.class);
+        ListenerSession session = registry.addCommitListener(listener, Arrays.asList(peer1, peer2));
+
+        session.close();
+        disconnect(peer1DisconnectSource, peer1);
+
+        verify(listener, never()).acceptDisconnect(any());
+        assertThat(registry.getPendingCount(peer1)).isZero();
+        assertThat(registry.getPendingCount(peer2)).isZero();
+    }
+
+    @Test
+    public void listener_added_after_others_are_closed_receives_disconnect() {
+        for (int i = 0; i < 10; i++) {
+            registry.addCommitListener(mock(CommitListener.class), Collections.singleton(peer1)).close();
+        }
+        CommitListener listener = mock(CommitListener.class);
+        registry.addCommitListener(listener, Collections.singleton(peer1));
+
+        PeerDisconnectEvent event = disconnect(peer1DisconnectSource, peer1);
+
+        verify(listener).acceptDisconnect(event);
+        assertThat(registry.getDisconnectCount(peer1)).isEqualTo(1);
+    }
+
+    @Test
+    public void peer_is_released_when_last_listener_removed() {
+        ListenerSession session1 = registry.addCommitListener(mock(CommitListener.class), Arrays.asList(peer1, peer2));
+        ListenerSession session2 = registry.addCommitListener(mock(CommitListener.class), Collections.singleton(peer1));
+
+        session1.close();
+        assertThat(registry.getTrackedPeerCount()).isEqualTo(1);
+
+        session2.close();
+        assertThat(registry.getTrackedPeerCount()).isZero();
+    }
+
+    @Test
+    public void released_peer_disconnect_is_not_counted() {
+        registry.addCommitListener(mock(CommitListener.class), Collections.singleton(peer1)).close();
+
+        disconnect(peer1DisconnectSource, peer1);
+
+        assertThat(registry.getDisconnectCount(peer1)).isZero();
+    }
+
+    @Test
+    public void add_listener_after_close_throws() {
+        registry.close();
+
+        assertThatThrownBy(() -> registry.addCommitListener(mock(CommitListener.class), Collections.singleton(peer1)))
+                .isInstanceOf(IllegalStateException.class);
+        assertThat(registry.getTrackedPeerCount()).isZero();
+    }
+
+    @Test
+    public void closed_registry_delivers_no_disconnects() {
+        CommitListener listener = mock(CommitListener.class);
+        registry.addCommitListener(listener, Collections.singleton(peer1));
+
+        registry.close();
+        disconnect(peer1DisconnectSource, peer1);
+
+        verify(listener, never()).acceptDisconnect(any());
+        assertThat(registry.getTrackedPeerCount()).isZero();
+    }
+}
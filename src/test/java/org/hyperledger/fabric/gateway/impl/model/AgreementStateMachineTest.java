@@ -0,0 +1,307 @@
+/*
+ * Copyright 2019 IBM All Rights Reserved.
+ *
+ * SPDX-License-Identifier: Apache-2.0
+ */
+
+package org.hyperledger.fabric.gateway.impl.model;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+import org.hyperledger.fabric.gateway.TestUtils;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+public class AgreementStateMachineTest {
+    private static final TestUtils testUtils = TestUtils.getInstance();
+    private static final String ANALYTICS_JSON = "{"
+            + "\"organizations\":[\"org1\",\"org2\",\"org3\"],"
+            + "\"specification\":[[1,1,-1],[1,0,1]],"
+            + "\"modelCheckResultList\":["
+            + "{\"id\":1,\"probability\":0.9,\"expectedMessages\":2.5,\"epochTimestamp\":1,"
+            + "\"backwardTransitions\":[[0,-1,-1],[1,-1,-1],[1,0,0]]}"
+            + "]}";
+    // The first two organizations are interchangeable; the last is always asked last
+    private static final String INTERCHANGEABLE_ANALYTICS_JSON = "{"
+            + "\"organizations\":[\"org1\",\"org2\",\"org3\"],"
+            + "\"specification\":[[1,1,-1],[1,0,1],[0,1,1]],"
+            + "\"modelCheckResultList\":["
+            + "{\"id\":1,\"probability\":0.9,\"expectedMessages\":2.5,\"epochTimestamp\":1,"
+            + "\"backwardTransitions\":[[0,0,-1]]}"
+            + "]}";
+
+    private AnalyticsSnapshot analytics;
+    private CompiledModel model;
+
+    @BeforeEach
+    public void beforeEach() throws IOException {
+        analytics = loadAnalytics(ANALYTICS_JSON);
+        model = analytics.getModel(1);
+    }
+
+    private static AnalyticsSnapshot loadAnalytics(final String json) throws IOException {
+        Path analyticsFile = testUtils.createTempFile();
+        Files.write(analyticsFile, json.getBytes(StandardCharsets.UTF_8));
+        return new ModelRegistry().getSnapshot(analyticsFile);
+    }
+
+    private static AgreementStateMachine newInterchangeableStateMachine(final int[] organizationOrder)
+            throws IOException {
+        AnalyticsSnapshot interchangeable = loadAnalytics(INTERCHANGEABLE_ANALYTICS_JSON);
+        return new AgreementStateMachine(interchangeable, interchangeable.getModel(1), 10, 30, organizationOrder);
+    }
+
+    private AgreementStateMachine newStateMachine(final int maxRequestsPerOrganization, final int maxTotalMessages) {
+        return new AgreementStateMachine(analytics, model, maxRequestsPerOrganization, maxTotalMessages);
+    }
+
+    @Test
+    public void starts_at_first_organization() {
+        AgreementStateMachine stateMachine = newStateMachine(10, 30);
+
+        assertThat(stateMachine.getCurrentOrganization()).isEqualTo(0);
+        assertThat(stateMachine.getStateKey()).isEqualTo(StateKeys.INITIAL);
+    }
+
+    @Test
+    public void approval_moves_forward_to_next_organization() {
+        AgreementStateMachine stateMachine = newStateMachine(10, 30);
+
+        AgreementStateMachine.Step step = stateMachine.onReply(1);
+
+        assertThat(step).isEqualTo(AgreementStateMachine.Step.FORWARD);
+        assertThat(stateMachine.getCurrentOrganization()).isEqualTo(1);
+    }
+
+    @Test
+    public void specification_state_reaches_agreement() {
+        AgreementStateMachine stateMachine = newStateMachine(10, 30);
+
+        stateMachine.onReply(1);
+        AgreementStateMachine.Step step = stateMachine.onReply(1);
+
+        assertThat(step).isEqualTo(AgreementStateMachine.Step.AGREEMENT_REACHED);
+        assertThat(stateMachine.getMessageCount()).isEqualTo(2);
+    }
+
+    @Test
+    public void rejection_in_backward_state_restarts_from_first_organization() {
+        AgreementStateMachine stateMachine = newStateMachine(10, 30);
+
+        AgreementStateMachine.Step step = stateMachine.onReply(0);
+
+        assertThat(step).isEqualTo(AgreementStateMachine.Step.BACKWARD_TRANSITION);
+        assertThat(stateMachine.getCurrentOrganization()).isEqualTo(0);
+        assertThat(stateMachine.getStateKey()).isEqualTo(StateKeys.INITIAL);
+    }
+
+    @Test
+    public void backward_transition_is_removed_once_organization_reaches_max_requests() {
+        AgreementStateMachine stateMachine = newStateMachine(1, 30);
+
+        stateMachine.onReply(0);
+        AgreementStateMachine.Step step = stateMachine.onReply(0);
+
+        assertThat(step).isEqualTo(AgreementStateMachine.Step.FORWARD);
+        assertThat(stateMachine.isBackwardTransitionRemoved()).isTrue();
+        assertThat(stateMachine.getCurrentOrganization()).isEqualTo(1);
+        assertThat(stateMachine.getRequestCount(0)).isEqualTo(2);
+    }
+
+    @Test
+    public void removed_backward_transition_is_not_shared_between_transactions() {
+        AgreementStateMachine first = newStateMachine(0, 30);
+        first.onReply(0);
+
+        AgreementStateMachine second = newStateMachine(10, 30);
+        AgreementStateMachine.Step step = second.onReply(0);
+
+        assertThat(first.isBackwardTransitionRemoved()).isTrue();
+        assertThat(step).isEqualTo(AgreementStateMachine.Step.BACKWARD_TRANSITION);
+    }
+
+    @Test
+    public void stops_when_max_messages_sent() {
+        AgreementStateMachine stateMachine = newStateMachine(10, 2);
+
+        stateMachine.onReply(0);
+        stateMachine.onReply(0);
+        AgreementStateMachine.Step step = stateMachine.onReply(0);
+
+        assertThat(step).isEqualTo(AgreementStateMachine.Step.MAX_MESSAGES_SENT);
+        assertThat(stateMachine.getMessageCount()).isEqualTo(3);
+    }
+
+    @Test
+    public void agreement_takes_precedence_over_max_messages() {
+        AgreementStateMachine stateMachine = newStateMachine(10, 1);
+
+        stateMachine.onReply(1);
+        AgreementStateMachine.Step step = stateMachine.onReply(1);
+
+        assertThat(step).isEqualTo(AgreementStateMachine.Step.AGREEMENT_REACHED);
+    }
+
+    @Test
+    public void all_organizations_replying_without_agreement_ends_walk() {
+        AgreementStateMachine stateMachine = newStateMachine(0, 30);
+
+        stateMachine.onReply(1);
+        stateMachine.onReply(0);
+        AgreementStateMachine.Step step = stateMachine.onReply(0);
+
+        assertThat(step).isEqualTo(AgreementStateMachine.Step.END_OF_TREE);
+    }
+
+    @Test
+    public void backward_state_is_not_followed_after_approval() {
+        AgreementStateMachine stateMachine = newStateMachine(10, 30);
+
+        AgreementStateMachine.Step step = stateMachine.onReply(1);
+
+        assertThat(step).isEqualTo(AgreementStateMachine.Step.FORWARD);
+        assertThat(stateMachine.isBackwardTransitionRemoved()).isFalse();
+    }
+
+    @Test
+    public void approval_after_rejection_can_reach_agreement() {
+        AgreementStateMachine stateMachine = newStateMachine(10, 30);
+
+        stateMachine.onReply(1);
+        stateMachine.onReply(0);
+        AgreementStateMachine.Step step = stateMachine.onReply(1);
+
+        assertThat(step).isEqualTo(AgreementStateMachine.Step.AGREEMENT_REACHED);
+    }
+
+    @Test
+    public void interchangeable_classes_group_organizations_treated_alike() throws IOException {
+        AnalyticsSnapshot interchangeable = loadAnalytics(INTERCHANGEABLE_ANALYTICS_JSON);
+
+        assertThat(interchangeable.getInterchangeableClasses(interchangeable.getModel(1))).containsExactly(0, 0, 2);
+        assertThat(analytics.getInterchangeableClasses(model)).containsExactly(0, 1, 2);
+    }
+
+    @Test
+    public void custom_order_starts_at_first_organization_in_order() throws IOException {
+        AgreementStateMachine stateMachine = newInterchangeableStateMachine(new int[] {1, 0, 2});
+
+        assertThat(stateMachine.getCurrentOrganization()).isEqualTo(1);
+    }
+
+    @Test
+    public void custom_order_only_moves_interchangeable_organizations() throws IOException {
+        AgreementStateMachine stateMachine = newInterchangeableStateMachine(new int[] {2, 1, 0});
+
+        assertThat(stateMachine.getOrganizationAt(0)).isEqualTo(1);
+        assertThat(stateMachine.getOrganizationAt(1)).isEqualTo(0);
+        assertThat(stateMachine.getOrganizationAt(2)).isEqualTo(2);
+    }
+
+    @Test
+    public void custom_order_reaches_agreement_in_same_state() throws IOException {
+        AgreementStateMachine stateMachine = newInterchangeableStateMachine(new int[] {1, 0, 2});
+
+        AgreementStateMachine.Step first = stateMachine.onReply(1);
+        AgreementStateMachine.Step second = stateMachine.onReply(1);
+
+        assertThat(first).isEqualTo(AgreementStateMachine.Step.FORWARD);
+        assertThat(second).isEqualTo(AgreementStateMachine.Step.AGREEMENT_REACHED);
+    }
+
+    @Test
+    public void custom_order_reaches_agreement_when_organization_asked_first_rejects() throws IOException {
+        AgreementStateMachine stateMachine = newInterchangeableStateMachine(new int[] {1, 0, 2});
+
+        stateMachine.onReply(0);
+        stateMachine.onReply(1);
+        AgreementStateMachine.Step step = stateMachine.onReply(1);
+
+        assertThat(step).isEqualTo(AgreementStateMachine.Step.AGREEMENT_REACHED);
+    }
+
+    @Test
+    public void custom_order_restarts_at_first_organization_in_order() throws IOException {
+        AgreementStateMachine stateMachine = newInterchangeableStateMachine(new int[] {1, 0, 2});
+
+        stateMachine.onReply(0);
+        AgreementStateMachine.Step step = stateMachine.onReply(0);
+
+        assertThat(step).isEqualTo(AgreementStateMachine.Step.BACKWARD_TRANSITION);
+        assertThat(stateMachine.getCurrentOrganization()).isEqualTo(1);
+        assertThat(stateMachine.getPosition()).isEqualTo(0);
+    }
+
+    @Test
+    public void custom_order_of_organizations_not_interchangeable_reaches_agreement_when_all_approve() {
+        // Asked in this order, all approving would give [1,1,1], which is not a specification state
+        AgreementStateMachine stateMachine =
+                new AgreementStateMachine(analytics, model, 10, 30, new int[] {2, 0, 1});
+
+        AgreementStateMachine.Step step = stateMachine.onReply(1);
+        while (step == AgreementStateMachine.Step.FORWARD) {
+            step = stateMachine.onReply(1);
+        }
+
+        assertThat(step).isEqualTo(AgreementStateMachine.Step.AGREEMENT_REACHED);
+        assertThat(stateMachine.getCurrentOrganization()).isEqualTo(1);
+    }
+
+    @Test
+    public void order_that_is_not_a_permutation_throws() {
+        assertThatThrownBy(() -> new AgreementStateMachine(analytics, model, 10, 30, new int[] {0, 0, 1}))
+                .isInstanceOf(IllegalArgumentException.class);
+    }
+
+    @Test
+    public void swapping_asks_later_organization_first() throws IOException {
+        AgreementStateMachine stateMachine = newInterchangeableStateMachine(null);
+
+        stateMachine.swapWithPosition(1);
+
+        assertThat(stateMachine.getCurrentOrganization()).isEqualTo(1);
+        assertThat(stateMachine.getOrganizationAt(1)).isEqualTo(0);
+    }
+
+    @Test
+    public void swapped_organization_is_asked_later() throws IOException {
+        AgreementStateMachine stateMachine = newInterchangeableStateMachine(null);
+
+        stateMachine.swapWithPosition(1);
+        stateMachine.onReply(1);
+
+        assertThat(stateMachine.getCurrentOrganization()).isEqualTo(0);
+    }
+
+    @Test
+    public void only_interchangeable_organizations_can_be_swapped() throws IOException {
+        AgreementStateMachine stateMachine = newInterchangeableStateMachine(null);
+
+        assertThat(stateMachine.canSwapWithPosition(1)).isTrue();
+        assertThat(stateMachine.canSwapWithPosition(2)).isFalse();
+    }
+
+    @Test
+    public void swapping_with_organization_that_is_not_interchangeable_throws() {
+        AgreementStateMachine stateMachine = newStateMachine(10, 30);
+
+        assertThat(stateMachine.canSwapWithPosition(1)).isFalse();
+        assertThatThrownBy(() -> stateMachine.swapWithPosition(1))
+                .isInstanceOf(IllegalArgumentException.class);
+    }
+
+    @Test
+    public void swapping_with_answered_position_throws() {
+        AgreementStateMachine stateMachine = newStateMachine(10, 30);
+        stateMachine.onReply(1);
+
+        assertThatThrownBy(() -> stateMachine.swapWithPosition(0))
+                .isInstanceOf(IllegalArgumentException.class);
+    }
+}
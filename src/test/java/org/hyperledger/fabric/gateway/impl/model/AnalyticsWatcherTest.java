@@ -0,0 +1,164 @@
+/*
+ * Copyright 2019 IBM All Rights Reserved.
+ *
+ * SPDX-License-Identifier: Apache-2.0
+ */
+
+package org.hyperledger.fabric.gateway.impl.model;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.attribute.FileTime;
+import java.util.concurrent.TimeUnit;
+
+import org.hyperledger.fabric.gateway.TestUtils;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+public class AnalyticsWatcherTest {
+    private static final TestUtils testUtils = TestUtils.getInstance();
+    private static final long QUIET_PERIOD_MILLIS = 20;
+
+    private ModelRegistry registry;
+    private Path directory;
+    private Path analyticsFile;
+    private AnalyticsWatcher watcher;
+    private long lastModifiedMillis = 1000000;
+
+    private static String analyticsJson(final long model1Timestamp, final long model2Timestamp) {
+        return "{"
+                + "\"organizations\":[\"org1\",\"org2\"],"
+                + "\"specification\":[[1,1]],"
+                + "\"modelCheckResultList\":["
+                + "{\"id\":1,\"probability\":0.9,\"expectedMessages\":2.5,\"epochTimestamp\":" + model1Timestamp
+                + ",\"backwardTransitions\":[]},"
+                + "{\"id\":2,\"probability\":0.8,\"expectedMessages\":3.0,\"epochTimestamp\":" + model2Timestamp
+                + ",\"backwardTransitions\":[]}"
+                + "]}";
+    }
+
+    private void writeAnalytics(final String json) throws IOException {
+        Files.write(analyticsFile, json.getBytes(StandardCharsets.UTF_8));
+        lastModifiedMillis += 1000;
+        Files.setLastModifiedTime(analyticsFile, FileTime.fromMillis(lastModifiedMillis));
+    }
+
+    @BeforeEach
+    public void beforeEach() throws IOException {
+        registry = new ModelRegistry();
+        directory = testUtils.createTempDirectory();
+        analyticsFile = directory.resolve("analytics.json");
+        writeAnalytics(analyticsJson(100, 200));
+        watcher = registry.watch(analyticsFile, QUIET_PERIOD_MILLIS);
+    }
+
+    @AfterEach
+    public void afterEach() throws IOException {
+        watcher.close();
+    }
+
+    @Test
+    public void watched_file_is_not_read_on_request() throws IOException {
+        AnalyticsSnapshot published = watcher.getSnapshot();
+        Files.delete(analyticsFile);
+
+        assertThat(registry.getSnapshot(analyticsFile)).isSameAs(published);
+        assertThat(registry.getSnapshot(analyticsFile, 1)).isSameAs(published);
+    }
+
+    @Test
+    public void watching_same_file_twice_returns_same_watcher() throws IOException {
+        assertThat(registry.watch(analyticsFile)).isSameAs(watcher);
+    }
+
+    @Test
+    public void newer_model_is_published() throws IOException {
+        writeAnalytics(analyticsJson(101, 200));
+
+        watcher.reload();
+
+        assertThat(registry.getModel(analyticsFile, 1).getEpochTimestamp()).isEqualTo(101);
+        assertThat(watcher.getPublishedCount()).isEqualTo(1);
+    }
+
+    @Test
+    public void unchanged_models_are_reused_in_new_version() throws IOException {
+        CompiledModel unchanged = watcher.getSnapshot().getModel(2);
+        writeAnalytics(analyticsJson(101, 200));
+
+        watcher.reload();
+
+        assertThat(watcher.getSnapshot().getModel(2)).isSameAs(unchanged);
+    }
+
+    @Test
+    public void in_flight_snapshot_keeps_its_version() throws IOException {
+        AnalyticsSnapshot inFlight = registry.getSnapshot(analyticsFile);
+        writeAnalytics(analyticsJson(101, 200));
+
+        watcher.reload();
+
+        assertThat(inFlight.getModel(1).getEpochTimestamp()).isEqualTo(100);
+    }
+
+    @Test
+    public void stale_version_is_rejected() throws IOException {
+        writeAnalytics(analyticsJson(99, 300));
+
+        watcher.reload();
+
+        assertThat(registry.getModel(analyticsFile, 1).getEpochTimestamp()).isEqualTo(100);
+        assertThat(registry.getModel(analyticsFile, 2).getEpochTimestamp()).isEqualTo(200);
+        assertThat(watcher.getRejectedCount()).isPositive();
+    }
+
+    @Test
+    public void version_with_same_timestamps_is_not_published() throws IOException {
+        AnalyticsSnapshot published = watcher.getSnapshot();
+        writeAnalytics(analyticsJson(100, 200));
+
+        watcher.reload();
+
+        assertThat(watcher.getSnapshot()).isSameAs(published);
+        assertThat(watcher.getPublishedCount()).isZero();
+    }
+
+    @Test
+    public void partly_written_file_keeps_current_version() throws IOException {
+        String json = analyticsJson(101, 200);
+        writeAnalytics(json.substring(0, json.length() / 2));
+
+        watcher.reload();
+
+        assertThat(registry.getModel(analyticsFile, 1).getEpochTimestamp()).isEqualTo(100);
+        assertThat(watcher.getRejectedCount()).isPositive();
+    }
+
+    @Test
+    public void replaced_file_is_published_in_background() throws Exception {
+        Path newFile = directory.resolve("analytics.json.tmp");
+        Files.write(newFile, analyticsJson(101, 201).getBytes(StandardCharsets.UTF_8));
+        Files.move(newFile, analyticsFile, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(10);
+        while (watcher.getPublishedCount() == 0 && System.nanoTime() < deadline) {
+            Thread.sleep(10);
+        }
+
+        assertThat(registry.getModel(analyticsFile, 2).getEpochTimestamp()).isEqualTo(201);
+    }
+
+    @Test
+    public void file_is_read_again_after_close() throws IOException {
+        watcher.close();
+        writeAnalytics(analyticsJson(101, 200));
+
+        assertThat(registry.getModel(analyticsFile, 1).getEpochTimestamp()).isEqualTo(101);
+    }
+}
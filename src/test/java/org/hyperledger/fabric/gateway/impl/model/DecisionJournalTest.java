@@ -0,0 +1,144 @@
+/*
+ * Copyright 2019 IBM All Rights Reserved.
+ *
+ * SPDX-License-Identifier: Apache-2.0
+ */
+
+package org.hyperledger.fabric.gateway.impl.model;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.hyperledger.fabric.gateway.TestUtils;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+public class DecisionJournalTest {
+    private static final TestUtils testUtils = TestUtils.getInstance();
+    private static final long MAX_FILE_BYTES = 1024 * 1024;
+
+    private Path directory;
+
+    @BeforeEach
+    public void beforeEach() throws IOException {
+        directory = testUtils.createTempDirectory();
+    }
+
+    private List<DecisionJournalReader.Entry> readJournal(final Path path) throws IOException {
+        List<DecisionJournalReader.Entry> entries = new ArrayList<>();
+        DecisionJournalReader.read(path, entries::add);
+        return entries;
+    }
+
+    @Test
+    public void recorded_decisions_are_read_back() throws IOException {
+        long hash = DecisionJournal.hash("txId");
+        long before = System.currentTimeMillis();
+        try (DecisionJournal journal = new DecisionJournal(directory, 16, MAX_FILE_BYTES, 1)) {
+            assertThat(journal.record(hash, 2, 1, AgreementStateMachine.Step.FORWARD, 1, 1000)).isTrue();
+            assertThat(journal.record(hash, 0, -1, AgreementStateMachine.Step.AGREEMENT_REACHED, 2, 2000)).isTrue();
+        }
+
+        List<DecisionJournalReader.Entry> entries = readJournal(directory.resolve(DecisionJournal.FILE_NAME));
+
+        assertThat(entries).hasSize(2);
+        DecisionJournalReader.Entry first = entries.get(0);
+        assertThat(first.getTransactionHash()).isEqualTo(hash);
+        assertThat(first.getOrganization()).isEqualTo(2);
+        assertThat(first.getReply()).isEqualTo(1);
+        assertThat(first.getStep()).isEqualTo(AgreementStateMachine.Step.FORWARD);
+        assertThat(first.getMessageCount()).isEqualTo(1);
+        assertThat(first.getLatencyNanos()).isEqualTo(1000);
+        assertThat(first.getTimestampMillis()).isGreaterThanOrEqualTo(before - 1);
+        DecisionJournalReader.Entry second = entries.get(1);
+        assertThat(second.getReply()).isEqualTo(-1);
+        assertThat(second.getStep()).isEqualTo(AgreementStateMachine.Step.AGREEMENT_REACHED);
+    }
+
+    @Test
+    public void more_records_than_capacity_are_written_when_drained_in_time() throws IOException, InterruptedException {
+        try (DecisionJournal journal = new DecisionJournal(directory, 4, MAX_FILE_BYTES, 1)) {
+            for (int i = 0; i < 12; i++) {
+                while (!journal.record(i, 0, 1, AgreementStateMachine.Step.FORWARD, i, 0)) {
+                    Thread.sleep(1);
+                }
+            }
+        }
+
+        List<DecisionJournalReader.Entry> entries = readJournal(directory.resolve(DecisionJournal.FILE_NAME));
+
+        assertThat(entries).extracting(DecisionJournalReader.Entry::getMessageCount)
+                .containsExactly(0, 1, 2, 3, 4, 5, 6, 7, 8, 9, 10, 11);
+    }
+
+    @Test
+    public void journal_file_is_rolled_when_full() throws IOException, InterruptedException {
+        long maxFileBytes = DecisionJournal.HEADER_SIZE + DecisionJournal.RECORD_SIZE * 2;
+        try (DecisionJournal journal = new DecisionJournal(directory, 16, maxFileBytes, 3)) {
+            for (int i = 0; i < 3; i++) {
+                journal.record(i, 0, 1, AgreementStateMachine.Step.FORWARD, i, 0);
+                // Allow each record to be written separately
+                Thread.sleep(50);
+            }
+        }
+
+        assertThat(readJournal(directory.resolve(DecisionJournal.FILE_NAME + ".1")))
+                .extracting(DecisionJournalReader.Entry::getMessageCount)
+                .containsExactly(0, 1);
+        assertThat(readJournal(directory.resolve(DecisionJournal.FILE_NAME)))
+                .extracting(DecisionJournalReader.Entry::getMessageCount)
+                .containsExactly(2);
+    }
+
+    @Test
+    public void records_are_rejected_after_close() throws IOException {
+        DecisionJournal journal = new DecisionJournal(directory, 16, MAX_FILE_BYTES, 1);
+        journal.close();
+
+        assertThat(journal.record(1, 0, 1, AgreementStateMachine.Step.FORWARD, 1, 0)).isFalse();
+    }
+
+    @Test
+    public void partly_written_final_record_is_ignored() throws IOException {
+        try (DecisionJournal journal = new DecisionJournal(directory, 16, MAX_FILE_BYTES, 1)) {
+            journal.record(1, 0, 1, AgreementStateMachine.Step.FORWARD, 1, 0);
+        }
+        byte[] bytes = Files.readAllBytes(directory.resolve(DecisionJournal.FILE_NAME));
+        byte[] truncated = new byte[bytes.length + DecisionJournal.RECORD_SIZE / 2];
+        System.arraycopy(bytes, 0, truncated, 0, bytes.length);
+
+        List<DecisionJournalReader.Entry> entries = new ArrayList<>();
+        DecisionJournalReader.read(new ByteArrayInputStream(truncated), entries::add);
+
+        assertThat(entries).hasSize(1);
+    }
+
+    @Test
+    public void throws_if_file_is_not_a_journal() throws IOException {
+        Path file = testUtils.createTempFile();
+        Files.write(file, new byte[DecisionJournal.HEADER_SIZE]);
+
+        assertThatThrownBy(() -> readJournal(file))
+                .isInstanceOf(IOException.class);
+    }
+
+    @Test
+    public void hash_of_null_transaction_id_is_zero() {
+        assertThat(DecisionJournal.hash(null)).isZero();
+        assertThat(DecisionJournal.hash("txId")).isEqualTo(DecisionJournal.hash("txId"))
+                .isNotEqualTo(DecisionJournal.hash("txId2"));
+    }
+
+    @Test
+    public void throws_on_invalid_capacity() {
+        assertThatThrownBy(() -> new DecisionJournal(directory, 0, MAX_FILE_BYTES, 1))
+                .isInstanceOf(IllegalArgumentException.class);
+    }
+}
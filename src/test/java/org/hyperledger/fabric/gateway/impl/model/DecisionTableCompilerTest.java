@@ -0,0 +1,178 @@
+/*
+ * Copyright 2019 IBM All Rights Reserved.
+ *
+ * SPDX-License-Identifier: Apache-2.0
+ */
+
+package org.hyperledger.fabric.gateway.impl.model;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.hyperledger.fabric.gateway.TestUtils;
+import org.hyperledger.fabric.gateway.impl.SendingConfirmationServiceImpl.ModelCheckerResultWrapper;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.assertj.core.api.Assertions.within;
+
+public class DecisionTableCompilerTest {
+    private static final TestUtils testUtils = TestUtils.getInstance();
+    // Any two approvals, as long as no organization has rejected
+    private static final String ANALYTICS_JSON = "{"
+            + "\"organizations\":[\"org1\",\"org2\",\"org3\"],"
+            + "\"specification\":[[1,1,-1],[1,-1,1],[-1,1,1]],"
+            + "\"modelCheckResultList\":["
+            + "{\"id\":1,\"probability\":0.9,\"expectedMessages\":2.5,\"epochTimestamp\":7,\"backwardTransitions\":[]}"
+            + "]}";
+
+    // Either the first organization alone, or the other two, which are interchangeable with each other only
+    private static final String ASYMMETRIC_ANALYTICS_JSON = "{"
+            + "\"organizations\":[\"org1\",\"org2\",\"org3\"],"
+            + "\"specification\":[[1,-1,-1],[-1,1,1]],"
+            + "\"modelCheckResultList\":["
+            + "{\"id\":1,\"probability\":0.9,\"expectedMessages\":2,\"epochTimestamp\":7,\"backwardTransitions\":[]}"
+            + "]}";
+
+    private ModelCheckerResultWrapper wrapper;
+    private AnalyticsSnapshot analytics;
+    private final Map<String, Double> probabilities = new HashMap<>();
+
+    @BeforeEach
+    public void beforeEach() throws IOException {
+        Path analyticsFile = testUtils.createTempFile();
+        Files.write(analyticsFile, ANALYTICS_JSON.getBytes(StandardCharsets.UTF_8));
+        wrapper = new ObjectMapper().readValue(analyticsFile.toFile(), ModelCheckerResultWrapper.class);
+        analytics = new ModelRegistry().getSnapshot(analyticsFile);
+
+        probabilities.put("org1", 0.9);
+        probabilities.put("org2", 0.1);
+        probabilities.put("org3", 0.8);
+    }
+
+    private static long state(final int... responses) {
+        return StateKeys.encode(responses);
+    }
+
+    @Test
+    public void organization_most_likely_to_end_walk_early_is_asked_first() {
+        DecisionTable table = DecisionTableCompiler.compile(wrapper, 1, probabilities);
+
+        assertThat(table.nextOrganization(state(-1, -1, -1))).isEqualTo(2);
+        assertThat(table.nextOrganization(state(-1, -1, 1))).isEqualTo(0);
+    }
+
+    @Test
+    public void gives_up_once_specification_is_unreachable() {
+        DecisionTable table = DecisionTableCompiler.compile(wrapper, 1, probabilities);
+
+        assertThat(table.nextOrganization(state(-1, -1, 0))).isEqualTo(DecisionTable.GIVE_UP);
+    }
+
+    @Test
+    public void reports_success_probability_and_expected_messages() {
+        DecisionTable table = DecisionTableCompiler.compile(wrapper, 1, probabilities);
+
+        assertThat(table.getSuccessProbability()).isCloseTo(0.72, within(1e-9));
+        assertThat(table.getExpectedMessages()).isCloseTo(1.8, within(1e-9));
+    }
+
+    @Test
+    public void unreached_states_are_not_in_table() {
+        DecisionTable table = DecisionTableCompiler.compile(wrapper, 1, probabilities);
+
+        assertThat(table.nextOrganization(state(-1, 1, -1))).isEqualTo(DecisionTable.UNKNOWN);
+    }
+
+    @Test
+    public void missing_probabilities_use_default() {
+        DecisionTable table = DecisionTableCompiler.compile(wrapper, 1, Collections.emptyMap());
+
+        assertThat(table.getSuccessProbability()).isCloseTo(0.25, within(1e-9));
+    }
+
+    @Test
+    public void unknown_model_throws() {
+        assertThatThrownBy(() -> DecisionTableCompiler.compile(wrapper, 2, probabilities))
+                .isInstanceOf(IllegalArgumentException.class);
+    }
+
+    @Test
+    public void invalid_probability_throws() {
+        probabilities.put("org1", 1.5);
+
+        assertThatThrownBy(() -> DecisionTableCompiler.compile(wrapper, 1, probabilities))
+                .isInstanceOf(IllegalArgumentException.class);
+    }
+
+    @Test
+    public void table_can_be_written_and_read() throws IOException {
+        DecisionTable table = DecisionTableCompiler.compile(wrapper, 1, probabilities);
+        Path tableFile = testUtils.createTempFile();
+        try (OutputStream out = Files.newOutputStream(tableFile)) {
+            table.write(out);
+        }
+
+        DecisionTable result = DecisionTable.read(tableFile);
+
+        assertThat(result.size()).isEqualTo(table.size());
+        assertThat(result.nextOrganization(state(-1, -1, 1))).isEqualTo(0);
+        assertThat(result.isCompiledFor(analytics.getOrganizations(), analytics.getModel(1))).isTrue();
+    }
+
+    @Test
+    public void state_machine_follows_table() {
+        DecisionTable table = DecisionTableCompiler.compile(wrapper, 1, probabilities);
+        AgreementStateMachine stateMachine = new AgreementStateMachine(analytics, analytics.getModel(1), 10, 30,
+                null, table);
+
+        assertThat(stateMachine.getCurrentOrganization()).isEqualTo(2);
+        stateMachine.onReply(1);
+
+        assertThat(stateMachine.getCurrentOrganization()).isEqualTo(0);
+        assertThat(stateMachine.onReply(1)).isEqualTo(AgreementStateMachine.Step.AGREEMENT_REACHED);
+    }
+
+    @Test
+    public void only_organizations_interchangeable_with_next_position_are_chosen() throws IOException {
+        Path analyticsFile = testUtils.createTempFile();
+        Files.write(analyticsFile, ASYMMETRIC_ANALYTICS_JSON.getBytes(StandardCharsets.UTF_8));
+        ModelCheckerResultWrapper asymmetric = new ObjectMapper().readValue(analyticsFile.toFile(),
+                ModelCheckerResultWrapper.class);
+        AnalyticsSnapshot asymmetricAnalytics = new ModelRegistry().getSnapshot(analyticsFile);
+        probabilities.put("org1", 0.1);
+        probabilities.put("org2", 0.9);
+        probabilities.put("org3", 0.9);
+
+        DecisionTable table = DecisionTableCompiler.compile(asymmetric, 1, probabilities);
+        AgreementStateMachine stateMachine = new AgreementStateMachine(asymmetricAnalytics,
+                asymmetricAnalytics.getModel(1), 10, 30, null, table);
+
+        // Asking org2 first would be more likely to succeed, but no walk can ask it before org1
+        assertThat(table.nextOrganization(state(-1, -1, -1))).isEqualTo(0);
+        assertThat(table.getSuccessProbability()).isCloseTo(0.1, within(1e-9));
+        assertThat(table.getExpectedMessages()).isCloseTo(1, within(1e-9));
+        assertThat(stateMachine.getCurrentOrganization()).isEqualTo(0);
+    }
+
+    @Test
+    public void state_machine_stops_when_specification_unreachable() {
+        DecisionTable table = DecisionTableCompiler.compile(wrapper, 1, probabilities);
+        AgreementStateMachine stateMachine = new AgreementStateMachine(analytics, analytics.getModel(1), 10, 30,
+                null, table);
+
+        AgreementStateMachine.Step step = stateMachine.onReply(0);
+
+        assertThat(step).isEqualTo(AgreementStateMachine.Step.SPECIFICATION_UNREACHABLE);
+        assertThat(step.isTerminal()).isTrue();
+    }
+}
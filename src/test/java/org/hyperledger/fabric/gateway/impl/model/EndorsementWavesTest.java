@@ -0,0 +1,191 @@
+/*
+ * Copyright 2019 IBM All Rights Reserved.
+ *
+ * SPDX-License-Identifier: Apache-2.0
+ */
+
+package org.hyperledger.fabric.gateway.impl.model;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.hyperledger.fabric.gateway.TestUtils;
+import org.hyperledger.fabric.sdk.ProposalResponse;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.ArgumentCaptor;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.mockito.ArgumentMatchers.anyLong;
+import static org.mockito.Mockito.any;
+import static org.mockito.Mockito.doReturn;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+
+public class EndorsementWavesTest {
+    private static final TestUtils testUtils = TestUtils.getInstance();
+    private static final String ANALYTICS_JSON = "{"
+            + "\"organizations\":[\"org1\",\"org2\"],"
+            + "\"specification\":[[1,1]],"
+            + "\"modelCheckResultList\":["
+            + "{\"id\":1,\"probability\":0.9,\"expectedMessages\":2,\"epochTimestamp\":1,\"backwardTransitions\":[]}"
+            + "]}";
+    private static final long LONG_DELAY_NANOS = TimeUnit.SECONDS.toNanos(60);
+
+    private CompiledModel model;
+    private ScheduledExecutorService scheduler;
+    private final AtomicInteger sendCount = new AtomicInteger(0);
+
+    @BeforeEach
+    public void beforeEach() throws IOException {
+        Path analyticsFile = testUtils.createTempFile();
+        Files.write(analyticsFile, ANALYTICS_JSON.getBytes(StandardCharsets.UTF_8));
+        model = new ModelRegistry().getSnapshot(analyticsFile).getModel(1);
+        scheduler = Executors.newSingleThreadScheduledExecutor();
+    }
+
+    @AfterEach
+    public void afterEach() {
+        scheduler.shutdownNow();
+    }
+
+    private CompletableFuture<ProposalResponse> submit(final EndorsementWaves waves, final long stateKey,
+                                                       final CompletableFuture<ProposalResponse> proposal) {
+        return waves.submit(model, stateKey, 0, () -> {
+            sendCount.incrementAndGet();
+            return proposal;
+        });
+    }
+
+    @Test
+    public void full_wave_is_sent_without_waiting() {
+        EndorsementWaves waves = new EndorsementWaves(2, LONG_DELAY_NANOS, scheduler);
+
+        submit(waves, StateKeys.INITIAL, new CompletableFuture<>());
+        assertThat(sendCount.get()).isZero();
+        submit(waves, StateKeys.INITIAL, new CompletableFuture<>());
+
+        assertThat(sendCount.get()).isEqualTo(2);
+        assertThat(waves.getPendingWaveCount()).isZero();
+    }
+
+    @Test
+    public void replies_are_released_when_whole_wave_completes() {
+        EndorsementWaves waves = new EndorsementWaves(2, LONG_DELAY_NANOS, scheduler);
+        CompletableFuture<ProposalResponse> fast = new CompletableFuture<>();
+        CompletableFuture<ProposalResponse> slow = new CompletableFuture<>();
+
+        CompletableFuture<ProposalResponse> fastStep = submit(waves, StateKeys.INITIAL, fast);
+        CompletableFuture<ProposalResponse> slowStep = submit(waves, StateKeys.INITIAL, slow);
+        fast.complete(null);
+
+        assertThat(fastStep.isDone()).isFalse();
+        slow.complete(null);
+        assertThat(fastStep.isDone()).isTrue();
+        assertThat(slowStep.isDone()).isTrue();
+    }
+
+    @Test
+    public void failed_proposal_fails_only_its_own_step() {
+        EndorsementWaves waves = new EndorsementWaves(2, LONG_DELAY_NANOS, scheduler);
+        CompletableFuture<ProposalResponse> failed = new CompletableFuture<>();
+        CompletableFuture<ProposalResponse> succeeded = new CompletableFuture<>();
+
+        CompletableFuture<ProposalResponse> failedStep = submit(waves, StateKeys.INITIAL, failed);
+        CompletableFuture<ProposalResponse> succeededStep = submit(waves, StateKeys.INITIAL, succeeded);
+        failed.completeExceptionally(new IllegalStateException("failed"));
+        succeeded.complete(null);
+
+        assertThat(failedStep.isCompletedExceptionally()).isTrue();
+        assertThat(succeededStep.isCompletedExceptionally()).isFalse();
+    }
+
+    @Test
+    public void transactions_in_different_states_form_different_waves() {
+        EndorsementWaves waves = new EndorsementWaves(2, LONG_DELAY_NANOS, scheduler);
+
+        submit(waves, StateKeys.INITIAL, new CompletableFuture<>());
+        submit(waves, StateKeys.withResponse(StateKeys.INITIAL, 1, 1), new CompletableFuture<>());
+
+        assertThat(sendCount.get()).isZero();
+        assertThat(waves.getPendingWaveCount()).isEqualTo(2);
+    }
+
+    @Test
+    public void partial_wave_is_sent_after_delay() throws Exception {
+        EndorsementWaves waves = new EndorsementWaves(10, TimeUnit.MILLISECONDS.toNanos(10), scheduler);
+        CompletableFuture<ProposalResponse> proposal = new CompletableFuture<>();
+        proposal.complete(null);
+
+        CompletableFuture<ProposalResponse> step = submit(waves, StateKeys.INITIAL, proposal);
+
+        step.get(5, TimeUnit.SECONDS);
+        assertThat(sendCount.get()).isEqualTo(1);
+    }
+
+    @Test
+    public void timer_of_wave_sent_full_does_not_send_newer_wave() {
+        ScheduledExecutorService timers = mock(ScheduledExecutorService.class);
+        EndorsementWaves waves = new EndorsementWaves(2, LONG_DELAY_NANOS, timers);
+
+        submit(waves, StateKeys.INITIAL, new CompletableFuture<>());
+        submit(waves, StateKeys.INITIAL, new CompletableFuture<>());
+        submit(waves, StateKeys.INITIAL, new CompletableFuture<>());
+        ArgumentCaptor<Runnable> flushes = ArgumentCaptor.forClass(Runnable.class);
+        verify(timers, times(2)).schedule(flushes.capture(), anyLong(), any(TimeUnit.class));
+        flushes.getAllValues().get(0).run();
+
+        assertThat(sendCount.get()).isEqualTo(2);
+        assertThat(waves.getPendingWaveCount()).isEqualTo(1);
+    }
+
+    @Test
+    public void wave_sent_full_cancels_its_timer() {
+        ScheduledExecutorService timers = mock(ScheduledExecutorService.class);
+        ScheduledFuture<?> timer = mock(ScheduledFuture.class);
+        doReturn(timer).when(timers).schedule(any(Runnable.class), anyLong(), any(TimeUnit.class));
+        EndorsementWaves waves = new EndorsementWaves(2, LONG_DELAY_NANOS, timers);
+
+        submit(waves, StateKeys.INITIAL, new CompletableFuture<>());
+        submit(waves, StateKeys.INITIAL, new CompletableFuture<>());
+
+        verify(timer).cancel(false);
+    }
+
+    @Test
+    public void cancelled_step_is_not_sent() {
+        EndorsementWaves waves = new EndorsementWaves(2, LONG_DELAY_NANOS, scheduler);
+
+        submit(waves, StateKeys.INITIAL, new CompletableFuture<>()).cancel(true);
+        submit(waves, StateKeys.INITIAL, new CompletableFuture<>());
+
+        assertThat(sendCount.get()).isEqualTo(1);
+    }
+
+    @Test
+    public void cancelling_sent_step_cancels_its_proposal() {
+        EndorsementWaves waves = new EndorsementWaves(1, LONG_DELAY_NANOS, scheduler);
+        CompletableFuture<ProposalResponse> proposal = new CompletableFuture<>();
+
+        submit(waves, StateKeys.INITIAL, proposal).cancel(true);
+
+        assertThat(proposal.isCancelled()).isTrue();
+    }
+
+    @Test
+    public void throws_on_invalid_wave_size() {
+        assertThatThrownBy(() -> new EndorsementWaves(0, LONG_DELAY_NANOS, scheduler))
+                .isInstanceOf(IllegalArgumentException.class);
+    }
+}
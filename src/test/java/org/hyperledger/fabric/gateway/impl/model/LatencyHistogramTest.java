@@ -0,0 +1,74 @@
+/*
+ * Copyright 2019 IBM All Rights Reserved.
+ *
+ * SPDX-License-Identifier: Apache-2.0
+ */
+
+package org.hyperledger.fabric.gateway.impl.model;
+
+import java.util.concurrent.TimeUnit;
+
+import org.junit.jupiter.api.Test;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+public class LatencyHistogramTest {
+    private static final long MILLIS = TimeUnit.MILLISECONDS.toNanos(1);
+
+    @Test
+    public void empty_histogram_has_zero_percentile() {
+        LatencyHistogram histogram = new LatencyHistogram(100);
+
+        assertThat(histogram.getPercentileNanos(0.99)).isZero();
+    }
+
+    @Test
+    public void percentile_is_within_bucket_error() {
+        LatencyHistogram histogram = new LatencyHistogram(1000);
+        for (int i = 1; i <= 100; i++) {
+            histogram.record(i * MILLIS);
+        }
+
+        assertThat(histogram.getPercentileNanos(0.5)).isBetween(50 * MILLIS, 57 * MILLIS);
+        assertThat(histogram.getPercentileNanos(0.99)).isBetween(99 * MILLIS, 112 * MILLIS);
+    }
+
+    @Test
+    public void percentile_is_not_below_recorded_value() {
+        LatencyHistogram histogram = new LatencyHistogram(100);
+        histogram.record(12345678);
+
+        assertThat(histogram.getPercentileNanos(0.5)).isGreaterThanOrEqualTo(12345678);
+    }
+
+    @Test
+    public void tiny_and_huge_values_are_clamped() {
+        LatencyHistogram histogram = new LatencyHistogram(100);
+        histogram.record(0);
+        histogram.record(Long.MAX_VALUE);
+
+        assertThat(histogram.getPercentileNanos(0.5)).isEqualTo(1L << 10);
+        assertThat(histogram.getPercentileNanos(1.0)).isEqualTo(1L << 40);
+    }
+
+    @Test
+    public void old_samples_are_aged() {
+        LatencyHistogram histogram = new LatencyHistogram(10);
+        for (int i = 0; i < 9; i++) {
+            histogram.record(1000 * MILLIS);
+        }
+        for (int i = 0; i < 30; i++) {
+            histogram.record(MILLIS);
+        }
+
+        assertThat(histogram.getCount()).isLessThan(10);
+        assertThat(histogram.getPercentileNanos(0.5)).isLessThan(2 * MILLIS);
+    }
+
+    @Test
+    public void fewer_than_two_samples_throws() {
+        assertThatThrownBy(() -> new LatencyHistogram(1))
+                .isInstanceOf(IllegalArgumentException.class);
+    }
+}
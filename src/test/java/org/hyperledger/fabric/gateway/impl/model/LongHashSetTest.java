@@ -0,0 +1,72 @@
+/*
+ * Copyright 2019 IBM All Rights Reserved.
+ *
+ * SPDX-License-Identifier: Apache-2.0
+ */
+
+package org.hyperledger.fabric.gateway.impl.model;
+
+import org.junit.jupiter.api.Test;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+public class LongHashSetTest {
+    @Test
+    public void new_set_is_empty() {
+        LongHashSet set = new LongHashSet();
+
+        assertThat(set.isEmpty()).isTrue();
+        assertThat(set.contains(0L)).isFalse();
+    }
+
+    @Test
+    public void contains_added_values() {
+        LongHashSet set = new LongHashSet();
+
+        set.add(0L);
+        set.add(42L);
+
+        assertThat(set.contains(0L)).isTrue();
+        assertThat(set.contains(42L)).isTrue();
+        assertThat(set.contains(7L)).isFalse();
+    }
+
+    @Test
+    public void duplicate_add_returns_false() {
+        LongHashSet set = new LongHashSet();
+        set.add(1L);
+
+        boolean added = set.add(1L);
+
+        assertThat(added).isFalse();
+        assertThat(set.size()).isEqualTo(1);
+    }
+
+    @Test
+    public void grows_beyond_initial_capacity() {
+        LongHashSet set = new LongHashSet(1);
+        for (long i = 0; i < 10000; i++) {
+            set.add(i * 3);
+        }
+
+        assertThat(set.size()).isEqualTo(10000);
+        for (long i = 0; i < 10000; i++) {
+            assertThat(set.contains(i * 3)).isTrue();
+            assertThat(set.contains(i * 3 + 1)).isFalse();
+        }
+    }
+
+    @Test
+    public void negative_values_are_never_contained() {
+        assertThat(new LongHashSet().contains(-1L)).isFalse();
+    }
+
+    @Test
+    public void adding_negative_value_throws() {
+        LongHashSet set = new LongHashSet();
+
+        assertThatThrownBy(() -> set.add(-5L))
+                .isInstanceOf(IllegalArgumentException.class);
+    }
+}
@@ -0,0 +1,99 @@
+/*
+ * Copyright 2019 IBM All Rights Reserved.
+ *
+ * SPDX-License-Identifier: Apache-2.0
+ */
+
+package org.hyperledger.fabric.gateway.impl.model;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+
+import org.hyperledger.fabric.gateway.TestUtils;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+public class ModelArtifactTest {
+    private static final TestUtils testUtils = TestUtils.getInstance();
+    private static final String ANALYTICS_JSON = "{"
+            + "\"organizations\":[\"org1\",\"org2\",\"org3\"],"
+            + "\"specification\":[[1,1,-1],[1,0,1],[1,1,1]],"
+            + "\"modelCheckResultList\":["
+            + "{\"id\":1,\"probability\":0.9,\"expectedMessages\":2.5,\"epochTimestamp\":100,"
+            + "\"backwardTransitions\":[[0,-1,-1],[1,0,0]]},"
+            + "{\"id\":2,\"probability\":0.8,\"expectedMessages\":3.0,\"epochTimestamp\":200,"
+            + "\"backwardTransitions\":[]}"
+            + "]}";
+
+    private Path analyticsFile;
+    private Path artifactFile;
+
+    @BeforeEach
+    public void beforeEach() throws IOException {
+        analyticsFile = testUtils.createTempFile();
+        Files.write(analyticsFile, ANALYTICS_JSON.getBytes(StandardCharsets.UTF_8));
+        artifactFile = testUtils.createTempFile();
+        ModelArtifact.convert(analyticsFile, artifactFile);
+    }
+
+    @Test
+    public void converted_file_is_artifact() throws IOException {
+        assertThat(ModelArtifact.isArtifact(artifactFile)).isTrue();
+        assertThat(ModelArtifact.isArtifact(analyticsFile)).isFalse();
+    }
+
+    @Test
+    public void artifact_has_organizations() throws IOException {
+        AnalyticsSnapshot snapshot = new ModelRegistry().getSnapshot(artifactFile);
+
+        assertThat(snapshot.getOrganizations()).containsExactly("org1", "org2", "org3");
+    }
+
+    @Test
+    public void artifact_answers_specification_membership() throws IOException {
+        AnalyticsSnapshot snapshot = new ModelRegistry().getSnapshot(artifactFile);
+
+        assertThat(snapshot.isSpecification(StateKeys.encode(new int[] {1, 1, -1}))).isTrue();
+        assertThat(snapshot.isSpecification(StateKeys.encode(new int[] {1, 0, 1}))).isTrue();
+        assertThat(snapshot.isSpecification(StateKeys.encode(new int[] {1, 1, 1}))).isTrue();
+        assertThat(snapshot.isSpecification(StateKeys.encode(new int[] {0, 1, 1}))).isFalse();
+        assertThat(snapshot.isSpecification(StateKeys.INITIAL)).isFalse();
+    }
+
+    @Test
+    public void artifact_has_model_index() throws IOException {
+        CompiledModel model = new ModelRegistry().getModel(artifactFile, 2);
+
+        assertThat(model.getId()).isEqualTo(2);
+        assertThat(model.getProbability()).isEqualTo(0.8);
+        assertThat(model.getExpectedMessages()).isEqualTo(3.0);
+        assertThat(model.getEpochTimestamp()).isEqualTo(200L);
+    }
+
+    @Test
+    public void artifact_answers_backward_transition_membership() throws IOException {
+        ModelRegistry registry = new ModelRegistry();
+        CompiledModel model1 = registry.getModel(artifactFile, 1);
+        CompiledModel model2 = registry.getModel(artifactFile, 2);
+
+        assertThat(model1.isBackwardTransition(StateKeys.encode(new int[] {0, -1, -1}))).isTrue();
+        assertThat(model1.isBackwardTransition(StateKeys.encode(new int[] {1, 0, 0}))).isTrue();
+        assertThat(model1.isBackwardTransition(StateKeys.encode(new int[] {1, 1, 0}))).isFalse();
+        assertThat(model2.isBackwardTransition(StateKeys.encode(new int[] {0, -1, -1}))).isFalse();
+    }
+
+    @Test
+    public void truncated_artifact_throws() throws IOException {
+        byte[] content = Files.readAllBytes(artifactFile);
+        Files.write(artifactFile, Arrays.copyOf(content, content.length - 8));
+
+        assertThatThrownBy(() -> new ModelRegistry().getSnapshot(artifactFile))
+                .isInstanceOf(IOException.class);
+    }
+}
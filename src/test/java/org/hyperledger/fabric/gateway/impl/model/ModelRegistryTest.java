@@ -0,0 +1,144 @@
+/*
+ * Copyright 2019 IBM All Rights Reserved.
+ *
+ * SPDX-License-Identifier: Apache-2.0
+ */
+
+package org.hyperledger.fabric.gateway.impl.model;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.FileTime;
+
+import org.hyperledger.fabric.gateway.TestUtils;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+public class ModelRegistryTest {
+    private static final TestUtils testUtils = TestUtils.getInstance();
+
+    private ModelRegistry registry;
+    private Path analyticsFile;
+
+    private static String analyticsJson(final long model1Timestamp, final long model2Timestamp) {
+        return "{"
+                + "\"organizations\":[\"org1\",\"org2\"],"
+                + "\"specification\":[[1,1]],"
+                + "\"modelCheckResultList\":["
+                + "{\"id\":1,\"probability\":0.9,\"expectedMessages\":2.5,\"epochTimestamp\":" + model1Timestamp
+                + ",\"backwardTransitions\":[[0,-1]]},"
+                + "{\"id\":2,\"probability\":0.8,\"expectedMessages\":3.0,\"epochTimestamp\":" + model2Timestamp
+                + ",\"backwardTransitions\":[]}"
+                + "]}";
+    }
+
+    private void writeAnalytics(final String json, final long lastModifiedMillis) throws IOException {
+        Files.write(analyticsFile, json.getBytes(StandardCharsets.UTF_8));
+        Files.setLastModifiedTime(analyticsFile, FileTime.fromMillis(lastModifiedMillis));
+    }
+
+    @BeforeEach
+    public void beforeEach() throws IOException {
+        registry = new ModelRegistry();
+        analyticsFile = testUtils.createTempFile();
+        writeAnalytics(analyticsJson(100, 200), 1000000);
+    }
+
+    @Test
+    public void models_are_indexed_by_id() throws IOException {
+        CompiledModel model = registry.getModel(analyticsFile, 2);
+
+        assertThat(model.getId()).isEqualTo(2);
+        assertThat(model.getExpectedMessages()).isEqualTo(3.0);
+    }
+
+    @Test
+    public void specification_is_compiled() throws IOException {
+        AnalyticsSnapshot snapshot = registry.getSnapshot(analyticsFile);
+
+        assertThat(snapshot.isSpecification(StateKeys.encode(new int[] {1, 1}))).isTrue();
+        assertThat(snapshot.isSpecification(StateKeys.encode(new int[] {1, 0}))).isFalse();
+    }
+
+    @Test
+    public void backward_transitions_are_compiled() throws IOException {
+        CompiledModel model = registry.getModel(analyticsFile, 1);
+
+        assertThat(model.isBackwardTransition(StateKeys.encode(new int[] {0, -1}))).isTrue();
+        assertThat(model.isBackwardTransition(StateKeys.encode(new int[] {1, -1}))).isFalse();
+    }
+
+    @Test
+    public void vector_with_wrong_length_throws() throws IOException {
+        writeAnalytics("{\"organizations\":[\"org1\",\"org2\"],\"specification\":[[1,1,1]],"
+                + "\"modelCheckResultList\":[]}", 2000000);
+
+        assertThatThrownBy(() -> registry.getSnapshot(analyticsFile))
+                .isInstanceOf(IOException.class);
+    }
+
+    @Test
+    public void missing_model_id_returns_null() throws IOException {
+        assertThat(registry.getModel(analyticsFile, 99)).isNull();
+    }
+
+    @Test
+    public void unchanged_file_is_not_parsed_again() throws IOException {
+        AnalyticsSnapshot first = registry.getSnapshot(analyticsFile);
+        AnalyticsSnapshot second = registry.getSnapshot(analyticsFile);
+
+        assertThat(second).isSameAs(first);
+    }
+
+    @Test
+    public void modified_file_is_parsed_again() throws IOException {
+        AnalyticsSnapshot first = registry.getSnapshot(analyticsFile);
+
+        writeAnalytics(analyticsJson(100, 300), 2000000);
+        AnalyticsSnapshot second = registry.getSnapshot(analyticsFile);
+
+        assertThat(second).isNotSameAs(first);
+    }
+
+    @Test
+    public void model_with_unchanged_epoch_timestamp_is_reused_on_reload() throws IOException {
+        CompiledModel first = registry.getModel(analyticsFile, 1);
+
+        writeAnalytics(analyticsJson(100, 300), 2000000);
+        CompiledModel second = registry.getModel(analyticsFile, 1);
+
+        assertThat(second).isSameAs(first);
+    }
+
+    @Test
+    public void model_with_changed_epoch_timestamp_is_replaced_on_reload() throws IOException {
+        CompiledModel first = registry.getModel(analyticsFile, 2);
+
+        writeAnalytics(analyticsJson(100, 300), 2000000);
+        CompiledModel second = registry.getModel(analyticsFile, 2);
+
+        assertThat(second).isNotSameAs(first);
+        assertThat(second.getEpochTimestamp()).isEqualTo(300);
+    }
+
+    @Test
+    public void snapshot_organizations_are_read_only() throws IOException {
+        AnalyticsSnapshot snapshot = registry.getSnapshot(analyticsFile);
+
+        assertThatThrownBy(() -> snapshot.getOrganizations().remove(0))
+                .isInstanceOf(UnsupportedOperationException.class);
+    }
+
+    @Test
+    public void missing_file_throws() throws IOException {
+        Path missingFile = testUtils.getUnusedFilePath();
+
+        assertThatThrownBy(() -> registry.getSnapshot(missingFile))
+                .isInstanceOf(IOException.class);
+    }
+}
@@ -0,0 +1,61 @@
+/*
+ * Copyright 2019 IBM All Rights Reserved.
+ *
+ * SPDX-License-Identifier: Apache-2.0
+ */
+
+package org.hyperledger.fabric.gateway.impl.model;
+
+import org.junit.jupiter.api.Test;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+public class OrganizationBudgetsTest {
+    private final OrganizationBudgets budgets = new OrganizationBudgets();
+
+    @Test
+    public void organizations_are_unlimited_by_default() {
+        for (int i = 0; i < 100; i++) {
+            assertThat(budgets.tryAcquire("org1")).isTrue();
+        }
+    }
+
+    @Test
+    public void default_budget_applies_to_each_organization() {
+        budgets.setDefaultBudget(1, 0);
+
+        assertThat(budgets.tryAcquire("org1")).isTrue();
+        assertThat(budgets.tryAcquire("org1")).isFalse();
+        assertThat(budgets.tryAcquire("org2")).isTrue();
+    }
+
+    @Test
+    public void organization_budget_overrides_default() {
+        budgets.setDefaultBudget(1, 0);
+        budgets.setBudget("org1", 2, 0);
+
+        assertThat(budgets.tryAcquire("org1")).isTrue();
+        assertThat(budgets.tryAcquire("org1")).isTrue();
+        assertThat(budgets.tryAcquire("org1")).isFalse();
+    }
+
+    @Test
+    public void released_request_can_be_taken_again() {
+        budgets.setDefaultBudget(1, 0);
+        budgets.tryAcquire("org1");
+
+        budgets.release("org1");
+
+        assertThat(budgets.tryAcquire("org1")).isTrue();
+    }
+
+    @Test
+    public void clear_removes_limits() {
+        budgets.setDefaultBudget(1, 0);
+        budgets.tryAcquire("org1");
+
+        budgets.clear();
+
+        assertThat(budgets.tryAcquire("org1")).isTrue();
+    }
+}
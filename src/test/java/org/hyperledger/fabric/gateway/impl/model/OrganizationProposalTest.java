@@ -0,0 +1,177 @@
+/*
+ * Copyright 2019 IBM All Rights Reserved.
+ *
+ * SPDX-License-Identifier: Apache-2.0
+ */
+
+package org.hyperledger.fabric.gateway.impl.model;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.hyperledger.fabric.gateway.TestUtils;
+import org.hyperledger.fabric.sdk.Peer;
+import org.hyperledger.fabric.sdk.ProposalResponse;
+import org.hyperledger.fabric.sdk.exception.ProposalException;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+public class OrganizationProposalTest {
+    private static final TestUtils testUtils = TestUtils.getInstance();
+    private static final long MILLIS = TimeUnit.MILLISECONDS.toNanos(1);
+
+    private final ExecutorService executor = Executors.newCachedThreadPool();
+    private final ScheduledExecutorService scheduler = Executors.newSingleThreadScheduledExecutor();
+    private final PeerLoadBalancer loadBalancer = new PeerLoadBalancer();
+    private final Peer peer1 = testUtils.newMockPeer("peer1");
+    private final Peer peer2 = testUtils.newMockPeer("peer2");
+    private final ProposalResponse response1 = testUtils.newSuccessfulProposalResponse("peer1");
+    private final ProposalResponse response2 = testUtils.newSuccessfulProposalResponse("peer2");
+    private final CountDownLatch release = new CountDownLatch(1);
+
+    @AfterEach
+    public void afterEach() {
+        release.countDown();
+        executor.shutdownNow();
+        scheduler.shutdownNow();
+    }
+
+    private CompletableFuture<ProposalResponse> send(final OrganizationProposal.Sender sender,
+                                                     final long hedgeDelayNanos, final long deadlineNanos) {
+        return OrganizationProposal.send(sender, Arrays.asList(peer1, peer2), loadBalancer, executor, scheduler,
+                hedgeDelayNanos, deadlineNanos);
+    }
+
+    private ProposalResponse blockUntilReleased() {
+        try {
+            release.await();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        return response1;
+    }
+
+    @Test
+    public void first_peer_response_is_used() throws Exception {
+        CompletableFuture<ProposalResponse> result = send(peer -> peer == peer1 ? response1 : response2, 0, 0);
+
+        assertThat(result.get()).isSameAs(response1);
+    }
+
+    @Test
+    public void fails_over_to_next_peer_if_unreachable() throws Exception {
+        ProposalResponse unavailable = testUtils.newUnavailableProposalResponse("down");
+        CompletableFuture<ProposalResponse> result = send(peer -> peer == peer1 ? unavailable : response2, 0, 0);
+
+        assertThat(result.get()).isSameAs(response2);
+    }
+
+    @Test
+    public void fails_over_to_next_peer_on_exception() throws Exception {
+        CompletableFuture<ProposalResponse> result = send(peer -> {
+            if (peer == peer1) {
+                throw new ProposalException("down");
+            }
+            return response2;
+        }, 0, 0);
+
+        assertThat(result.get()).isSameAs(response2);
+    }
+
+    @Test
+    public void last_unavailable_response_is_returned_if_no_peer_reachable() throws Exception {
+        ProposalResponse unavailable = testUtils.newUnavailableProposalResponse("down");
+        CompletableFuture<ProposalResponse> result = send(peer -> unavailable, 0, 0);
+
+        assertThat(result.get()).isSameAs(unavailable);
+    }
+
+    @Test
+    public void fails_if_every_peer_throws() {
+        CompletableFuture<ProposalResponse> result = send(peer -> {
+            throw new ProposalException("down");
+        }, 0, 0);
+
+        assertThatThrownBy(result::get)
+                .isInstanceOf(ExecutionException.class)
+                .hasCauseInstanceOf(ProposalException.class);
+    }
+
+    @Test
+    public void slow_peer_is_hedged() throws Exception {
+        CompletableFuture<ProposalResponse> result = send(peer -> peer == peer1 ? blockUntilReleased() : response2,
+                10 * MILLIS, 0);
+
+        assertThat(result.get(5, TimeUnit.SECONDS)).isSameAs(response2);
+    }
+
+    @Test
+    public void timers_are_cancelled_once_response_received() throws Exception {
+        ScheduledThreadPoolExecutor timers = new ScheduledThreadPoolExecutor(1);
+        timers.setRemoveOnCancelPolicy(true);
+        try {
+            CompletableFuture<ProposalResponse> result = OrganizationProposal.send(peer -> response1,
+                    Arrays.asList(peer1, peer2), loadBalancer, executor, timers, TimeUnit.HOURS.toNanos(1),
+                    TimeUnit.HOURS.toNanos(1));
+
+            assertThat(result.get(5, TimeUnit.SECONDS)).isSameAs(response1);
+            long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(5);
+            while (!timers.getQueue().isEmpty() && System.nanoTime() < deadline) {
+                Thread.sleep(1);
+            }
+            assertThat(timers.getQueue()).isEmpty();
+        } finally {
+            timers.shutdownNow();
+        }
+    }
+
+    @Test
+    public void times_out_after_deadline() {
+        CompletableFuture<ProposalResponse> result = OrganizationProposal.send(peer -> blockUntilReleased(),
+                Collections.singletonList(peer1), loadBalancer, executor, scheduler, 0, 10 * MILLIS);
+
+        assertThatThrownBy(() -> result.get(5, TimeUnit.SECONDS))
+                .isInstanceOf(ExecutionException.class)
+                .hasCauseInstanceOf(TimeoutException.class);
+    }
+
+    @Test
+    public void cancelled_proposal_is_not_sent_once_a_thread_is_free() throws Exception {
+        ExecutorService busyExecutor = Executors.newSingleThreadExecutor();
+        try {
+            CountDownLatch busy = new CountDownLatch(1);
+            busyExecutor.execute(() -> {
+                busy.countDown();
+                blockUntilReleased();
+            });
+            busy.await();
+            AtomicInteger sent = new AtomicInteger(0);
+            CompletableFuture<ProposalResponse> result = OrganizationProposal.send(peer -> {
+                sent.incrementAndGet();
+                return response1;
+            }, Collections.singletonList(peer1), loadBalancer, busyExecutor, scheduler, 0, 0);
+
+            result.cancel(false);
+            release.countDown();
+            busyExecutor.shutdown();
+            busyExecutor.awaitTermination(5, TimeUnit.SECONDS);
+
+            assertThat(sent.get()).isZero();
+        } finally {
+            busyExecutor.shutdownNow();
+        }
+    }
+}
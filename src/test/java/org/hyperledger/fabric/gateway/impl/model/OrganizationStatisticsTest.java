@@ -0,0 +1,133 @@
+/*
+ * Copyright 2019 IBM All Rights Reserved.
+ *
+ * SPDX-License-Identifier: Apache-2.0
+ */
+
+package org.hyperledger.fabric.gateway.impl.model;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.List;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.junit.jupiter.api.Test;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+public class OrganizationStatisticsTest {
+    private static final List<String> ORGANIZATIONS = Arrays.asList("org1", "org2", "org3");
+
+    private final OrganizationStatistics statistics = new OrganizationStatistics();
+
+    @Test
+    public void unknown_organization_has_neutral_approval_rate() {
+        assertThat(statistics.getApprovalRate("org1")).isEqualTo(0.5);
+        assertThat(statistics.getMeanLatencyNanos("org1")).isEqualTo(0.0);
+    }
+
+    @Test
+    public void approvals_raise_approval_rate() {
+        statistics.record("org1", true, 100);
+        statistics.record("org1", true, 100);
+
+        assertThat(statistics.getApprovalRate("org1")).isEqualTo(0.75);
+    }
+
+    @Test
+    public void first_latency_sample_sets_mean() {
+        statistics.record("org1", true, 1000);
+
+        assertThat(statistics.getMeanLatencyNanos("org1")).isEqualTo(1000.0);
+    }
+
+    @Test
+    public void latency_percentile_reflects_slowest_replies() {
+        for (int i = 0; i < 99; i++) {
+            statistics.record("org1", true, 1_000_000);
+        }
+        statistics.record("org1", true, 100_000_000);
+
+        assertThat(statistics.getLatencySampleCount("org1")).isEqualTo(100);
+        assertThat(statistics.getLatencyPercentileNanos("org1", 0.5)).isLessThan(2_000_000);
+        assertThat(statistics.getLatencyPercentileNanos("org1", 1.0)).isGreaterThanOrEqualTo(100_000_000);
+    }
+
+    @Test
+    public void timeout_counts_as_failure_to_approve() {
+        statistics.record("org1", true, 1000);
+        statistics.recordTimeout("org1", 1000);
+
+        assertThat(statistics.getTimeouts("org1")).isEqualTo(1);
+        assertThat(statistics.getApprovalRate("org1")).isEqualTo(0.5);
+    }
+
+    @Test
+    public void timeout_is_recorded_as_latency_of_at_least_time_waited() {
+        for (int i = 0; i < 90; i++) {
+            statistics.record("org1", true, 1_000_000);
+        }
+        for (int i = 0; i < 10; i++) {
+            statistics.recordTimeout("org1", 50_000_000);
+        }
+
+        assertThat(statistics.getLatencySampleCount("org1")).isEqualTo(100);
+        assertThat(statistics.getLatencyPercentileNanos("org1", 0.99)).isGreaterThanOrEqualTo(50_000_000);
+    }
+
+    @Test
+    public void organization_that_times_out_is_ordered_last() {
+        for (int i = 0; i < 10; i++) {
+            statistics.record("org1", true, 2_000_000);
+            statistics.recordTimeout("org2", 1_000_000);
+            statistics.record("org3", true, 2_000_000);
+        }
+
+        assertThat(statistics.getOrder(ORGANIZATIONS)).containsExactly(0, 2, 1);
+    }
+
+    @Test
+    public void order_without_statistics_is_file_order() {
+        assertThat(statistics.getOrder(ORGANIZATIONS)).containsExactly(0, 1, 2);
+    }
+
+    @Test
+    public void faster_organization_is_asked_first() {
+        statistics.record("org1", true, 3000);
+        statistics.record("org2", true, 2000);
+        statistics.record("org3", true, 1000);
+
+        assertThat(statistics.getOrder(ORGANIZATIONS)).containsExactly(2, 1, 0);
+    }
+
+    @Test
+    public void organization_that_rejects_is_asked_later() {
+        statistics.record("org1", false, 1000);
+        statistics.record("org1", false, 1000);
+        statistics.record("org2", true, 1000);
+        statistics.record("org3", true, 1000);
+
+        assertThat(statistics.getOrder(ORGANIZATIONS)).containsExactly(1, 2, 0);
+    }
+
+    @Test
+    public void export_writes_counts_for_each_organization() throws IOException {
+        statistics.record("org2", true, 2000000);
+        statistics.record("org2", false, 2000000);
+        statistics.recordTimeout("org2", 2000000);
+
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        statistics.export(out);
+        JsonNode json = new ObjectMapper().readTree(new String(out.toByteArray(), StandardCharsets.UTF_8));
+
+        assertThat(json.get("organizations").get(0).asText()).isEqualTo("org2");
+        JsonNode org2 = json.get("organizationStatistics").get(0);
+        assertThat(org2.get("approvals").asLong()).isEqualTo(1);
+        assertThat(org2.get("rejections").asLong()).isEqualTo(1);
+        assertThat(org2.get("timeouts").asLong()).isEqualTo(1);
+        assertThat(org2.get("meanLatencyMillis").asDouble()).isEqualTo(2.0);
+    }
+}
@@ -0,0 +1,64 @@
+/*
+ * Copyright 2019 IBM All Rights Reserved.
+ *
+ * SPDX-License-Identifier: Apache-2.0
+ */
+
+package org.hyperledger.fabric.gateway.impl.model;
+
+import java.util.Arrays;
+import java.util.concurrent.TimeUnit;
+
+import org.hyperledger.fabric.gateway.TestUtils;
+import org.hyperledger.fabric.sdk.Peer;
+import org.junit.jupiter.api.Test;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+public class PeerLoadBalancerTest {
+    private static final TestUtils testUtils = TestUtils.getInstance();
+
+    private final PeerLoadBalancer loadBalancer = new PeerLoadBalancer();
+    private final Peer peer1 = testUtils.newMockPeer("peer1");
+    private final Peer peer2 = testUtils.newMockPeer("peer2");
+
+    @Test
+    public void unused_peers_keep_given_order() {
+        assertThat(loadBalancer.order(Arrays.asList(peer1, peer2))).containsExactly(peer1, peer2);
+    }
+
+    @Test
+    public void least_outstanding_peer_is_preferred() {
+        loadBalancer.onSend(peer1);
+
+        assertThat(loadBalancer.order(Arrays.asList(peer1, peer2))).containsExactly(peer2, peer1);
+    }
+
+    @Test
+    public void faster_peer_is_preferred_when_equally_loaded() {
+        loadBalancer.onSend(peer1);
+        loadBalancer.onReply(peer1, TimeUnit.MILLISECONDS.toNanos(50));
+        loadBalancer.onSend(peer2);
+        loadBalancer.onReply(peer2, TimeUnit.MILLISECONDS.toNanos(10));
+
+        assertThat(loadBalancer.order(Arrays.asList(peer1, peer2))).containsExactly(peer2, peer1);
+    }
+
+    @Test
+    public void failed_peer_is_tried_after_healthy_peer() {
+        loadBalancer.onSend(peer1);
+        loadBalancer.onFailure(peer1, 0);
+        loadBalancer.onSend(peer2);
+        loadBalancer.onReply(peer2, TimeUnit.MILLISECONDS.toNanos(100));
+
+        assertThat(loadBalancer.order(Arrays.asList(peer1, peer2))).containsExactly(peer2, peer1);
+    }
+
+    @Test
+    public void reply_ends_outstanding_request() {
+        loadBalancer.onSend(peer1);
+        loadBalancer.onReply(peer1, 1);
+
+        assertThat(loadBalancer.getOutstanding(peer1)).isZero();
+    }
+}
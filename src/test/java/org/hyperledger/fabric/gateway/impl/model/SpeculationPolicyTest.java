@@ -0,0 +1,102 @@
+/*
+ * Copyright 2019 IBM All Rights Reserved.
+ *
+ * SPDX-License-Identifier: Apache-2.0
+ */
+
+package org.hyperledger.fabric.gateway.impl.model;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+import org.hyperledger.fabric.gateway.TestUtils;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+public class SpeculationPolicyTest {
+    private static final TestUtils testUtils = TestUtils.getInstance();
+    private static final String ANALYTICS_JSON = "{"
+            + "\"organizations\":[\"org1\",\"org2\",\"org3\",\"org4\",\"org5\",\"org6\"],"
+            + "\"specification\":[[1,1,1,1,1,1]],"
+            + "\"modelCheckResultList\":["
+            + "{\"id\":1,\"probability\":1.0,\"expectedMessages\":5.0,\"epochTimestamp\":1,\"backwardTransitions\":[]},"
+            + "{\"id\":2,\"probability\":0.5,\"expectedMessages\":4.0,\"epochTimestamp\":1,\"backwardTransitions\":[]}"
+            + "]}";
+
+    private CompiledModel likelyModel;
+    private CompiledModel unlikelyModel;
+
+    @BeforeEach
+    public void beforeEach() throws IOException {
+        Path analyticsFile = testUtils.createTempFile();
+        Files.write(analyticsFile, ANALYTICS_JSON.getBytes(StandardCharsets.UTF_8));
+        AnalyticsSnapshot analytics = new ModelRegistry().getSnapshot(analyticsFile);
+        likelyModel = analytics.getModel(1);
+        unlikelyModel = analytics.getModel(2);
+    }
+
+    @Test
+    public void disabled_policy_sends_one_at_a_time() {
+        SpeculationPolicy policy = new SpeculationPolicy(1, 10);
+
+        assertThat(policy.isEnabled()).isFalse();
+        assertThat(policy.getWindow(likelyModel, 6, 30, 0)).isEqualTo(1);
+    }
+
+    @Test
+    public void zero_waste_allowance_disables_speculation() {
+        SpeculationPolicy policy = new SpeculationPolicy(4, 0);
+
+        assertThat(policy.isEnabled()).isFalse();
+        assertThat(policy.getWindow(likelyModel, 6, 30, 0)).isEqualTo(1);
+    }
+
+    @Test
+    public void window_follows_expected_messages_scaled_by_probability() {
+        SpeculationPolicy policy = new SpeculationPolicy(10, 10);
+
+        assertThat(policy.getWindow(likelyModel, 6, 30, 0)).isEqualTo(5);
+        assertThat(policy.getWindow(unlikelyModel, 6, 30, 0)).isEqualTo(2);
+    }
+
+    @Test
+    public void window_is_capped_by_maximum() {
+        SpeculationPolicy policy = new SpeculationPolicy(3, 10);
+
+        assertThat(policy.getWindow(likelyModel, 6, 30, 0)).isEqualTo(3);
+    }
+
+    @Test
+    public void window_does_not_pass_last_organization() {
+        SpeculationPolicy policy = new SpeculationPolicy(10, 10);
+
+        assertThat(policy.getWindow(likelyModel, 2, 30, 0)).isEqualTo(2);
+    }
+
+    @Test
+    public void window_does_not_pass_message_limit() {
+        SpeculationPolicy policy = new SpeculationPolicy(10, 10);
+
+        assertThat(policy.getWindow(likelyModel, 6, 3, 0)).isEqualTo(3);
+    }
+
+    @Test
+    public void window_shrinks_as_waste_allowance_is_used() {
+        SpeculationPolicy policy = new SpeculationPolicy(10, 4);
+
+        assertThat(policy.getWindow(likelyModel, 6, 30, 2)).isEqualTo(3);
+        assertThat(policy.getWindow(likelyModel, 6, 30, 4)).isEqualTo(1);
+        assertThat(policy.getWindow(likelyModel, 6, 30, 7)).isEqualTo(1);
+    }
+
+    @Test
+    public void window_below_one_throws() {
+        assertThatThrownBy(() -> new SpeculationPolicy(0, 0))
+                .isInstanceOf(IllegalArgumentException.class);
+    }
+}
@@ -0,0 +1,82 @@
+/*
+ * Copyright 2019 IBM All Rights Reserved.
+ *
+ * SPDX-License-Identifier: Apache-2.0
+ */
+
+package org.hyperledger.fabric.gateway.impl.model;
+
+import java.util.Arrays;
+
+import org.junit.jupiter.api.Test;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+public class StateKeysTest {
+    @Test
+    public void vector_with_no_responses_encodes_as_initial_key() {
+        assertThat(StateKeys.encode(new int[] {-1, -1, -1})).isEqualTo(StateKeys.INITIAL);
+    }
+
+    @Test
+    public void decode_reverses_encode() {
+        int[] responses = {1, 0, -1, 1};
+
+        long key = StateKeys.encode(responses);
+
+        assertThat(StateKeys.decode(key, responses.length)).containsExactly(responses);
+    }
+
+    @Test
+    public void distinct_vectors_have_distinct_keys() {
+        assertThat(StateKeys.encode(new int[] {1, 0})).isNotEqualTo(StateKeys.encode(new int[] {0, 1}));
+    }
+
+    @Test
+    public void incremental_update_matches_full_encoding() {
+        long key = StateKeys.withResponse(StateKeys.INITIAL, 2, 1);
+        key = StateKeys.withResponse(key, 0, 0);
+
+        assertThat(key).isEqualTo(StateKeys.encode(new int[] {0, -1, 1}));
+    }
+
+    @Test
+    public void swap_exchanges_responses_of_two_organizations() {
+        long key = StateKeys.encode(new int[] {1, -1, 0});
+
+        assertThat(StateKeys.swap(key, 0, 2)).isEqualTo(StateKeys.encode(new int[] {0, -1, 1}));
+        assertThat(StateKeys.swap(key, 0, 1)).isEqualTo(StateKeys.encode(new int[] {-1, 1, 0}));
+    }
+
+    @Test
+    public void response_at_reads_single_position() {
+        long key = StateKeys.encode(new int[] {1, -1, 0});
+
+        assertThat(StateKeys.responseAt(key, 0)).isEqualTo(1);
+        assertThat(StateKeys.responseAt(key, 1)).isEqualTo(-1);
+        assertThat(StateKeys.responseAt(key, 2)).isEqualTo(0);
+    }
+
+    @Test
+    public void largest_supported_vector_encodes_as_non_negative() {
+        int[] responses = new int[StateKeys.MAX_ORGANIZATIONS];
+        Arrays.fill(responses, 1);
+
+        assertThat(StateKeys.encode(responses)).isPositive();
+    }
+
+    @Test
+    public void too_many_organizations_throws() {
+        int[] responses = new int[StateKeys.MAX_ORGANIZATIONS + 1];
+
+        assertThatThrownBy(() -> StateKeys.encode(responses))
+                .isInstanceOf(IllegalArgumentException.class);
+    }
+
+    @Test
+    public void invalid_response_value_throws() {
+        assertThatThrownBy(() -> StateKeys.encode(new int[] {2}))
+                .isInstanceOf(IllegalArgumentException.class);
+    }
+}
@@ -0,0 +1,124 @@
+/*
+ * Copyright 2019 IBM All Rights Reserved.
+ *
+ * SPDX-License-Identifier: Apache-2.0
+ */
+
+package org.hyperledger.fabric.gateway.impl.model;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+import org.hyperledger.fabric.gateway.TestUtils;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+public class StreamingAnalyticsLoaderTest {
+    private static final TestUtils testUtils = TestUtils.getInstance();
+    private static final String ANALYTICS_JSON = "{"
+            + "\"modelCheckResultList\":["
+            + "{\"id\":1,\"probability\":0.9,\"expectedMessages\":2.5,\"epochTimestamp\":100,"
+            + "\"backwardTransitions\":[[0,-1]]},"
+            + "{\"backwardTransitions\":[[1,0]],\"probability\":0.8,\"expectedMessages\":3.0,\"epochTimestamp\":200,"
+            + "\"id\":2},"
+            + "{\"id\":2,\"probability\":0.1,\"expectedMessages\":9.0,\"epochTimestamp\":300,"
+            + "\"backwardTransitions\":[]}"
+            + "],"
+            + "\"organizations\":[\"org1\",\"org2\"],"
+            + "\"specification\":[[1,1]]"
+            + "}";
+
+    private ModelRegistry registry;
+    private Path analyticsFile;
+
+    @BeforeEach
+    public void beforeEach() throws IOException {
+        registry = new ModelRegistry();
+        analyticsFile = testUtils.createTempFile();
+        Files.write(analyticsFile, ANALYTICS_JSON.getBytes(StandardCharsets.UTF_8));
+    }
+
+    @Test
+    public void loads_only_requested_model() throws IOException {
+        AnalyticsSnapshot snapshot = registry.getSnapshot(analyticsFile, 1);
+
+        assertThat(snapshot.getModel(1).getEpochTimestamp()).isEqualTo(100L);
+        assertThat(snapshot.getModel(2)).isNull();
+    }
+
+    @Test
+    public void reads_organizations_and_specification_after_model_list() throws IOException {
+        AnalyticsSnapshot snapshot = registry.getSnapshot(analyticsFile, 1);
+
+        assertThat(snapshot.getOrganizations()).containsExactly("org1", "org2");
+        assertThat(snapshot.isSpecification(StateKeys.encode(new int[] {1, 1}))).isTrue();
+    }
+
+    @Test
+    public void reads_model_with_id_after_backward_transitions() throws IOException {
+        CompiledModel model = registry.getSnapshot(analyticsFile, 2).getModel(2);
+
+        assertThat(model.getProbability()).isEqualTo(0.8);
+        assertThat(model.isBackwardTransition(StateKeys.encode(new int[] {1, 0}))).isTrue();
+    }
+
+    @Test
+    public void requesting_another_model_adds_it_to_snapshot() throws IOException {
+        registry.getSnapshot(analyticsFile, 1);
+        AnalyticsSnapshot snapshot = registry.getSnapshot(analyticsFile, 2);
+
+        assertThat(snapshot.getModel(1)).isNotNull();
+        assertThat(snapshot.getModel(2)).isNotNull();
+    }
+
+    @Test
+    public void loaded_model_is_reused() throws IOException {
+        AnalyticsSnapshot first = registry.getSnapshot(analyticsFile, 1);
+        AnalyticsSnapshot second = registry.getSnapshot(analyticsFile, 1);
+
+        assertThat(second).isSameAs(first);
+    }
+
+    @Test
+    public void full_load_after_selective_load_has_all_models() throws IOException {
+        registry.getSnapshot(analyticsFile, 1);
+        AnalyticsSnapshot snapshot = registry.getSnapshot(analyticsFile);
+
+        assertThat(snapshot.getModel(2)).isNotNull();
+    }
+
+    @Test
+    public void unknown_fields_are_skipped() throws IOException {
+        Files.write(analyticsFile, ("{\"version\":{\"tool\":[1,2]},\"organizations\":[\"org1\"],"
+                + "\"modelCheckResultList\":[{\"id\":1,\"extra\":[[0]],\"epochTimestamp\":5}]}")
+                .getBytes(StandardCharsets.UTF_8));
+
+        CompiledModel model = registry.getSnapshot(analyticsFile, 1).getModel(1);
+
+        assertThat(model.getEpochTimestamp()).isEqualTo(5L);
+    }
+
+    @Test
+    public void vector_with_wrong_length_throws() throws IOException {
+        Files.write(analyticsFile, ("{\"organizations\":[\"org1\",\"org2\"],"
+                + "\"modelCheckResultList\":[{\"id\":1,\"backwardTransitions\":[[1,1,1]]}]}")
+                .getBytes(StandardCharsets.UTF_8));
+
+        assertThatThrownBy(() -> registry.getSnapshot(analyticsFile, 1))
+                .isInstanceOf(IOException.class);
+    }
+
+    @Test
+    public void invalid_response_value_throws() throws IOException {
+        Files.write(analyticsFile, "{\"organizations\":[\"org1\"],\"specification\":[[2]]}"
+                .getBytes(StandardCharsets.UTF_8));
+
+        assertThatThrownBy(() -> registry.getSnapshot(analyticsFile, 1))
+                .isInstanceOf(IOException.class);
+    }
+}
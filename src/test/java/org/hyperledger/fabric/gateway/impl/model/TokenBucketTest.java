@@ -0,0 +1,82 @@
+/*
+ * Copyright 2019 IBM All Rights Reserved.
+ *
+ * SPDX-License-Identifier: Apache-2.0
+ */
+
+package org.hyperledger.fabric.gateway.impl.model;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.junit.jupiter.api.Test;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+public class TokenBucketTest {
+    private final AtomicLong clock = new AtomicLong(0);
+
+    @Test
+    public void starts_full() {
+        TokenBucket bucket = new TokenBucket(2, 1, clock::get);
+
+        assertThat(bucket.tryAcquire()).isTrue();
+        assertThat(bucket.tryAcquire()).isTrue();
+        assertThat(bucket.tryAcquire()).isFalse();
+    }
+
+    @Test
+    public void refills_over_time() {
+        TokenBucket bucket = new TokenBucket(1, 2, clock::get);
+        bucket.tryAcquire();
+
+        clock.addAndGet(TimeUnit.MILLISECONDS.toNanos(500));
+
+        assertThat(bucket.tryAcquire()).isTrue();
+    }
+
+    @Test
+    public void does_not_refill_past_capacity() {
+        TokenBucket bucket = new TokenBucket(2, 10, clock::get);
+
+        clock.addAndGet(TimeUnit.SECONDS.toNanos(10));
+
+        assertThat(bucket.getAvailableTokens()).isEqualTo(2.0);
+    }
+
+    @Test
+    public void partial_token_cannot_be_taken() {
+        TokenBucket bucket = new TokenBucket(1, 1, clock::get);
+        bucket.tryAcquire();
+
+        clock.addAndGet(TimeUnit.MILLISECONDS.toNanos(500));
+
+        assertThat(bucket.tryAcquire()).isFalse();
+    }
+
+    @Test
+    public void released_token_can_be_taken_again() {
+        TokenBucket bucket = new TokenBucket(1, 0, clock::get);
+        bucket.tryAcquire();
+
+        bucket.release();
+
+        assertThat(bucket.tryAcquire()).isTrue();
+    }
+
+    @Test
+    public void release_does_not_fill_past_capacity() {
+        TokenBucket bucket = new TokenBucket(2, 0, clock::get);
+
+        bucket.release();
+
+        assertThat(bucket.getAvailableTokens()).isEqualTo(2.0);
+    }
+
+    @Test
+    public void capacity_below_one_throws() {
+        assertThatThrownBy(() -> new TokenBucket(0, 1))
+                .isInstanceOf(IllegalArgumentException.class);
+    }
+}
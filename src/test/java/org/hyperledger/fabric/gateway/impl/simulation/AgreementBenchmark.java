@@ -0,0 +1,111 @@
+/*
+ * Copyright 2019 IBM All Rights Reserved.
+ *
+ * SPDX-License-Identifier: Apache-2.0
+ */
+
+package org.hyperledger.fabric.gateway.impl.simulation;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import org.hyperledger.fabric.gateway.impl.SendingConfirmationServiceImpl;
+import org.hyperledger.fabric.sdk.exception.InvalidArgumentException;
+import org.hyperledger.fabric.sdk.exception.ProposalException;
+import org.openjdk.jmh.annotations.AuxCounters;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Throughput and latency of model-based endorsement against a simulated network, across model sizes. Run with the
+ * {@code benchmark} Maven profile; add {@code -prof gc} to the JMH arguments to report allocation per endorsement.
+ * <p>
+ * Sample time mode reports latency percentiles, including p0.99. The {@code messages} and {@code agreements}
+ * counters give the number of proposals sent per agreement. Stub peers reply with no latency by default, so results
+ * measure the overhead of the agreement engine and the stub channel rather than network round trips.
+ * </p>
+ */
+@BenchmarkMode({Mode.Throughput, Mode.SampleTime})
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Benchmark)
+public class AgreementBenchmark {
+    private static final long SEED = 42;
+
+    @Param({"3", "7", "15"})
+    public int organizationCount;
+
+    @Param({"100", "10000", "100000"})
+    public int vectorCount;
+
+    @Param({"0.8"})
+    public double approvalProbability;
+
+    @Param({"0"})
+    public long latencyMicros;
+
+    private Path analyticsFile;
+    private SendingConfirmationServiceImpl service;
+    private AgreementSimulator simulator;
+
+    /**
+     * Per-thread counts of proposals and agreements.
+     */
+    @AuxCounters(AuxCounters.Type.EVENTS)
+    @State(Scope.Thread)
+    public static class Counters {
+        public long messages;
+        public long agreements;
+    }
+
+    @Setup(Level.Trial)
+    public void setUp() throws IOException {
+        SimulatedNetwork network = new SimulatedNetwork(SEED);
+        List<String> organizations = new ArrayList<>();
+        for (int i = 1; i <= organizationCount; i++) {
+            String name = "org" + i;
+            organizations.add(name);
+            network.addOrganization(name, approvalProbability,
+                    SimulatedNetwork.LatencyDistribution.exponential(TimeUnit.MICROSECONDS.toNanos(latencyMicros)));
+        }
+
+        analyticsFile = Files.createTempFile("agreement-benchmark-", ".json");
+        SimulatedAnalytics.write(analyticsFile, organizations, organizationCount / 2 + 1, vectorCount, SEED);
+
+        service = new SendingConfirmationServiceImpl();
+        simulator = new AgreementSimulator(service, network, analyticsFile);
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() throws IOException {
+        service.close();
+        Files.deleteIfExists(analyticsFile);
+    }
+
+    @Benchmark
+    public boolean endorse(final Counters counters) throws InvalidArgumentException, ProposalException {
+        AgreementSimulator.Outcome outcome = simulator.endorse();
+        counters.messages += outcome.getMessageCount();
+        if (outcome.isAgreementReached()) {
+            counters.agreements++;
+        }
+        return outcome.isAgreementReached();
+    }
+}
@@ -0,0 +1,181 @@
+/*
+ * Copyright 2019 IBM All Rights Reserved.
+ *
+ * SPDX-License-Identifier: Apache-2.0
+ */
+
+package org.hyperledger.fabric.gateway.impl.simulation;
+
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.hyperledger.fabric.gateway.impl.SendingConfirmationServiceImpl;
+import org.hyperledger.fabric.gateway.model.AgreementResponseDTO;
+import org.hyperledger.fabric.sdk.exception.InvalidArgumentException;
+import org.hyperledger.fabric.sdk.exception.ProposalException;
+
+/**
+ * Drives model-based endorsements through a {@link SendingConfirmationServiceImpl} against a
+ * {@link SimulatedNetwork}.
+ */
+public final class AgreementSimulator {
+    private final SendingConfirmationServiceImpl service;
+    private final SimulatedNetwork network;
+    private final String analyticsPath;
+    private final AtomicLong nextTransaction = new AtomicLong(0);
+
+    /**
+     * Outcome of one endorsement.
+     */
+    public static final class Outcome {
+        private final boolean agreementReached;
+        private final int messageCount;
+        private final long latencyNanos;
+
+        Outcome(final boolean agreementReached, final int messageCount, final long latencyNanos) {
+            this.agreementReached = agreementReached;
+            this.messageCount = messageCount;
+            this.latencyNanos = latencyNanos;
+        }
+
+        public boolean isAgreementReached() {
+            return agreementReached;
+        }
+
+        public int getMessageCount() {
+            return messageCount;
+        }
+
+        public long getLatencyNanos() {
+            return latencyNanos;
+        }
+    }
+
+    /**
+     * Combined outcome of a run of endorsements.
+     */
+    public static final class Result {
+        private final int transactions;
+        private final int agreements;
+        private final long messages;
+        private final long[] sortedLatencyNanos;
+        private final long elapsedNanos;
+
+        Result(final int transactions, final int agreements, final long messages, final long[] latencyNanos,
+               final long elapsedNanos) {
+            this.transactions = transactions;
+            this.agreements = agreements;
+            this.messages = messages;
+            this.sortedLatencyNanos = latencyNanos.clone();
+            Arrays.sort(this.sortedLatencyNanos);
+            this.elapsedNanos = elapsedNanos;
+        }
+
+        public int getTransactions() {
+            return transactions;
+        }
+
+        public int getAgreements() {
+            return agreements;
+        }
+
+        public long getMessages() {
+            return messages;
+        }
+
+        public double getMessagesPerAgreement() {
+            return agreements > 0 ? (double) messages / agreements : Double.NaN;
+        }
+
+        public double getThroughputPerSecond() {
+            return elapsedNanos > 0 ? transactions * 1e9 / elapsedNanos : Double.NaN;
+        }
+
+        /**
+         * Endorsement latency at a quantile.
+         * @param quantile Quantile between 0 and 1.
+         * @return Latency in nanoseconds.
+         */
+        public long getLatencyPercentileNanos(final double quantile) {
+            if (sortedLatencyNanos.length == 0) {
+                return 0;
+            }
+            int index = (int) Math.ceil(quantile * sortedLatencyNanos.length) - 1;
+            return sortedLatencyNanos[Math.max(0, Math.min(index, sortedLatencyNanos.length - 1))];
+        }
+    }
+
+    /**
+     * Create a simulator.
+     * @param service Service to endorse with, configured as required.
+     * @param network Network to endorse against.
+     * @param analyticsFile Analytics file for the network, as written by {@link SimulatedAnalytics}.
+     */
+    public AgreementSimulator(final SendingConfirmationServiceImpl service, final SimulatedNetwork network,
+                              final Path analyticsFile) {
+        this.service = service;
+        this.network = network;
+        this.analyticsPath = analyticsFile.toString();
+    }
+
+    /**
+     * Endorse the next transaction, waiting for the result.
+     * @return Outcome of the endorsement.
+     * @throws InvalidArgumentException if the endorsement fails.
+     * @throws ProposalException if the endorsement fails.
+     */
+    public Outcome endorse() throws InvalidArgumentException, ProposalException {
+        SimulatedNetwork.SimulatedRequest request = network.newRequest(nextTransaction.getAndIncrement());
+        long startNanos = System.nanoTime();
+        AgreementResponseDTO response = service.sendForConfirmationCustomId(network.getChannel(), analyticsPath,
+                SimulatedAnalytics.MODEL_ID, network.getApproval(), request.getRequest(), network.getPeers());
+        return new Outcome(response.isAgreementReached(), request.getProposalCount(),
+                System.nanoTime() - startNanos);
+    }
+
+    /**
+     * Endorse transactions using the asynchronous API, with a bounded number in flight.
+     * @param transactions Number of transactions to endorse.
+     * @param concurrency Maximum number of endorsements in flight.
+     * @return Combined outcome.
+     * @throws InterruptedException if interrupted while waiting.
+     * @throws ExecutionException if an endorsement fails.
+     */
+    public Result run(final int transactions, final int concurrency) throws InterruptedException, ExecutionException {
+        Semaphore permits = new Semaphore(concurrency);
+        long[] latencyNanos = new long[transactions];
+        boolean[] agreed = new boolean[transactions];
+        CompletableFuture<?>[] futures = new CompletableFuture<?>[transactions];
+        long startMessages = network.getProposalCount();
+        long startNanos = System.nanoTime();
+
+        for (int i = 0; i < transactions; i++) {
+            permits.acquire();
+            int index = i;
+            SimulatedNetwork.SimulatedRequest request = network.newRequest(nextTransaction.getAndIncrement());
+            long sentNanos = System.nanoTime();
+            futures[i] = service.sendForConfirmationCustomIdAsync(network.getChannel(), analyticsPath,
+                    SimulatedAnalytics.MODEL_ID, network.getApproval(), request.getRequest(), network.getPeers())
+                    .whenComplete((response, e) -> {
+                        latencyNanos[index] = System.nanoTime() - sentNanos;
+                        agreed[index] = response != null && response.isAgreementReached();
+                        permits.release();
+                    });
+        }
+        CompletableFuture.allOf(futures).get();
+
+        long elapsedNanos = System.nanoTime() - startNanos;
+        int agreements = 0;
+        for (boolean agreement : agreed) {
+            if (agreement) {
+                agreements++;
+            }
+        }
+        return new Result(transactions, agreements, network.getProposalCount() - startMessages, latencyNanos,
+                elapsedNanos);
+    }
+}
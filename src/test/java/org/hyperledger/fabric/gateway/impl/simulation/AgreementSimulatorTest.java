@@ -0,0 +1,113 @@
+/*
+ * Copyright 2019 IBM All Rights Reserved.
+ *
+ * SPDX-License-Identifier: Apache-2.0
+ */
+
+package org.hyperledger.fabric.gateway.impl.simulation;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.hyperledger.fabric.gateway.TestUtils;
+import org.hyperledger.fabric.gateway.impl.SendingConfirmationServiceImpl;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+public class AgreementSimulatorTest {
+    private static final TestUtils testUtils = TestUtils.getInstance();
+    private static final List<String> ORGANIZATIONS = Arrays.asList("org1", "org2", "org3", "org4", "org5");
+    private static final int THRESHOLD = 3;
+
+    private Path analyticsFile;
+    private SendingConfirmationServiceImpl service;
+
+    @BeforeEach
+    public void beforeEach() throws IOException {
+        analyticsFile = testUtils.createTempFile();
+        SimulatedAnalytics.write(analyticsFile, ORGANIZATIONS, THRESHOLD, 100, 1);
+        service = new SendingConfirmationServiceImpl();
+    }
+
+    @AfterEach
+    public void afterEach() {
+        service.close();
+    }
+
+    private AgreementSimulator newSimulator(final long seed, final double approvalProbability) {
+        SimulatedNetwork network = new SimulatedNetwork(seed);
+        ORGANIZATIONS.forEach(name ->
+                network.addOrganization(name, approvalProbability, SimulatedNetwork.LatencyDistribution.fixed(0)));
+        return new AgreementSimulator(service, network, analyticsFile);
+    }
+
+    private List<Integer> messageCounts(final AgreementSimulator simulator, final int transactions) throws Exception {
+        List<Integer> counts = new ArrayList<>();
+        for (int i = 0; i < transactions; i++) {
+            counts.add(simulator.endorse().getMessageCount());
+        }
+        return counts;
+    }
+
+    @Test
+    public void agreement_reached_with_threshold_messages_when_all_approve() throws Exception {
+        AgreementSimulator.Outcome outcome = newSimulator(1, 1.0).endorse();
+
+        assertThat(outcome.isAgreementReached()).isTrue();
+        assertThat(outcome.getMessageCount()).isEqualTo(THRESHOLD);
+    }
+
+    @Test
+    public void agreement_not_reached_when_none_approve() throws Exception {
+        AgreementSimulator.Outcome outcome = newSimulator(1, 0.0).endorse();
+
+        assertThat(outcome.isAgreementReached()).isFalse();
+        assertThat(outcome.getMessageCount()).isEqualTo(ORGANIZATIONS.size());
+    }
+
+    @Test
+    public void same_seed_gives_same_replies() throws Exception {
+        List<Integer> first = messageCounts(newSimulator(7, 0.6), 50);
+        List<Integer> second = messageCounts(newSimulator(7, 0.6), 50);
+
+        assertThat(second).isEqualTo(first);
+    }
+
+    @Test
+    public void concurrent_run_reports_messages_per_agreement() throws Exception {
+        AgreementSimulator.Result result = newSimulator(1, 1.0).run(100, 10);
+
+        assertThat(result.getAgreements()).isEqualTo(100);
+        assertThat(result.getMessagesPerAgreement()).isEqualTo((double) THRESHOLD);
+        assertThat(result.getLatencyPercentileNanos(0.99)).isPositive();
+    }
+
+    @Test
+    public void analytics_are_padded_to_requested_size() throws IOException {
+        Path file = testUtils.createTempFile();
+
+        int written = SimulatedAnalytics.write(file, ORGANIZATIONS, THRESHOLD, 40, 1);
+
+        JsonNode analytics = new ObjectMapper().readTree(file.toFile());
+        assertThat(written).isEqualTo(40);
+        assertThat(analytics.path("specification").size()).isEqualTo(40);
+    }
+
+    @Test
+    public void analytics_are_limited_to_distinct_vectors() throws IOException {
+        Path file = testUtils.createTempFile();
+
+        int written = SimulatedAnalytics.write(file, Arrays.asList("org1", "org2", "org3"), 2, 100, 1);
+
+        // Two or three approvals, with any other organization rejecting or unasked
+        assertThat(written).isEqualTo(7);
+    }
+}
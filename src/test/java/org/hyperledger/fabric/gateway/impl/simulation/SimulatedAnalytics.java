@@ -0,0 +1,140 @@
+/*
+ * Copyright 2019 IBM All Rights Reserved.
+ *
+ * SPDX-License-Identifier: Apache-2.0
+ */
+
+package org.hyperledger.fabric.gateway.impl.simulation;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Random;
+import java.util.Set;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.node.ArrayNode;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+
+/**
+ * Writes analytics files for simulated networks. The specification is a threshold policy: agreement needs a given
+ * number of approvals. It contains every vector at which a walk in the default organization order first reaches the
+ * threshold, padded with random vectors that also meet the threshold up to the requested size. The padding is not
+ * reached by walks in the default order but makes the specification as large as a model checker would produce.
+ */
+public final class SimulatedAnalytics {
+    public static final int MODEL_ID = 1;
+
+    private static final int MAX_ATTEMPTS_PER_VECTOR = 20;
+
+    private SimulatedAnalytics() { }
+
+    /**
+     * Write an analytics file.
+     * @param file File to write.
+     * @param organizations Organization names.
+     * @param threshold Number of approvals needed for agreement.
+     * @param vectorCount Number of specification vectors to write. Fewer are written if there are not enough distinct
+     *                    vectors that meet the threshold.
+     * @param seed Seed for the padding vectors.
+     * @return Number of specification vectors written.
+     * @throws IOException if the file cannot be written.
+     */
+    public static int write(final Path file, final List<String> organizations, final int threshold,
+                            final int vectorCount, final long seed) throws IOException {
+        Set<List<Integer>> vectors = new HashSet<>();
+        List<int[]> specification = new ArrayList<>();
+
+        addWalkVectors(new int[organizations.size()], 0, 0, threshold, vectorCount, vectors, specification);
+
+        Random random = new Random(seed);
+        long attempts = (long) vectorCount * MAX_ATTEMPTS_PER_VECTOR;
+        for (long i = 0; i < attempts && specification.size() < vectorCount; i++) {
+            int[] vector = randomVector(random, organizations.size());
+            if (countApprovals(vector) >= threshold) {
+                add(vector, vectors, specification);
+            }
+        }
+
+        ObjectMapper mapper = new ObjectMapper();
+        ObjectNode root = mapper.createObjectNode();
+        ArrayNode organizationNames = root.putArray("organizations");
+        organizations.forEach(organizationNames::add);
+        ArrayNode specificationNode = root.putArray("specification");
+        for (int[] vector : specification) {
+            ArrayNode vectorNode = specificationNode.addArray();
+            for (int response : vector) {
+                vectorNode.add(response);
+            }
+        }
+        ObjectNode model = root.putArray("modelCheckResultList").addObject();
+        model.put("id", MODEL_ID)
+                .put("probability", 1.0)
+                .put("expectedMessages", threshold)
+                .put("epochTimestamp", 1)
+                .putArray("backwardTransitions");
+
+        try (OutputStream out = Files.newOutputStream(file)) {
+            mapper.writeValue(out, root);
+        }
+        return specification.size();
+    }
+
+    /**
+     * Add every vector at which a walk in organization order reaches the threshold, with later organizations unasked.
+     */
+    private static void addWalkVectors(final int[] prefix, final int position, final int approvals,
+                                       final int threshold, final int vectorCount, final Set<List<Integer>> vectors,
+                                       final List<int[]> specification) {
+        if (specification.size() >= vectorCount) {
+            return;
+        }
+        if (approvals == threshold) {
+            int[] vector = prefix.clone();
+            Arrays.fill(vector, position, vector.length, -1);
+            add(vector, vectors, specification);
+            return;
+        }
+        if (position == prefix.length) {
+            return;
+        }
+
+        prefix[position] = 1;
+        addWalkVectors(prefix, position + 1, approvals + 1, threshold, vectorCount, vectors, specification);
+        prefix[position] = 0;
+        addWalkVectors(prefix, position + 1, approvals, threshold, vectorCount, vectors, specification);
+    }
+
+    private static int[] randomVector(final Random random, final int size) {
+        int[] vector = new int[size];
+        for (int i = 0; i < size; i++) {
+            vector[i] = random.nextInt(3) - 1;
+        }
+        return vector;
+    }
+
+    private static int countApprovals(final int[] vector) {
+        int count = 0;
+        for (int response : vector) {
+            if (response == 1) {
+                count++;
+            }
+        }
+        return count;
+    }
+
+    private static void add(final int[] vector, final Set<List<Integer>> vectors, final List<int[]> specification) {
+        List<Integer> key = new ArrayList<>(vector.length);
+        for (int response : vector) {
+            key.add(response);
+        }
+        if (vectors.add(key)) {
+            specification.add(vector);
+        }
+    }
+}
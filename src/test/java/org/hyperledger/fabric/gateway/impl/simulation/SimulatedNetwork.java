@@ -0,0 +1,226 @@
+/*
+ * Copyright 2019 IBM All Rights Reserved.
+ *
+ * SPDX-License-Identifier: Apache-2.0
+ */
+
+package org.hyperledger.fabric.gateway.impl.simulation;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.WeakHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.LockSupport;
+
+import com.google.protobuf.ByteString;
+import org.hyperledger.fabric.gateway.TestUtils;
+import org.hyperledger.fabric.protos.peer.ProposalResponsePackage;
+import org.hyperledger.fabric.sdk.Channel;
+import org.hyperledger.fabric.sdk.Peer;
+import org.hyperledger.fabric.sdk.ProposalResponse;
+import org.hyperledger.fabric.sdk.TransactionProposalRequest;
+import org.hyperledger.fabric.sdk.User;
+import org.hyperledger.fabric.sdk.exception.InvalidArgumentException;
+import org.hyperledger.fabric.sdk.exception.ProposalException;
+import org.mockito.Mockito;
+
+/**
+ * A stub channel whose organizations each have one peer that approves proposals with a configured probability and
+ * replies after a configured latency. Outcomes are derived from a seed, the transaction index and the organization,
+ * so a transaction receives the same replies in every run regardless of thread scheduling.
+ * <p>
+ * Organizations must all be added before proposals are sent.
+ * </p>
+ */
+public final class SimulatedNetwork {
+    private static final int STATUS_OK = 200;
+
+    /**
+     * Distribution of reply latencies for an organization.
+     */
+    @FunctionalInterface
+    public interface LatencyDistribution {
+        /**
+         * Sample a latency.
+         * @param uniform A value uniformly distributed between 0 inclusive and 1 exclusive.
+         * @return Latency in nanoseconds.
+         */
+        long sampleNanos(double uniform);
+
+        static LatencyDistribution fixed(final long latencyNanos) {
+            return uniform -> latencyNanos;
+        }
+
+        static LatencyDistribution exponential(final long meanNanos) {
+            return uniform -> (long) (-Math.log(1 - uniform) * meanNanos);
+        }
+    }
+
+    /**
+     * The proposal request for one simulated transaction.
+     */
+    public static final class SimulatedRequest {
+        private final TransactionProposalRequest request;
+        private final long transactionIndex;
+        private final AtomicInteger proposalCount = new AtomicInteger(0);
+
+        SimulatedRequest(final TransactionProposalRequest request, final long transactionIndex) {
+            this.request = request;
+            this.transactionIndex = transactionIndex;
+        }
+
+        /**
+         * Request to pass to the service under test.
+         * @return A proposal request.
+         */
+        public TransactionProposalRequest getRequest() {
+            return request;
+        }
+
+        public long getTransactionIndex() {
+            return transactionIndex;
+        }
+
+        /**
+         * Number of proposals sent for this transaction.
+         * @return Proposal count.
+         */
+        public int getProposalCount() {
+            return proposalCount.get();
+        }
+    }
+
+    private final long seed;
+    private final Channel channel = Mockito.mock(Channel.class);
+    private final User user = TestUtils.getInstance().newMockClient().getUserContext();
+    private final List<String> organizations = new ArrayList<>();
+    private final List<Peer> peers = new ArrayList<>();
+    private final Map<Peer, Integer> organizationsByPeer = new IdentityHashMap<>();
+    private final List<Double> approvalProbabilities = new ArrayList<>();
+    private final List<LatencyDistribution> latencies = new ArrayList<>();
+    private final AtomicLong proposalCount = new AtomicLong(0);
+    private final Map<TransactionProposalRequest, SimulatedRequest> requests =
+            Collections.synchronizedMap(new WeakHashMap<>());
+    private final ProposalResponse approval = newProposalResponse("true");
+    private final ProposalResponse rejection = newProposalResponse("false");
+
+    public SimulatedNetwork(final long seed) {
+        this.seed = seed;
+        try {
+            Mockito.when(channel.sendTransactionProposal(Mockito.any(TransactionProposalRequest.class),
+                    Mockito.anyCollection()))
+                    .thenAnswer(invocation -> send(invocation.getArgument(0), invocation.getArgument(1)));
+        } catch (InvalidArgumentException | ProposalException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    private static ProposalResponse newProposalResponse(final String payload) {
+        ProposalResponsePackage.ProposalResponse fabricResponse = ProposalResponsePackage.ProposalResponse.newBuilder()
+                .setResponse(ProposalResponsePackage.Response.newBuilder()
+                        .setStatus(STATUS_OK)
+                        .setPayload(ByteString.copyFromUtf8(payload)))
+                .build();
+        ProposalResponse response = Mockito.mock(ProposalResponse.class);
+        Mockito.when(response.getProposalResponse()).thenReturn(fabricResponse);
+        return response;
+    }
+
+    /**
+     * Add an organization with a single peer of the same name.
+     * @param name Organization name, as used in the analytics file.
+     * @param approvalProbability Probability that the organization approves a transaction.
+     * @param latency Reply latency of the organization.
+     * @return This network.
+     */
+    public SimulatedNetwork addOrganization(final String name, final double approvalProbability,
+                                            final LatencyDistribution latency) {
+        Peer peer = Mockito.mock(Peer.class);
+        Mockito.when(peer.getName()).thenReturn(name);
+        try {
+            Mockito.when(channel.getPeersForOrganization(name)).thenReturn(Collections.singleton(peer));
+        } catch (InvalidArgumentException e) {
+            throw new IllegalStateException(e);
+        }
+
+        organizationsByPeer.put(peer, organizations.size());
+        organizations.add(name);
+        peers.add(peer);
+        approvalProbabilities.add(approvalProbability);
+        latencies.add(latency);
+        return this;
+    }
+
+    private Collection<ProposalResponse> send(final TransactionProposalRequest request, final Collection<Peer> targets) {
+        SimulatedRequest simulatedRequest = requests.get(request);
+        int organization = organizationsByPeer.get(targets.iterator().next());
+        long transaction = simulatedRequest.getTransactionIndex();
+
+        simulatedRequest.proposalCount.incrementAndGet();
+        proposalCount.incrementAndGet();
+
+        long latencyNanos = latencies.get(organization).sampleNanos(uniform(transaction, organization, 1));
+        if (latencyNanos > 0) {
+            LockSupport.parkNanos(latencyNanos);
+        }
+
+        boolean approved = uniform(transaction, organization, 0) < approvalProbabilities.get(organization);
+        return Collections.singleton(approved ? approval : rejection);
+    }
+
+    /**
+     * A uniformly distributed value that depends only on the seed and the arguments, from the SplitMix64 finalizer.
+     */
+    private double uniform(final long transaction, final int organization, final int stream) {
+        long z = seed + transaction * 0x9E3779B97F4A7C15L + organization * 0xC2B2AE3D27D4EB4FL + stream;
+        z = (z ^ (z >>> 30)) * 0xBF58476D1CE4E5B9L;
+        z = (z ^ (z >>> 27)) * 0x94D049BB133111EBL;
+        z = z ^ (z >>> 31);
+        return (z >>> 11) * 0x1.0p-53;
+    }
+
+    /**
+     * Create the proposal request for a transaction.
+     * @param transactionIndex Index of the transaction, which determines the replies of the organizations.
+     * @return A proposal request.
+     */
+    public SimulatedRequest newRequest(final long transactionIndex) {
+        SimulatedRequest request =
+                new SimulatedRequest(TransactionProposalRequest.newInstance(user), transactionIndex);
+        requests.put(request.getRequest(), request);
+        return request;
+    }
+
+    public Channel getChannel() {
+        return channel;
+    }
+
+    public List<String> getOrganizations() {
+        return Collections.unmodifiableList(organizations);
+    }
+
+    public List<Peer> getPeers() {
+        return Collections.unmodifiableList(peers);
+    }
+
+    /**
+     * A response that approves transactions, for use as the reference response.
+     * @return Approving response.
+     */
+    public ProposalResponse getApproval() {
+        return approval;
+    }
+
+    /**
+     * Number of proposals sent to all organizations.
+     * @return Proposal count.
+     */
+    public long getProposalCount() {
+        return proposalCount.get();
+    }
+}